@@ -18,9 +18,12 @@ package com.android.tools.sizereduction.analyzer;
 
 import com.android.tools.sizereduction.analyzer.AnalyzerMain.VersionProvider;
 import com.android.tools.sizereduction.analyzer.analyzers.Version;
+import com.android.tools.sizereduction.analyzer.cli.CheckApk;
 import com.android.tools.sizereduction.analyzer.cli.CheckBundle;
 import com.android.tools.sizereduction.analyzer.cli.CheckProject;
+import com.android.tools.sizereduction.analyzer.cli.MergeResults;
 import com.android.tools.sizereduction.analyzer.cli.MetricsCommands;
+import com.android.tools.sizereduction.analyzer.cli.SizeForDevices;
 import java.io.IOException;
 import java.util.concurrent.Callable;
 import org.fusesource.jansi.AnsiConsole;
@@ -37,8 +40,11 @@ import picocli.CommandLine.Option;
     versionProvider = VersionProvider.class,
     subcommands = {
       CheckBundle.class,
+      CheckApk.class,
       CheckProject.class,
+      MergeResults.class,
       MetricsCommands.class,
+      SizeForDevices.class,
       HelpCommand.class,
     })
 public class AnalyzerMain implements Callable<Void> {
@@ -63,7 +69,9 @@ public class AnalyzerMain implements Callable<Void> {
   }
 
   void handleCommand(String[] args) {
-    new CommandLine(this).parseWithHandler(new CommandLine.RunLast(), args);
+    new CommandLine(this)
+        .setCaseInsensitiveEnumValuesAllowed(true)
+        .parseWithHandler(new CommandLine.RunLast(), args);
   }
 
   @Override
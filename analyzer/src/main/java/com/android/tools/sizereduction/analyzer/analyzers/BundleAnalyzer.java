@@ -16,6 +16,7 @@
 
 package com.android.tools.sizereduction.analyzer.analyzers;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableMap.toImmutableMap;
 
 import com.android.bundle.Commands.DeliveryType;
@@ -24,69 +25,205 @@ import com.android.tools.build.bundletool.model.AppBundle;
 import com.android.tools.build.bundletool.model.BundleModule;
 import com.android.tools.build.bundletool.model.BundleModuleName;
 import com.android.tools.build.bundletool.model.version.BundleToolVersion;
+import com.android.tools.sizereduction.analyzer.analyzers.EntryPipeline.EntryWork;
+import com.android.tools.sizereduction.analyzer.analyzers.SizeAwareScheduler.WorkItem;
 import com.android.tools.sizereduction.analyzer.model.BundleContext;
+import com.android.tools.sizereduction.analyzer.model.BundleResourceTables;
 import com.android.tools.sizereduction.analyzer.model.ZipFileData;
 import com.android.tools.sizereduction.analyzer.suggesters.BundleEntrySuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.BundleSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.tracing.AnalyzerEvents;
+import com.android.tools.sizereduction.analyzer.tracing.TraceSpan;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
 import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import javax.annotation.CheckReturnValue;
+import javax.annotation.Nullable;
 
 /** Analyzes an app bundle by applying the provided list of suggesters to the bundle artifact. */
 public final class BundleAnalyzer implements ArtifactAnalyzer {
 
   private final ImmutableList<BundleSuggester> bundleSuggesters;
-  private final ImmutableList<BundleEntrySuggester> bundleEntrySuggesters;
+  private final EntryDispatchIndex<BundleEntrySuggester> bundleEntrySuggesters;
+  private final SizeAwareScheduler scheduler;
+  @Nullable private final EntryPipeline pipeline;
   private static final String METADATA_TAG_WEARABLE = "com.google.android.wearable.beta.app";
 
   public BundleAnalyzer(
       ImmutableList<BundleSuggester> bundleSuggesters,
       ImmutableList<BundleEntrySuggester> bundleEntrySuggesters) {
+    this(bundleSuggesters, bundleEntrySuggesters, /* threads= */ 1);
+  }
+
+  /**
+   * Creates an analyzer running the entry suggesters on the given number of threads. The entry
+   * suggesters must then be safe to call concurrently.
+   */
+  public BundleAnalyzer(
+      ImmutableList<BundleSuggester> bundleSuggesters,
+      ImmutableList<BundleEntrySuggester> bundleEntrySuggesters,
+      int threads) {
+    this(bundleSuggesters, bundleEntrySuggesters, threads, /* pipelineBufferBytes= */ 0);
+  }
+
+  /**
+   * Creates an analyzer running the entry suggesters on the given number of threads, as a pipeline
+   * when given a positive buffer size. The pipeline reads the entries on the calling thread in the
+   * order of their data in the bundle, while the suggesters analyze the entries already read, and
+   * buffers at most the given number of bytes of entry content.
+   */
+  public BundleAnalyzer(
+      ImmutableList<BundleSuggester> bundleSuggesters,
+      ImmutableList<BundleEntrySuggester> bundleEntrySuggesters,
+      int threads,
+      long pipelineBufferBytes) {
     this.bundleSuggesters = bundleSuggesters;
-    this.bundleEntrySuggesters = bundleEntrySuggesters;
+    this.bundleEntrySuggesters =
+        new EntryDispatchIndex<>(
+            bundleEntrySuggesters, BundleEntrySuggester::getBundleEntryInterests);
+    this.scheduler = new SizeAwareScheduler(threads);
+    this.pipeline =
+        pipelineBufferBytes > 0 ? new EntryPipeline(threads, pipelineBufferBytes) : null;
   }
 
   /** Analyzes the given bundle file for size optimization suggestions. */
   @Override
   @CheckReturnValue
   public ImmutableList<Suggestion> analyze(File artifactFile) {
+    try (TraceSpan span = AnalyzerEvents.analysis(artifactFile, "analyze");
+        OpenBundle bundle = OpenBundle.open(artifactFile)) {
+      return ImmutableList.<Suggestion>builder()
+          .addAll(analyzeWholeBundle(bundle))
+          .addAll(analyzeEntries(bundle, Shard.all()).values())
+          .build();
+    }
+  }
+
+  /**
+   * Runs only the suggesters operating on the entire bundle, which a sharded analysis runs once
+   * when merging the results of the shards.
+   */
+  @CheckReturnValue
+  public ImmutableList<Suggestion> analyzeWholeBundle(File artifactFile) {
+    try (TraceSpan span = AnalyzerEvents.analysis(artifactFile, "analyzeWholeBundle");
+        OpenBundle bundle = OpenBundle.open(artifactFile)) {
+      return analyzeWholeBundle(bundle);
+    }
+  }
+
+  /**
+   * Runs the entry suggesters on the entries of the bundle that belong to the given shard. The
+   * suggestions are keyed by the position of their entry in the zip file, in that order.
+   */
+  @CheckReturnValue
+  public ImmutableListMultimap<Integer, Suggestion> analyzeEntries(File artifactFile, Shard shard) {
+    try (TraceSpan span = AnalyzerEvents.analysis(artifactFile, "analyzeEntries");
+        OpenBundle bundle = OpenBundle.open(artifactFile)) {
+      return analyzeEntries(bundle, shard);
+    }
+  }
+
+  private ImmutableList<Suggestion> analyzeWholeBundle(OpenBundle bundle) {
     ImmutableList.Builder<Suggestion> resultBuilder = ImmutableList.<Suggestion>builder();
-    try (ZipFile zipFile = new ZipFile(artifactFile)) {
-      AppBundle appBundle = AppBundle.buildFromZip(zipFile);
-      ImmutableMap<BundleModuleName, BundleContext> contextPerModule =
-          appBundle.getModules().entrySet().stream()
-              .collect(
-                  toImmutableMap(
-                      entry -> entry.getKey(), entry -> createContext(entry.getValue())));
-
-      // Process suggesters operating on the entire bundle.
-      BundleContext baseContext = contextPerModule.get(BundleModuleName.BASE_MODULE_NAME);
-      bundleSuggesters.forEach(
-          suggester ->
-              resultBuilder.addAll(suggester.processBundle(baseContext, appBundle, zipFile)));
-
-      // Process suggesters operating on the individual bundle files.
-      Enumeration<? extends ZipEntry> entries = zipFile.entries();
-      while (entries.hasMoreElements()) {
-        ZipEntry entry = entries.nextElement();
-        BundleContext context = findContext(contextPerModule, entry);
-        for (BundleEntrySuggester suggester : bundleEntrySuggesters) {
-          ZipFileData zipFileData = new ZipFileData(zipFile, entry);
-          resultBuilder.addAll(suggester.processBundleZipEntry(context, zipFileData));
-        }
+    BundleContext baseContext = bundle.contextPerModule.get(BundleModuleName.BASE_MODULE_NAME);
+    BundleResourceTables resourceTables = new BundleResourceTables(bundle.zipFile);
+    bundleSuggesters.forEach(
+        suggester ->
+            resultBuilder.addAll(
+                suggester.processBundle(
+                    baseContext, bundle.appBundle, bundle.zipFile, resourceTables)));
+    return resultBuilder.build();
+  }
+
+  private ImmutableListMultimap<Integer, Suggestion> analyzeEntries(
+      OpenBundle bundle, Shard shard) {
+    List<ZipEntry> entries = Collections.list(bundle.zipFile.entries());
+    // The sizes come from the central directory, so no entry is read to schedule the work.
+    long[] costs =
+        entries.stream()
+            .mapToLong(entry -> SizeAwareScheduler.estimateCost(entry.getName(), entry.getSize()))
+            .toArray();
+    boolean[] selected =
+        shard.select(entries.stream().map(ZipEntry::getName).collect(toImmutableList()), costs);
+
+    // Process suggesters operating on the individual bundle files, the largest images first unless
+    // pipelined, in which case the files are processed in the order they are read.
+    List<Integer> ordinals = new ArrayList<>();
+    List<WorkItem<ImmutableList<Suggestion>>> workItems = new ArrayList<>();
+    List<EntryWork<ImmutableList<Suggestion>>> pipelineWork = new ArrayList<>();
+    for (int ordinal = 0; ordinal < entries.size(); ordinal++) {
+      if (!selected[ordinal]) {
+        continue;
+      }
+      ZipEntry entry = entries.get(ordinal);
+      BundleContext context = findContext(bundle.contextPerModule, entry);
+      ImmutableList<BundleEntrySuggester> suggesters =
+          bundleEntrySuggesters.select(
+              new ZipFileData(bundle.zipFile, entry).getPathWithinModule(),
+              entry.getSize(),
+              context.getOnDemand());
+      if (suggesters.isEmpty()) {
+        // No suggester is interested, the entry is neither read nor scheduled.
+        continue;
       }
-    } catch (IOException e) {
-      throw new UncheckedIOException(e);
+      ordinals.add(ordinal);
+      if (pipeline != null) {
+        boolean readsContent =
+            suggesters.stream()
+                .anyMatch(suggester -> suggester.getBundleEntryInterests().getReadsContent());
+        pipelineWork.add(
+            new EntryWork<>(
+                entry,
+                readsContent,
+                content -> processEntry(context, bundle.zipFile, entry, suggesters, content)));
+      } else {
+        workItems.add(
+            new WorkItem<>(
+                costs[ordinal],
+                () ->
+                    processEntry(
+                        context, bundle.zipFile, entry, suggesters, /* content= */ null)));
+      }
+    }
+    ImmutableList<ImmutableList<Suggestion>> results =
+        pipeline != null
+            ? pipeline.run(bundle.zipFile, pipelineWork)
+            : scheduler.run(workItems);
+    ImmutableListMultimap.Builder<Integer, Suggestion> resultBuilder =
+        ImmutableListMultimap.builder();
+    for (int i = 0; i < results.size(); i++) {
+      resultBuilder.putAll(ordinals.get(i), results.get(i));
     }
+    return resultBuilder.build();
+  }
 
+  private static ImmutableList<Suggestion> processEntry(
+      BundleContext context,
+      ZipFile zipFile,
+      ZipEntry entry,
+      ImmutableList<BundleEntrySuggester> suggesters,
+      @Nullable byte[] content) {
+    ImmutableList.Builder<Suggestion> resultBuilder = ImmutableList.<Suggestion>builder();
+    for (BundleEntrySuggester suggester : suggesters) {
+      ZipFileData zipFileData = new ZipFileData(zipFile, entry, content);
+      try (TraceSpan span =
+          AnalyzerEvents.suggesterInvocation(suggester, entry.getName(), entry.getSize())) {
+        resultBuilder.addAll(suggester.processBundleZipEntry(context, zipFileData));
+      }
+    }
     return resultBuilder.build();
   }
 
@@ -100,6 +237,105 @@ public final class BundleAnalyzer implements ArtifactAnalyzer {
     return contextPerModule.get(BundleModuleName.BASE_MODULE_NAME);
   }
 
+  /**
+   * The open bundle zip file, with the contexts of its modules. The {@link AppBundle} is loaded
+   * from a view of the zip file without the resource tables, so that bundletool does not parse
+   * them into the generated proto classes. The suggesters read them through {@link
+   * BundleResourceTables} instead.
+   */
+  private static final class OpenBundle implements AutoCloseable {
+    private final ZipFile zipFile;
+    private final ZipFile appBundleZipFile;
+    private final AppBundle appBundle;
+    private final ImmutableMap<BundleModuleName, BundleContext> contextPerModule;
+
+    private OpenBundle(ZipFile zipFile, ZipFile appBundleZipFile) {
+      this.zipFile = zipFile;
+      this.appBundleZipFile = appBundleZipFile;
+      this.appBundle = AppBundle.buildFromZip(appBundleZipFile);
+      this.contextPerModule =
+          appBundle.getModules().entrySet().stream()
+              .collect(
+                  toImmutableMap(
+                      entry -> entry.getKey(),
+                      entry -> {
+                        try (TraceSpan span =
+                            AnalyzerEvents.moduleContext(entry.getKey().getName())) {
+                          return createContext(entry.getValue());
+                        }
+                      }));
+    }
+
+    static OpenBundle open(File artifactFile) {
+      try {
+        ZipFile zipFile = new ZipFile(artifactFile);
+        try {
+          ZipFile appBundleZipFile = new ResourceTablesHidingZipFile(artifactFile);
+          try {
+            return new OpenBundle(zipFile, appBundleZipFile);
+          } catch (RuntimeException e) {
+            appBundleZipFile.close();
+            throw e;
+          }
+        } catch (IOException | RuntimeException e) {
+          zipFile.close();
+          throw e;
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public void close() {
+      try {
+        try {
+          zipFile.close();
+        } finally {
+          appBundleZipFile.close();
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * Bundle zip file whose entries leave out the {@code resources.pb} of every module. The zip
+   * files of a same file share their central directory, so opening this view costs little.
+   */
+  private static final class ResourceTablesHidingZipFile extends ZipFile {
+    private static final String RESOURCE_TABLE_NAME = "resources.pb";
+
+    ResourceTablesHidingZipFile(File file) throws IOException {
+      super(file);
+    }
+
+    @Override
+    public Enumeration<? extends ZipEntry> entries() {
+      return Iterators.asEnumeration(stream().iterator());
+    }
+
+    @Override
+    public Stream<? extends ZipEntry> stream() {
+      return super.stream().filter(entry -> !isResourceTable(entry.getName()));
+    }
+
+    @Override
+    @Nullable
+    public ZipEntry getEntry(String name) {
+      return isResourceTable(name) ? null : super.getEntry(name);
+    }
+
+    private static boolean isResourceTable(String name) {
+      // Only <module>/resources.pb, a module's own files named so are kept.
+      int separator = name.indexOf('/');
+      return separator >= 0
+          && separator == name.lastIndexOf('/')
+          && name.substring(separator + 1).equals(RESOURCE_TABLE_NAME);
+    }
+  }
+
   private static BundleContext createContext(BundleModule module) {
     boolean onDemand =
         BundleToolVersion.getVersionFromBundleConfig(module.getBundleConfig())
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * Index of the files of a bundle that end up in its APKs, holding their compressed sizes and the
+ * split dimensions they are targeted at, as read from their paths.
+ *
+ * <p>The index is immutable once built, so any number of device specs can be evaluated against it
+ * concurrently.
+ */
+final class BundleEntryIndex {
+
+  static final int NO_DENSITY = 0;
+
+  private static final ImmutableMap<String, Integer> DENSITY_QUALIFIERS =
+      ImmutableMap.<String, Integer>builder()
+          .put("ldpi", 120)
+          .put("mdpi", 160)
+          .put("tvdpi", 213)
+          .put("hdpi", 240)
+          .put("xhdpi", 320)
+          .put("xxhdpi", 480)
+          .put("xxxhdpi", 640)
+          .build();
+  private static final Pattern DPI_QUALIFIER = Pattern.compile("(\\d+)dpi");
+  private static final Pattern LANGUAGE_QUALIFIER = Pattern.compile("[a-z]{2,3}");
+  private static final Pattern BCP47_QUALIFIER = Pattern.compile("b\\+([a-z]{2,3})(\\+.*)?");
+  private static final Pattern MOBILE_CODE_QUALIFIER = Pattern.compile("mcc\\d+|mnc\\d+");
+  private static final Pattern ASSETS_LANGUAGE = Pattern.compile("#lang_([a-z]{2,3})");
+  private static final ImmutableSet<String> NON_LANGUAGE_QUALIFIERS =
+      ImmutableSet.of("car", "dpad", "key", "ldltr", "ldrtl", "nav", "land", "port");
+
+  private final int size;
+  private final long[] compressedSizes;
+  private final boolean[] onDemand;
+  /** ABI of the native library in the row, or null if the file is not ABI specific. */
+  private final String[] abis;
+  /** Density of the resource in the row, or {@link #NO_DENSITY}. */
+  private final int[] densities;
+  /** Rows of the same resource for different densities share the same group, -1 otherwise. */
+  private final int[] densityGroups;
+  /** Language of the resource or asset in the row, or null if the file is not language specific. */
+  private final String[] languages;
+  private final ImmutableSet<String> bundleAbis;
+
+  private BundleEntryIndex(Builder builder) {
+    this.size = builder.compressedSizes.size();
+    this.compressedSizes = new long[size];
+    this.onDemand = new boolean[size];
+    for (int row = 0; row < size; row++) {
+      compressedSizes[row] = builder.compressedSizes.get(row);
+      onDemand[row] = builder.onDemand.get(row);
+    }
+    this.abis = builder.abis.toArray(new String[0]);
+    this.densities = builder.densities.stream().mapToInt(Integer::intValue).toArray();
+    this.densityGroups = builder.densityGroups.stream().mapToInt(Integer::intValue).toArray();
+    this.languages = builder.languages.toArray(new String[0]);
+    this.bundleAbis = ImmutableSet.copyOf(builder.bundleAbis);
+  }
+
+  static Builder builder() {
+    return new Builder();
+  }
+
+  int size() {
+    return size;
+  }
+
+  long getCompressedSize(int row) {
+    return compressedSizes[row];
+  }
+
+  boolean isOnDemand(int row) {
+    return onDemand[row];
+  }
+
+  @Nullable
+  String getAbi(int row) {
+    return abis[row];
+  }
+
+  int getDensity(int row) {
+    return densities[row];
+  }
+
+  int getDensityGroup(int row) {
+    return densityGroups[row];
+  }
+
+  @Nullable
+  String getLanguage(int row) {
+    return languages[row];
+  }
+
+  /** Returns the ABIs the bundle has native libraries for, in the order they were first seen. */
+  ImmutableSet<String> getBundleAbis() {
+    return bundleAbis;
+  }
+
+  /** Returns the number of density groups, which are numbered from zero. */
+  int getDensityGroupCount() {
+    return Arrays.stream(densityGroups).max().orElse(-1) + 1;
+  }
+
+  /** Builds the index from the paths of the files within their module. */
+  static final class Builder {
+    private final List<Long> compressedSizes = new ArrayList<>();
+    private final List<Boolean> onDemand = new ArrayList<>();
+    private final List<String> abis = new ArrayList<>();
+    private final List<Integer> densities = new ArrayList<>();
+    private final List<Integer> densityGroups = new ArrayList<>();
+    private final List<String> languages = new ArrayList<>();
+    private final Set<String> bundleAbis = new LinkedHashSet<>();
+    private final Map<String, Integer> densityGroupByResource = new HashMap<>();
+
+    private Builder() {}
+
+    /**
+     * Adds a file of the given module.
+     *
+     * @param moduleName name of the module holding the file
+     * @param path path of the file within its module, such as {@code res/drawable-hdpi/icon.png}
+     * @param compressedSize size of the file as stored in the bundle
+     * @param onDemand whether the module is delivered after the app is installed
+     */
+    Builder add(String moduleName, String path, long compressedSize, boolean onDemand) {
+      String[] segments = path.split("/");
+      String abi = null;
+      int density = NO_DENSITY;
+      int densityGroup = -1;
+      String language = null;
+      if (segments.length >= 3 && segments[0].equals("lib")) {
+        abi = segments[1];
+        bundleAbis.add(abi);
+      } else if (segments.length >= 3 && segments[0].equals("res")) {
+        String[] qualifiers = segments[1].split("-");
+        StringBuilder resourceKey = new StringBuilder(moduleName).append('/').append(qualifiers[0]);
+        for (int i = 1; i < qualifiers.length; i++) {
+          String qualifier = qualifiers[i];
+          int qualifierDensity = parseDensity(qualifier);
+          if (qualifierDensity != NO_DENSITY) {
+            density = qualifierDensity;
+            continue;
+          }
+          if (language == null) {
+            language = parseLanguage(qualifier, i, qualifiers);
+          }
+          resourceKey.append('-').append(qualifier);
+        }
+        if (density != NO_DENSITY) {
+          resourceKey.append('/').append(segments[segments.length - 1]);
+          densityGroup =
+              densityGroupByResource.computeIfAbsent(
+                  resourceKey.toString(), key -> densityGroupByResource.size());
+        }
+      } else if (segments.length >= 2 && segments[0].equals("assets")) {
+        Matcher matcher = ASSETS_LANGUAGE.matcher(path);
+        if (matcher.find()) {
+          language = matcher.group(1);
+        }
+      }
+
+      compressedSizes.add(compressedSize);
+      this.onDemand.add(onDemand);
+      abis.add(abi);
+      densities.add(density);
+      densityGroups.add(densityGroup);
+      languages.add(language);
+      return this;
+    }
+
+    BundleEntryIndex build() {
+      return new BundleEntryIndex(this);
+    }
+
+    private static int parseDensity(String qualifier) {
+      Integer density = DENSITY_QUALIFIERS.get(qualifier);
+      if (density != null) {
+        return density;
+      }
+      Matcher matcher = DPI_QUALIFIER.matcher(qualifier);
+      return matcher.matches() ? Integer.parseInt(matcher.group(1)) : NO_DENSITY;
+    }
+
+    /**
+     * Returns the language of the qualifier, which is only recognized right after the resource type
+     * or the mobile country and network codes, as Android requires qualifiers in that order.
+     */
+    @Nullable
+    private static String parseLanguage(String qualifier, int position, String[] qualifiers) {
+      for (int i = 1; i < position; i++) {
+        if (!MOBILE_CODE_QUALIFIER.matcher(qualifiers[i]).matches()) {
+          return null;
+        }
+      }
+      Matcher bcp47 = BCP47_QUALIFIER.matcher(qualifier);
+      if (bcp47.matches()) {
+        return bcp47.group(1);
+      }
+      if (LANGUAGE_QUALIFIER.matcher(qualifier).matches()
+          && !NON_LANGUAGE_QUALIFIERS.contains(qualifier)) {
+        return qualifier;
+      }
+      return null;
+    }
+  }
+}
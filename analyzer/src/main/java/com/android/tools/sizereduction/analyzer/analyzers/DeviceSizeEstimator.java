@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.android.bundle.Commands.DeliveryType;
+import com.android.bundle.Devices.DeviceSpec;
+import com.android.tools.build.bundletool.model.AppBundle;
+import com.android.tools.build.bundletool.model.BundleModule;
+import com.android.tools.build.bundletool.model.BundleModuleName;
+import com.android.tools.build.bundletool.model.version.BundleToolVersion;
+import com.android.tools.build.bundletool.model.version.Version;
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Estimates how many bytes a device downloads when installing an app from a bundle.
+ *
+ * <p>The bundle's central directory is read once into an index of the files that go into the APKs,
+ * along with the ABI, screen density and language they are targeted at. Each device spec is then
+ * matched against the index without reading the bundle again, the same way the split APKs for the
+ * device would be selected: the native libraries of the preferred ABI, the closest density of each
+ * resource and the resources of the device's languages. Sizes are the compressed sizes of the
+ * files in the bundle, so they approximate the compressed size of the generated APKs.
+ */
+public final class DeviceSizeEstimator {
+
+  /** Devices below this SDK version install a single standalone APK instead of split APKs. */
+  private static final int MIN_SDK_FOR_SPLITS = 21;
+
+  private final int threads;
+
+  public DeviceSizeEstimator(int threads) {
+    this.threads = threads;
+  }
+
+  /** Returns the estimated download size for each of the named device specs, in the same order. */
+  public ImmutableList<DeviceSize> estimate(
+      File bundleFile, ImmutableMap<String, DeviceSpec> deviceSpecs) {
+    BundleEntryIndex index;
+    int minSdkVersion;
+    try (ZipFile zipFile = new ZipFile(bundleFile)) {
+      AppBundle appBundle = AppBundle.buildFromZip(zipFile);
+      minSdkVersion =
+          appBundle
+              .getModules()
+              .get(BundleModuleName.BASE_MODULE_NAME)
+              .getAndroidManifest()
+              .getEffectiveMinSdkVersion();
+      index = buildIndex(zipFile, appBundle);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    if (threads <= 1 || deviceSpecs.size() <= 1) {
+      return deviceSpecs.entrySet().stream()
+          .map(spec -> estimate(index, minSdkVersion, spec.getKey(), spec.getValue()))
+          .collect(toImmutableList());
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, deviceSpecs.size()));
+    try {
+      List<Future<DeviceSize>> futures = new ArrayList<>();
+      for (Map.Entry<String, DeviceSpec> spec : deviceSpecs.entrySet()) {
+        futures.add(
+            executor.submit(() -> estimate(index, minSdkVersion, spec.getKey(), spec.getValue())));
+      }
+      ImmutableList.Builder<DeviceSize> results = ImmutableList.builder();
+      for (Future<DeviceSize> future : futures) {
+        results.add(future.get());
+      }
+      return results.build();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static BundleEntryIndex buildIndex(ZipFile zipFile, AppBundle appBundle) {
+    BundleEntryIndex.Builder builder = BundleEntryIndex.builder();
+    Enumeration<? extends ZipEntry> entries = zipFile.entries();
+    while (entries.hasMoreElements()) {
+      ZipEntry entry = entries.nextElement();
+      if (entry.isDirectory()) {
+        continue;
+      }
+      Optional<BundleModuleName> moduleName = AppBundle.extractModuleName(entry);
+      if (!moduleName.isPresent() || !appBundle.getModules().containsKey(moduleName.get())) {
+        // Bundle metadata and configuration are not part of any APK.
+        continue;
+      }
+      String name = moduleName.get().getName();
+      builder.add(
+          name,
+          entry.getName().substring(name.length() + 1),
+          entry.getCompressedSize(),
+          isOnDemand(appBundle.getModules().get(moduleName.get())));
+    }
+    return builder.build();
+  }
+
+  @VisibleForTesting
+  static DeviceSize estimate(
+      BundleEntryIndex index, int minSdkVersion, String name, DeviceSpec deviceSpec) {
+    if (deviceSpec.getSdkVersion() != 0 && deviceSpec.getSdkVersion() < minSdkVersion) {
+      return DeviceSize.create(name, Optional.empty());
+    }
+    Optional<String> abi =
+        deviceSpec.getSupportedAbisList().stream()
+            .filter(index.getBundleAbis()::contains)
+            .findFirst();
+    if (!abi.isPresent() && !index.getBundleAbis().isEmpty()) {
+      // The app only ships native libraries for ABIs the device cannot run.
+      return DeviceSize.create(name, Optional.empty());
+    }
+    boolean standalone =
+        deviceSpec.getSdkVersion() != 0 && deviceSpec.getSdkVersion() < MIN_SDK_FOR_SPLITS;
+    Set<String> languages = new HashSet<>();
+    for (String locale : deviceSpec.getSupportedLocalesList()) {
+      languages.add(Locale.forLanguageTag(locale).getLanguage());
+    }
+    int[] selectedDensities = selectDensities(index, deviceSpec.getScreenDensity());
+
+    long total = 0;
+    for (int row = 0; row < index.size(); row++) {
+      // Standalone APKs fuse all the modules and keep every language.
+      if (!standalone && index.isOnDemand(row)) {
+        continue;
+      }
+      String rowAbi = index.getAbi(row);
+      if (rowAbi != null && !rowAbi.equals(abi.get())) {
+        continue;
+      }
+      int group = index.getDensityGroup(row);
+      if (group >= 0 && index.getDensity(row) != selectedDensities[group]) {
+        continue;
+      }
+      String language = index.getLanguage(row);
+      if (!standalone && language != null && !languages.contains(language)) {
+        continue;
+      }
+      total += index.getCompressedSize(row);
+    }
+    return DeviceSize.create(name, Optional.of(total));
+  }
+
+  /**
+   * Returns the density picked for each density group: the lowest density at least as high as the
+   * device's, or the highest available one if all are lower. Devices without a density get the
+   * highest one.
+   */
+  private static int[] selectDensities(BundleEntryIndex index, int deviceDensity) {
+    int[] selected = new int[index.getDensityGroupCount()];
+    for (int row = 0; row < index.size(); row++) {
+      int group = index.getDensityGroup(row);
+      if (group < 0) {
+        continue;
+      }
+      int density = index.getDensity(row);
+      int current = selected[group];
+      if (current == BundleEntryIndex.NO_DENSITY
+          || isBetterDensity(density, current, deviceDensity)) {
+        selected[group] = density;
+      }
+    }
+    return selected;
+  }
+
+  private static boolean isBetterDensity(int candidate, int current, int deviceDensity) {
+    boolean candidateFits = deviceDensity > 0 && candidate >= deviceDensity;
+    boolean currentFits = deviceDensity > 0 && current >= deviceDensity;
+    if (candidateFits != currentFits) {
+      return candidateFits;
+    }
+    return candidateFits ? candidate < current : candidate > current;
+  }
+
+  private static boolean isOnDemand(BundleModule module) {
+    return BundleToolVersion.getVersionFromBundleConfig(module.getBundleConfig())
+            .isNewerThan(Version.of("0.10.1"))
+        ? !module.getModuleMetadata().getDeliveryType().equals(DeliveryType.INSTALL_TIME)
+        : module.getModuleMetadata().getOnDemandDeprecated();
+  }
+
+  /** Estimated download size of an app for a device. */
+  @AutoValue
+  public abstract static class DeviceSize {
+
+    static DeviceSize create(String deviceName, Optional<Long> downloadBytes) {
+      return new AutoValue_DeviceSizeEstimator_DeviceSize(deviceName, downloadBytes);
+    }
+
+    public abstract String getDeviceName();
+
+    /** Returns the estimated download size, or an empty optional if the device is unsupported. */
+    public abstract Optional<Long> getDownloadBytes();
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import com.android.tools.sizereduction.analyzer.suggesters.EntryInterests;
+import com.google.common.base.Ascii;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.MoreFiles;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Routes each entry to the suggesters whose declared {@link EntryInterests} match it, so that
+ * entries no suggester is interested in are never read or scheduled.
+ *
+ * <p>The suggesters are indexed by the extensions they declare, which narrows them down with a
+ * single lookup per entry. The remaining criteria are then checked against that short list. The
+ * selected suggesters are always returned in the order they were given in.
+ */
+final class EntryDispatchIndex<T> {
+
+  private final ImmutableList<T> suggesters;
+  private final ImmutableList<EntryInterests> interests;
+  /** Indices of the suggesters interested in each declared extension, or in any extension. */
+  private final ImmutableMap<String, int[]> candidatesByExtension;
+  /** Indices of the suggesters interested in any extension. */
+  private final int[] anyExtensionCandidates;
+
+  EntryDispatchIndex(ImmutableList<T> suggesters, Function<T, EntryInterests> interestsFunction) {
+    this.suggesters = suggesters;
+    ImmutableList.Builder<EntryInterests> interestsBuilder = ImmutableList.builder();
+    Map<String, List<Integer>> byExtension = new HashMap<>();
+    List<Integer> anyExtension = new ArrayList<>();
+    for (int i = 0; i < suggesters.size(); i++) {
+      EntryInterests suggesterInterests = interestsFunction.apply(suggesters.get(i));
+      interestsBuilder.add(suggesterInterests);
+      if (suggesterInterests.getExtensions().isEmpty()) {
+        anyExtension.add(i);
+        // Suggesters interested in anything are candidates for every declared extension as well.
+        for (List<Integer> candidates : byExtension.values()) {
+          candidates.add(i);
+        }
+      } else {
+        for (String extension : suggesterInterests.getExtensions()) {
+          byExtension.computeIfAbsent(extension, key -> new ArrayList<>(anyExtension)).add(i);
+        }
+      }
+    }
+    this.interests = interestsBuilder.build();
+    ImmutableMap.Builder<String, int[]> candidatesBuilder = ImmutableMap.builder();
+    byExtension.forEach(
+        (extension, candidates) -> candidatesBuilder.put(extension, toArray(candidates)));
+    this.candidatesByExtension = candidatesBuilder.build();
+    this.anyExtensionCandidates = toArray(anyExtension);
+  }
+
+  /** Returns the suggesters interested in the given entry, empty if none is. */
+  ImmutableList<T> select(Path pathWithinModule, long size, boolean onDemand) {
+    String extension = Ascii.toLowerCase(MoreFiles.getFileExtension(pathWithinModule));
+    int[] candidates = candidatesByExtension.getOrDefault(extension, anyExtensionCandidates);
+    ImmutableList.Builder<T> selected = ImmutableList.builder();
+    for (int candidate : candidates) {
+      if (interests.get(candidate).matches(extension, pathWithinModule, size, onDemand)) {
+        selected.add(suggesters.get(candidate));
+      }
+    }
+    return selected.build();
+  }
+
+  private static int[] toArray(List<Integer> indices) {
+    return indices.stream().mapToInt(Integer::intValue).toArray();
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.android.tools.sizereduction.analyzer.model.ZipCentralDirectory;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Runs units of work on zip entries as a pipeline, so that reading the archive overlaps with the
+ * analysis of the entries already read.
+ *
+ * <p>The calling thread is the reader stage: it inflates the entries one after the other, in the
+ * order of their data in the archive, so that the file is read sequentially. The inflated content
+ * is handed to a pool of threads running the work. Content is only buffered up to a byte budget,
+ * and only a bounded number of entries wait for a thread, past which the reader blocks until the
+ * work catches up. Memory therefore stays bounded whatever the size of the archive. Entries larger
+ * than the whole budget, and entries whose work does not read their content, are not buffered:
+ * their work reads them from the archive itself if needed.
+ *
+ * <p>The results are aggregated in the order of the work items, like {@link SizeAwareScheduler}.
+ */
+final class EntryPipeline {
+
+  /** Maximum number of entries read ahead and waiting for a thread, per thread. */
+  private static final int PENDING_ENTRIES_PER_THREAD = 4;
+
+  private final int threads;
+  private final int bufferBytes;
+
+  EntryPipeline(int threads, long bufferBytes) {
+    checkArgument(threads > 0, "The number of threads must be positive.");
+    checkArgument(
+        bufferBytes > 0 && bufferBytes <= Integer.MAX_VALUE,
+        "The pipeline buffer must be between 1 byte and 2 GB.");
+    this.threads = threads;
+    this.bufferBytes = (int) bufferBytes;
+  }
+
+  /** Runs all the work and returns the results in the same order as the work items. */
+  <T> ImmutableList<T> run(ZipFile zipFile, List<EntryWork<T>> workItems) {
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            threads,
+            new ThreadFactoryBuilder().setNameFormat("analyzer-%d").setDaemon(true).build());
+    Semaphore buffer = new Semaphore(bufferBytes);
+    Semaphore pendingEntries = new Semaphore(threads * PENDING_ENTRIES_PER_THREAD);
+    AtomicBoolean failed = new AtomicBoolean();
+    List<Future<T>> futures = new ArrayList<>(workItems.size());
+    for (int i = 0; i < workItems.size(); i++) {
+      futures.add(null);
+    }
+    try {
+      for (int index : readOrder(zipFile, workItems)) {
+        if (failed.get()) {
+          // The error is thrown below, there is no point reading any further.
+          break;
+        }
+        EntryWork<T> workItem = workItems.get(index);
+        long size = workItem.entry.getSize();
+        int bufferedBytes =
+            workItem.readsContent && size >= 0 && size <= bufferBytes ? (int) size : -1;
+        pendingEntries.acquireUninterruptibly();
+        buffer.acquireUninterruptibly(Math.max(0, bufferedBytes));
+        byte[] content;
+        try {
+          content = bufferedBytes >= 0 ? read(zipFile, workItem.entry, bufferedBytes) : null;
+        } catch (RuntimeException e) {
+          buffer.release(Math.max(0, bufferedBytes));
+          pendingEntries.release();
+          throw e;
+        }
+        futures.set(
+            index,
+            executor.submit(
+                () -> {
+                  try {
+                    return workItem.work.apply(content);
+                  } catch (RuntimeException | Error e) {
+                    failed.set(true);
+                    throw e;
+                  } finally {
+                    buffer.release(Math.max(0, bufferedBytes));
+                    pendingEntries.release();
+                  }
+                }));
+      }
+
+      ImmutableList.Builder<T> results = ImmutableList.builder();
+      for (Future<T> future : futures) {
+        if (future != null) {
+          results.add(SizeAwareScheduler.getUninterruptibly(future));
+        }
+      }
+      return results.build();
+    } finally {
+      MoreExecutors.shutdownAndAwaitTermination(executor, 1, TimeUnit.MINUTES);
+    }
+  }
+
+  /**
+   * Returns the indices of the work items in the order of their entries' data in the archive, or
+   * in the order of the work items if the central directory cannot be read.
+   */
+  private static <T> List<Integer> readOrder(ZipFile zipFile, List<EntryWork<T>> workItems) {
+    Map<String, Long> offsets = new HashMap<>();
+    try (ZipCentralDirectory directory = ZipCentralDirectory.open(Paths.get(zipFile.getName()))) {
+      for (ZipCentralDirectory.Entry entry : directory.getEntries()) {
+        offsets.putIfAbsent(entry.getName(), entry.getLocalHeaderOffset());
+      }
+    } catch (IOException e) {
+      offsets.clear();
+    }
+    return IntStream.range(0, workItems.size())
+        .boxed()
+        .sorted(
+            Comparator.<Integer>comparingLong(
+                    index -> offsets.getOrDefault(workItems.get(index).entry.getName(), 0L))
+                .thenComparing(Comparator.naturalOrder()))
+        .collect(Collectors.toList());
+  }
+
+  private static byte[] read(ZipFile zipFile, ZipEntry entry, int size) {
+    byte[] content = new byte[size];
+    try (InputStream inputStream = zipFile.getInputStream(entry)) {
+      ByteStreams.readFully(inputStream, content);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return content;
+  }
+
+  /**
+   * Work on a single zip entry. The work is given the uncompressed content of the entry, or null
+   * if the entry was not buffered and must be read from the archive.
+   */
+  static final class EntryWork<T> {
+    private final ZipEntry entry;
+    private final boolean readsContent;
+    private final Function<byte[], T> work;
+
+    EntryWork(ZipEntry entry, boolean readsContent, Function<byte[], T> work) {
+      this.entry = entry;
+      this.readsContent = readsContent;
+      this.work = work;
+    }
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import com.android.tools.sizereduction.analyzer.model.Project;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Keeps the suggestions for a project directory up to date as its files change, re-analyzing only
+ * the changed files, or the whole module when its build file or manifest changes.
+ *
+ * <p>The same analyzer, with its suggesters, their caches and the module graph of the project, is
+ * used for every update. Both {@code check-project --watch} and the Studio plugin keep their
+ * analysis up to date through this class, so that they re-analyze changes the same way. Not thread
+ * safe.
+ */
+public final class IncrementalProjectAnalysis {
+
+  private static final String MANIFEST = "AndroidManifest.xml";
+
+  private final ProjectAnalyzer analyzer;
+  private final File projectDirectory;
+  // In walk order for the sources found by the full analysis, new sources are appended.
+  private final Map<File, ImmutableList<Suggestion>> suggestionsBySource = new LinkedHashMap<>();
+
+  public IncrementalProjectAnalysis(ProjectAnalyzer analyzer, File projectDirectory) {
+    this.analyzer = analyzer;
+    this.projectDirectory = projectDirectory;
+  }
+
+  /** Analyzes the whole project, dropping the results of any previous analysis. */
+  public void analyzeAll() {
+    suggestionsBySource.clear();
+    putAll(projectDirectory);
+  }
+
+  /**
+   * Re-analyzes what the changed paths affect, when none of them is a created directory.
+   *
+   * @see #update(Collection, Collection)
+   */
+  public int update(Collection<File> changes) {
+    return update(changes, ImmutableSet.of());
+  }
+
+  /**
+   * Re-analyzes what the changed paths affect. Paths may be files or directories that were
+   * created, modified or deleted. Created directories are re-analyzed as a whole. A modified
+   * directory only means that its entries changed, and those are reported as changes of their own.
+   *
+   * @param created the changed paths that were created rather than modified or deleted
+   * @return the number of paths that were re-analyzed, once those within re-analyzed modules are
+   *     left out
+   */
+  public int update(Collection<File> changes, Collection<File> created) {
+    List<File> directories = new ArrayList<>();
+    for (File changed : changes) {
+      File directory = getAffectedDirectory(changed, created.contains(changed));
+      if (directory != null && directories.stream().noneMatch(dir -> isUnder(directory, dir))) {
+        directories.removeIf(dir -> isUnder(dir, directory));
+        directories.add(directory);
+      }
+    }
+
+    int updated = directories.size();
+    for (File directory : directories) {
+      removeSourcesUnder(directory);
+      putAll(directory);
+    }
+    for (File changed : changes) {
+      if (directories.stream().anyMatch(dir -> isUnder(changed, dir))) {
+        continue;
+      }
+      if (changed.isDirectory()) {
+        // Modified directory, its changed entries are handled on their own.
+        continue;
+      }
+      updated++;
+      if (changed.isFile()) {
+        ImmutableList<Suggestion> suggestions = analyzer.analyzeFile(projectDirectory, changed);
+        if (suggestions.isEmpty()) {
+          suggestionsBySource.remove(changed);
+        } else {
+          suggestionsBySource.put(changed, suggestions);
+        }
+      } else {
+        // Deleted file or directory.
+        removeSourcesUnder(changed);
+      }
+    }
+    return updated;
+  }
+
+  /** Returns the current suggestions for the whole project. */
+  public ImmutableList<Suggestion> getSuggestions() {
+    ImmutableList.Builder<Suggestion> suggestions = ImmutableList.builder();
+    suggestionsBySource.values().forEach(suggestions::addAll);
+    return suggestions.build();
+  }
+
+  private void putAll(File directory) {
+    analyzer
+        .analyzeBySource(projectDirectory, directory)
+        .asMap()
+        .forEach(
+            (source, suggestions) ->
+                suggestionsBySource.put(source, ImmutableList.copyOf(suggestions)));
+  }
+
+  /**
+   * Returns the directory to re-analyze as a whole for the changed path, or null if only the path
+   * itself needs to be re-analyzed.
+   */
+  @Nullable
+  private File getAffectedDirectory(File changed, boolean created) {
+    if (changed.isDirectory()) {
+      return created ? changed : null;
+    }
+    // Build files and manifests also affect their module when they are deleted.
+    if (changed.getName().equals(Project.BUILD_GRADLE)) {
+      return changed.getParentFile().isDirectory() ? changed.getParentFile() : null;
+    }
+    if (changed.getName().equals(MANIFEST)) {
+      // The module is the closest directory with a build file.
+      for (File directory = changed.getParentFile();
+          directory != null && isUnder(directory, projectDirectory);
+          directory = directory.getParentFile()) {
+        if (new File(directory, Project.BUILD_GRADLE).exists()) {
+          return directory;
+        }
+      }
+    }
+    return null;
+  }
+
+  private void removeSourcesUnder(File path) {
+    Iterator<File> sources = suggestionsBySource.keySet().iterator();
+    while (sources.hasNext()) {
+      if (isUnder(sources.next(), path)) {
+        sources.remove();
+      }
+    }
+  }
+
+  private static boolean isUnder(File path, File directory) {
+    return path.toPath().startsWith(directory.toPath());
+  }
+}
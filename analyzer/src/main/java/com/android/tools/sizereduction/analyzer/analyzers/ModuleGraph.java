@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.tools.sizereduction.analyzer.analyzers.SizeAwareScheduler.WorkItem;
+import com.android.tools.sizereduction.analyzer.model.ModuleBuildFile;
+import com.android.tools.sizereduction.analyzer.model.Project;
+import com.android.tools.sizereduction.analyzer.model.SettingsGradleParser;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+import org.codehaus.groovy.control.CompilationFailedException;
+
+/**
+ * The modules of a project as declared by its settings.gradle file. The build files of all the
+ * modules are read concurrently, after which the contexts are resolved from each module to its
+ * nested modules, which only involves evaluating the already parsed syntax trees.
+ */
+final class ModuleGraph {
+
+  /** The modules, sorted by directory so that a module always comes after its parents. */
+  private final ImmutableList<Project> modules;
+  private final Map<Path, Project> modulesByDirectory = new LinkedHashMap<>();
+
+  private ModuleGraph(ImmutableList<Project> modules) {
+    this.modules = modules;
+    for (Project module : modules) {
+      modulesByDirectory.put(module.getProjectDirectory().toPath(), module);
+    }
+  }
+
+  /**
+   * Reads the modules of the project in the given directory, or returns an empty optional if the
+   * project has no settings.gradle file that this can understand, or one that includes modules
+   * through computed values. Included modules that have no build file, or that are outside of the
+   * project directory or in an ignored directory, are left out.
+   *
+   * @param beforeRead called with every file the graph depends on, before the file is read or
+   *     checked for existence
+   */
+  static Optional<ModuleGraph> create(
+      File rootDirectory, SizeAwareScheduler scheduler, Consumer<File> beforeRead) {
+    File settingsFile = new File(rootDirectory, SettingsGradleParser.SETTINGS_GRADLE);
+    beforeRead.accept(settingsFile);
+    if (!settingsFile.exists()) {
+      return Optional.empty();
+    }
+    Optional<ImmutableList<File>> includedDirectories;
+    try {
+      String content = Files.asCharSource(settingsFile, UTF_8).read();
+      includedDirectories = SettingsGradleParser.parseIncludedModules(content, rootDirectory);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (CompilationFailedException e) {
+      System.out.println(
+          "Warning: Failed to parse " + settingsFile.getAbsolutePath() + ", looking for modules"
+              + " in every directory instead.");
+      return Optional.empty();
+    }
+    if (!includedDirectories.isPresent()) {
+      return Optional.empty();
+    }
+
+    // Module directories are keyed the same way as the files listed while walking the project.
+    Path rootPath = rootDirectory.toPath();
+    Path absoluteRootPath = rootPath.toAbsolutePath().normalize();
+    TreeSet<Path> moduleDirectories = new TreeSet<>();
+    beforeRead.accept(new File(rootDirectory, Project.BUILD_GRADLE));
+    if (new File(rootDirectory, Project.BUILD_GRADLE).exists()) {
+      moduleDirectories.add(rootPath);
+    }
+    for (File directory : includedDirectories.get()) {
+      Path absolutePath = directory.toPath().toAbsolutePath().normalize();
+      if (!absolutePath.startsWith(absoluteRootPath)) {
+        continue;
+      }
+      Path path = rootPath.resolve(absoluteRootPath.relativize(absolutePath));
+      if (ProjectAnalyzer.isIgnored(rootDirectory, path.toFile())) {
+        continue;
+      }
+      beforeRead.accept(new File(path.toFile(), Project.BUILD_GRADLE));
+      if (new File(path.toFile(), Project.BUILD_GRADLE).exists()) {
+        moduleDirectories.add(path);
+      }
+    }
+
+    List<WorkItem<ModuleBuildFile>> parseWork = new ArrayList<>();
+    for (Path directory : moduleDirectories) {
+      ModuleBuildFile.getInputFiles(directory.toFile()).forEach(beforeRead);
+      File buildFile = new File(directory.toFile(), Project.BUILD_GRADLE);
+      parseWork.add(
+          new WorkItem<>(buildFile.length(), () -> ModuleBuildFile.read(directory.toFile())));
+    }
+    ImmutableList<ModuleBuildFile> buildFiles = scheduler.run(parseWork);
+
+    // Parents sort before their nested modules, so their contexts are always resolved first.
+    Map<Path, Project> resolved = new LinkedHashMap<>();
+    for (ModuleBuildFile buildFile : buildFiles) {
+      Path directory = buildFile.getDirectory().toPath();
+      Project parent = findModule(resolved, rootPath, directory.getParent());
+      resolved.put(directory, Project.create(buildFile, parent));
+    }
+    return Optional.of(new ModuleGraph(ImmutableList.copyOf(resolved.values())));
+  }
+
+  /** All the modules of the project, each one after its parents. */
+  ImmutableList<Project> getModules() {
+    return modules;
+  }
+
+  /** Whether the given directory is the directory of a module. */
+  boolean isModule(File directory) {
+    return modulesByDirectory.containsKey(directory.toPath());
+  }
+
+  /**
+   * Returns the innermost module containing the given directory within the project, or null if no
+   * module contains it.
+   */
+  @Nullable
+  Project getModule(File rootDirectory, File directory) {
+    return findModule(modulesByDirectory, rootDirectory.toPath(), directory.toPath());
+  }
+
+  @Nullable
+  private static Project findModule(Map<Path, Project> modules, Path rootPath, Path directory) {
+    for (Path current = directory;
+        current != null && current.startsWith(rootPath);
+        current = current.getParent()) {
+      Project module = modules.get(current);
+      if (module != null) {
+        return module;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Keeps the module graph of each project that an analyzer analyzes, so that analyzing a few files
+ * does not read settings.gradle and parse the build file of every module again. A graph is read
+ * again once any file it was read from is changed, created or deleted: settings.gradle, the build
+ * files of the root and of the included modules, and the manifests telling whether the modules are
+ * on demand. The build files of other directories do not matter, as the walk finds the modules
+ * that the graph misses by their build file.
+ */
+final class ModuleGraphCache {
+
+  private final SizeAwareScheduler scheduler;
+  private final Map<File, CachedGraph> graphs = new HashMap<>();
+
+  ModuleGraphCache(SizeAwareScheduler scheduler) {
+    this.scheduler = scheduler;
+  }
+
+  /** Returns the module graph of the project, as {@link ModuleGraph#create} would. */
+  synchronized Optional<ModuleGraph> get(File rootDirectory) {
+    CachedGraph cached = graphs.get(rootDirectory);
+    if (cached != null && cached.isUpToDate()) {
+      return cached.moduleGraph;
+    }
+    // Files are stamped before they are read, so that changes made meanwhile are noticed.
+    Map<File, ImmutableList<Long>> stamps = new HashMap<>();
+    Optional<ModuleGraph> moduleGraph =
+        ModuleGraph.create(rootDirectory, scheduler, file -> stamps.put(file, stamp(file)));
+    graphs.put(rootDirectory, new CachedGraph(moduleGraph, ImmutableMap.copyOf(stamps)));
+    return moduleGraph;
+  }
+
+  /** Tells apart the versions of a file well enough to notice edits, as a file watcher would. */
+  private static ImmutableList<Long> stamp(File file) {
+    return ImmutableList.of(file.lastModified(), file.length());
+  }
+
+  private static final class CachedGraph {
+    private final Optional<ModuleGraph> moduleGraph;
+    /** The stamps of the files the graph was read from. */
+    private final ImmutableMap<File, ImmutableList<Long>> stamps;
+
+    CachedGraph(Optional<ModuleGraph> moduleGraph, ImmutableMap<File, ImmutableList<Long>> stamps) {
+      this.moduleGraph = moduleGraph;
+      this.stamps = stamps;
+    }
+
+    boolean isUpToDate() {
+      return stamps.entrySet().stream()
+          .allMatch(entry -> stamp(entry.getKey()).equals(entry.getValue()));
+    }
+  }
+}
@@ -16,104 +16,493 @@
 
 package com.android.tools.sizereduction.analyzer.analyzers;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.tools.sizereduction.analyzer.analyzers.SizeAwareScheduler.WorkItem;
 import com.android.tools.sizereduction.analyzer.model.GradleContext;
 import com.android.tools.sizereduction.analyzer.model.Project;
 import com.android.tools.sizereduction.analyzer.model.SystemFileData;
 import com.android.tools.sizereduction.analyzer.suggesters.ProjectSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.ProjectTreeSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.tracing.AnalyzerEvents;
+import com.android.tools.sizereduction.analyzer.tracing.TraceSpan;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import javax.annotation.CheckReturnValue;
+import javax.annotation.Nullable;
 
 /**
  * Analyzes an android studio project by applying the provided list of suggesters to the project
  * directory.
+ *
+ * <p>The modules declared in settings.gradle are read once per project and reused by the following
+ * analyses, such as those of single files, until settings.gradle or a module build file changes.
  */
 public final class ProjectAnalyzer implements ArtifactAnalyzer {
 
-  private final ImmutableList<ProjectTreeSuggester> suggesters;
+  private final EntryDispatchIndex<ProjectTreeSuggester> suggesters;
   private final ImmutableList<ProjectSuggester> projectSuggesters;
+  private final SizeAwareScheduler scheduler;
+  private final ModuleGraphCache moduleGraphs;
 
   public ProjectAnalyzer(
       ImmutableList<ProjectSuggester> projectSuggesters,
       ImmutableList<ProjectTreeSuggester> suggesters) {
+    this(projectSuggesters, suggesters, /* threads= */ 1);
+  }
+
+  /**
+   * Creates an analyzer running the suggesters on the given number of threads. The suggesters must
+   * then be safe to call concurrently.
+   */
+  public ProjectAnalyzer(
+      ImmutableList<ProjectSuggester> projectSuggesters,
+      ImmutableList<ProjectTreeSuggester> suggesters,
+      int threads) {
     this.projectSuggesters = projectSuggesters;
-    this.suggesters = suggesters;
+    this.suggesters =
+        new EntryDispatchIndex<>(suggesters, ProjectTreeSuggester::getProjectEntryInterests);
+    this.scheduler = new SizeAwareScheduler(threads);
+    this.moduleGraphs = new ModuleGraphCache(scheduler);
   }
 
   /** Analyzes the given project directory for size optimization suggestions. */
   @Override
   @CheckReturnValue
   public ImmutableList<Suggestion> analyze(File projectDirectory) {
-    File buildFile = new File(projectDirectory, Project.BUILD_GRADLE);
-    Project project = buildFile.exists() ? Project.create(projectDirectory, null) : null;
-    return analyzeProject(
-        projectDirectory, project, projectDirectory, projectSuggesters, suggesters);
+    return ImmutableList.copyOf(analyzeBySource(projectDirectory).values());
+  }
+
+  /**
+   * Analyzes the given project directory, keeping apart the suggestions coming from each source:
+   * the directory of a module for the project suggesters, and each file for the tree suggesters.
+   * Sources are iterated in walk order.
+   */
+  @CheckReturnValue
+  public ImmutableListMultimap<File, Suggestion> analyzeBySource(File projectDirectory) {
+    return analyzeBySource(projectDirectory, projectDirectory);
+  }
+
+  /**
+   * Analyzes only the given directory within the project, with the same module contexts as when
+   * analyzing the whole project. Returns the suggestions keyed by their source, like {@link
+   * #analyzeBySource(File)}.
+   */
+  @CheckReturnValue
+  public ImmutableListMultimap<File, Suggestion> analyzeBySource(
+      File projectDirectory, File directory) {
+    try (TraceSpan span = AnalyzerEvents.analysis(directory, "analyzeBySource")) {
+      if (isIgnored(projectDirectory, directory)) {
+        return ImmutableListMultimap.of();
+      }
+      return collectWork(projectDirectory, directory).run(scheduler);
+    }
+  }
+
+  /**
+   * Runs only the project suggesters, on every module of the project. A sharded analysis runs them
+   * once when merging the results of the shards.
+   */
+  @CheckReturnValue
+  public ImmutableList<Suggestion> analyzeModules(File projectDirectory) {
+    try (TraceSpan span = AnalyzerEvents.analysis(projectDirectory, "analyzeModules")) {
+      return collectWork(projectDirectory, projectDirectory).runModules(scheduler);
+    }
+  }
+
+  /**
+   * Identifies the project tree that a sharded analysis partitions, as the hex SHA-256 of the
+   * paths within the project of the files it walks, in walk order. Shards only agree on the
+   * ordinals of their files when they analyzed trees with the same identity.
+   */
+  @CheckReturnValue
+  public String computeShardIdentity(File projectDirectory) {
+    try (TraceSpan span = AnalyzerEvents.analysis(projectDirectory, "computeShardIdentity")) {
+      return collectWork(projectDirectory, projectDirectory).hashWalkedFiles();
+    }
+  }
+
+  /**
+   * Runs the tree suggesters on the files of the project that belong to the given shard. The
+   * suggestions are keyed by the position of their file in walk order, in that order.
+   */
+  @CheckReturnValue
+  public ImmutableListMultimap<Integer, Suggestion> analyzeFiles(
+      File projectDirectory, Shard shard) {
+    try (TraceSpan span = AnalyzerEvents.analysis(projectDirectory, "analyzeFiles")) {
+      return collectWork(projectDirectory, projectDirectory).runFiles(scheduler, shard);
+    }
+  }
+
+  /**
+   * Runs the tree suggesters on a single file of the project, in the context of the module that
+   * contains it. Files in directories that a full analysis skips yield no suggestions.
+   */
+  @CheckReturnValue
+  public ImmutableList<Suggestion> analyzeFile(File projectDirectory, File file) {
+    if (isIgnored(projectDirectory, file.getParentFile())) {
+      return ImmutableList.of();
+    }
+    try (TraceSpan span = AnalyzerEvents.analysis(file, "analyzeFile")) {
+      WorkCollector work = new WorkCollector();
+      Project project =
+          resolveProject(
+              projectDirectory, file.getParentFile(), moduleGraphs.get(projectDirectory));
+      analyzeFile(projectDirectory, project, file, work);
+      return ImmutableList.copyOf(work.run(scheduler).values());
+    }
+  }
+
+  /**
+   * Analyzes only the given files of the project, without walking its directories. The tree
+   * suggesters run on the changed files that exist, and the project suggesters run on the modules
+   * whose build file is among them. Returns the suggestions keyed by their source, in the order of
+   * the changed files.
+   */
+  @CheckReturnValue
+  public ImmutableListMultimap<File, Suggestion> analyzeChangedFiles(
+      File projectDirectory, Collection<File> changedFiles) {
+    try (TraceSpan span = AnalyzerEvents.analysis(projectDirectory, "analyzeChangedFiles")) {
+      WorkCollector work = new WorkCollector();
+      Optional<ModuleGraph> moduleGraph = moduleGraphs.get(projectDirectory);
+      // Modules are resolved once per directory, as each one parses the build files up to the root.
+      Map<File, Optional<Project>> projects = new HashMap<>();
+      for (File file : changedFiles) {
+        File directory = file.getParentFile();
+        if (!file.isFile() || isIgnored(projectDirectory, directory)) {
+          continue;
+        }
+        Project project =
+            projects
+                .computeIfAbsent(
+                    directory,
+                    dir ->
+                        Optional.ofNullable(resolveProject(projectDirectory, dir, moduleGraph)))
+                .orElse(null);
+        if (file.getName().equals(Project.BUILD_GRADLE)
+            && project != null
+            && project.getProjectDirectory().equals(directory)) {
+          for (ProjectSuggester projectSuggester : projectSuggesters) {
+            work.add(
+                project.getProjectDirectory(),
+                new WorkItem<>(
+                    /* cost= */ 0,
+                    () ->
+                        projectSuggester.processProject(
+                            project.getContext(), project.getProjectDirectory())));
+          }
+        }
+        analyzeFile(projectDirectory, project, file, work);
+      }
+      return work.run(scheduler);
+    }
   }
 
-  private static ImmutableList<Suggestion> analyzeProject(
+  static boolean isIgnored(File rootDirectory, File directory) {
+    Path relativePath = rootDirectory.toPath().relativize(directory.toPath());
+    for (Path name : relativePath) {
+      if (isIgnored(name.toString())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Whether files under a directory with the given name are left out of the analysis. */
+  public static boolean isIgnored(String name) {
+    return name.equals(".gradle") || name.equals(".idea") || name.equals("build");
+  }
+
+  /**
+   * Returns the innermost module containing the directory, with the same context as in a full
+   * analysis of the project, or null if no module contains it. Below the innermost module of the
+   * graph, directories holding a build file are modules as well, as they are when walking.
+   */
+  @Nullable
+  private static Project resolveProject(
+      File rootDirectory, File directory, Optional<ModuleGraph> moduleGraph) {
+    Project project;
+    File current;
+    if (moduleGraph.isPresent()) {
+      project = moduleGraph.get().getModule(rootDirectory, directory);
+      current = project != null ? project.getProjectDirectory() : rootDirectory;
+    } else {
+      File buildFile = new File(rootDirectory, Project.BUILD_GRADLE);
+      project = buildFile.exists() ? Project.create(rootDirectory, null) : null;
+      current = rootDirectory;
+    }
+    for (Path name : current.toPath().relativize(directory.toPath())) {
+      if (name.toString().isEmpty()) {
+        continue;
+      }
+      current = new File(current, name.toString());
+      if (new File(current, Project.BUILD_GRADLE).exists()) {
+        project = Project.create(current, project);
+      }
+    }
+    return project;
+  }
+
+  /**
+   * Collects the work for the given directory of the project. When the project declares its modules
+   * in settings.gradle, the build files of the modules are parsed concurrently and each module is
+   * then walked on its own thread, skipping the directories of its nested modules. Otherwise the
+   * modules are found while walking, as the directories holding a build file, and so are the
+   * modules that settings.gradle does not include.
+   */
+  private WorkCollector collectWork(File rootDirectory, File directory) {
+    Optional<ModuleGraph> moduleGraph = moduleGraphs.get(rootDirectory);
+    Project project = resolveProject(rootDirectory, directory, moduleGraph);
+    if (!moduleGraph.isPresent()) {
+      WorkCollector work = new WorkCollector();
+      walk(rootDirectory, project, directory, /* moduleGraph= */ null, work);
+      return work;
+    }
+    ModuleGraph graph = moduleGraph.get();
+    List<WorkItem<WorkCollector>> walks = new ArrayList<>();
+    walks.add(new WorkItem<>(/* cost= */ 0, () -> walk(rootDirectory, project, directory, graph)));
+    for (Project module : graph.getModules()) {
+      File moduleDirectory = module.getProjectDirectory();
+      if (!moduleDirectory.equals(directory)
+          && moduleDirectory.toPath().startsWith(directory.toPath())) {
+        walks.add(
+            new WorkItem<>(
+                /* cost= */ 0, () -> walk(rootDirectory, module, moduleDirectory, graph)));
+      }
+    }
+    // Each module's work is reported after the work of the modules containing it.
+    WorkCollector work = new WorkCollector();
+    scheduler.run(walks).forEach(work::addAll);
+    return work;
+  }
+
+  private WorkCollector walk(
+      File rootDirectory, @Nullable Project project, File directory, ModuleGraph moduleGraph) {
+    WorkCollector work = new WorkCollector();
+    walk(rootDirectory, project, directory, moduleGraph, work);
+    return work;
+  }
+
+  private void walk(
+      File rootDirectory,
+      @Nullable Project project,
+      File directory,
+      @Nullable ModuleGraph moduleGraph,
+      WorkCollector work) {
+    if (new File(directory, Project.BUILD_GRADLE).exists()) {
+      analyzeProject(rootDirectory, project, directory, moduleGraph, work);
+    } else {
+      analyzeDirectory(rootDirectory, project, directory, moduleGraph, work);
+    }
+  }
+
+  private void analyzeProject(
       File rootDirectory,
       Project project,
       File directory,
-      ImmutableList<ProjectSuggester> projectSuggesters,
-      ImmutableList<ProjectTreeSuggester> suggesters) {
-    ImmutableList.Builder<Suggestion> resultBuilder = ImmutableList.<Suggestion>builder();
+      @Nullable ModuleGraph moduleGraph,
+      WorkCollector work) {
     if (project != null) {
       for (ProjectSuggester projectSuggester : projectSuggesters) {
-        resultBuilder.addAll(
-            projectSuggester.processProject(project.getContext(), project.getProjectDirectory()));
+        work.add(
+            project.getProjectDirectory(),
+            new WorkItem<>(
+                /* cost= */ 0,
+                () ->
+                    projectSuggester.processProject(
+                        project.getContext(), project.getProjectDirectory())));
       }
     }
-    return resultBuilder
-        .addAll(analyzeDirectory(rootDirectory, project, directory, projectSuggesters, suggesters))
-        .build();
+    analyzeDirectory(rootDirectory, project, directory, moduleGraph, work);
   }
 
-  private static ImmutableList<Suggestion> analyzeDirectory(
+  /**
+   * Walks the directory within the given module. The nested modules of the module graph are walked
+   * separately and skipped here, other directories holding a build file are walked as nested
+   * modules.
+   */
+  private void analyzeDirectory(
       File rootDirectory,
       Project project,
       File directory,
-      ImmutableList<ProjectSuggester> projectSuggesters,
-      ImmutableList<ProjectTreeSuggester> suggesters) {
-    ImmutableList.Builder<Suggestion> resultBuilder = ImmutableList.<Suggestion>builder();
+      @Nullable ModuleGraph moduleGraph,
+      WorkCollector work) {
     File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+    // The listing order depends on the file system, the walk order must not, shards rely on it.
+    Arrays.sort(files);
     for (File file : files) {
-      String name = file.getName();
-      if (name.equals(".gradle") || name.equals(".idea") || name.equals("build")) {
+      if (isIgnored(file.getName())) {
         continue;
       }
       if (file.isDirectory()) {
+        if (moduleGraph != null && moduleGraph.isModule(file)) {
+          continue;
+        }
         File buildFile = new File(file, Project.BUILD_GRADLE);
         if (buildFile.exists()) {
+          // A module that settings.gradle includes in a way the module graph cannot tell.
           Project subProject = Project.create(file, project);
-          resultBuilder.addAll(
-              analyzeProject(rootDirectory, subProject, file, projectSuggesters, suggesters));
+          analyzeProject(rootDirectory, subProject, file, moduleGraph, work);
         } else {
           // recurse, through directory under the same directory.
-          resultBuilder.addAll(
-              analyzeDirectory(rootDirectory, project, file, projectSuggesters, suggesters));
+          analyzeDirectory(rootDirectory, project, file, moduleGraph, work);
         }
       } else {
-        GradleContext context =
-            project != null ? project.getContext() : GradleContext.create(1, false);
-        Path pathWithinModule =
-            project != null
-                ? Paths.get(project.getProjectDirectory().getPath())
-                    .relativize(Paths.get(file.getPath()))
-                : Paths.get(file.getName());
-        Path pathWithinRoot =
-            Paths.get(rootDirectory.getPath()).relativize(Paths.get(file.getPath()));
-        for (ProjectTreeSuggester suggester : suggesters) {
-          SystemFileData systemFileData =
-              new SystemFileData(file, pathWithinRoot, pathWithinModule);
-          resultBuilder.addAll(suggester.processProjectEntry(context, systemFileData));
+        analyzeFile(rootDirectory, project, file, work);
+      }
+    }
+  }
+
+  private void analyzeFile(
+      File rootDirectory, @Nullable Project project, File file, WorkCollector work) {
+    GradleContext context =
+        project != null ? project.getContext() : GradleContext.create(1, false);
+    Path pathWithinModule =
+        project != null
+            ? Paths.get(project.getProjectDirectory().getPath())
+                .relativize(Paths.get(file.getPath()))
+            : Paths.get(file.getName());
+    Path pathWithinRoot = Paths.get(rootDirectory.getPath()).relativize(Paths.get(file.getPath()));
+    work.addWalkedFile(pathWithinRoot);
+    long size = file.length();
+    ImmutableList<ProjectTreeSuggester> interestedSuggesters =
+        suggesters.select(pathWithinModule, size, context.getOnDemand());
+    if (interestedSuggesters.isEmpty()) {
+      return;
+    }
+    work.addFile(
+        file,
+        pathWithinRoot,
+        new WorkItem<>(
+            SizeAwareScheduler.estimateCost(file.getName(), size),
+            () -> {
+              ImmutableList.Builder<Suggestion> resultBuilder =
+                  ImmutableList.<Suggestion>builder();
+              for (ProjectTreeSuggester suggester : interestedSuggesters) {
+                SystemFileData systemFileData =
+                    new SystemFileData(file, pathWithinRoot, pathWithinModule);
+                try (TraceSpan span =
+                    AnalyzerEvents.suggesterInvocation(suggester, pathWithinRoot, size)) {
+                  resultBuilder.addAll(suggester.processProjectEntry(context, systemFileData));
+                }
+              }
+              return resultBuilder.build();
+            }));
+  }
+
+  /**
+   * Collects the work found while walking the project, so that the scheduler can run it largest
+   * images first while the results are still reported in walk order.
+   */
+  private static final class WorkCollector {
+    private final List<File> sources = new ArrayList<>();
+    private final List<WorkItem<ImmutableList<Suggestion>>> workItems = new ArrayList<>();
+    /** Path of the file within the project for the tree suggester work, null for modules. */
+    private final List<String> filePaths = new ArrayList<>();
+    /** Paths within the project of all the files walked, whether any suggester wants them. */
+    private final List<String> walkedPaths = new ArrayList<>();
+
+    void add(File source, WorkItem<ImmutableList<Suggestion>> workItem) {
+      sources.add(source);
+      workItems.add(workItem);
+      filePaths.add(null);
+    }
+
+    /** Appends the work collected by the other collector, after the work of this one. */
+    void addAll(WorkCollector other) {
+      sources.addAll(other.sources);
+      workItems.addAll(other.workItems);
+      filePaths.addAll(other.filePaths);
+      walkedPaths.addAll(other.walkedPaths);
+    }
+
+    void addWalkedFile(Path pathWithinRoot) {
+      walkedPaths.add(normalize(pathWithinRoot));
+    }
+
+    void addFile(File source, Path pathWithinRoot, WorkItem<ImmutableList<Suggestion>> workItem) {
+      sources.add(source);
+      workItems.add(workItem);
+      filePaths.add(normalize(pathWithinRoot));
+    }
+
+    String hashWalkedFiles() {
+      Hasher hasher = Hashing.sha256().newHasher();
+      for (String path : walkedPaths) {
+        hasher.putString(path, UTF_8).putByte((byte) 0);
+      }
+      return hasher.hash().toString();
+    }
+
+    private static String normalize(Path pathWithinRoot) {
+      // Separators are normalized so that shards on different platforms agree on the partition.
+      return pathWithinRoot.toString().replace(File.separatorChar, '/');
+    }
+
+    ImmutableList<Suggestion> runModules(SizeAwareScheduler scheduler) {
+      List<WorkItem<ImmutableList<Suggestion>>> moduleWork = new ArrayList<>();
+      for (int i = 0; i < workItems.size(); i++) {
+        if (filePaths.get(i) == null) {
+          moduleWork.add(workItems.get(i));
+        }
+      }
+      ImmutableList.Builder<Suggestion> resultBuilder = ImmutableList.builder();
+      scheduler.run(moduleWork).forEach(resultBuilder::addAll);
+      return resultBuilder.build();
+    }
+
+    ImmutableListMultimap<Integer, Suggestion> runFiles(SizeAwareScheduler scheduler, Shard shard) {
+      List<WorkItem<ImmutableList<Suggestion>>> fileWork = new ArrayList<>();
+      List<String> paths = new ArrayList<>();
+      for (int i = 0; i < workItems.size(); i++) {
+        if (filePaths.get(i) != null) {
+          fileWork.add(workItems.get(i));
+          paths.add(filePaths.get(i));
+        }
+      }
+      boolean[] selected =
+          shard.select(paths, fileWork.stream().mapToLong(WorkItem::getCost).toArray());
+      List<Integer> ordinals = new ArrayList<>();
+      List<WorkItem<ImmutableList<Suggestion>>> selectedWork = new ArrayList<>();
+      for (int ordinal = 0; ordinal < fileWork.size(); ordinal++) {
+        if (selected[ordinal]) {
+          ordinals.add(ordinal);
+          selectedWork.add(fileWork.get(ordinal));
         }
       }
+      ImmutableList<ImmutableList<Suggestion>> results = scheduler.run(selectedWork);
+      ImmutableListMultimap.Builder<Integer, Suggestion> resultBuilder =
+          ImmutableListMultimap.builder();
+      for (int i = 0; i < results.size(); i++) {
+        resultBuilder.putAll(ordinals.get(i), results.get(i));
+      }
+      return resultBuilder.build();
     }
 
-    return resultBuilder.build();
+    ImmutableListMultimap<File, Suggestion> run(SizeAwareScheduler scheduler) {
+      ImmutableList<ImmutableList<Suggestion>> results = scheduler.run(workItems);
+      ImmutableListMultimap.Builder<File, Suggestion> resultBuilder =
+          ImmutableListMultimap.builder();
+      for (int i = 0; i < results.size(); i++) {
+        resultBuilder.putAll(sources.get(i), results.get(i));
+      }
+      return resultBuilder.build();
+    }
   }
 }
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * One of the shards an analysis is split into, so that several machines can each analyze a part
+ * of the entries of the same artifact.
+ *
+ * <p>Every shard computes the same partition from the artifact alone, so shards need not
+ * coordinate: given the same entries, each entry is selected by exactly one shard.
+ */
+@AutoValue
+public abstract class Shard {
+
+  /** How entries are partitioned between the shards. */
+  public enum Strategy {
+    /** Entries go to the shard given by a stable hash of their path. */
+    HASH,
+    /**
+     * Entries are assigned most expensive first to the least loaded shard, using their sizes. Keeps
+     * shards balanced when a few large images dominate the analysis.
+     */
+    COST,
+  }
+
+  private static final Pattern SPEC = Pattern.compile("(\\d+)/(\\d+)");
+  // Fixed seed, the partition must not change between runs or machines.
+  private static final HashFunction PATH_HASH = Hashing.murmur3_32(0x5a5e);
+
+  /** A single shard holding all the entries. */
+  public static Shard all() {
+    return create(/* index= */ 0, /* count= */ 1, Strategy.HASH);
+  }
+
+  /** Creates the shard with the given zero-based index, out of {@code count} shards. */
+  public static Shard create(int index, int count, Strategy strategy) {
+    checkArgument(count > 0, "The number of shards must be positive.");
+    checkArgument(index >= 0 && index < count, "Shard %s is not within %s shards.", index, count);
+    return new AutoValue_Shard(index, count, strategy);
+  }
+
+  /** Parses a shard given as {@code i/n}, with i starting at 1 as in CI matrices. */
+  public static Shard parse(String spec, Strategy strategy) {
+    Matcher matcher = SPEC.matcher(spec);
+    checkArgument(matcher.matches(), "Shard must be given as i/n, got '%s'.", spec);
+    int number = Integer.parseInt(matcher.group(1));
+    int count = Integer.parseInt(matcher.group(2));
+    checkArgument(
+        number >= 1 && number <= count, "Shard %s must be between 1 and %s.", number, count);
+    return create(number - 1, count, strategy);
+  }
+
+  /** Zero-based index of the shard. */
+  public abstract int getIndex();
+
+  public abstract int getCount();
+
+  public abstract Strategy getStrategy();
+
+  /** Whether this shard holds every entry. */
+  public boolean isAll() {
+    return getCount() == 1;
+  }
+
+  /**
+   * Returns which of the entries belong to this shard. The costs are only used by the {@link
+   * Strategy#COST} strategy, and must be computed the same way by every shard.
+   */
+  public boolean[] select(List<String> paths, long[] costs) {
+    checkArgument(paths.size() == costs.length, "Every entry needs a cost.");
+    boolean[] selected = new boolean[paths.size()];
+    if (isAll()) {
+      Arrays.fill(selected, true);
+      return selected;
+    }
+    switch (getStrategy()) {
+      case HASH:
+        for (int i = 0; i < paths.size(); i++) {
+          int hash = PATH_HASH.hashString(paths.get(i), UTF_8).asInt();
+          selected[i] = Math.floorMod(hash, getCount()) == getIndex();
+        }
+        return selected;
+      case COST:
+        // Ties are broken by path rather than by position, so that the order in which entries are
+        // listed cannot change the partition.
+        List<Integer> order =
+            IntStream.range(0, paths.size())
+                .boxed()
+                .sorted(
+                    Comparator.<Integer>comparingLong(i -> costs[i])
+                        .reversed()
+                        .thenComparing(paths::get))
+                .collect(Collectors.toList());
+        long[] loads = new long[getCount()];
+        for (int entry : order) {
+          int leastLoaded = 0;
+          for (int shard = 1; shard < loads.length; shard++) {
+            if (loads[shard] < loads[leastLoaded]) {
+              leastLoaded = shard;
+            }
+          }
+          // Entries without any cost would all go to the same shard, spread them evenly instead.
+          loads[leastLoaded] += Math.max(costs[entry], 1);
+          selected[entry] = leastLoaded == getIndex();
+        }
+        return selected;
+    }
+    throw new IllegalStateException("Unknown strategy " + getStrategy());
+  }
+
+  @Override
+  public final String toString() {
+    return (getIndex() + 1) + "/" + getCount();
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.android.tools.sizereduction.analyzer.ShardOutput.ShardResults;
+import com.android.tools.sizereduction.analyzer.ShardOutput.ShardResults.ShardedSuggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.Category;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.IssueType;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reads and writes the results of a shard of an analysis, and merges the results of all the shards
+ * back into the suggestions of the entries of the whole artifact.
+ *
+ * <p>Autofixes cannot be serialized, so suggestions read back from a shard never have one.
+ */
+public final class ShardResultsFile {
+
+  private ShardResultsFile() {}
+
+  /** Creates the results of a shard from its suggestions, keyed by the ordinal of their entry. */
+  public static ShardResults create(
+      Shard shard, String artifactSha256, ImmutableListMultimap<Integer, Suggestion> suggestions) {
+    ShardResults.Builder results =
+        ShardResults.newBuilder()
+            .setShardIndex(shard.getIndex())
+            .setShardCount(shard.getCount())
+            .setArtifactSha256(artifactSha256);
+    suggestions.forEach(
+        (ordinal, suggestion) -> results.addSuggestions(toProto(ordinal, suggestion)));
+    return results.build();
+  }
+
+  public static void write(File file, ShardResults results) {
+    try (OutputStream outputStream = Files.newOutputStream(file.toPath())) {
+      results.writeTo(outputStream);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public static ShardResults read(File file) {
+    try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+      return ShardResults.parseFrom(inputStream);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Returns the hex SHA-256 of the file, identifying the bundle the shards analyzed. */
+  public static String sha256(File file) {
+    try {
+      return MoreFiles.asByteSource(file.toPath()).hash(Hashing.sha256()).toString();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Merges the results of all the shards of an analysis, in the order an unsharded analysis would
+   * have reported them.
+   *
+   * @throws IllegalArgumentException if the results are not exactly one of each shard of the same
+   *     artifact
+   */
+  public static ImmutableList<Suggestion> merge(List<ShardResults> shards) {
+    checkArgument(!shards.isEmpty(), "No shard results to merge.");
+    int shardCount = shards.get(0).getShardCount();
+    String artifactSha256 = shards.get(0).getArtifactSha256();
+    boolean[] seen = new boolean[shardCount];
+    List<ShardedSuggestion> suggestions = new ArrayList<>();
+    for (ShardResults shard : shards) {
+      checkArgument(
+          shard.getShardCount() == shardCount,
+          "Shard results were split %s and %s ways.",
+          shardCount,
+          shard.getShardCount());
+      checkArgument(
+          shard.getArtifactSha256().equals(artifactSha256),
+          "Shard results come from different artifacts.");
+      int index = shard.getShardIndex();
+      checkArgument(index >= 0 && index < shardCount, "Invalid shard index %s.", index);
+      checkArgument(!seen[index], "Shard %s/%s is given more than once.", index + 1, shardCount);
+      seen[index] = true;
+      suggestions.addAll(shard.getSuggestionsList());
+    }
+    for (int index = 0; index < shardCount; index++) {
+      checkArgument(seen[index], "Shard %s/%s is missing.", index + 1, shardCount);
+    }
+
+    // Sorting is stable, the suggestions of an entry keep the order of its shard.
+    suggestions.sort(Comparator.comparingInt(ShardedSuggestion::getEntryOrdinal));
+    ImmutableList.Builder<Suggestion> merged = ImmutableList.builder();
+    for (ShardedSuggestion suggestion : suggestions) {
+      merged.add(fromProto(suggestion));
+    }
+    return merged.build();
+  }
+
+  private static ShardedSuggestion toProto(int ordinal, Suggestion suggestion) {
+    ShardedSuggestion.Builder proto =
+        ShardedSuggestion.newBuilder()
+            .setEntryOrdinal(ordinal)
+            .setIssueType(suggestion.getIssueType().name())
+            .setCategory(suggestion.getCategory().name())
+            .setPayload(suggestion.payload())
+            .setMessage(suggestion.getMessage());
+    Long estimatedBytesSaved = suggestion.getEstimatedBytesSaved();
+    if (estimatedBytesSaved != null) {
+      proto.setHasEstimatedBytesSaved(true).setEstimatedBytesSaved(estimatedBytesSaved);
+    }
+    return proto.build();
+  }
+
+  private static Suggestion fromProto(ShardedSuggestion proto) {
+    return Suggestion.create(
+        IssueType.valueOf(proto.getIssueType()),
+        Category.valueOf(proto.getCategory()),
+        proto.getPayload(),
+        proto.getMessage(),
+        proto.getHasEstimatedBytesSaved() ? proto.getEstimatedBytesSaved() : null,
+        /* autoFix= */ null);
+  }
+}
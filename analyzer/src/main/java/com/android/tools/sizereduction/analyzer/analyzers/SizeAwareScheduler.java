@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.Ascii;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Runs units of analysis work on a pool of threads, starting with the most expensive ones, and
+ * returns their results in the order in which the work was submitted.
+ *
+ * <p>Starting the most expensive work first (longest processing time first) keeps a single huge
+ * image found late in the artifact from running on its own after everything else is done. With a
+ * single thread the work simply runs in submission order on the calling thread.
+ */
+final class SizeAwareScheduler {
+
+  // Images are decoded and encoded to webp, which dominates the analysis time.
+  private static final ImmutableSet<String> IMAGE_EXTENSIONS =
+      ImmutableSet.of("bmp", "png", "jpg", "jpeg");
+  // Other files are at most read once, which is much cheaper per byte than encoding an image.
+  private static final long NON_IMAGE_COST_DIVISOR = 64;
+
+  private final int threads;
+
+  SizeAwareScheduler(int threads) {
+    checkArgument(threads > 0, "The number of threads must be positive.");
+    this.threads = threads;
+  }
+
+  /** Estimates the relative cost of analyzing a file from its name and uncompressed size. */
+  static long estimateCost(String fileName, long uncompressedSize) {
+    String extension = Ascii.toLowerCase(Files.getFileExtension(fileName));
+    long size = Math.max(0, uncompressedSize);
+    return IMAGE_EXTENSIONS.contains(extension) ? size : size / NON_IMAGE_COST_DIVISOR;
+  }
+
+  /** Runs all the work and returns the results in the same order as the work items. */
+  <T> ImmutableList<T> run(List<WorkItem<T>> workItems) {
+    if (threads == 1 || workItems.size() <= 1) {
+      ImmutableList.Builder<T> results = ImmutableList.builder();
+      for (WorkItem<T> workItem : workItems) {
+        results.add(call(workItem.work));
+      }
+      return results.build();
+    }
+
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            Math.min(threads, workItems.size()),
+            new ThreadFactoryBuilder().setNameFormat("analyzer-%d").setDaemon(true).build());
+    try {
+      // The pool takes work from its queue in submission order, so the most expensive work starts
+      // first. Ties keep their original order so that the schedule is deterministic.
+      List<Integer> submissionOrder =
+          IntStream.range(0, workItems.size())
+              .boxed()
+              .sorted(
+                  Comparator.<Integer>comparingLong(index -> workItems.get(index).cost)
+                      .reversed()
+                      .thenComparing(Comparator.naturalOrder()))
+              .collect(Collectors.toList());
+      List<Future<T>> futures = new ArrayList<>(workItems.size());
+      for (int i = 0; i < workItems.size(); i++) {
+        futures.add(null);
+      }
+      for (int index : submissionOrder) {
+        futures.set(index, executor.submit(workItems.get(index).work));
+      }
+
+      ImmutableList.Builder<T> results = ImmutableList.builder();
+      for (Future<T> future : futures) {
+        results.add(getUninterruptibly(future));
+      }
+      return results.build();
+    } finally {
+      MoreExecutors.shutdownAndAwaitTermination(executor, 1, TimeUnit.MINUTES);
+    }
+  }
+
+  private static <T> T call(Callable<T> work) {
+    try {
+      return work.call();
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  static <T> T getUninterruptibly(Future<T> future) {
+    try {
+      return Uninterruptibles.getUninterruptibly(future);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /** A unit of work together with its estimated relative cost. */
+  static final class WorkItem<T> {
+    private final long cost;
+    private final Callable<T> work;
+
+    WorkItem(long cost, Callable<T> work) {
+      this.cost = cost;
+      this.work = work;
+    }
+
+    long getCost() {
+      return cost;
+    }
+  }
+}
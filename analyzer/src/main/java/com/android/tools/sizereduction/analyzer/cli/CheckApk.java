@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.cli;
+
+import com.android.tools.sizereduction.analyzer.model.ApkContext;
+import com.android.tools.sizereduction.analyzer.suggesters.ApkSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.bundles.NativeLibsAlignmentSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.bundles.PointlessCompressionSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.nativelibs.UnstrippedNativeLibsSuggester;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.zip.ZipFile;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+/** This command checks how the entries of a built APK are packaged. */
+@Command(
+    name = "check-apk",
+    mixinStandardHelpOptions = true,
+    description = "Checks the packaging of a built APK for size and install time suggestions.")
+public final class CheckApk implements Callable<Void> {
+
+  @Parameters(description = "Android .apk file", arity = "1" /* one parameter */)
+  private File apkFile;
+
+  @Option(
+      names = "--minSdkVersion",
+      description = "Minimum SDK version the APK is built for. Defaults to 1.")
+  private int minSdkVersion = 1;
+
+  @Option(
+      names = {"-d", "--display-all"},
+      description =
+          "Displays each individual suggestion within a category."
+              + " By default only the category summary is displayed.")
+  private boolean displayAll = false;
+
+  @Option(
+      names = {"-c", "--category"},
+      description = "Display only suggestions relating to the provided category.")
+  private List<String> categories;
+
+  private static ImmutableList<ApkSuggester> createApkSuggesters() {
+    return ImmutableList.of(
+        new PointlessCompressionSuggester(),
+        new NativeLibsAlignmentSuggester(),
+        new UnstrippedNativeLibsSuggester());
+  }
+
+  @Override
+  public Void call() {
+    ApkContext context = ApkContext.create(minSdkVersion);
+    ImmutableList.Builder<Suggestion> suggestions = ImmutableList.builder();
+    try (ZipFile apkZip = new ZipFile(apkFile)) {
+      for (ApkSuggester suggester : createApkSuggesters()) {
+        suggestions.addAll(suggester.processApk(context, apkZip));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    TerminalInterface.create(
+            suggestions.build(),
+            categories != null ? ImmutableList.copyOf(categories) : ImmutableList.of(),
+            displayAll)
+        .displaySuggestions();
+    return null;
+  }
+}
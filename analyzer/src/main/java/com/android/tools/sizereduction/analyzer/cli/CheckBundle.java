@@ -16,22 +16,33 @@
 
 package com.android.tools.sizereduction.analyzer.cli;
 
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.DexModuleData;
 import com.android.tools.sizereduction.analyzer.analyzers.BundleAnalyzer;
+import com.android.tools.sizereduction.analyzer.analyzers.Shard;
+import com.android.tools.sizereduction.analyzer.analyzers.ShardResultsFile;
+import com.android.tools.sizereduction.analyzer.suggesters.BundleEntrySuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.BundleSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.SuggesterProvider;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
 import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.LargeFilesSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.QuestionableFilesSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.WebpSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.bundles.BundleSplitSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.bundles.LargeFilesInBaseModuleSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.bundles.PointlessCompressionSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.bundles.UncompressedNativeLibsSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.libraries.LibraryEligibleForFeatureSplitSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.nativelibs.UnstrippedNativeLibsSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.proguard.DexBreakdown;
 import com.android.tools.sizereduction.analyzer.suggesters.proguard.ProguardSuggester;
 import com.android.tools.sizereduction.analyzer.telemetry.TelemetryLogger;
 import com.google.common.collect.ImmutableList;
 import java.io.File;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.Callable;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
@@ -57,18 +68,6 @@ public final class CheckBundle implements Callable<Void> {
               + " of the top largest files in the ")
   private static long baseModuleLargeFileThreshold;
 
-  private static final BundleAnalyzer BUNDLE_ANALYZER =
-      new BundleAnalyzer(
-          /* bundleSuggesters= */ ImmutableList.of(
-              new ProguardSuggester(),
-              new BundleSplitSuggester(),
-              new UncompressedNativeLibsSuggester(),
-              new LibraryEligibleForFeatureSplitSuggester(),
-              new LargeFilesInBaseModuleSuggester(
-                  baseModuleTopFiles, baseModuleLargeFileThreshold)),
-          /* bundleEntrySuggesters= */ ImmutableList.of(
-              new WebpSuggester(), new LargeFilesSuggester(), new QuestionableFilesSuggester()));
-
   @Option(
       names = {"-d", "--display-all"},
       description =
@@ -83,12 +82,103 @@ public final class CheckBundle implements Callable<Void> {
               + " Valid categories are webp, proguard, and large-files.")
   private List<String> categories;
 
+  @Mixin private WebpFlags webpFlags = new WebpFlags();
+
+  @Option(
+      names = "--threads",
+      description =
+          "Number of threads used to analyze files, largest images first. Defaults to 1.")
+  private int threads = 1;
+
+  @Option(
+      names = "--pipeline-buffer-mb",
+      description =
+          "Analyzes the files as a pipeline: files are read in the order of their data in the"
+              + " bundle while the --threads analyze the ones already read, buffering at most this"
+              + " many megabytes of file content. Off by default.")
+  private long pipelineBufferMb = 0;
+
+  @Option(
+      names = "--dex-breakdown",
+      description =
+          "Displays how the DEX code of each module splits into strings, ids, code and data.")
+  private boolean dexBreakdown = false;
+
+  @Mixin private ShardFlags shardFlags = new ShardFlags();
+
+  /**
+   * Creates the suggesters operating on the entire bundle, also run by merge-results. The DEX
+   * breakdown, when computed, is added to the proguard suggestions.
+   */
+  static ImmutableList<BundleSuggester> createBundleSuggesters(
+      int baseModuleTopFiles,
+      long baseModuleLargeFileThreshold,
+      Optional<ImmutableList<DexModuleData>> dexBreakdown) {
+    ImmutableList.Builder<BundleSuggester> suggesters =
+        ImmutableList.<BundleSuggester>builder()
+            .add(
+                new ProguardSuggester(dexBreakdown),
+                new BundleSplitSuggester(),
+                new UncompressedNativeLibsSuggester(),
+                new PointlessCompressionSuggester(),
+                new UnstrippedNativeLibsSuggester(),
+                new LibraryEligibleForFeatureSplitSuggester(),
+                new LargeFilesInBaseModuleSuggester(
+                    baseModuleTopFiles, baseModuleLargeFileThreshold));
+    SuggesterProvider.loadInstalled()
+        .forEach(provider -> suggesters.addAll(provider.getBundleSuggesters()));
+    return suggesters.build();
+  }
+
+  private BundleAnalyzer createBundleAnalyzer(
+      Optional<ImmutableList<DexModuleData>> dexBreakdown) {
+    ImmutableList.Builder<BundleEntrySuggester> bundleEntrySuggesters =
+        ImmutableList.<BundleEntrySuggester>builder()
+            .add(
+                new WebpSuggester(webpFlags.toWebpOptions(/* keepEncodingsForFixes= */ false)),
+                new LargeFilesSuggester(),
+                new QuestionableFilesSuggester());
+    SuggesterProvider.loadInstalled()
+        .forEach(provider -> bundleEntrySuggesters.addAll(provider.getBundleEntrySuggesters()));
+    return new BundleAnalyzer(
+        createBundleSuggesters(baseModuleTopFiles, baseModuleLargeFileThreshold, dexBreakdown),
+        bundleEntrySuggesters.build(),
+        threads,
+        pipelineBufferMb * 1024 * 1024);
+  }
+
   @Override
   public Void call() {
+    if (pipelineBufferMb < 0 || pipelineBufferMb >= 2048) {
+      System.out.println("--pipeline-buffer-mb must be between 0 and 2047.");
+      return null;
+    }
+    Optional<Shard> shard;
+    try {
+      webpFlags.validate();
+      shard = shardFlags.toShard();
+    } catch (IllegalArgumentException e) {
+      System.out.println(e.getMessage());
+      return null;
+    }
+    if (shard.isPresent()) {
+      shardFlags.writeResults(
+          shard.get(),
+          ShardResultsFile.sha256(bundleFile),
+          createBundleAnalyzer(/* dexBreakdown= */ Optional.empty())
+              .analyzeEntries(bundleFile, shard.get()));
+      return null;
+    }
+
     boolean canSendTelemetry = TelemetryConsentHelper.get().checkForConsent();
 
     try {
-      ImmutableList<Suggestion> suggestions = BUNDLE_ANALYZER.analyze(bundleFile);
+      // Computed once on the analysis threads, before the analysis uses them, and shared by the
+      // proguard suggestions and the report below.
+      Optional<ImmutableList<DexModuleData>> dexModules =
+          dexBreakdown ? Optional.of(DexBreakdown.compute(bundleFile, threads)) : Optional.empty();
+      ImmutableList<Suggestion> suggestions =
+          createBundleAnalyzer(dexModules).analyze(bundleFile);
 
       if (canSendTelemetry) {
         TelemetryLogger.get().logResultsForBundle(bundleFile, suggestions);
@@ -99,6 +189,10 @@ public final class CheckBundle implements Callable<Void> {
               categories != null ? ImmutableList.copyOf(categories) : ImmutableList.of(),
               displayAll)
           .displaySuggestions();
+
+      if (dexModules.isPresent()) {
+        TerminalInterface.displayDexBreakdown(dexModules.get());
+      }
     } catch (Exception e) {
       if (canSendTelemetry) {
         TelemetryLogger.get().logErrorForBundle(e);
@@ -16,7 +16,12 @@
 
 package com.android.tools.sizereduction.analyzer.cli;
 
+import com.android.tools.sizereduction.analyzer.analyzers.IncrementalProjectAnalysis;
 import com.android.tools.sizereduction.analyzer.analyzers.ProjectAnalyzer;
+import com.android.tools.sizereduction.analyzer.analyzers.Shard;
+import com.android.tools.sizereduction.analyzer.suggesters.ProjectSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.ProjectTreeSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.SuggesterProvider;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
 import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.LargeFilesSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.QuestionableFilesSuggester;
@@ -26,10 +31,16 @@ import com.android.tools.sizereduction.analyzer.suggesters.libraries.LibraryElig
 import com.android.tools.sizereduction.analyzer.suggesters.proguard.ProguardSuggester;
 import com.android.tools.sizereduction.analyzer.telemetry.TelemetryLogger;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
@@ -73,14 +84,56 @@ public final class CheckProject implements Callable<Void> {
               + " flag.")
   private boolean showFixes = false;
 
-  private static final ProjectAnalyzer PROJECT_ANALYZER =
-      new ProjectAnalyzer(
-          ImmutableList.of(
-              new ProguardSuggester(),
-              new BundleSplitSuggester(),
-              new LibraryEligibleForFeatureSplitSuggester()),
-          ImmutableList.of(
-              new WebpSuggester(), new LargeFilesSuggester(), new QuestionableFilesSuggester()));
+  @Mixin private WebpFlags webpFlags = new WebpFlags();
+
+  @Option(
+      names = "--threads",
+      description =
+          "Number of threads used to analyze files, largest images first. Defaults to 1.")
+  private int threads = 1;
+
+  @Mixin private ShardFlags shardFlags = new ShardFlags();
+
+  @Option(
+      names = "--watch",
+      description =
+          "Keeps running after the analysis, re-analyzing the files that change in the project"
+              + " and printing the updated suggestions. Changes to a build.gradle or manifest"
+              + " re-analyze their whole module.")
+  private boolean watch = false;
+
+  @Option(
+      names = "--since",
+      description =
+          "Analyzes only the files changed since the given git revision, including uncommitted"
+              + " and untracked ones, and reports the suggestions they introduce. Module-wide"
+              + " suggestions are only made for modules whose build.gradle changed. Requires git.")
+  private String sinceRevision;
+
+  /** Creates the suggesters operating on each module, also run by merge-results. */
+  static ImmutableList<ProjectSuggester> createProjectSuggesters() {
+    ImmutableList.Builder<ProjectSuggester> suggesters =
+        ImmutableList.<ProjectSuggester>builder()
+            .add(
+                new ProguardSuggester(),
+                new BundleSplitSuggester(),
+                new LibraryEligibleForFeatureSplitSuggester());
+    SuggesterProvider.loadInstalled()
+        .forEach(provider -> suggesters.addAll(provider.getProjectSuggesters()));
+    return suggesters.build();
+  }
+
+  private ProjectAnalyzer createProjectAnalyzer() {
+    ImmutableList.Builder<ProjectTreeSuggester> treeSuggesters =
+        ImmutableList.<ProjectTreeSuggester>builder()
+            .add(
+                new WebpSuggester(webpFlags.toWebpOptions(applyFixes || showFixes)),
+                new LargeFilesSuggester(),
+                new QuestionableFilesSuggester());
+    SuggesterProvider.loadInstalled()
+        .forEach(provider -> treeSuggesters.addAll(provider.getProjectTreeSuggesters()));
+    return new ProjectAnalyzer(createProjectSuggesters(), treeSuggesters.build(), threads);
+  }
 
   @Override
   public Void call() {
@@ -91,9 +144,75 @@ public final class CheckProject implements Callable<Void> {
       return null;
     }
 
+    Optional<Shard> shard;
+    try {
+      webpFlags.validate();
+      shard = shardFlags.toShard();
+    } catch (IllegalArgumentException e) {
+      System.out.println(e.getMessage());
+      return null;
+    }
+    if (watch && (applyFixes || showFixes || shard.isPresent())) {
+      System.out.println("--watch cannot be used with --apply-fixes, --show-fixes or --shard.");
+      return null;
+    }
+    if (sinceRevision != null && (watch || shard.isPresent())) {
+      System.out.println("--since cannot be used with --watch or --shard.");
+      return null;
+    }
+    if (shard.isPresent()) {
+      if (applyFixes || showFixes) {
+        System.out.println("Fixes cannot be applied when only a shard of the project is analyzed.");
+        return null;
+      }
+      ProjectAnalyzer analyzer = createProjectAnalyzer();
+      shardFlags.writeResults(
+          shard.get(),
+          analyzer.computeShardIdentity(directory),
+          analyzer.analyzeFiles(directory, shard.get()));
+      return null;
+    }
+
+    IncrementalProjectAnalysis analysis =
+        new IncrementalProjectAnalysis(createProjectAnalyzer(), directory);
+    if (!watch) {
+      analyzeAndDisplay(analysis);
+      return null;
+    }
+    // Registered before the initial analysis, so that the changes made while it runs are picked up
+    // by the first update instead of being missed.
+    try (ProjectWatcher watcher = new ProjectWatcher(directory)) {
+      analyzeAndDisplay(analysis);
+      watch(analysis, watcher);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return null;
+  }
+
+  /** Analyzes the whole project, or the files changed since --since, and displays the results. */
+  private void analyzeAndDisplay(IncrementalProjectAnalysis analysis) {
     boolean canSendTelemetry = TelemetryConsentHelper.get().checkForConsent();
     try {
-      ImmutableList<Suggestion> suggestions = PROJECT_ANALYZER.analyze(directory);
+      ImmutableList<Suggestion> suggestions;
+      if (sinceRevision != null) {
+        ImmutableSet<File> changedFiles;
+        try {
+          changedFiles = GitChangedFiles.since(directory, sinceRevision);
+        } catch (IllegalArgumentException e) {
+          System.out.println(e.getMessage());
+          return;
+        }
+        System.out.println(
+            String.format(
+                "Analyzing %d files changed since %s.", changedFiles.size(), sinceRevision));
+        suggestions =
+            ImmutableList.copyOf(
+                createProjectAnalyzer().analyzeChangedFiles(directory, changedFiles).values());
+      } else {
+        analysis.analyzeAll();
+        suggestions = analysis.getSuggestions();
+      }
 
       if (canSendTelemetry) {
         TelemetryLogger.get().logResultsForProject(suggestions);
@@ -112,6 +231,28 @@ public final class CheckProject implements Callable<Void> {
       }
       throw e;
     }
-    return null;
+  }
+
+  /** Re-analyzes the project as it changes, until the process is stopped. */
+  private void watch(IncrementalProjectAnalysis analysis, ProjectWatcher watcher) {
+    System.out.println("Watching " + directory + " for changes, press Ctrl+C to stop.");
+    try {
+      while (true) {
+        ImmutableSet<File> changes = watcher.awaitChanges();
+        long startNanos = System.nanoTime();
+        int updated = analysis.update(changes, watcher.getCreatedDirectories());
+        System.out.println(
+            String.format(
+                "Re-analyzed %d changed paths in %d ms.",
+                updated, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)));
+        TerminalInterface.create(
+                analysis.getSuggestions(),
+                categories != null ? ImmutableList.copyOf(categories) : ImmutableList.of(),
+                displayAll)
+            .displaySuggestions();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
   }
 }
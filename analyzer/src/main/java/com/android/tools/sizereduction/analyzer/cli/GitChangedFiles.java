@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.cli;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/** Lists the files of a project that changed since a git revision, using the local git binary. */
+final class GitChangedFiles {
+
+  private GitChangedFiles() {}
+
+  /**
+   * Returns the files under the directory that were added, copied, modified or renamed since the
+   * revision, including uncommitted and untracked ones. Deleted files are left out.
+   *
+   * @throws IllegalArgumentException if git fails, for instance if the revision is unknown
+   */
+  static ImmutableSet<File> since(File directory, String revision) {
+    ImmutableSet.Builder<File> files = ImmutableSet.builder();
+    // Paths are printed relative to the directory and limited to it.
+    for (String path :
+        runGit(
+            directory,
+            "diff",
+            "--name-only",
+            "--relative",
+            "--no-renames",
+            "--diff-filter=ACMR",
+            "-z",
+            revision,
+            "--")) {
+      files.add(new File(directory, path));
+    }
+    for (String path : runGit(directory, "ls-files", "--others", "--exclude-standard", "-z")) {
+      files.add(new File(directory, path));
+    }
+    return files.build();
+  }
+
+  /** Runs git in the directory and returns the NUL separated paths it prints. */
+  private static ImmutableList<String> runGit(File directory, String... arguments) {
+    List<String> command = new ArrayList<>();
+    command.add("git");
+    command.add("-C");
+    command.add(directory.getPath());
+    for (String argument : arguments) {
+      command.add(argument);
+    }
+    try {
+      Process process = new ProcessBuilder(command).start();
+      process.getOutputStream().close();
+      // Drained concurrently, a full error pipe would otherwise block git.
+      CompletableFuture<String> errors =
+          CompletableFuture.supplyAsync(() -> readFully(process.getErrorStream()));
+      String output = readFully(process.getInputStream());
+      int exitCode = process.waitFor();
+      if (exitCode != 0) {
+        throw new IllegalArgumentException(
+            "git " + arguments[0] + " failed: " + errors.join().trim());
+      }
+      return ImmutableList.copyOf(Splitter.on('\0').omitEmptyStrings().split(output));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to run git, is it installed?", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for git.", e);
+    }
+  }
+
+  private static String readFully(InputStream inputStream) {
+    try {
+      return new String(ByteStreams.toByteArray(inputStream), UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.cli;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.android.tools.sizereduction.analyzer.ShardOutput.ShardResults;
+import com.android.tools.sizereduction.analyzer.analyzers.BundleAnalyzer;
+import com.android.tools.sizereduction.analyzer.analyzers.ProjectAnalyzer;
+import com.android.tools.sizereduction.analyzer.analyzers.ShardResultsFile;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.telemetry.TelemetryLogger;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+/**
+ * This command merges the results of the shards of a check-bundle or check-project analysis, and
+ * runs the suggesters that operate on the artifact as a whole.
+ */
+@Command(
+    name = "merge-results",
+    mixinStandardHelpOptions = true,
+    description =
+        "Merges the outputs of check-bundle or check-project run with --shard, and reports the"
+            + " suggestions of the whole analysis.")
+public final class MergeResults implements Callable<Void> {
+
+  @Parameters(description = "Files written with --shard-output, one per shard", arity = "1..*")
+  private List<File> shardFiles;
+
+  @Option(names = "--bundle", description = "Android App Bundle .aab file the shards analyzed.")
+  private File bundleFile;
+
+  @Option(
+      names = "--project",
+      description = "Android Studio project directory the shards analyzed.")
+  private File projectDirectory;
+
+  @Option(
+      names = "--baseModuleTopFiles",
+      description = "Number of top largest files from the base module that should be surfaced.")
+  private int baseModuleTopFiles;
+
+  @Option(
+      names = "--baseModuleLargeFileThreshold",
+      description =
+          "Minimum size (in bytes) of an App Bundle module file to be considered for report as one"
+              + " of the top largest files in the base module.")
+  private long baseModuleLargeFileThreshold;
+
+  @Option(
+      names = {"-d", "--display-all"},
+      description =
+          "Displays each individual suggestion within a category."
+              + " By default only the category summary is displayed.")
+  private boolean displayAll = false;
+
+  @Option(
+      names = {"-c", "--category"},
+      description =
+          "Display only suggestions relating to the provided category."
+              + " Valid categories are webp, proguard, and large-files.")
+  private List<String> categories;
+
+  /** Creates the analyzer running the project suggesters, which the shards do not run. */
+  private static ProjectAnalyzer createModuleAnalyzer() {
+    return new ProjectAnalyzer(
+        CheckProject.createProjectSuggesters(), /* suggesters= */ ImmutableList.of());
+  }
+
+  @Override
+  public Void call() {
+    if ((bundleFile == null) == (projectDirectory == null)) {
+      System.out.println("Exactly one of --bundle and --project must be given.");
+      return null;
+    }
+
+    ImmutableList<ShardResults> shards =
+        shardFiles.stream().map(ShardResultsFile::read).collect(toImmutableList());
+    ImmutableList<Suggestion> entrySuggestions;
+    try {
+      entrySuggestions = ShardResultsFile.merge(shards);
+    } catch (IllegalArgumentException e) {
+      System.out.println(e.getMessage());
+      return null;
+    }
+    if (bundleFile != null
+        && !shards.get(0).getArtifactSha256().equals(ShardResultsFile.sha256(bundleFile))) {
+      System.out.println("The shards did not analyze " + bundleFile + ".");
+      return null;
+    }
+    if (projectDirectory != null
+        && !shards
+            .get(0)
+            .getArtifactSha256()
+            .equals(createModuleAnalyzer().computeShardIdentity(projectDirectory))) {
+      System.out.println(
+          "The shards did not analyze the files currently in "
+              + projectDirectory
+              + ", the project changed since or was checked out differently.");
+      return null;
+    }
+
+    boolean canSendTelemetry = TelemetryConsentHelper.get().checkForConsent();
+    try {
+      ImmutableList<Suggestion> suggestions;
+      if (bundleFile != null) {
+        suggestions =
+            ImmutableList.<Suggestion>builder()
+                .addAll(
+                    new BundleAnalyzer(
+                            CheckBundle.createBundleSuggesters(
+                                baseModuleTopFiles,
+                                baseModuleLargeFileThreshold,
+                                /* dexBreakdown= */ Optional.empty()),
+                            /* bundleEntrySuggesters= */ ImmutableList.of())
+                        .analyzeWholeBundle(bundleFile))
+                .addAll(entrySuggestions)
+                .build();
+        if (canSendTelemetry) {
+          TelemetryLogger.get().logResultsForBundle(bundleFile, suggestions);
+        }
+      } else {
+        suggestions =
+            ImmutableList.<Suggestion>builder()
+                .addAll(createModuleAnalyzer().analyzeModules(projectDirectory))
+                .addAll(entrySuggestions)
+                .build();
+        if (canSendTelemetry) {
+          TelemetryLogger.get().logResultsForProject(suggestions);
+        }
+      }
+
+      TerminalInterface.create(
+              suggestions,
+              categories != null ? ImmutableList.copyOf(categories) : ImmutableList.of(),
+              displayAll)
+          .displaySuggestions();
+    } catch (Exception e) {
+      if (canSendTelemetry) {
+        if (bundleFile != null) {
+          TelemetryLogger.get().logErrorForBundle(e);
+        } else {
+          TelemetryLogger.get().logErrorForProject(e);
+        }
+      }
+      throw e;
+    }
+    return null;
+  }
+}
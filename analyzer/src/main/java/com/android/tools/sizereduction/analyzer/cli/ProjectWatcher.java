@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.cli;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import com.android.tools.sizereduction.analyzer.analyzers.ProjectAnalyzer;
+import com.google.common.collect.ImmutableSet;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the directories of a project for changes, skipping those the analysis ignores, and
+ * reports the changed paths once a burst of writes is over.
+ */
+final class ProjectWatcher implements Closeable {
+
+  // Editors and builds write several files in quick succession, they are handled as one change.
+  private static final long DEBOUNCE_MILLIS = 300;
+
+  private final Path projectDirectory;
+  private final WatchService watchService;
+  private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+  // Directories created since the last changes were returned, see getCreatedDirectories().
+  private ImmutableSet<File> createdDirectories = ImmutableSet.of();
+
+  ProjectWatcher(File projectDirectory) throws IOException {
+    this.projectDirectory = projectDirectory.toPath();
+    this.watchService = this.projectDirectory.getFileSystem().newWatchService();
+    registerTree(this.projectDirectory);
+  }
+
+  /**
+   * Waits for changes, then returns the created, modified and deleted paths once no more changes
+   * have happened for a short while. Returns the project directory itself if events were lost.
+   */
+  ImmutableSet<File> awaitChanges() throws InterruptedException {
+    Set<File> changes = new LinkedHashSet<>();
+    Set<File> created = new LinkedHashSet<>();
+    WatchKey key = watchService.take();
+    while (key != null) {
+      collectChanges(key, changes, created);
+      key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+    if (changes.contains(projectDirectory.toFile())) {
+      createdDirectories = ImmutableSet.of(projectDirectory.toFile());
+      return ImmutableSet.of(projectDirectory.toFile());
+    }
+    createdDirectories = ImmutableSet.copyOf(created);
+    return ImmutableSet.copyOf(changes);
+  }
+
+  /**
+   * Returns the directories among the paths last returned by {@link #awaitChanges()} that were
+   * created, which have to be analyzed as a whole. When events were lost, this is the project
+   * directory itself.
+   */
+  ImmutableSet<File> getCreatedDirectories() {
+    return createdDirectories;
+  }
+
+  @Override
+  public void close() throws IOException {
+    watchService.close();
+  }
+
+  private void collectChanges(WatchKey key, Set<File> changes, Set<File> created) {
+    Path directory = watchedDirectories.get(key);
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == OVERFLOW || directory == null) {
+        changes.add(projectDirectory.toFile());
+        continue;
+      }
+      Path path = directory.resolve((Path) event.context());
+      if (ProjectAnalyzer.isIgnored(path.getFileName().toString())) {
+        continue;
+      }
+      if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+        registerTree(path);
+        created.add(path.toFile());
+      }
+      changes.add(path.toFile());
+    }
+    if (!key.reset()) {
+      // The directory is gone, its deletion is reported through its parent.
+      watchedDirectories.remove(key);
+    }
+  }
+
+  private void registerTree(Path root) {
+    try {
+      Files.walkFileTree(
+          root,
+          new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes)
+                throws IOException {
+              if (!dir.equals(projectDirectory)
+                  && ProjectAnalyzer.isIgnored(dir.getFileName().toString())) {
+                return FileVisitResult.SKIP_SUBTREE;
+              }
+              try {
+                watchedDirectories.put(
+                    dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+              } catch (NoSuchFileException e) {
+                // Deleted right after being created, its parent reports the deletion.
+                return FileVisitResult.SKIP_SUBTREE;
+              }
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+              if (e instanceof NoSuchFileException) {
+                return FileVisitResult.CONTINUE;
+              }
+              throw e;
+            }
+          });
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.cli;
+
+import com.android.tools.sizereduction.analyzer.ShardOutput.ShardResults;
+import com.android.tools.sizereduction.analyzer.analyzers.Shard;
+import com.android.tools.sizereduction.analyzer.analyzers.ShardResultsFile;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.google.common.collect.ImmutableListMultimap;
+import java.io.File;
+import java.util.Optional;
+import picocli.CommandLine.Option;
+
+/** Command line flags splitting an analysis across machines, shared by the check commands. */
+final class ShardFlags {
+
+  @Option(
+      names = "--shard",
+      description =
+          "Analyzes only the files of shard i out of n (given as i/n, i starting at 1) and writes"
+              + " their suggestions to --shard-output. Suggestions about the artifact as a whole"
+              + " are left to merge-results, which combines the outputs of all the shards.")
+  private String shard;
+
+  @Option(
+      names = "--shard-strategy",
+      description =
+          "How files are split between shards: hash splits them by a stable hash of their path,"
+              + " cost balances their sizes so that each shard gets a similar amount of image"
+              + " encoding. Valid values are hash and cost. Defaults to hash.")
+  private Shard.Strategy strategy = Shard.Strategy.HASH;
+
+  @Option(
+      names = "--shard-output",
+      description = "File the suggestions of the shard are written to, for merge-results.")
+  private File output;
+
+  /**
+   * Returns the shard to analyze, or an empty optional if the analysis is not sharded.
+   *
+   * @throws IllegalArgumentException if the shard flags are invalid
+   */
+  Optional<Shard> toShard() {
+    if (shard == null) {
+      return Optional.empty();
+    }
+    if (output == null) {
+      throw new IllegalArgumentException("--shard-output is required with --shard.");
+    }
+    return Optional.of(Shard.parse(shard, strategy));
+  }
+
+  /** Writes the suggestions found by the shard, keyed by the ordinal of their entry. */
+  void writeResults(
+      Shard shard, String artifactSha256, ImmutableListMultimap<Integer, Suggestion> suggestions) {
+    ShardResults results = ShardResultsFile.create(shard, artifactSha256, suggestions);
+    ShardResultsFile.write(output, results);
+    System.out.println(
+        String.format(
+            "Wrote %d suggestions of shard %s to %s.",
+            results.getSuggestionsCount(), shard, output));
+  }
+}
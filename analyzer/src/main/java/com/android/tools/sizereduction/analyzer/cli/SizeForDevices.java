@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.cli;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.bundle.Devices.DeviceSpec;
+import com.android.tools.sizereduction.analyzer.analyzers.DeviceSizeEstimator;
+import com.android.tools.sizereduction.analyzer.analyzers.DeviceSizeEstimator.DeviceSize;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.MultimapBuilder;
+import com.google.common.collect.Multimaps;
+import com.google.protobuf.util.JsonFormat;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+/** This command estimates the download size of a bundle for a set of devices. */
+@Command(
+    name = "size-for-devices",
+    mixinStandardHelpOptions = true,
+    description =
+        "Estimates how many bytes each of the given devices downloads when installing an Android"
+            + " App Bundle.")
+public final class SizeForDevices implements Callable<Void> {
+
+  @Parameters(description = "Android App Bundle .aab file", arity = "1" /* one parameter */)
+  private File bundleFile;
+
+  @Option(
+      names = "--device",
+      required = true,
+      description =
+          "Device to estimate the download size for, either a bundletool device spec .json file or"
+              + " name:key=value pairs separated by commas, with the keys abis, density, locales"
+              + " and sdk. Multiple abis and locales are separated by '+', for example"
+              + " pixel:abis=arm64-v8a+armeabi-v7a,density=420,locales=en-US+fr-FR,sdk=28."
+              + " Can be repeated.")
+  private List<String> devices;
+
+  @Option(
+      names = "--threads",
+      description = "Number of threads used to evaluate the devices. Defaults to 1.")
+  private int threads = 1;
+
+  @Override
+  public Void call() {
+    ImmutableMap<String, DeviceSpec> deviceSpecs;
+    try {
+      deviceSpecs = parseDevices(devices);
+    } catch (IllegalArgumentException e) {
+      System.out.println(e.getMessage());
+      return null;
+    }
+
+    for (DeviceSize size : new DeviceSizeEstimator(threads).estimate(bundleFile, deviceSpecs)) {
+      System.out.println(
+          size.getDeviceName()
+              + ": "
+              + (size.getDownloadBytes().isPresent()
+                  ? size.getDownloadBytes().get() + " bytes"
+                  : "not supported by the bundle"));
+    }
+    return null;
+  }
+
+  /**
+   * Parses the given --device values into device specs keyed by device name, rejecting names used
+   * by more than one device since the estimates are reported by name.
+   */
+  @VisibleForTesting
+  static ImmutableMap<String, DeviceSpec> parseDevices(List<String> devices) {
+    Map<String, DeviceSpec> deviceSpecs = new LinkedHashMap<>();
+    ListMultimap<String, String> devicesByName =
+        MultimapBuilder.linkedHashKeys().arrayListValues().build();
+    for (String device : devices) {
+      Map.Entry<String, DeviceSpec> spec = parseDevice(device);
+      deviceSpecs.put(spec.getKey(), spec.getValue());
+      devicesByName.put(spec.getKey(), device);
+    }
+
+    for (Map.Entry<String, List<String>> entry : Multimaps.asMap(devicesByName).entrySet()) {
+      if (entry.getValue().size() > 1) {
+        throw new IllegalArgumentException(
+            "Device name "
+                + entry.getKey()
+                + " is used by more than one --device: "
+                + String.join(", ", entry.getValue())
+                + ". Device names must be unique, rename the spec files or the inline devices.");
+      }
+    }
+    return ImmutableMap.copyOf(deviceSpecs);
+  }
+
+  @VisibleForTesting
+  static Map.Entry<String, DeviceSpec> parseDevice(String device) {
+    if (device.endsWith(".json")) {
+      File specFile = new File(device);
+      DeviceSpec.Builder builder = DeviceSpec.newBuilder();
+      try {
+        String json = new String(Files.readAllBytes(specFile.toPath()), UTF_8);
+        JsonFormat.parser().merge(json, builder);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return Maps.immutableEntry(specFile.getName(), builder.build());
+    }
+
+    int nameEnd = device.indexOf(':');
+    if (nameEnd <= 0) {
+      throw new IllegalArgumentException(
+          "Device " + device + " must be a .json device spec or start with a name and ':'.");
+    }
+    DeviceSpec.Builder builder = DeviceSpec.newBuilder();
+    Map<String, String> properties =
+        Splitter.on(',')
+            .trimResults()
+            .omitEmptyStrings()
+            .withKeyValueSeparator('=')
+            .split(device.substring(nameEnd + 1));
+    for (Map.Entry<String, String> property : properties.entrySet()) {
+      switch (property.getKey()) {
+        case "abis":
+          builder.addAllSupportedAbis(Splitter.on('+').split(property.getValue()));
+          break;
+        case "density":
+          builder.setScreenDensity(Integer.parseInt(property.getValue()));
+          break;
+        case "locales":
+          builder.addAllSupportedLocales(Splitter.on('+').split(property.getValue()));
+          break;
+        case "sdk":
+          builder.setSdkVersion(Integer.parseInt(property.getValue()));
+          break;
+        default:
+          throw new IllegalArgumentException(
+              "Unknown device property " + property.getKey() + " in " + device + ".");
+      }
+    }
+    return Maps.immutableEntry(device.substring(0, nameEnd), builder.build());
+  }
+}
@@ -17,13 +17,17 @@
 package com.android.tools.sizereduction.analyzer.cli;
 
 import static com.google.common.collect.ImmutableList.toImmutableList;
-import static com.google.common.collect.ImmutableListMultimap.toImmutableListMultimap;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Comparator.comparingLong;
 
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.DexModuleData;
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.DexModuleData.DexSectionSize;
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.DexSection;
 import com.android.tools.sizereduction.analyzer.suggesters.AutoFix;
+import com.android.tools.sizereduction.analyzer.suggesters.AutoFixExecutor;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.Category;
+import com.android.tools.sizereduction.analyzer.suggesters.SuggestionTable;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Splitter;
@@ -31,9 +35,11 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Streams;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Scanner;
 import org.fusesource.jansi.Ansi;
 import org.fusesource.jansi.Ansi.Color;
@@ -52,6 +58,7 @@ public final class TerminalInterface {
           .put(Category.BUNDLE_CONFIG, "Optimizing the bundle configuration")
           .put(Category.BUNDLE_BASE, "Optimizing the initial app install")
           .put(Category.LIBRARIES, "Optimizing usage of libraries in the app")
+          .put(Category.NATIVE_LIBS, "Stripping native libraries")
           .build();
 
   private static final ImmutableMap<String, Category> STRING_TO_CATEGORY =
@@ -62,6 +69,21 @@ public final class TerminalInterface {
           .put("bundle-config", Category.BUNDLE_CONFIG)
           .put("bundle-base", Category.BUNDLE_BASE)
           .put("libraries", Category.LIBRARIES)
+          .put("native-libs", Category.NATIVE_LIBS)
+          .build();
+
+  private static final ImmutableMap<DexSection, String> DEX_SECTION_TO_STRING =
+      ImmutableMap.<DexSection, String>builder()
+          .put(DexSection.STRINGS, "Strings")
+          .put(DexSection.TYPES, "Type ids and lists")
+          .put(DexSection.PROTOS, "Prototype ids")
+          .put(DexSection.FIELDS, "Field ids")
+          .put(DexSection.METHODS, "Method ids")
+          .put(DexSection.CLASSES, "Class definitions")
+          .put(DexSection.CODE, "Code")
+          .put(DexSection.DEBUG_INFO, "Debug info")
+          .put(DexSection.ANNOTATIONS, "Annotations")
+          .put(DexSection.OTHER_DATA, "Other data")
           .build();
 
   private final ImmutableList<Suggestion> suggestions;
@@ -70,6 +92,8 @@ public final class TerminalInterface {
   private final boolean applyFixes;
   private final boolean showFixes;
   private final Scanner inputScanner;
+  private final AutoFixExecutor autoFixExecutor =
+      new AutoFixExecutor(Runtime.getRuntime().availableProcessors());
 
   public static TerminalInterface create(
       ImmutableList<Suggestion> suggestions,
@@ -130,18 +154,16 @@ public final class TerminalInterface {
   }
 
   public void displaySuggestions() {
-    ImmutableListMultimap<Category, Suggestion> categorizedSuggestions = categorizeSuggestions();
+    SuggestionTable table = buildSuggestionTable();
 
-    if (categorizedSuggestions.size() == 0) {
+    if (table.size() == 0) {
       System.out.println("No size saving suggestions found.");
       return;
     }
-    ImmutableList<Category> categoryDisplayOrder = getCategoryDisplayOrder(categorizedSuggestions);
 
-    Long runningTotal = 0L;
-    for (Category category : categoryDisplayOrder) {
-      ImmutableList<Suggestion> suggestions = categorizedSuggestions.get(category);
-      Long totalSavings = getBytesSavedForSuggestionList(suggestions);
+    long runningTotal = 0L;
+    for (Category category : table.getCategoriesBySavings()) {
+      long totalSavings = table.getTotalBytesSaved(category);
       System.out.println(
           Ansi.ansi()
               .fg(Color.GREEN)
@@ -149,18 +171,24 @@ public final class TerminalInterface {
               .fg(Color.RED)
               .a(humanReadableByteCount(totalSavings))
               .reset());
+      int[] rows = table.getRowsBySavings(category);
       if (showFixes) {
-        applyFixesInteractively(suggestions, category);
+        applyFixesInteractively(
+            Arrays.stream(rows).mapToObj(table::getSuggestion).collect(toImmutableList()),
+            category);
       } else {
         if (displayDetails) {
-          suggestions.forEach(TerminalInterface::prettyPrintSuggestion);
+          for (int row : rows) {
+            prettyPrintSuggestion(table.getMessage(row), table.getBytesSaved(row));
+          }
         }
         if (applyFixes) {
           System.out.println("applying all available fixes for category: " + category);
-          suggestions.stream()
-              .filter(suggestion -> suggestion.getAutoFix() != null)
-              .map(Suggestion::getAutoFix)
-              .forEach(AutoFix::apply);
+          applyFixes(
+              Arrays.stream(rows)
+                  .mapToObj(table::getAutoFix)
+                  .filter(Objects::nonNull)
+                  .collect(toImmutableList()));
         }
       }
       runningTotal += totalSavings;
@@ -192,6 +220,39 @@ public final class TerminalInterface {
     }
   }
 
+  /** Prints how the DEX code of each module splits into sections. */
+  public static void displayDexBreakdown(ImmutableList<DexModuleData> modules) {
+    if (modules.isEmpty()) {
+      System.out.println("No DEX code found.");
+      return;
+    }
+    for (DexModuleData module : modules) {
+      long moduleBytes =
+          module.getSectionsList().stream().mapToLong(DexSectionSize::getBytes).sum();
+      System.out.println(
+          Ansi.ansi()
+              .fg(Color.GREEN)
+              .a("DEX code of module " + module.getModuleName())
+              .fg(Color.RED)
+              .a(" " + humanReadableByteCount(moduleBytes))
+              .reset()
+              .a(
+                  String.format(
+                      " (%d files, %d methods, %d fields)",
+                      module.getDexFileCount(),
+                      module.getMethodCount(),
+                      module.getFieldCount())));
+      for (DexSectionSize section : module.getSectionsList()) {
+        System.out.println(
+            String.format(
+                "  %-20s %10s %5.1f%%",
+                DEX_SECTION_TO_STRING.get(section.getSection()),
+                humanReadableByteCount(section.getBytes()),
+                100.0 * section.getBytes() / moduleBytes));
+      }
+    }
+  }
+
   @VisibleForTesting
   void applyFixesInteractively(ImmutableList<Suggestion> suggestions, Category category) {
     int currentFixNumber = 0;
@@ -224,13 +285,14 @@ public final class TerminalInterface {
     Iterable<String> entries =
         Splitter.on(CharMatcher.anyOf(", ")).omitEmptyStrings().trimResults().split(input);
     if (Streams.stream(entries).anyMatch(entry -> entry.equals("0"))) {
-      autoFixMap.values().forEach(AutoFix::apply);
+      applyFixes(ImmutableList.copyOf(autoFixMap.values()));
     } else {
+      ImmutableList.Builder<AutoFix> selectedFixes = ImmutableList.builder();
       for (String entry : entries) {
         try {
           Integer fixNumber = Integer.parseInt(entry);
           if (fixNumber >= 0 && fixNumber < autoFixMap.size()) {
-            autoFixMap.get(fixNumber).apply();
+            selectedFixes.add(autoFixMap.get(fixNumber));
           } else {
             System.out.println("Fix #" + entry + " was not in the list; skipping it.");
           }
@@ -238,24 +300,43 @@ public final class TerminalInterface {
           System.out.println("Fix #" + entry + " was not in the list; skipping it.");
         }
       }
+      applyFixes(selectedFixes.build());
     }
     System.out.println("Applied selected fixes.");
   }
 
+  /** Applies the fixes concurrently and prints how many were applied and which ones failed. */
+  private void applyFixes(ImmutableList<AutoFix> autoFixes) {
+    AutoFixExecutor.Report report = autoFixExecutor.execute(autoFixes);
+    System.out.println(
+        String.format(
+            "Applied %d fixes in %.1f s (%.1f fixes/s).",
+            report.getAppliedCount(),
+            report.getElapsedNanos() / 1e9,
+            report.getThroughput()));
+    for (String failure : report.getFailures()) {
+      System.out.println("Warning: Failed to apply fix for " + failure);
+    }
+  }
+
   /**
    * Sorts each suggestion into its corresponding category and sorts them by size savings within
    * each category.
    */
   @VisibleForTesting
   ImmutableListMultimap<Category, Suggestion> categorizeSuggestions() {
-    return suggestions.stream()
-        .filter(
-            suggestion ->
-                displayCategories.isEmpty() || displayCategories.contains(suggestion.getCategory()))
-        .sorted(comparingLong(TerminalInterface::getBytesSavedForSuggestion).reversed())
-        .collect(
-            toImmutableListMultimap(
-                suggestion -> suggestion.getCategory(), suggestion -> suggestion));
+    return buildSuggestionTable().toCategorizedSuggestions();
+  }
+
+  /** Returns the suggestions of the displayed categories in a compact table. */
+  private SuggestionTable buildSuggestionTable() {
+    SuggestionTable.Builder builder = SuggestionTable.builder();
+    for (Suggestion suggestion : suggestions) {
+      if (displayCategories.isEmpty() || displayCategories.contains(suggestion.getCategory())) {
+        builder.add(suggestion);
+      }
+    }
+    return builder.build();
   }
 
   /**
@@ -270,12 +351,12 @@ public final class TerminalInterface {
         .collect(toImmutableList());
   }
 
-  private static void prettyPrintSuggestion(Suggestion suggestion) {
+  private static void prettyPrintSuggestion(String message, long bytesSaved) {
     System.out.println(
         Ansi.ansi()
-            .a(suggestion.getMessage())
+            .a(message)
             .fg(Color.RED)
-            .a(getBytesSavedString(suggestion))
+            .a(" (saves " + humanReadableByteCount(bytesSaved) + ")")
             .reset());
   }
 
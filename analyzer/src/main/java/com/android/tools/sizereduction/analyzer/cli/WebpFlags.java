@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.cli;
+
+import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.WebpOptions;
+import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.WebpOptions.EstimationMode;
+import picocli.CommandLine.Option;
+
+/** Command line flags configuring the webp suggestions, shared by the check commands. */
+final class WebpFlags {
+
+  @Option(
+      names = "--webp-estimate",
+      description =
+          "How webp savings are computed: exact encodes every image in full, sampled encodes a"
+              + " subset of tiles of large images and reports an error bound with the savings."
+              + " Valid values are exact and sampled. Defaults to exact.")
+  private EstimationMode estimationMode;
+
+  @Option(
+      names = "--max-decoded-image-mb",
+      description =
+          "Maximum memory (in megabytes) used for the decoded pixels of a single image. Larger"
+              + " images are decoded in bands, or estimated from a sample of tiles when they do"
+              + " not fit at all. Unlimited by default.")
+  private long maxDecodedImageMb = 0;
+
+  @Option(
+      names = "--webp-effort",
+      description =
+          "Effort spent estimating webp savings, from 0 (fastest) to 6 (most accurate). Effort 6"
+              + " encodes every image in full; lower levels estimate large images from a sample"
+              + " of tiles that doubles in size with every level. Cannot be used with"
+              + " --webp-estimate.")
+  private Integer effort;
+
+  /**
+   * Checks that the webp flags are valid together.
+   *
+   * @throws IllegalArgumentException if the webp flags are invalid
+   */
+  void validate() {
+    if (effort == null) {
+      return;
+    }
+    if (estimationMode != null) {
+      throw new IllegalArgumentException(
+          "--webp-effort and --webp-estimate cannot be used together: effort "
+              + WebpOptions.MAX_EFFORT
+              + " is the exact estimate and lower levels are sampled.");
+    }
+    if (effort < 0 || effort > WebpOptions.MAX_EFFORT) {
+      throw new IllegalArgumentException(
+          "--webp-effort must be between 0 and " + WebpOptions.MAX_EFFORT + ".");
+    }
+  }
+
+  /**
+   * Creates the webp options from the flags, keeping the encodings of project images when their
+   * fixes are going to be applied.
+   */
+  WebpOptions toWebpOptions(boolean keepEncodingsForFixes) {
+    WebpOptions.Builder builder =
+        effort != null
+            ? WebpOptions.builderForEffort(effort)
+            : WebpOptions.builder()
+                .setEstimationMode(estimationMode != null ? estimationMode : EstimationMode.EXACT);
+    return builder
+        .setMaxDecodedImageBytes(
+            maxDecodedImageMb > 0 ? maxDecodedImageMb * 1024 * 1024 : WebpOptions.UNBOUNDED)
+        .setKeepEncodingsForFixes(keepEncodingsForFixes)
+        .build();
+  }
+}
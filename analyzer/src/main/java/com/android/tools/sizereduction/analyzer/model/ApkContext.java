@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.model;
+
+import com.google.auto.value.AutoValue;
+
+/** Context for the APK being analyzed, to be used by the suggester when it is called. */
+@AutoValue
+public abstract class ApkContext implements Context {
+
+  public static ApkContext create(int minSdkVersion) {
+    return new AutoValue_ApkContext(
+        minSdkVersion, /* onDemand= */ false, /* embedsWearApk= */ false);
+  }
+
+  /** The min sdk version declared for this APK. */
+  @Override
+  public abstract int getMinSdkVersion();
+
+  /** An installed APK is never delivered on demand. */
+  @Override
+  public abstract boolean getOnDemand();
+
+  /** Whether the APK embeds a Wear 1.X APK. */
+  @Override
+  public abstract boolean getEmbedsWearApk();
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Resource tables of the modules of an App Bundle, each indexed the first time it is requested and
+ * then shared by all the suggesters.
+ */
+public final class BundleResourceTables {
+
+  private static final String RESOURCE_TABLE_NAME = "resources.pb";
+
+  private final ZipFile bundleZip;
+  private final Map<String, Optional<ResourceTableIndex>> indexPerModule =
+      new ConcurrentHashMap<>();
+
+  public BundleResourceTables(ZipFile bundleZip) {
+    this.bundleZip = bundleZip;
+  }
+
+  /**
+   * Returns the index of the resource table of the given module, or an empty optional if the
+   * module has no resources.
+   */
+  public Optional<ResourceTableIndex> getResourceTable(String moduleName) {
+    return indexPerModule.computeIfAbsent(moduleName, this::indexResourceTable);
+  }
+
+  private Optional<ResourceTableIndex> indexResourceTable(String moduleName) {
+    ZipEntry entry = bundleZip.getEntry(moduleName + "/" + RESOURCE_TABLE_NAME);
+    if (entry == null) {
+      return Optional.empty();
+    }
+    try (InputStream inputStream = bundleZip.getInputStream(entry)) {
+      return Optional.of(ResourceTableIndex.parse(inputStream));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -81,9 +81,35 @@ public final class GroovyGradleParser extends CodeVisitorSupport {
       String content,
       int defaultMinSdkVersion,
       @Nullable AndroidPluginVersion defaultAndroidPluginVersion) {
+    return parseGradleBuildFile(
+        content, buildAst(content), defaultMinSdkVersion, defaultAndroidPluginVersion);
+  }
+
+  /** Parses only the bundle configuration of a gradle build file, along with its location. */
+  public static BundleConfig parseBundleConfig(String content) {
+    // The bundle configuration does not depend on anything inherited from the parent modules.
+    return parseGradleBuildFile(content, /* defaultMinSdkVersion= */ 1, null)
+        .setOnDemand(false)
+        .build()
+        .getBundleConfig();
+  }
+
+  /**
+   * Builds the syntax tree of a gradle build file. This is the expensive part of parsing, and does
+   * not depend on the parent modules, so it can run before their contexts are known.
+   */
+  public static List<ASTNode> buildAst(String content) {
     // We need to have an abstract syntax tree, which is what the conversion phase produces,
     // Anything more will try to semantically understand the groovy code.
-    List<ASTNode> astNodes = new AstBuilder().buildFromString(CompilePhase.CONVERSION, content);
+    return new AstBuilder().buildFromString(CompilePhase.CONVERSION, content);
+  }
+
+  /** Parses a gradle build file whose syntax tree was already built by {@link #buildAst}. */
+  public static GradleContext.Builder parseGradleBuildFile(
+      String content,
+      List<ASTNode> astNodes,
+      int defaultMinSdkVersion,
+      @Nullable AndroidPluginVersion defaultAndroidPluginVersion) {
     GroovyGradleParser parser =
         new GroovyGradleParser(content, defaultMinSdkVersion, defaultAndroidPluginVersion);
 
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.model;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.tools.sizereduction.analyzer.tracing.AnalyzerEvents;
+import com.android.tools.sizereduction.analyzer.tracing.TraceSpan;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import org.codehaus.groovy.ast.ASTNode;
+
+/**
+ * The parts of a module that can be read without knowing its parent modules: the content and syntax
+ * tree of its build file, and whether its manifest marks it as on demand. Reading these is most of
+ * the cost of creating a {@link Project}, so the build files of a project can be read concurrently
+ * and only the contexts resolved from parent to child.
+ */
+@AutoValue
+public abstract class ModuleBuildFile {
+
+  private static final String MANIFEST = "src/main/AndroidManifest.xml";
+
+  /**
+   * Returns the files that {@link #read} reads for the module in the given directory, whether they
+   * exist or not.
+   */
+  public static ImmutableList<File> getInputFiles(File directory) {
+    return ImmutableList.of(
+        new File(directory, Project.BUILD_GRADLE), new File(directory, MANIFEST));
+  }
+
+  /** Reads and parses the build file of the module in the given directory. */
+  public static ModuleBuildFile read(File directory) {
+    File buildFile = new File(directory, Project.BUILD_GRADLE);
+    if (!buildFile.exists()) {
+      throw new RuntimeException(
+          "Invalid project directory with no gradle build file: " + buildFile.getAbsolutePath());
+    }
+    String content;
+    ImmutableList<ASTNode> astNodes;
+    try (TraceSpan span = AnalyzerEvents.gradleParse(buildFile)) {
+      content = Files.asCharSource(buildFile, UTF_8).read();
+      astNodes = ImmutableList.copyOf(GroovyGradleParser.buildAst(content));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    // try to read the manifest(s) in the project to determine if this project is for an onDemand
+    // module.
+    File manifestFile = new File(directory, MANIFEST);
+    boolean onDemand = manifestFile.exists() && Project.isOnDemand(manifestFile);
+    return new AutoValue_ModuleBuildFile(directory, content, astNodes, onDemand);
+  }
+
+  /** The directory of the module. */
+  public abstract File getDirectory();
+
+  /** The content of the build file. */
+  public abstract String getContent();
+
+  /** The syntax tree of the build file. */
+  public abstract ImmutableList<ASTNode> getAstNodes();
+
+  /** Whether the manifest of the module marks it as on demand. */
+  public abstract boolean getOnDemand();
+}
@@ -16,12 +16,11 @@
 
 package com.android.tools.sizereduction.analyzer.model;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
+import com.android.tools.sizereduction.analyzer.tracing.AnalyzerEvents;
+import com.android.tools.sizereduction.analyzer.tracing.TraceSpan;
 import com.google.auto.value.AutoValue;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Ascii;
-import com.google.common.io.Files;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -40,15 +39,25 @@ import javax.xml.stream.events.XMLEvent;
 public abstract class Project {
 
   public static final String BUILD_GRADLE = "build.gradle";
-  private static final String MANIFEST = "src/main/AndroidManifest.xml";
   private static final String DIST_URI = "http://schemas.android.com/apk/distribution";
   private static final String VALUE_TRUE = "true";
   private static final String VALUE_1 = "1";
 
   public static Project create(File directory, @Nullable Project parent) {
-    GradleContext context = createContext(directory, parent);
+    return create(ModuleBuildFile.read(directory), parent);
+  }
+
+  /**
+   * Creates the project from its already read build file, resolving the defaults that the module
+   * inherits from its parent.
+   */
+  public static Project create(ModuleBuildFile buildFile, @Nullable Project parent) {
+    GradleContext context;
+    try (TraceSpan span = AnalyzerEvents.moduleContext(buildFile.getDirectory().getPath())) {
+      context = createContext(buildFile, parent);
+    }
     return new AutoValue_Project.Builder()
-        .setProjectDirectory(directory)
+        .setProjectDirectory(buildFile.getDirectory())
         .setContext(context)
         .build();
   }
@@ -58,33 +67,20 @@ public abstract class Project {
     return new AutoValue_Project.Builder();
   }
 
-  private static GradleContext createContext(File directory, @Nullable Project parent) {
-    // read the build file for the minSdkVersion
-    File buildFile = new File(directory, BUILD_GRADLE);
-    if (!buildFile.exists()) {
-      throw new RuntimeException(
-          "Invalid project directory with no gradle build file: " + buildFile.getAbsolutePath());
-    }
-    try {
-      int defaultMinSdkVersion = parent != null ? parent.getContext().getMinSdkVersion() : 1;
-      AndroidPluginVersion androidPluginVersion =
-          parent != null ? parent.getContext().getAndroidPluginVersion() : null;
-      String content = Files.asCharSource(buildFile, UTF_8).read();
-      GradleContext.Builder builder =
-          GroovyGradleParser.parseGradleBuildFile(
-              content, defaultMinSdkVersion, androidPluginVersion);
-      // try to read the manifest(s) in the project to determine if this project is for an onDemand
-      // module.
-      File manifestFile = new File(directory, MANIFEST);
-      boolean isOnDemand = manifestFile.exists() && isOnDemand(manifestFile);
-      builder.setOnDemand(isOnDemand);
-      return builder.build();
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
+  private static GradleContext createContext(ModuleBuildFile buildFile, @Nullable Project parent) {
+    int defaultMinSdkVersion = parent != null ? parent.getContext().getMinSdkVersion() : 1;
+    AndroidPluginVersion androidPluginVersion =
+        parent != null ? parent.getContext().getAndroidPluginVersion() : null;
+    return GroovyGradleParser.parseGradleBuildFile(
+            buildFile.getContent(),
+            buildFile.getAstNodes(),
+            defaultMinSdkVersion,
+            androidPluginVersion)
+        .setOnDemand(buildFile.getOnDemand())
+        .build();
   }
 
-  private static boolean isOnDemand(File manifestFile) {
+  static boolean isOnDemand(File manifestFile) {
     try (FileInputStream inputStream = new FileInputStream(manifestFile)) {
       XMLInputFactory factory = XMLInputFactory.newInstance();
       XMLEventReader eventReader = factory.createXMLEventReader(inputStream);
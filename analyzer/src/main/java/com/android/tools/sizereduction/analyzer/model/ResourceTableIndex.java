@@ -0,0 +1,419 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.model;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Index of the resources of an App Bundle module, streamed from its {@code resources.pb} without
+ * materializing the generated proto classes.
+ *
+ * <p>Every config variant of every resource is a row in parallel primitive arrays, holding the
+ * resource ID, the density and locale the variant targets and, for file resources, the file path.
+ * Strings are interned, so a table of tens of megabytes only costs a few bytes per variant.
+ */
+public final class ResourceTableIndex {
+
+  /** Density of the variants that do not target a specific density. */
+  public static final int DEFAULT_DENSITY = 0;
+
+  // Field numbers from aapt2's Resources.proto.
+  private static final int TABLE_PACKAGE = 2;
+  private static final int PACKAGE_ID = 1;
+  private static final int PACKAGE_TYPE = 3;
+  private static final int TYPE_ID = 1;
+  private static final int TYPE_NAME = 2;
+  private static final int TYPE_ENTRY = 3;
+  private static final int ENTRY_ID = 1;
+  private static final int ENTRY_NAME = 2;
+  private static final int ENTRY_CONFIG_VALUE = 6;
+  private static final int CONFIG_VALUE_CONFIG = 1;
+  private static final int CONFIG_VALUE_VALUE = 2;
+  private static final int CONFIG_LOCALE = 3;
+  private static final int CONFIG_DENSITY = 18;
+  private static final int VALUE_ITEM = 4;
+  private static final int ITEM_FILE = 5;
+  private static final int FILE_REFERENCE_PATH = 1;
+  private static final int ID_VALUE = 1;
+
+  private static final int NO_STRING = -1;
+
+  private final String[] strings;
+  // Per resource, sorted by resource ID.
+  private final int[] resourceIds;
+  private final int[] resourceNames;
+  private final int[] firstVariants;
+  // Per variant, grouped by resource.
+  private final int[] variantDensities;
+  private final int[] variantLocales;
+  private final int[] variantFilePaths;
+
+  private ResourceTableIndex(
+      String[] strings,
+      int[] resourceIds,
+      int[] resourceNames,
+      int[] firstVariants,
+      int[] variantDensities,
+      int[] variantLocales,
+      int[] variantFilePaths) {
+    this.strings = strings;
+    this.resourceIds = resourceIds;
+    this.resourceNames = resourceNames;
+    this.firstVariants = firstVariants;
+    this.variantDensities = variantDensities;
+    this.variantLocales = variantLocales;
+    this.variantFilePaths = variantFilePaths;
+  }
+
+  /** Builds the index from a serialized {@code ResourceTable} proto. */
+  public static ResourceTableIndex parse(InputStream resourceTable) throws IOException {
+    CodedInputStream input = CodedInputStream.newInstance(resourceTable);
+    // The default limit of 64 MB is below what the largest apps ship.
+    input.setSizeLimit(Integer.MAX_VALUE);
+    Builder builder = new Builder();
+    for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+      if (isMessage(tag, TABLE_PACKAGE)) {
+        int limit = input.pushLimit(input.readRawVarint32());
+        readPackage(input, builder);
+        input.popLimit(limit);
+      } else {
+        input.skipField(tag);
+      }
+    }
+    return builder.build();
+  }
+
+  /** Number of resources in the table. */
+  public int getResourceCount() {
+    return resourceIds.length;
+  }
+
+  /** Number of config variants, over all resources. */
+  public int getVariantCount() {
+    return variantDensities.length;
+  }
+
+  /** Returns the resource IDs, in ascending order. The returned array is a copy. */
+  public int[] getResourceIds() {
+    return resourceIds.clone();
+  }
+
+  /** Returns the name of the resource, such as {@code drawable/icon}, or null if it is unknown. */
+  @Nullable
+  public String getResourceName(int resourceId) {
+    int resource = Arrays.binarySearch(resourceIds, resourceId);
+    return resource < 0 ? null : strings[resourceNames[resource]];
+  }
+
+  /**
+   * Returns the rows of the variants of the resource, to be passed to the variant accessors, or an
+   * empty array if the resource is unknown.
+   */
+  public int[] getVariants(int resourceId) {
+    int resource = Arrays.binarySearch(resourceIds, resourceId);
+    if (resource < 0) {
+      return new int[0];
+    }
+    int first = firstVariants[resource];
+    int[] variants = new int[firstVariants[resource + 1] - first];
+    for (int i = 0; i < variants.length; i++) {
+      variants[i] = first + i;
+    }
+    return variants;
+  }
+
+  /** Returns the density targeted by the variant, or {@link #DEFAULT_DENSITY}. */
+  public int getDensity(int variant) {
+    return variantDensities[variant];
+  }
+
+  /** Returns the BCP-47 locale targeted by the variant, or an empty string. */
+  public String getLocale(int variant) {
+    int locale = variantLocales[variant];
+    return locale == NO_STRING ? "" : strings[locale];
+  }
+
+  /** Returns the path of the variant's file within the module, or null if it is not a file. */
+  @Nullable
+  public String getFilePath(int variant) {
+    int path = variantFilePaths[variant];
+    return path == NO_STRING ? null : strings[path];
+  }
+
+  private static void readPackage(CodedInputStream input, Builder builder) throws IOException {
+    int packageId = 0;
+    for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+      if (isMessage(tag, PACKAGE_ID)) {
+        packageId = readId(input);
+      } else if (isMessage(tag, PACKAGE_TYPE)) {
+        int limit = input.pushLimit(input.readRawVarint32());
+        readType(input, builder, packageId);
+        input.popLimit(limit);
+      } else {
+        input.skipField(tag);
+      }
+    }
+  }
+
+  private static void readType(CodedInputStream input, Builder builder, int packageId)
+      throws IOException {
+    int typeId = 0;
+    String typeName = "";
+    for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+      if (isMessage(tag, TYPE_ID)) {
+        typeId = readId(input);
+      } else if (isMessage(tag, TYPE_NAME)) {
+        typeName = input.readStringRequireUtf8();
+      } else if (isMessage(tag, TYPE_ENTRY)) {
+        int limit = input.pushLimit(input.readRawVarint32());
+        readEntry(input, builder, (packageId << 24) | (typeId << 16), typeName);
+        input.popLimit(limit);
+      } else {
+        input.skipField(tag);
+      }
+    }
+  }
+
+  private static void readEntry(
+      CodedInputStream input, Builder builder, int typeIdPrefix, String typeName)
+      throws IOException {
+    int entryId = 0;
+    String entryName = "";
+    boolean started = false;
+    for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+      if (isMessage(tag, ENTRY_ID)) {
+        entryId = readId(input);
+      } else if (isMessage(tag, ENTRY_NAME)) {
+        entryName = input.readStringRequireUtf8();
+      } else if (isMessage(tag, ENTRY_CONFIG_VALUE)) {
+        // Fields are serialized in field number order, so the ID and name are known by now.
+        if (!started) {
+          builder.startResource(typeIdPrefix | entryId, typeName + "/" + entryName);
+          started = true;
+        }
+        int limit = input.pushLimit(input.readRawVarint32());
+        readConfigValue(input, builder);
+        input.popLimit(limit);
+      } else {
+        input.skipField(tag);
+      }
+    }
+    if (!started) {
+      builder.startResource(typeIdPrefix | entryId, typeName + "/" + entryName);
+    }
+  }
+
+  private static void readConfigValue(CodedInputStream input, Builder builder)
+      throws IOException {
+    int density = DEFAULT_DENSITY;
+    String locale = "";
+    String filePath = null;
+    for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+      if (isMessage(tag, CONFIG_VALUE_CONFIG)) {
+        int limit = input.pushLimit(input.readRawVarint32());
+        for (int configTag = input.readTag(); configTag != 0; configTag = input.readTag()) {
+          if (isMessage(configTag, CONFIG_LOCALE)) {
+            locale = input.readStringRequireUtf8();
+          } else if (WireFormat.getTagFieldNumber(configTag) == CONFIG_DENSITY
+              && WireFormat.getTagWireType(configTag) == WireFormat.WIRETYPE_VARINT) {
+            density = input.readUInt32();
+          } else {
+            input.skipField(configTag);
+          }
+        }
+        input.popLimit(limit);
+      } else if (isMessage(tag, CONFIG_VALUE_VALUE)) {
+        int limit = input.pushLimit(input.readRawVarint32());
+        filePath = readFilePath(input);
+        input.popLimit(limit);
+      } else {
+        input.skipField(tag);
+      }
+    }
+    builder.addVariant(density, locale, filePath);
+  }
+
+  /** Reads a {@code Value}, returning the file path if it is a file reference. */
+  @Nullable
+  private static String readFilePath(CodedInputStream input) throws IOException {
+    String filePath = null;
+    for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+      if (isMessage(tag, VALUE_ITEM)) {
+        int itemLimit = input.pushLimit(input.readRawVarint32());
+        for (int itemTag = input.readTag(); itemTag != 0; itemTag = input.readTag()) {
+          if (isMessage(itemTag, ITEM_FILE)) {
+            int fileLimit = input.pushLimit(input.readRawVarint32());
+            for (int fileTag = input.readTag(); fileTag != 0; fileTag = input.readTag()) {
+              if (isMessage(fileTag, FILE_REFERENCE_PATH)) {
+                filePath = input.readStringRequireUtf8();
+              } else {
+                input.skipField(fileTag);
+              }
+            }
+            input.popLimit(fileLimit);
+          } else {
+            input.skipField(itemTag);
+          }
+        }
+        input.popLimit(itemLimit);
+      } else {
+        input.skipField(tag);
+      }
+    }
+    return filePath;
+  }
+
+  /** Reads one of the {@code PackageId}, {@code TypeId} or {@code EntryId} messages. */
+  private static int readId(CodedInputStream input) throws IOException {
+    int limit = input.pushLimit(input.readRawVarint32());
+    int id = 0;
+    for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+      if (WireFormat.getTagFieldNumber(tag) == ID_VALUE
+          && WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_VARINT) {
+        id = input.readUInt32();
+      } else {
+        input.skipField(tag);
+      }
+    }
+    input.popLimit(limit);
+    return id;
+  }
+
+  private static boolean isMessage(int tag, int fieldNumber) {
+    return WireFormat.getTagFieldNumber(tag) == fieldNumber
+        && WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED;
+  }
+
+  /** Accumulates the index rows in growable primitive arrays while the table is streamed. */
+  @VisibleForTesting
+  static final class Builder {
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringIndexes = new HashMap<>();
+    private final IntArray resourceIds = new IntArray();
+    private final IntArray resourceNames = new IntArray();
+    private final IntArray firstVariants = new IntArray();
+    private final IntArray variantDensities = new IntArray();
+    private final IntArray variantLocales = new IntArray();
+    private final IntArray variantFilePaths = new IntArray();
+
+    void startResource(int resourceId, String name) {
+      resourceIds.add(resourceId);
+      resourceNames.add(intern(name));
+      firstVariants.add(variantDensities.size());
+    }
+
+    void addVariant(int density, String locale, @Nullable String filePath) {
+      variantDensities.add(density);
+      variantLocales.add(locale.isEmpty() ? NO_STRING : intern(locale));
+      variantFilePaths.add(filePath == null ? NO_STRING : intern(filePath));
+    }
+
+    ResourceTableIndex build() {
+      int resourceCount = resourceIds.size();
+      firstVariants.add(variantDensities.size());
+      int[] ids = resourceIds.toArray();
+      int[] names = resourceNames.toArray();
+      int[] firsts = firstVariants.toArray();
+      int[] densities = variantDensities.toArray();
+      int[] locales = variantLocales.toArray();
+      int[] filePaths = variantFilePaths.toArray();
+
+      // Tables are normally written in ID order already, only reorder them if they are not.
+      boolean sorted = true;
+      for (int i = 1; i < resourceCount && sorted; i++) {
+        sorted = ids[i - 1] < ids[i];
+      }
+      if (!sorted) {
+        Integer[] order = new Integer[resourceCount];
+        for (int i = 0; i < resourceCount; i++) {
+          order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(ids[a], ids[b]));
+        int[] sortedIds = new int[resourceCount];
+        int[] sortedNames = new int[resourceCount];
+        int[] sortedFirsts = new int[resourceCount + 1];
+        int[] sortedDensities = new int[densities.length];
+        int[] sortedLocales = new int[locales.length];
+        int[] sortedFilePaths = new int[filePaths.length];
+        int variant = 0;
+        for (int i = 0; i < resourceCount; i++) {
+          int resource = order[i];
+          sortedIds[i] = ids[resource];
+          sortedNames[i] = names[resource];
+          sortedFirsts[i] = variant;
+          for (int row = firsts[resource]; row < firsts[resource + 1]; row++, variant++) {
+            sortedDensities[variant] = densities[row];
+            sortedLocales[variant] = locales[row];
+            sortedFilePaths[variant] = filePaths[row];
+          }
+        }
+        sortedFirsts[resourceCount] = variant;
+        return new ResourceTableIndex(
+            strings.toArray(new String[0]),
+            sortedIds,
+            sortedNames,
+            sortedFirsts,
+            sortedDensities,
+            sortedLocales,
+            sortedFilePaths);
+      }
+      return new ResourceTableIndex(
+          strings.toArray(new String[0]), ids, names, firsts, densities, locales, filePaths);
+    }
+
+    private int intern(String string) {
+      Integer index = stringIndexes.get(string);
+      if (index == null) {
+        index = strings.size();
+        strings.add(string);
+        stringIndexes.put(string, index);
+      }
+      return index;
+    }
+  }
+
+  /** Growable array of ints, to avoid boxing every row. */
+  private static final class IntArray {
+    private int[] values = new int[64];
+    private int size;
+
+    void add(int value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    int size() {
+      return size;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.model;
+
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.CodeVisitorSupport;
+import org.codehaus.groovy.ast.builder.AstBuilder;
+import org.codehaus.groovy.ast.expr.BinaryExpression;
+import org.codehaus.groovy.ast.expr.ConstantExpression;
+import org.codehaus.groovy.ast.expr.ConstructorCallExpression;
+import org.codehaus.groovy.ast.expr.Expression;
+import org.codehaus.groovy.ast.expr.ListExpression;
+import org.codehaus.groovy.ast.expr.MethodCallExpression;
+import org.codehaus.groovy.ast.expr.PropertyExpression;
+import org.codehaus.groovy.ast.expr.TupleExpression;
+import org.codehaus.groovy.control.CompilePhase;
+
+/**
+ * This class parses a settings.gradle file for the modules included in the build. It recognizes
+ * the {@code include} statements, along with {@code projectDir} assignments of the form {@code
+ * project(':name').projectDir = file('path')} or {@code new File(rootDir, 'path')}. As with gradle,
+ * including a nested module also includes its parents, and a module without an explicit directory
+ * lives in the directory of its parent under its own name. Modules included through computed
+ * values, such as variables, interpolated strings or loops over directories, cannot be known
+ * without running the script.
+ */
+public final class SettingsGradleParser extends CodeVisitorSupport {
+
+  public static final String SETTINGS_GRADLE = "settings.gradle";
+
+  private final File rootDirectory;
+  private final Set<String> includedPaths = new LinkedHashSet<>();
+  private final Map<String, File> projectDirectories = new HashMap<>();
+  private boolean hasComputedIncludes = false;
+
+  private SettingsGradleParser(File rootDirectory) {
+    this.rootDirectory = rootDirectory;
+  }
+
+  /**
+   * Returns the directories of the modules included by the given settings.gradle content, in the
+   * order they are included. The root module itself is not part of the list. Returns an empty
+   * optional if any module is included through a computed value, as the list would then be
+   * incomplete.
+   */
+  public static Optional<ImmutableList<File>> parseIncludedModules(
+      String content, File rootDirectory) {
+    List<ASTNode> astNodes = new AstBuilder().buildFromString(CompilePhase.CONVERSION, content);
+    SettingsGradleParser parser = new SettingsGradleParser(rootDirectory);
+    for (ASTNode node : astNodes) {
+      if (node instanceof ClassNode) {
+        // class nodes do not implement the visit method, and will throw a runtime exception.
+        continue;
+      }
+      node.visit(parser);
+    }
+    if (parser.hasComputedIncludes) {
+      return Optional.empty();
+    }
+    ImmutableList.Builder<File> directories = ImmutableList.builder();
+    for (String path : parser.includedPaths) {
+      directories.add(parser.getProjectDirectory(path));
+    }
+    return Optional.of(directories.build());
+  }
+
+  @Override
+  public void visitMethodCallExpression(MethodCallExpression expression) {
+    if (expression.isImplicitThis()
+        && "include".equals(expression.getMethodAsString())
+        && expression.getArguments() instanceof TupleExpression) {
+      for (Expression argument : ((TupleExpression) expression.getArguments()).getExpressions()) {
+        if (argument instanceof ListExpression) {
+          ((ListExpression) argument).getExpressions().forEach(this::include);
+        } else {
+          include(argument);
+        }
+      }
+    }
+    super.visitMethodCallExpression(expression);
+  }
+
+  @Override
+  public void visitBinaryExpression(BinaryExpression expression) {
+    if (expression.getOperation().getText().equals("=")
+        && expression.getLeftExpression() instanceof PropertyExpression) {
+      PropertyExpression property = (PropertyExpression) expression.getLeftExpression();
+      String projectPath = getProjectCallPath(property.getObjectExpression());
+      File directory = getDirectory(expression.getRightExpression());
+      if ("projectDir".equals(property.getPropertyAsString())
+          && projectPath != null
+          && directory != null) {
+        projectDirectories.put(projectPath, directory);
+      }
+    }
+    super.visitBinaryExpression(expression);
+  }
+
+  private void include(Expression argument) {
+    String path = getConstantString(argument);
+    if (path == null) {
+      hasComputedIncludes = true;
+      return;
+    }
+    String normalizedPath = normalizePath(path);
+    // gradle includes every ancestor of a nested module as well.
+    int separator = normalizedPath.indexOf(':', 1);
+    while (separator > 0) {
+      includedPaths.add(normalizedPath.substring(0, separator));
+      separator = normalizedPath.indexOf(':', separator + 1);
+    }
+    includedPaths.add(normalizedPath);
+  }
+
+  private File getProjectDirectory(String path) {
+    File directory = projectDirectories.get(path);
+    if (directory != null) {
+      return directory;
+    }
+    int separator = path.lastIndexOf(':');
+    File parentDirectory =
+        separator > 0 ? getProjectDirectory(path.substring(0, separator)) : rootDirectory;
+    return new File(parentDirectory, path.substring(separator + 1));
+  }
+
+  /** Returns the module path in a {@code project(':name')} call, or null for other expressions. */
+  @Nullable
+  private static String getProjectCallPath(Expression expression) {
+    if (!(expression instanceof MethodCallExpression)) {
+      return null;
+    }
+    MethodCallExpression methodCall = (MethodCallExpression) expression;
+    List<Expression> arguments = getArguments(methodCall.getArguments());
+    if (!"project".equals(methodCall.getMethodAsString()) || arguments.size() != 1) {
+      return null;
+    }
+    String path = getConstantString(arguments.get(0));
+    return path != null ? normalizePath(path) : null;
+  }
+
+  /**
+   * Returns the directory of a {@code file('path')} call or a {@code new File(rootDir, 'path')}
+   * construction, or null for other expressions.
+   */
+  @Nullable
+  private File getDirectory(Expression expression) {
+    List<Expression> arguments;
+    if (expression instanceof MethodCallExpression
+        && "file".equals(((MethodCallExpression) expression).getMethodAsString())) {
+      arguments = getArguments(((MethodCallExpression) expression).getArguments());
+    } else if (expression instanceof ConstructorCallExpression
+        && expression.getType().getNameWithoutPackage().equals("File")) {
+      arguments = getArguments(((ConstructorCallExpression) expression).getArguments());
+      if (arguments.size() == 2 && isRootDirectory(arguments.get(0))) {
+        arguments = arguments.subList(1, 2);
+      }
+    } else {
+      return null;
+    }
+    String path = arguments.size() == 1 ? getConstantString(arguments.get(0)) : null;
+    if (path == null) {
+      return null;
+    }
+    File directory = new File(path);
+    return directory.isAbsolute() ? directory : new File(rootDirectory, path);
+  }
+
+  private static boolean isRootDirectory(Expression expression) {
+    String name = expression.getText();
+    return name.equals("rootDir") || name.equals("settingsDir");
+  }
+
+  private static List<Expression> getArguments(Expression arguments) {
+    return arguments instanceof TupleExpression
+        ? ((TupleExpression) arguments).getExpressions()
+        : new ArrayList<>();
+  }
+
+  @Nullable
+  private static String getConstantString(Expression expression) {
+    if (expression instanceof ConstantExpression
+        && ((ConstantExpression) expression).getValue() instanceof String) {
+      return (String) ((ConstantExpression) expression).getValue();
+    }
+    return null;
+  }
+
+  /** Prefixes the module path with the root separator, as gradle accepts it both ways. */
+  private static String normalizePath(String path) {
+    return path.startsWith(":") ? path : ":" + path;
+  }
+}
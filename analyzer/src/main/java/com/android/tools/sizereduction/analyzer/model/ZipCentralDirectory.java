@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.model;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the entry metadata of a zip archive straight from its memory-mapped central directory,
+ * without decompressing or even touching the entry data.
+ *
+ * <p>Unlike {@link java.util.zip.ZipFile}, this exposes where each entry is located in the
+ * archive, which is needed to check how the entries are laid out.
+ */
+public final class ZipCentralDirectory implements Closeable {
+
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+  private static final int MAX_COMMENT_SIZE = 0xffff;
+  private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+  private static final int ZIP64_LOCATOR_SIZE = 20;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE = 56;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int CENTRAL_HEADER_SIZE = 46;
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int LOCAL_HEADER_SIZE = 30;
+  private static final int ZIP64_EXTRA_FIELD_ID = 0x0001;
+  private static final long ZIP64_MARKER = 0xffffffffL;
+
+  private final FileChannel channel;
+  private final ImmutableList<Entry> entries;
+
+  private ZipCentralDirectory(FileChannel channel, ImmutableList<Entry> entries) {
+    this.channel = channel;
+    this.entries = entries;
+  }
+
+  /** Opens the zip archive at the given path and reads its central directory. */
+  public static ZipCentralDirectory open(Path zipPath) throws IOException {
+    FileChannel channel = FileChannel.open(zipPath, StandardOpenOption.READ);
+    try {
+      return new ZipCentralDirectory(channel, readEntries(channel));
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /** Returns the entries of the archive, in central directory order. */
+  public ImmutableList<Entry> getEntries() {
+    return entries;
+  }
+
+  /**
+   * Returns the offset within the archive at which the data of the given entry starts. This reads
+   * the entry's local file header, as its extra field may differ from the central directory one.
+   */
+  public long getDataOffset(Entry entry) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    readFully(header, entry.getLocalHeaderOffset());
+    if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+      throw new ZipException("Invalid local file header for " + entry.getName());
+    }
+    int nameLength = Short.toUnsignedInt(header.getShort(26));
+    int extraLength = Short.toUnsignedInt(header.getShort(28));
+    return entry.getLocalHeaderOffset() + LOCAL_HEADER_SIZE + nameLength + extraLength;
+  }
+
+  /**
+   * Maps the data of the given entry into memory without copying it onto the heap. The data is
+   * only the entry's content if the entry is stored uncompressed.
+   */
+  public ByteBuffer mapData(Entry entry) throws IOException {
+    return channel.map(MapMode.READ_ONLY, getDataOffset(entry), entry.getCompressedSize());
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private static ImmutableList<Entry> readEntries(FileChannel channel) throws IOException {
+    long fileSize = channel.size();
+    int tailSize =
+        (int)
+            Math.min(
+                fileSize, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE + ZIP64_LOCATOR_SIZE);
+    if (tailSize < END_OF_CENTRAL_DIRECTORY_SIZE) {
+      throw new ZipException("Not a zip archive");
+    }
+    ByteBuffer tail =
+        channel
+            .map(MapMode.READ_ONLY, fileSize - tailSize, tailSize)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    int end = findEndOfCentralDirectory(tail);
+    long directorySize = Integer.toUnsignedLong(tail.getInt(end + 12));
+    long directoryOffset = Integer.toUnsignedLong(tail.getInt(end + 16));
+
+    int locator = end - ZIP64_LOCATOR_SIZE;
+    if (locator >= 0 && tail.getInt(locator) == ZIP64_LOCATOR_SIGNATURE) {
+      ByteBuffer zip64End =
+          ByteBuffer.allocate(ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      readFully(channel, zip64End, tail.getLong(locator + 8));
+      if (zip64End.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+        throw new ZipException("Invalid zip64 end of central directory record");
+      }
+      directorySize = zip64End.getLong(40);
+      directoryOffset = zip64End.getLong(48);
+    }
+    if (directorySize > Integer.MAX_VALUE
+        || directoryOffset < 0
+        || directoryOffset + directorySize > fileSize) {
+      throw new ZipException("Invalid central directory location");
+    }
+
+    ByteBuffer directory =
+        channel
+            .map(MapMode.READ_ONLY, directoryOffset, directorySize)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    ImmutableList.Builder<Entry> entries = ImmutableList.builder();
+    int position = 0;
+    while (position + CENTRAL_HEADER_SIZE <= directory.limit()) {
+      if (directory.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+        throw new ZipException(
+            "Invalid central directory header at offset " + (directoryOffset + position));
+      }
+      int method = Short.toUnsignedInt(directory.getShort(position + 10));
+      long compressedSize = Integer.toUnsignedLong(directory.getInt(position + 20));
+      long uncompressedSize = Integer.toUnsignedLong(directory.getInt(position + 24));
+      int nameLength = Short.toUnsignedInt(directory.getShort(position + 28));
+      int extraLength = Short.toUnsignedInt(directory.getShort(position + 30));
+      int commentLength = Short.toUnsignedInt(directory.getShort(position + 32));
+      long localHeaderOffset = Integer.toUnsignedLong(directory.getInt(position + 42));
+      int nameStart = position + CENTRAL_HEADER_SIZE;
+      int extraStart = nameStart + nameLength;
+      int next = extraStart + extraLength + commentLength;
+      if (next > directory.limit()) {
+        throw new ZipException("Truncated central directory");
+      }
+
+      String name = decodeName(directory, nameStart, nameLength);
+      // Sizes and offsets that do not fit in 32 bits are moved to the zip64 extra field, in this
+      // order and only for the values that overflowed.
+      int zip64Field = findZip64ExtraField(directory, extraStart, extraLength);
+      if (zip64Field >= 0) {
+        if (uncompressedSize == ZIP64_MARKER) {
+          uncompressedSize = directory.getLong(zip64Field);
+          zip64Field += Long.BYTES;
+        }
+        if (compressedSize == ZIP64_MARKER) {
+          compressedSize = directory.getLong(zip64Field);
+          zip64Field += Long.BYTES;
+        }
+        if (localHeaderOffset == ZIP64_MARKER) {
+          localHeaderOffset = directory.getLong(zip64Field);
+        }
+      }
+      entries.add(
+          new AutoValue_ZipCentralDirectory_Entry(
+              name, method, compressedSize, uncompressedSize, localHeaderOffset));
+      position = next;
+    }
+    return entries.build();
+  }
+
+  private static int findEndOfCentralDirectory(ByteBuffer tail) throws ZipException {
+    // The record is followed by a variable length comment, so scan backwards for its signature.
+    for (int position = tail.limit() - END_OF_CENTRAL_DIRECTORY_SIZE;
+        position >= 0;
+        position--) {
+      int commentLength = Short.toUnsignedInt(tail.getShort(position + 20));
+      if (tail.getInt(position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE
+          && position + END_OF_CENTRAL_DIRECTORY_SIZE + commentLength <= tail.limit()) {
+        return position;
+      }
+    }
+    throw new ZipException("End of central directory record not found");
+  }
+
+  private static int findZip64ExtraField(ByteBuffer directory, int start, int length) {
+    int position = start;
+    while (position + 4 <= start + length) {
+      int id = Short.toUnsignedInt(directory.getShort(position));
+      int size = Short.toUnsignedInt(directory.getShort(position + 2));
+      if (id == ZIP64_EXTRA_FIELD_ID) {
+        return position + 4;
+      }
+      position += 4 + size;
+    }
+    return -1;
+  }
+
+  private static String decodeName(ByteBuffer directory, int start, int length) {
+    ByteBuffer name = directory.duplicate();
+    name.position(start);
+    name.limit(start + length);
+    return UTF_8.decode(name).toString();
+  }
+
+  private void readFully(ByteBuffer buffer, long offset) throws IOException {
+    readFully(channel, buffer, offset);
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long offset)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, offset + buffer.position()) < 0) {
+        throw new EOFException("Unexpected end of zip archive");
+      }
+    }
+  }
+
+  /** Metadata of a single entry, as recorded in the central directory. */
+  @AutoValue
+  public abstract static class Entry {
+
+    /** Path of the entry within the archive. */
+    public abstract String getName();
+
+    /** Compression method, such as {@link java.util.zip.ZipEntry#STORED}. */
+    public abstract int getMethod();
+
+    public abstract long getCompressedSize();
+
+    public abstract long getUncompressedSize();
+
+    /** Offset within the archive of the entry's local file header. */
+    public abstract long getLocalHeaderOffset();
+  }
+}
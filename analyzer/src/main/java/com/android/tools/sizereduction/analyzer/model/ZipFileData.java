@@ -19,24 +19,36 @@ package com.android.tools.sizereduction.analyzer.model;
 import static com.google.common.base.Preconditions.checkState;
 
 import com.google.errorprone.annotations.MustBeClosed;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import javax.annotation.Nullable;
 
 /** Supplies the file data for a particular entry in a zipFile. This is not threadsafe. */
 public final class ZipFileData implements FileData {
 
   private final ZipFile zipFile;
   private final ZipEntry entry;
+  @Nullable private final byte[] content;
   private InputStream inputStream;
   private Path cachedPathWithinModule;
 
   public ZipFileData(ZipFile zipFile, ZipEntry entry) {
+    this(zipFile, entry, /* content= */ null);
+  }
+
+  /**
+   * Creates the file data of an entry whose uncompressed content was already read, in which case
+   * the input stream is served from memory instead of inflating the entry again.
+   */
+  public ZipFileData(ZipFile zipFile, ZipEntry entry, @Nullable byte[] content) {
     this.zipFile = zipFile;
     this.entry = entry;
+    this.content = content;
   }
 
   /** Returns the input stream for this zipFile. */
@@ -45,6 +57,10 @@ public final class ZipFileData implements FileData {
   public InputStream getInputStream() {
     checkState(inputStream == null, "input stream was already supplied and opened");
 
+    if (content != null) {
+      inputStream = new ByteArrayInputStream(content);
+      return inputStream;
+    }
     try {
       inputStream = zipFile.getInputStream(entry);
     } catch (IOException e) {
@@ -16,9 +16,21 @@
 
 package com.android.tools.sizereduction.analyzer.suggesters;
 
+import com.google.common.collect.ImmutableSet;
+import java.nio.file.Path;
+
 /** Interface for automatically applying a fix to project, by implementing a given suggestion. */
 public interface AutoFix {
 
   /** Applies the automatic fix. */
   void apply();
+
+  /**
+   * Returns the files read or written when applying the fix. Fixes that share a file are never
+   * applied concurrently. An empty set means the files are unknown, and the fix is then applied on
+   * its own.
+   */
+  default ImmutableSet<Path> getAffectedFiles() {
+    return ImmutableSet.of();
+  }
 }
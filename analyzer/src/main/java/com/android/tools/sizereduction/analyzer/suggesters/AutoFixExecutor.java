@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Joiner;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Applies autofixes concurrently. Fixes that touch a common file are applied one after the other,
+ * in the order they were given, so that no two fixes edit the same file at once.
+ */
+public final class AutoFixExecutor {
+
+  private final int threads;
+
+  public AutoFixExecutor(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("At least one thread is needed, got " + threads);
+    }
+    this.threads = threads;
+  }
+
+  /** Applies all the fixes, collecting the failures instead of stopping at the first one. */
+  public Report execute(Collection<AutoFix> autoFixes) {
+    return execute(autoFixes, new Listener() {});
+  }
+
+  /**
+   * Applies the fixes like {@link #execute(Collection)}, reporting each fix to the listener as it
+   * completes and no longer starting new fixes once the listener reports a cancellation.
+   */
+  public Report execute(Collection<AutoFix> autoFixes, Listener listener) {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    List<List<AutoFix>> independentGroups = new ArrayList<>();
+    List<AutoFix> unknownFiles = new ArrayList<>();
+    groupByAffectedFiles(autoFixes, independentGroups, unknownFiles);
+
+    List<String> failures = new ArrayList<>();
+    int applied = 0;
+    if (threads == 1 || independentGroups.size() <= 1) {
+      for (List<AutoFix> group : independentGroups) {
+        applied += applyInOrder(group, failures, listener);
+      }
+    } else {
+      ExecutorService executor =
+          Executors.newFixedThreadPool(Math.min(threads, independentGroups.size()));
+      try {
+        List<List<String>> groupFailures = new ArrayList<>();
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (List<AutoFix> group : independentGroups) {
+          List<String> failuresOfGroup = new ArrayList<>();
+          groupFailures.add(failuresOfGroup);
+          futures.add(executor.submit(() -> applyInOrder(group, failuresOfGroup, listener)));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+          applied += futures.get(i).get();
+          failures.addAll(groupFailures.get(i));
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      } catch (ExecutionException e) {
+        throw new RuntimeException(e.getCause());
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+    // Fixes that do not declare their files could touch anything, so they run on their own.
+    applied += applyInOrder(unknownFiles, failures, listener);
+
+    return Report.create(applied, ImmutableList.copyOf(failures), stopwatch.elapsed(NANOSECONDS));
+  }
+
+  /**
+   * Splits the fixes into groups that share no files with each other, keeping the original order of
+   * the fixes within each group.
+   */
+  private static void groupByAffectedFiles(
+      Collection<AutoFix> autoFixes, List<List<AutoFix>> groups, List<AutoFix> unknownFiles) {
+    // Union-find over the fixes, joining every fix with the last fix seen for each of its files.
+    List<AutoFix> fixes = new ArrayList<>();
+    List<Integer> parents = new ArrayList<>();
+    Map<Path, Integer> lastFixForFile = new HashMap<>();
+    for (AutoFix autoFix : autoFixes) {
+      ImmutableSet<Path> files = autoFix.getAffectedFiles();
+      if (files.isEmpty()) {
+        unknownFiles.add(autoFix);
+        continue;
+      }
+      int index = fixes.size();
+      fixes.add(autoFix);
+      parents.add(index);
+      for (Path file : files) {
+        Integer previous = lastFixForFile.put(file.toAbsolutePath().normalize(), index);
+        if (previous != null) {
+          parents.set(find(parents, previous), find(parents, index));
+        }
+      }
+    }
+
+    Map<Integer, List<AutoFix>> groupsByRoot = new LinkedHashMap<>();
+    for (int i = 0; i < fixes.size(); i++) {
+      groupsByRoot.computeIfAbsent(find(parents, i), root -> new ArrayList<>()).add(fixes.get(i));
+    }
+    groups.addAll(groupsByRoot.values());
+  }
+
+  private static int find(List<Integer> parents, int index) {
+    while (parents.get(index) != index) {
+      parents.set(index, parents.get(parents.get(index)));
+      index = parents.get(index);
+    }
+    return index;
+  }
+
+  /** Applies the fixes one after the other, returning the number of fixes that succeeded. */
+  private static int applyInOrder(
+      List<AutoFix> autoFixes, List<String> failures, Listener listener) {
+    int applied = 0;
+    for (AutoFix autoFix : autoFixes) {
+      if (listener.isCancelled()) {
+        break;
+      }
+      try {
+        autoFix.apply();
+      } catch (RuntimeException e) {
+        failures.add(describe(autoFix) + ": " + e.getMessage());
+        listener.fixFailed(autoFix, e);
+        continue;
+      }
+      applied++;
+      listener.fixApplied(autoFix);
+    }
+    return applied;
+  }
+
+  private static String describe(AutoFix autoFix) {
+    ImmutableSet<Path> files = autoFix.getAffectedFiles();
+    return files.isEmpty() ? autoFix.getClass().getSimpleName() : Joiner.on(", ").join(files);
+  }
+
+  /**
+   * Follows the progress of an execution. The methods are called from the threads applying the
+   * fixes, possibly concurrently.
+   */
+  public interface Listener {
+    /** Whether to stop starting new fixes. Fixes already started are left to finish. */
+    default boolean isCancelled() {
+      return false;
+    }
+
+    /** Called once the fix has been applied. */
+    default void fixApplied(AutoFix autoFix) {}
+
+    /** Called once the fix has failed to apply. */
+    default void fixFailed(AutoFix autoFix, RuntimeException failure) {}
+  }
+
+  /** Outcome of applying a batch of autofixes. */
+  @AutoValue
+  public abstract static class Report {
+
+    static Report create(int appliedCount, ImmutableList<String> failures, long elapsedNanos) {
+      return new AutoValue_AutoFixExecutor_Report(appliedCount, failures, elapsedNanos);
+    }
+
+    public abstract int getAppliedCount();
+
+    /** Descriptions of the fixes that could not be applied, along with the reason. */
+    public abstract ImmutableList<String> getFailures();
+
+    public abstract long getElapsedNanos();
+
+    /** Returns the number of fixes applied per second. */
+    public double getThroughput() {
+      double elapsedSeconds = Math.max(1, getElapsedNanos()) / (double) SECONDS.toNanos(1);
+      return getAppliedCount() / elapsedSeconds;
+    }
+  }
+}
@@ -25,4 +25,12 @@ public interface BundleEntrySuggester {
 
   /** Generates suggestions for a bundle ZIP file entry. */
   ImmutableList<Suggestion> processBundleZipEntry(BundleContext context, FileData entry);
+
+  /**
+   * Returns the bundle ZIP entries this suggester wants to be called for. Entries that do not
+   * match are never handed to the suggester.
+   */
+  default EntryInterests getBundleEntryInterests() {
+    return EntryInterests.all();
+  }
 }
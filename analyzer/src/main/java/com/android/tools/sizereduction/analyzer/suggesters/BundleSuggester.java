@@ -18,6 +18,7 @@ package com.android.tools.sizereduction.analyzer.suggesters;
 
 import com.android.tools.build.bundletool.model.AppBundle;
 import com.android.tools.sizereduction.analyzer.model.BundleContext;
+import com.android.tools.sizereduction.analyzer.model.BundleResourceTables;
 import com.google.common.collect.ImmutableList;
 import java.util.zip.ZipFile;
 
@@ -27,4 +28,19 @@ public interface BundleSuggester {
   /** Generates suggestions for an App Bundle file given as a ZIP file. */
   ImmutableList<Suggestion> processBundle(
       BundleContext context, AppBundle bundle, ZipFile bundleZip);
+
+  /**
+   * Generates suggestions for an App Bundle file, with access to the resource tables of its
+   * modules. The tables are indexed once per bundle and shared by all the suggesters. The bundle
+   * given by {@link com.android.tools.sizereduction.analyzer.analyzers.BundleAnalyzer} is loaded
+   * without its {@code resources.pb} files, so its modules have no resource table and suggesters
+   * must read the resources through these indexes.
+   */
+  default ImmutableList<Suggestion> processBundle(
+      BundleContext context,
+      AppBundle bundle,
+      ZipFile bundleZip,
+      BundleResourceTables resourceTables) {
+    return processBundle(context, bundle, bundleZip);
+  }
 }
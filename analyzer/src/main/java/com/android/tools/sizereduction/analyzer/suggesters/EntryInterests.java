@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Ascii;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.nio.file.Path;
+
+/**
+ * The entries an entry suggester wants to be called for. Analyzers only hand an entry to the
+ * suggesters whose interests match it, so a suggester must return no suggestion for the entries
+ * its interests exclude.
+ */
+@AutoValue
+public abstract class EntryInterests {
+
+  private static final EntryInterests ALL = builder().build();
+
+  /** Interests matching every entry. */
+  public static EntryInterests all() {
+    return ALL;
+  }
+
+  public static Builder builder() {
+    return new AutoValue_EntryInterests.Builder()
+        .setExtensions(ImmutableSet.of())
+        .setPathPrefixes(ImmutableList.of())
+        .setMinSize(0)
+        .setIncludeOnDemand(true)
+        .setReadsContent(true);
+  }
+
+  /** Gets the lower case file extensions of the matching entries, any extension when empty. */
+  public abstract ImmutableSet<String> getExtensions();
+
+  /**
+   * Gets the directories within the module that the matching entries are under, any directory when
+   * empty.
+   */
+  public abstract ImmutableList<String> getPathPrefixes();
+
+  /** Gets the minimum uncompressed size, in bytes, of the matching entries. */
+  public abstract long getMinSize();
+
+  /** Whether entries of on demand modules match. */
+  public abstract boolean getIncludeOnDemand();
+
+  /**
+   * Whether the suggester reads the content of the matching entries, rather than only their
+   * metadata. A pipelined analysis reads such entries ahead of time.
+   */
+  public abstract boolean getReadsContent();
+
+  /** Returns a builder initialized with these interests. */
+  public abstract Builder toBuilder();
+
+  /** Returns whether an entry with the given extension, path, size and module matches. */
+  public boolean matches(String extension, Path pathWithinModule, long size, boolean onDemand) {
+    if (size < getMinSize() || (onDemand && !getIncludeOnDemand())) {
+      return false;
+    }
+    if (!getExtensions().isEmpty() && !getExtensions().contains(extension)) {
+      return false;
+    }
+    return getPathPrefixes().isEmpty()
+        || getPathPrefixes().stream().anyMatch(pathWithinModule::startsWith);
+  }
+
+  /** Builder for the {@link EntryInterests}. */
+  @AutoValue.Builder
+  public abstract static class Builder {
+
+    /** Set the file extensions of the matching entries. */
+    public abstract Builder setExtensions(ImmutableSet<String> extensions);
+
+    /** Set the directories within the module that the matching entries are under. */
+    public abstract Builder setPathPrefixes(ImmutableList<String> pathPrefixes);
+
+    /** Set the minimum uncompressed size of the matching entries. */
+    public abstract Builder setMinSize(long minSize);
+
+    /** Set whether entries of on demand modules match. */
+    public abstract Builder setIncludeOnDemand(boolean includeOnDemand);
+
+    /** Set whether the suggester reads the content of the matching entries. */
+    public abstract Builder setReadsContent(boolean readsContent);
+
+    abstract EntryInterests autoBuild();
+
+    /** Build the interests object. */
+    public EntryInterests build() {
+      EntryInterests interests = autoBuild();
+      checkArgument(
+          interests.getExtensions().stream().allMatch(ext -> ext.equals(Ascii.toLowerCase(ext))),
+          "Extensions must be lower case.");
+      return interests;
+    }
+  }
+}
@@ -25,4 +25,12 @@ public interface ProjectTreeSuggester {
 
   /** Generates suggestions for an Android Studio project file. */
   ImmutableList<Suggestion> processProjectEntry(GradleContext context, FileData fileData);
+
+  /**
+   * Returns the project files this suggester wants to be called for. Files that do not match are
+   * never handed to the suggester.
+   */
+  default EntryInterests getProjectEntryInterests() {
+    return EntryInterests.all();
+  }
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ServiceLoader;
+
+/**
+ * Service provider interface through which suggesters packaged outside of the analyzer are added
+ * to the analysis.
+ *
+ * <p>Implementations are discovered with a {@link ServiceLoader}: a jar on the class path lists
+ * them in a {@code META-INF/services} file named after the fully qualified name of this interface.
+ * The provided entry suggesters are dispatched through their declared interests like the built-in
+ * ones, and must be safe to call concurrently when the analysis runs on several threads.
+ */
+public interface SuggesterProvider {
+
+  /** Returns the suggesters operating on the entire bundle. */
+  default ImmutableList<BundleSuggester> getBundleSuggesters() {
+    return ImmutableList.of();
+  }
+
+  /** Returns the suggesters operating on the individual bundle ZIP entries. */
+  default ImmutableList<BundleEntrySuggester> getBundleEntrySuggesters() {
+    return ImmutableList.of();
+  }
+
+  /** Returns the suggesters operating on each module of a project. */
+  default ImmutableList<ProjectSuggester> getProjectSuggesters() {
+    return ImmutableList.of();
+  }
+
+  /** Returns the suggesters operating on the individual project files. */
+  default ImmutableList<ProjectTreeSuggester> getProjectTreeSuggesters() {
+    return ImmutableList.of();
+  }
+
+  /** Loads the providers installed on the class path. */
+  static ImmutableList<SuggesterProvider> loadInstalled() {
+    return ImmutableList.copyOf(ServiceLoader.load(SuggesterProvider.class));
+  }
+}
@@ -31,6 +31,7 @@ public abstract class Suggestion {
     BUNDLE_CONFIG,
     BUNDLE_BASE,
     LIBRARIES,
+    NATIVE_LIBS,
   }
 
   /** The specific issue type for a given suggestion. */
@@ -42,12 +43,16 @@ public abstract class Suggestion {
     PROGUARD_EMPTY_MAP,
     PROGUARD_NO_SHRINKING,
     PROGUARD_NO_OBFUSCATION,
+    PROGUARD_UNOBFUSCATED_PACKAGES,
     QUESTIONABLE_FILE,
     BUNDLES_OLD_GRADLE_PLUGIN,
     BUNDLES_NO_ABI_SPLITTING,
     BUNDLES_NO_DENSITY_SPLITTING,
     BUNDLES_NO_LANGUAGE_SPLITTING,
     BUNDLES_NO_UNCOMPRESSED_NATIVE_LIBS,
+    BUNDLES_POINTLESS_COMPRESSION,
+    APK_UNALIGNED_NATIVE_LIBS,
+    NATIVE_LIBS_UNSTRIPPED,
     BUNDLE_BASE_LARGE_FILES,
     LIBRARY_SHOULD_BE_EXTRACTED_TO_FEATURE_SPLITS,
     NONOPTIMAL_LIBRARY,
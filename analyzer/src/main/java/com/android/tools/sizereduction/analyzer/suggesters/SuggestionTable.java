@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters;
+
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.Category;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.IssueType;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Column oriented view of the suggestions of an analysis, which the reports group and sort.
+ *
+ * <p>Each suggestion is a row, stored as enum ordinals, a primitive savings estimate and references
+ * to its message, payload and autofix. Rows are grouped by category when the table is built, so
+ * that per category totals and sorting do not need to look at the other categories, and sorting
+ * compares the primitive savings without creating an object per row.
+ */
+public final class SuggestionTable {
+
+  private static final long NO_ESTIMATE = Long.MIN_VALUE;
+  private static final Category[] CATEGORIES = Category.values();
+  private static final IssueType[] ISSUE_TYPES = IssueType.values();
+
+  private final int size;
+  private final byte[] categories;
+  private final byte[] issueTypes;
+  private final long[] bytesSaved;
+  private final String[] messages;
+  private final Payload[] payloads;
+  private final AutoFix[] autoFixes;
+  /** Rows of each category, indexed by category ordinal, in the order they were added. */
+  private final int[][] rowsByCategory;
+
+  private SuggestionTable(Builder builder) {
+    this.size = builder.size;
+    this.categories = Arrays.copyOf(builder.categories, size);
+    this.issueTypes = Arrays.copyOf(builder.issueTypes, size);
+    this.bytesSaved = Arrays.copyOf(builder.bytesSaved, size);
+    this.messages = Arrays.copyOf(builder.messages, size);
+    this.payloads = Arrays.copyOf(builder.payloads, size);
+    this.autoFixes = Arrays.copyOf(builder.autoFixes, size);
+
+    int[] counts = new int[CATEGORIES.length];
+    for (int row = 0; row < size; row++) {
+      counts[categories[row]]++;
+    }
+    rowsByCategory = new int[CATEGORIES.length][];
+    for (int category = 0; category < CATEGORIES.length; category++) {
+      rowsByCategory[category] = new int[counts[category]];
+    }
+    int[] filled = new int[CATEGORIES.length];
+    for (int row = 0; row < size; row++) {
+      rowsByCategory[categories[row]][filled[categories[row]]++] = row;
+    }
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** Returns a table holding the given suggestions, in the same order. */
+  public static SuggestionTable of(Iterable<Suggestion> suggestions) {
+    return builder().addAll(suggestions).build();
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public Category getCategory(int row) {
+    return CATEGORIES[categories[row]];
+  }
+
+  public IssueType getIssueType(int row) {
+    return ISSUE_TYPES[issueTypes[row]];
+  }
+
+  /** Returns the estimated bytes saved by the suggestion in the row, or 0 if there is none. */
+  public long getBytesSaved(int row) {
+    return hasEstimate(row) ? bytesSaved[row] : 0;
+  }
+
+  public boolean hasEstimate(int row) {
+    return bytesSaved[row] != NO_ESTIMATE;
+  }
+
+  public String getMessage(int row) {
+    return messages[row];
+  }
+
+  @Nullable
+  public AutoFix getAutoFix(int row) {
+    return autoFixes[row];
+  }
+
+  /** Recreates the suggestion stored in the row. */
+  public Suggestion getSuggestion(int row) {
+    return Suggestion.create(
+        getIssueType(row),
+        getCategory(row),
+        payloads[row],
+        messages[row],
+        hasEstimate(row) ? bytesSaved[row] : null,
+        autoFixes[row]);
+  }
+
+  /** Returns the rows of the category, in the order they were added. */
+  public int[] getRows(Category category) {
+    return rowsByCategory[category.ordinal()].clone();
+  }
+
+  /** Returns the total estimated bytes saved by the suggestions of the category. */
+  public long getTotalBytesSaved(Category category) {
+    long total = 0;
+    for (int row : rowsByCategory[category.ordinal()]) {
+      total += getBytesSaved(row);
+    }
+    return total;
+  }
+
+  /**
+   * Returns the rows of the category sorted by estimated bytes saved, largest first. Rows with the
+   * same savings keep the order they were added in.
+   */
+  public int[] getRowsBySavings(Category category) {
+    // Bottom-up merge sort, which is stable, of rows that start out in the order they were added.
+    int[] rows = rowsByCategory[category.ordinal()].clone();
+    int[] merged = new int[rows.length];
+    for (int width = 1; width < rows.length; width *= 2) {
+      for (int start = 0; start < rows.length; start += 2 * width) {
+        int middle = Math.min(start + width, rows.length);
+        int end = Math.min(start + 2 * width, rows.length);
+        int left = start;
+        int right = middle;
+        for (int i = start; i < end; i++) {
+          if (right == end
+              || (left < middle && getBytesSaved(rows[left]) >= getBytesSaved(rows[right]))) {
+            merged[i] = rows[left++];
+          } else {
+            merged[i] = rows[right++];
+          }
+        }
+      }
+      int[] sorted = merged;
+      merged = rows;
+      rows = sorted;
+    }
+    return rows;
+  }
+
+  /** Returns the categories that have suggestions, sorted by total bytes saved, largest first. */
+  public ImmutableList<Category> getCategoriesBySavings() {
+    return Arrays.stream(CATEGORIES)
+        .filter(category -> rowsByCategory[category.ordinal()].length > 0)
+        .sorted(Comparator.comparingLong(this::getTotalBytesSaved).reversed())
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  /** Returns all the suggestions, grouped by category and sorted by savings within each. */
+  public ImmutableListMultimap<Category, Suggestion> toCategorizedSuggestions() {
+    ImmutableListMultimap.Builder<Category, Suggestion> result = ImmutableListMultimap.builder();
+    for (Category category : getCategoriesBySavings()) {
+      for (int row : getRowsBySavings(category)) {
+        result.put(category, getSuggestion(row));
+      }
+    }
+    return result.build();
+  }
+
+  /** Builder appending one suggestion at a time. */
+  public static final class Builder {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int size;
+    private byte[] categories = new byte[INITIAL_CAPACITY];
+    private byte[] issueTypes = new byte[INITIAL_CAPACITY];
+    private long[] bytesSaved = new long[INITIAL_CAPACITY];
+    private String[] messages = new String[INITIAL_CAPACITY];
+    private Payload[] payloads = new Payload[INITIAL_CAPACITY];
+    private AutoFix[] autoFixes = new AutoFix[INITIAL_CAPACITY];
+    private final Map<String, String> internedMessages = new HashMap<>();
+    private final Map<Payload, Payload> internedPayloads = new HashMap<>();
+
+    private Builder() {}
+
+    public Builder add(Suggestion suggestion) {
+      if (size == categories.length) {
+        int capacity = size * 2;
+        categories = Arrays.copyOf(categories, capacity);
+        issueTypes = Arrays.copyOf(issueTypes, capacity);
+        bytesSaved = Arrays.copyOf(bytesSaved, capacity);
+        messages = Arrays.copyOf(messages, capacity);
+        payloads = Arrays.copyOf(payloads, capacity);
+        autoFixes = Arrays.copyOf(autoFixes, capacity);
+      }
+      categories[size] = (byte) suggestion.getCategory().ordinal();
+      issueTypes[size] = (byte) suggestion.getIssueType().ordinal();
+      Long estimate = suggestion.getEstimatedBytesSaved();
+      bytesSaved[size] = estimate != null ? estimate : NO_ESTIMATE;
+      // Equal messages and payloads, such as those of the same issue in several variants, are
+      // stored once.
+      messages[size] = internedMessages.computeIfAbsent(suggestion.getMessage(), m -> m);
+      payloads[size] = internedPayloads.computeIfAbsent(suggestion.payload(), p -> p);
+      autoFixes[size] = suggestion.getAutoFix();
+      size++;
+      return this;
+    }
+
+    public Builder addAll(Iterable<Suggestion> suggestions) {
+      suggestions.forEach(this::add);
+      return this;
+    }
+
+    public SuggestionTable build() {
+      return new SuggestionTable(this);
+    }
+  }
+}
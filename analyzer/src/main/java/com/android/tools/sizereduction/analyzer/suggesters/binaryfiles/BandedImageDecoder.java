@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.binaryfiles;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Multimaps;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import javax.annotation.Nullable;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Decodes an image region by region, so that the whole image never has to be materialized as a
+ * {@link BufferedImage}.
+ *
+ * <p>The decoder reads the dimensions from the image header only, and decodes pixels on demand, a
+ * band of rows at a time through {@link ImageReadParam#setSourceRegion}. Readers of compressed
+ * formats still decompress the rows above a band to get to it, but only the rows of the band are
+ * converted and held in memory. Readers that do not support source regions decode the whole image
+ * once instead. This class is not threadsafe.
+ */
+final class BandedImageDecoder implements Closeable {
+
+  private static final int BYTES_PER_PIXEL = 4;
+  // Bands are never made smaller than this, so that a tight memory budget does not turn the
+  // decoding into one pass over the image per row.
+  @VisibleForTesting static final long MIN_BAND_BYTES = 1024 * 1024;
+
+  private final ImageInputStream imageStream;
+  private final ImageReader reader;
+  private final int width;
+  private final int height;
+  private boolean sourceRegionsSupported = true;
+  // Only decoded for readers that do not support source regions.
+  @Nullable private BufferedImage wholeImage;
+
+  private BandedImageDecoder(ImageInputStream imageStream, ImageReader reader) throws IOException {
+    this.imageStream = imageStream;
+    this.reader = reader;
+    this.width = reader.getWidth(0);
+    this.height = reader.getHeight(0);
+  }
+
+  /**
+   * Opens a decoder for the image in the given stream, or returns an empty optional if the image
+   * format is not supported by any of the installed image readers.
+   */
+  static Optional<BandedImageDecoder> open(InputStream inputStream) throws IOException {
+    ImageInputStream imageStream = ImageIO.createImageInputStream(inputStream);
+    if (imageStream == null) {
+      return Optional.empty();
+    }
+    Iterator<ImageReader> readers = ImageIO.getImageReaders(imageStream);
+    if (!readers.hasNext()) {
+      imageStream.close();
+      return Optional.empty();
+    }
+    ImageReader reader = readers.next();
+    reader.setInput(imageStream, /* seekForwardOnly= */ false, /* ignoreMetadata= */ true);
+    try {
+      return Optional.of(new BandedImageDecoder(imageStream, reader));
+    } catch (IOException e) {
+      reader.dispose();
+      imageStream.close();
+      throw e;
+    }
+  }
+
+  int getWidth() {
+    return width;
+  }
+
+  int getHeight() {
+    return height;
+  }
+
+  /** Number of bytes taken by the pixels of the whole image in BGRA format. */
+  long getBgraSize() {
+    return (long) width * height * BYTES_PER_PIXEL;
+  }
+
+  /** Decodes the given region of the image. */
+  BufferedImage readRegion(int x, int y, int regionWidth, int regionHeight) throws IOException {
+    return read(new Rectangle(x, y, regionWidth, regionHeight));
+  }
+
+  /**
+   * Decodes the given regions of the image. Regions on the same rows, as the tiles of a row of a
+   * grid, are decoded together.
+   */
+  ImmutableList<BufferedImage> readRegions(List<Rectangle> regions) throws IOException {
+    ImmutableListMultimap<Rectangle, Rectangle> regionsByRows =
+        Multimaps.index(regions, region -> new Rectangle(0, region.y, width, region.height));
+    Map<Rectangle, BufferedImage> images = new HashMap<>();
+    for (Collection<Rectangle> rowRegions : regionsByRows.asMap().values()) {
+      Rectangle span = rowRegions.stream().reduce(Rectangle::union).get();
+      BufferedImage band = read(span);
+      for (Rectangle region : rowRegions) {
+        images.put(region, band.getSubimage(region.x - span.x, 0, region.width, region.height));
+      }
+    }
+    return regions.stream().map(images::get).collect(toImmutableList());
+  }
+
+  /**
+   * Decodes the whole image into a BGRA array as expected by libwebp, holding no more than a band
+   * of rows of the given number of bytes besides the array. Bands are at least {@link
+   * #MIN_BAND_BYTES} large.
+   */
+  byte[] decodeBgra(long maxBandBytes) throws IOException {
+    byte[] bgraArray = new byte[Math.toIntExact(getBgraSize())];
+    int bandHeight = bandHeight(width, height, Math.max(maxBandBytes, MIN_BAND_BYTES));
+    for (int y = 0; y < height; y += bandHeight) {
+      int rows = Math.min(bandHeight, height - y);
+      writeBgra(readRegion(0, y, width, rows), bgraArray, y * width * BYTES_PER_PIXEL);
+    }
+    return bgraArray;
+  }
+
+  @VisibleForTesting
+  static int bandHeight(int width, int height, long maxBandBytes) {
+    long rowBytes = (long) width * BYTES_PER_PIXEL;
+    return (int) Math.max(1, Math.min(height, maxBandBytes / rowBytes));
+  }
+
+  /** Decodes the region, or crops it out of the whole image if the reader cannot decode it. */
+  private BufferedImage read(Rectangle region) throws IOException {
+    if (sourceRegionsSupported) {
+      ImageReadParam param = reader.getDefaultReadParam();
+      param.setSourceRegion(region);
+      try {
+        return reader.read(0, param);
+      } catch (IllegalArgumentException | UnsupportedOperationException e) {
+        sourceRegionsSupported = false;
+      }
+    }
+    if (wholeImage == null) {
+      wholeImage = reader.read(0);
+    }
+    return wholeImage.getSubimage(region.x, region.y, region.width, region.height);
+  }
+
+  /** Writes the pixels of the image in BGRA order into the array, starting at the given offset. */
+  static void writeBgra(BufferedImage image, byte[] bgraArray, int offset) {
+    int width = image.getWidth();
+    // Converting a whole row at a time is much cheaper than going through getRGB per pixel.
+    int[] row = new int[width];
+    int i = offset;
+    for (int y = 0; y < image.getHeight(); y++) {
+      image.getRGB(0, y, width, 1, row, 0, width);
+      for (int x = 0; x < width; x++) {
+        int argb = row[x]; // 4 bytes in ARGB order.
+        // Put the ARGB values in reverse order into the BGRA array.
+        bgraArray[i++] = (byte) argb;
+        bgraArray[i++] = (byte) (argb >> 8);
+        bgraArray[i++] = (byte) (argb >> 16);
+        bgraArray[i++] = (byte) (argb >> 24);
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.dispose();
+    imageStream.close();
+  }
+}
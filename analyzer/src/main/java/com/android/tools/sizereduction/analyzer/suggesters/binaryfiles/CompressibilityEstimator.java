@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.binaryfiles;
+
+import com.android.tools.sizereduction.analyzer.model.FileData;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+
+/**
+ * Estimates the size a file would have once compressed in an APK, without compressing all of it.
+ *
+ * <p>A few blocks spread evenly over the file are deflated, and their compression ratio is applied
+ * to the whole file. Blocks whose bytes are close to uniformly distributed, as in media or already
+ * compressed files, are counted as incompressible without running the deflater on them.
+ */
+final class CompressibilityEstimator {
+
+  @VisibleForTesting static final int BLOCK_SIZE = 64 * 1024;
+  @VisibleForTesting static final int SAMPLED_BLOCKS = 8;
+  /** Above this many bits of entropy per byte, deflate does not save anything worth measuring. */
+  private static final double INCOMPRESSIBLE_ENTROPY_BITS = 7.8;
+
+  private static final ThreadLocal<Deflater> DEFLATER =
+      ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, /* nowrap= */ true));
+  private static final ThreadLocal<byte[]> BLOCK_BUFFER =
+      ThreadLocal.withInitial(() -> new byte[BLOCK_SIZE]);
+  private static final ThreadLocal<byte[]> OUTPUT_BUFFER =
+      ThreadLocal.withInitial(() -> new byte[BLOCK_SIZE]);
+
+  private CompressibilityEstimator() {}
+
+  /**
+   * Returns the estimated compressed size of the file, or its size if none of its content could be
+   * read.
+   */
+  static long estimateCompressedSize(FileData fileData) {
+    long size = fileData.getSize();
+    int blocks = (int) Math.min(SAMPLED_BLOCKS, (size + BLOCK_SIZE - 1) / BLOCK_SIZE);
+    if (blocks == 0) {
+      return size;
+    }
+    long sampledBytes = 0;
+    long compressedBytes = 0;
+    byte[] block = BLOCK_BUFFER.get();
+    try (InputStream inputStream = fileData.getInputStream()) {
+      long position = 0;
+      for (int i = 0; i < blocks; i++) {
+        // Spread the blocks evenly, the last one ending at the end of the file.
+        long offset = blocks == 1 ? 0 : (size - BLOCK_SIZE) * i / (blocks - 1);
+        offset = Math.max(offset, position);
+        while (position < offset) {
+          long skipped = inputStream.skip(offset - position);
+          if (skipped <= 0) {
+            break;
+          }
+          position += skipped;
+        }
+        if (position < offset) {
+          break;
+        }
+        int read = ByteStreams.read(inputStream, block, 0, BLOCK_SIZE);
+        position += read;
+        if (read == 0) {
+          break;
+        }
+        sampledBytes += read;
+        compressedBytes += compressedBlockSize(block, read);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (sampledBytes == 0) {
+      return size;
+    }
+    long estimate = Math.round((double) size * compressedBytes / sampledBytes);
+    // Files that do not shrink are stored uncompressed.
+    return Math.min(size, estimate);
+  }
+
+  @VisibleForTesting
+  static long compressedBlockSize(byte[] block, int length) {
+    if (entropyBitsPerByte(block, length) > INCOMPRESSIBLE_ENTROPY_BITS) {
+      return length;
+    }
+    Deflater deflater = DEFLATER.get();
+    byte[] output = OUTPUT_BUFFER.get();
+    deflater.reset();
+    deflater.setInput(block, 0, length);
+    deflater.finish();
+    long compressed = 0;
+    while (!deflater.finished()) {
+      compressed += deflater.deflate(output);
+    }
+    return compressed;
+  }
+
+  private static double entropyBitsPerByte(byte[] block, int length) {
+    int[] counts = new int[256];
+    for (int i = 0; i < length; i++) {
+      counts[block[i] & 0xff]++;
+    }
+    double entropy = 0;
+    for (int count : counts) {
+      if (count > 0) {
+        double probability = (double) count / length;
+        entropy -= probability * Math.log(probability);
+      }
+    }
+    return entropy / Math.log(2);
+  }
+}
@@ -25,6 +25,7 @@ import com.android.tools.sizereduction.analyzer.model.FileData;
 import com.android.tools.sizereduction.analyzer.model.GradleContext;
 import com.android.tools.sizereduction.analyzer.model.ZipFileData;
 import com.android.tools.sizereduction.analyzer.suggesters.BundleEntrySuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.EntryInterests;
 import com.android.tools.sizereduction.analyzer.suggesters.ProjectTreeSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
 import com.google.common.collect.ImmutableList;
@@ -51,9 +52,27 @@ public class LargeFilesSuggester implements BundleEntrySuggester, ProjectTreeSug
           Pattern.compile("src/main/assets/.*"));
   // 10 KB files or under don't really need to be looked at.
   private static final long SMALL_FILE_SIZE_LIMIT = 1024 * 10;
+  private static final EntryInterests PROJECT_INTERESTS =
+      EntryInterests.builder()
+          .setMinSize(SMALL_FILE_SIZE_LIMIT)
+          .setIncludeOnDemand(false)
+          .build();
+  // Bundle entries are reported with their sizes from the zip, their content is never read.
+  private static final EntryInterests BUNDLE_INTERESTS =
+      PROJECT_INTERESTS.toBuilder().setReadsContent(false).build();
 
   public LargeFilesSuggester() {}
 
+  @Override
+  public EntryInterests getBundleEntryInterests() {
+    return BUNDLE_INTERESTS;
+  }
+
+  @Override
+  public EntryInterests getProjectEntryInterests() {
+    return PROJECT_INTERESTS;
+  }
+
   @Override
   public ImmutableList<Suggestion> processBundleZipEntry(BundleContext context, FileData fileData) {
     return processFileEntry(context, fileData, isBundleAssetFile(fileData));
@@ -70,27 +89,32 @@ public class LargeFilesSuggester implements BundleEntrySuggester, ProjectTreeSug
       return ImmutableList.of();
     }
 
-    // Here, we make the assumption that media formats don't get much smaller when the file is
-    // zipped, so we use the uncompressed file size.
     final boolean isMediaFile = MEDIA_FILE_TYPES.contains(getFileExtension(fileData));
-    final long size =
-        (isMediaFile && fileData instanceof ZipFileData)
-            ? ((ZipFileData) fileData).getCompressedSize()
-            : fileData.getSize();
+    if (!isAssetFile && !isMediaFile) {
+      return ImmutableList.of();
+    }
 
-    ImmutableList.Builder<Suggestion> suggestions = ImmutableList.<Suggestion>builder();
-    if (isAssetFile || isMediaFile) {
-      suggestions.add(
-          Suggestion.create(
-              Suggestion.IssueType.LARGE_FILES_DYNAMIC_FEATURE,
-              Suggestion.Category.LARGE_FILES,
-              Payload.getDefaultInstance(),
-              "Place large file "
-                  + fileData.getPathWithinRoot()
-                  + " inside an on demand dynamic-feature to avoid bundling in apk",
-              size,
-              /* autoFix= */ null));
+    // Bundle entries report the size they are stored with: media entries are compressed in the
+    // bundle, other assets are reported uncompressed. Project files are not compressed yet, so
+    // their content is deflated to estimate what they will take up in the apk.
+    final long size;
+    if (fileData instanceof ZipFileData) {
+      size = isMediaFile ? ((ZipFileData) fileData).getCompressedSize() : fileData.getSize();
+    } else {
+      size = CompressibilityEstimator.estimateCompressedSize(fileData);
     }
+
+    ImmutableList.Builder<Suggestion> suggestions = ImmutableList.<Suggestion>builder();
+    suggestions.add(
+        Suggestion.create(
+            Suggestion.IssueType.LARGE_FILES_DYNAMIC_FEATURE,
+            Suggestion.Category.LARGE_FILES,
+            Payload.getDefaultInstance(),
+            "Place large file "
+                + fileData.getPathWithinRoot()
+                + " inside an on demand dynamic-feature to avoid bundling in apk",
+            size,
+            /* autoFix= */ null));
     if (isMediaFile) {
       suggestions.add(
           Suggestion.create(
@@ -22,6 +22,7 @@ import com.android.tools.sizereduction.analyzer.model.FileData;
 import com.android.tools.sizereduction.analyzer.model.GradleContext;
 import com.android.tools.sizereduction.analyzer.model.ZipFileData;
 import com.android.tools.sizereduction.analyzer.suggesters.BundleEntrySuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.EntryInterests;
 import com.android.tools.sizereduction.analyzer.suggesters.ProjectTreeSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
 import com.google.common.annotations.VisibleForTesting;
@@ -39,6 +40,11 @@ public class QuestionableFilesSuggester implements BundleEntrySuggester, Project
 
   // 1 KB files or under don't really need to be looked at.
   private static final long SMALL_FILE_SIZE_LIMIT = 1024;
+  private static final EntryInterests PROJECT_INTERESTS =
+      EntryInterests.builder().setMinSize(SMALL_FILE_SIZE_LIMIT).build();
+  // Bundle entries are reported with their sizes from the zip, their content is never read.
+  private static final EntryInterests BUNDLE_INTERESTS =
+      PROJECT_INTERESTS.toBuilder().setReadsContent(false).build();
   private static final ImmutableList<Pattern> STANDARD_BUNDLE_FILES =
       ImmutableList.of(
           Pattern.compile("BundleConfig.pb"),
@@ -64,6 +70,16 @@ public class QuestionableFilesSuggester implements BundleEntrySuggester, Project
           Pattern.compile("src/main/java/.*"), // java folder is okay
           Pattern.compile("src/main/AndroidManifest.xml")); // manifest is okay
 
+  @Override
+  public EntryInterests getBundleEntryInterests() {
+    return BUNDLE_INTERESTS;
+  }
+
+  @Override
+  public EntryInterests getProjectEntryInterests() {
+    return PROJECT_INTERESTS;
+  }
+
   @Override
   public ImmutableList<Suggestion> processBundleZipEntry(BundleContext context, FileData fileData) {
     if (fileData.getSize() < SMALL_FILE_SIZE_LIMIT || isStandardBundleFile(fileData)) {
@@ -81,10 +97,11 @@ public class QuestionableFilesSuggester implements BundleEntrySuggester, Project
   }
 
   private ImmutableList<Suggestion> processFileEntry(FileData fileData) {
+    // Project files are not compressed yet, estimate what they will take up in the apk.
     long savingsEstimate =
         fileData instanceof ZipFileData
             ? ((ZipFileData) fileData).getCompressedSize()
-            : fileData.getSize();
+            : CompressibilityEstimator.estimateCompressedSize(fileData);
     return ImmutableList.of(
         Suggestion.create(
             Suggestion.IssueType.QUESTIONABLE_FILE,
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.binaryfiles;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Estimates the lossless webp size of an image by encoding a deterministic subset of its tiles and
+ * extrapolating the per-pixel cost to the whole image.
+ *
+ * <p>Tiles are picked from the centre of equally sized strata of the tile grid, so the same image
+ * always produces the same estimate. The tiles are encoded apart, which gives the variance of their
+ * cost, and together as a single mosaic, which gives their cost without the header and entropy
+ * codes that every separately encoded tile pays again.
+ */
+final class SampledWebpEstimator {
+
+  @VisibleForTesting static final int TILE_SIZE = 128;
+  // Number of tiles sampled at effort 0, doubled with every effort level. They are the rows of the
+  // mosaic, which gets a column per effort level.
+  private static final int MIN_SAMPLED_TILES = 3;
+  // With fewer tiles per sampled tile, the sample covers too much of the image to be worth it.
+  private static final int MIN_TILES_PER_SAMPLE = 4;
+
+  // RIFF header (12 bytes), VP8L chunk header (8 bytes), and VP8L signature and dimensions (5
+  // bytes), which every encoded tile pays once.
+  private static final long CONTAINER_OVERHEAD_BYTES = 25;
+  // Two standard errors gives roughly a 95% confidence interval on the mean tile cost.
+  private static final double CONFIDENCE_FACTOR = 2.0;
+  // Even in the mosaic, tiles are encoded without the context of their actual neighbours (shared
+  // palettes, backward references across tile borders), which the sampling variance alone does
+  // not capture.
+  private static final double TILING_ERROR_RATIO = 0.1;
+
+  private final WebpConverter webpConverter;
+  private final int sampledTiles;
+
+  SampledWebpEstimator(WebpConverter webpConverter, int effort) {
+    this.webpConverter = webpConverter;
+    this.sampledTiles = sampledTilesForEffort(effort);
+  }
+
+  @VisibleForTesting
+  static int sampledTilesForEffort(int effort) {
+    return MIN_SAMPLED_TILES << effort;
+  }
+
+  /**
+   * Estimates the size of the image encoded as lossless webp, or returns an empty optional if the
+   * image is too small to be sampled.
+   */
+  Optional<Estimate> estimate(BufferedImage image) {
+    try {
+      return estimate(
+          image.getWidth(),
+          image.getHeight(),
+          tiles ->
+              tiles.stream()
+                  .map(tile -> image.getSubimage(tile.x, tile.y, tile.width, tile.height))
+                  .collect(toImmutableList()));
+    } catch (IOException e) {
+      // Sub-images of an image in memory are never read from a stream.
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Estimates the size of an image of the given dimensions encoded as lossless webp, reading only
+   * the sampled tiles through the reader. Returns an empty optional if the image is too small to
+   * be sampled.
+   */
+  Optional<Estimate> estimate(int width, int height, TileReader tileReader) throws IOException {
+    int tilesX = width / TILE_SIZE;
+    int tilesY = height / TILE_SIZE;
+    int totalTiles = tilesX * tilesY;
+    if (totalTiles < MIN_TILES_PER_SAMPLE * sampledTiles) {
+      return Optional.empty();
+    }
+
+    ImmutableList.Builder<Rectangle> tileRegions = ImmutableList.builder();
+    for (int i = 0; i < sampledTiles; i++) {
+      int tileIndex = (int) (((2L * i + 1) * totalTiles) / (2L * sampledTiles));
+      tileRegions.add(
+          new Rectangle(
+              (tileIndex % tilesX) * TILE_SIZE,
+              (tileIndex / tilesX) * TILE_SIZE,
+              TILE_SIZE,
+              TILE_SIZE));
+    }
+    List<BufferedImage> tiles = tileReader.readTiles(tileRegions.build());
+
+    int mosaicColumns = sampledTiles / MIN_SAMPLED_TILES;
+    BufferedImage mosaic =
+        new BufferedImage(
+            mosaicColumns * TILE_SIZE,
+            MIN_SAMPLED_TILES * TILE_SIZE,
+            BufferedImage.TYPE_INT_ARGB);
+    int[] tilePixels = new int[TILE_SIZE * TILE_SIZE];
+    double[] bytesPerPixel = new double[sampledTiles];
+    double sum = 0;
+    for (int i = 0; i < sampledTiles; i++) {
+      BufferedImage tile = tiles.get(i);
+      bytesPerPixel[i] = costPerPixel(webpConverter.encodedLosslessWebpSize(tile), 1);
+      sum += bytesPerPixel[i];
+      tile.getRGB(0, 0, TILE_SIZE, TILE_SIZE, tilePixels, 0, TILE_SIZE);
+      mosaic.setRGB(
+          (i % mosaicColumns) * TILE_SIZE,
+          (i / mosaicColumns) * TILE_SIZE,
+          TILE_SIZE,
+          TILE_SIZE,
+          tilePixels,
+          0,
+          TILE_SIZE);
+    }
+    double mosaicBytesPerPixel =
+        costPerPixel(webpConverter.encodedLosslessWebpSize(mosaic), sampledTiles);
+    double mean = sum / sampledTiles;
+    double squaredDeviations = 0;
+    for (double value : bytesPerPixel) {
+      squaredDeviations += (value - mean) * (value - mean);
+    }
+    double variance = squaredDeviations / (sampledTiles - 1);
+    double finitePopulationCorrection =
+        (double) (totalTiles - sampledTiles) / (totalTiles - 1);
+    double standardError = Math.sqrt(variance / sampledTiles * finitePopulationCorrection);
+
+    long pixels = (long) width * height;
+    long estimatedSize = (long) (mosaicBytesPerPixel * pixels) + CONTAINER_OVERHEAD_BYTES;
+    // How much encoding the tiles together changes their cost, which the whole image may change
+    // again as much.
+    double contextError = Math.abs(mean - mosaicBytesPerPixel) * pixels;
+    long errorBound =
+        (long)
+            Math.ceil(
+                CONFIDENCE_FACTOR * standardError * pixels
+                    + contextError
+                    + TILING_ERROR_RATIO * estimatedSize);
+    return Optional.of(Estimate.create(estimatedSize, errorBound));
+  }
+
+  /** Returns the cost per pixel of an encoding of the given number of tiles, without container. */
+  private static double costPerPixel(long encodedSize, int tiles) {
+    return (double) Math.max(0, encodedSize - CONTAINER_OVERHEAD_BYTES)
+        / ((long) tiles * TILE_SIZE * TILE_SIZE);
+  }
+
+  /**
+   * Reads regions of the image being estimated, all at once so that an image decoded from a
+   * stream only has to be decoded once.
+   */
+  interface TileReader {
+    List<BufferedImage> readTiles(List<Rectangle> tiles) throws IOException;
+  }
+
+  /** An estimated webp size, expected to be within the error bound of the actual size. */
+  @AutoValue
+  abstract static class Estimate {
+
+    static Estimate create(long estimatedSize, long errorBound) {
+      return new AutoValue_SampledWebpEstimator_Estimate(estimatedSize, errorBound);
+    }
+
+    abstract long getEstimatedSize();
+
+    abstract long getErrorBound();
+  }
+}
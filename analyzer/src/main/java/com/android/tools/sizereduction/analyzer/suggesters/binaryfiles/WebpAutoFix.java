@@ -16,9 +16,10 @@
 
 package com.android.tools.sizereduction.analyzer.suggesters.binaryfiles;
 
+import com.android.tools.sizereduction.analyzer.suggesters.AtomicFiles;
 import com.android.tools.sizereduction.analyzer.suggesters.AutoFix;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.io.CountingInputStream;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.io.MoreFiles;
 import java.awt.image.BufferedImage;
 import java.io.File;
@@ -28,13 +29,16 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Objects;
+import java.util.Optional;
+import javax.annotation.Nullable;
 import org.apache.commons.imaging.ImageReadException;
 
 /** Converts an image into a lossless webp image. */
 public final class WebpAutoFix implements AutoFix {
 
-  private Path filePath;
-  private WebpConverter webpConverter;
+  private final Path filePath;
+  private final WebpConverter webpConverter;
+  @Nullable private final WebpResultStore resultStore;
 
   public WebpAutoFix(Path filePath) {
     this(filePath, new WebpConverterImpl());
@@ -42,8 +46,18 @@ public final class WebpAutoFix implements AutoFix {
 
   @VisibleForTesting
   WebpAutoFix(Path filePath, WebpConverter webpConverter) {
+    this(filePath, webpConverter, null);
+  }
+
+  /**
+   * Creates an autofix that writes the encoding kept in the given store, as long as the image has
+   * not changed since it was analyzed, and only encodes the image itself otherwise.
+   */
+  WebpAutoFix(
+      Path filePath, WebpConverter webpConverter, @Nullable WebpResultStore resultStore) {
     this.filePath = filePath;
     this.webpConverter = webpConverter;
+    this.resultStore = resultStore;
   }
 
   /**
@@ -51,21 +65,37 @@ public final class WebpAutoFix implements AutoFix {
    * a .webp extension.
    */
   public void apply() {
-    Path newFilePath =
-        filePath.resolveSibling(MoreFiles.getNameWithoutExtension(filePath) + ".webp");
-    try (InputStream inputStream = new FileInputStream(new File(filePath.toString()))) {
-      CountingInputStream countingStream = new CountingInputStream(inputStream);
-      BufferedImage bufferedImage = WebpSuggester.safelyParseImage(countingStream);
-
-      long oldSize = countingStream.getCount();
-      byte[] webpBytes = webpConverter.encodeLosslessWebp(bufferedImage);
-      Files.write(newFilePath, webpBytes);
+    Path newFilePath = getWebpFilePath();
+    try {
+      Optional<byte[]> storedBytes =
+          resultStore != null ? resultStore.get(filePath) : Optional.empty();
+      byte[] webpBytes = storedBytes.isPresent() ? storedBytes.get() : encode();
+      AtomicFiles.write(newFilePath, webpBytes);
       Files.delete(filePath);
+      if (resultStore != null) {
+        resultStore.remove(filePath);
+      }
     } catch (IOException | ImageReadException e) {
       throw new RuntimeException(e);
     }
   }
 
+  private byte[] encode() throws IOException, ImageReadException {
+    try (InputStream inputStream = new FileInputStream(new File(filePath.toString()))) {
+      BufferedImage bufferedImage = WebpSuggester.safelyParseImage(inputStream);
+      return webpConverter.encodeLosslessWebp(bufferedImage);
+    }
+  }
+
+  @Override
+  public ImmutableSet<Path> getAffectedFiles() {
+    return ImmutableSet.of(filePath, getWebpFilePath());
+  }
+
+  private Path getWebpFilePath() {
+    return filePath.resolveSibling(MoreFiles.getNameWithoutExtension(filePath) + ".webp");
+  }
+
   public boolean equals(Object other) {
     if (other == this) {
       return true;
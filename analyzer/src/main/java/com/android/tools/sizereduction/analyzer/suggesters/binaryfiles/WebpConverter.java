@@ -23,4 +23,24 @@ public interface WebpConverter {
 
   /** Encodes an image to lossless webp with effort (-q) of 70. */
   byte[] encodeLosslessWebp(BufferedImage image);
+
+  /**
+   * Encodes pixels already laid out in BGRA order, row by row without padding, to lossless webp
+   * with effort (-q) of 70. The array may be larger than the image, in which case the trailing
+   * bytes are ignored.
+   */
+  byte[] encodeLosslessWebp(byte[] bgraPixels, int width, int height);
+
+  /**
+   * Returns the size of the image encoded to lossless webp, for callers that do not need the
+   * encoded bytes themselves.
+   */
+  default long encodedLosslessWebpSize(BufferedImage image) {
+    return encodeLosslessWebp(image).length;
+  }
+
+  /** Returns the size of the BGRA pixels encoded to lossless webp. */
+  default long encodedLosslessWebpSize(byte[] bgraPixels, int width, int height) {
+    return encodeLosslessWebp(bgraPixels, width, height).length;
+  }
 }
@@ -16,31 +16,48 @@
 
 package com.android.tools.sizereduction.analyzer.suggesters.binaryfiles;
 
+import com.android.tools.sizereduction.analyzer.tracing.AnalyzerEvents;
+import com.android.tools.sizereduction.analyzer.tracing.TraceSpan;
 import com.google.webp.libwebp;
 import java.awt.image.BufferedImage;
 
 /** Converts images to webp format. */
 public final class WebpConverterImpl implements WebpConverter {
 
+  // Staging buffers larger than this are not kept around between images, so that a single huge
+  // image does not pin its pixels in memory for the rest of the run.
+  private static final int MAX_RETAINED_STAGING_BYTES = 64 * 1024 * 1024;
+
+  // Reused across images encoded on the same thread, to avoid allocating a fresh pixel array for
+  // every image.
+  private static final ThreadLocal<byte[]> stagingBuffer =
+      ThreadLocal.withInitial(() -> new byte[0]);
+
   @Override
   public byte[] encodeLosslessWebp(BufferedImage image) {
-    WebpNativeLibLoader.loadNativeLibraryIfNeeded();
-
     // Build BGRA array as expected by libwebp.
-    byte[] bgraArray = new byte[image.getWidth() * image.getHeight() * 4];
-    int i = 0;
-    for (int y = 0; y < image.getHeight(); y++) {
-      for (int x = 0; x < image.getWidth(); x++) {
-        int argb = image.getRGB(x, y); // 4 bytes in ARGB order.
-        // Put the ARGB values in reverse order into the BGRA array.
-        for (int b = 0; b < 4; b++) {
-          bgraArray[i++] = (byte) argb;
-          argb >>= 8;
-        }
-      }
+    byte[] bgraArray = stagingBufferFor(image.getWidth() * image.getHeight() * 4);
+    BandedImageDecoder.writeBgra(image, bgraArray, /* offset= */ 0);
+    return encodeLosslessWebp(bgraArray, image.getWidth(), image.getHeight());
+  }
+
+  private static byte[] stagingBufferFor(int size) {
+    byte[] buffer = stagingBuffer.get();
+    if (buffer.length >= size) {
+      return buffer;
     }
+    buffer = new byte[size];
+    if (size <= MAX_RETAINED_STAGING_BYTES) {
+      stagingBuffer.set(buffer);
+    }
+    return buffer;
+  }
 
-    return libwebp.WebPEncodeLosslessBGRA(
-        bgraArray, image.getWidth(), image.getHeight(), image.getWidth() * 4);
+  @Override
+  public byte[] encodeLosslessWebp(byte[] bgraPixels, int width, int height) {
+    WebpNativeLibLoader.loadNativeLibraryIfNeeded();
+    try (TraceSpan span = AnalyzerEvents.webpEncode(width, height)) {
+      return libwebp.WebPEncodeLosslessBGRA(bgraPixels, width, height, width * 4);
+    }
   }
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.binaryfiles;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.auto.value.AutoValue;
+
+/** Options controlling how the {@link WebpSuggester} estimates webp savings. */
+@AutoValue
+public abstract class WebpOptions {
+
+  /** How the size of the converted webp image is determined. */
+  public enum EstimationMode {
+    /** Encodes every image in full. Savings are exact, up to the reported precision. */
+    EXACT,
+    /**
+     * Encodes a deterministic subset of tiles of large images and extrapolates the size of the
+     * whole image, reporting an error bound alongside the estimate. Images whose estimate is too
+     * close to the reporting threshold are encoded in full.
+     */
+    SAMPLED,
+  }
+
+  /** Value of {@link #getMaxDecodedImageBytes()} for which no memory limit is applied. */
+  public static final long UNBOUNDED = Long.MAX_VALUE;
+
+  /**
+   * Highest effort level, at which every image is encoded in full. {@link #builderForEffort(int)}
+   * maps it to {@link EstimationMode#EXACT}, it is not a valid sampled effort.
+   */
+  public static final int MAX_EFFORT = 6;
+
+  /** Effort used by the sampled estimation mode unless set otherwise. */
+  public static final int DEFAULT_SAMPLED_EFFORT = 2;
+
+  public static Builder builder() {
+    return new AutoValue_WebpOptions.Builder()
+        .setEstimationMode(EstimationMode.EXACT)
+        .setEffort(DEFAULT_SAMPLED_EFFORT)
+        .setMaxDecodedImageBytes(UNBOUNDED)
+        .setKeepEncodingsForFixes(false);
+  }
+
+  /**
+   * Creates the options for the given effort level, between 0 and {@link #MAX_EFFORT}. The
+   * maximum effort encodes every image in full, lower levels estimate large images from samples
+   * that double in size with every level.
+   */
+  public static Builder builderForEffort(int effort) {
+    checkArgument(
+        effort >= 0 && effort <= MAX_EFFORT, "Effort must be between 0 and %s.", MAX_EFFORT);
+    return effort == MAX_EFFORT
+        ? builder()
+        : builder().setEstimationMode(EstimationMode.SAMPLED).setEffort(effort);
+  }
+
+  /** Gets the estimation mode. */
+  public abstract EstimationMode getEstimationMode();
+
+  /**
+   * Gets the effort spent on sampled estimates, between 0 and {@link #MAX_EFFORT} - 1. Each level
+   * doubles the number of tiles encoded per image. Ignored in the exact estimation mode.
+   */
+  public abstract int getEffort();
+
+  /**
+   * Gets the maximum number of bytes of decoded pixels held in memory for a single image.
+   *
+   * <p>When bounded, images are decoded in bands of rows instead of all at once. Images whose
+   * pixels alone do not fit are estimated from a sample of tiles, and skipped if the sample cannot
+   * decide whether the conversion is worth suggesting.
+   */
+  public abstract long getMaxDecodedImageBytes();
+
+  /**
+   * Gets whether the webp encodings of project images are kept after analysis, so that applying
+   * their autofixes does not encode them again. Only worth it when the fixes are going to be
+   * applied, the encodings are otherwise held for nothing.
+   */
+  public abstract boolean getKeepEncodingsForFixes();
+
+  /** Builder for the {@link WebpOptions}. */
+  @AutoValue.Builder
+  public abstract static class Builder {
+
+    /** Set the estimation mode. */
+    public abstract Builder setEstimationMode(EstimationMode estimationMode);
+
+    /** Set the effort spent on sampled estimates. */
+    public abstract Builder setEffort(int effort);
+
+    /** Set the maximum number of bytes of decoded pixels held in memory for a single image. */
+    public abstract Builder setMaxDecodedImageBytes(long maxDecodedImageBytes);
+
+    /** Set whether the webp encodings of project images are kept for their autofixes. */
+    public abstract Builder setKeepEncodingsForFixes(boolean keepEncodingsForFixes);
+
+    abstract WebpOptions autoBuild();
+
+    /** Build the options object. */
+    public WebpOptions build() {
+      WebpOptions options = autoBuild();
+      checkArgument(
+          options.getEffort() >= 0 && options.getEffort() < MAX_EFFORT,
+          "Sampled effort must be between 0 and %s.",
+          MAX_EFFORT - 1);
+      return options;
+    }
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.binaryfiles;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Keeps the webp encodings computed during analysis, so that applying the autofix does not have to
+ * decode and encode the image a second time.
+ *
+ * <p>Results are keyed by the path of the source image and the hash of its content at analysis
+ * time, and are only handed out while the source is unchanged. Encodings are held in memory up to
+ * a byte budget, past which the least recently stored ones are spilled to temporary files.
+ */
+final class WebpResultStore {
+
+  @VisibleForTesting static final long DEFAULT_MEMORY_BUDGET_BYTES = 64L * 1024 * 1024;
+
+  private final long memoryBudgetBytes;
+  private final LinkedHashMap<Path, StoredResult> inMemory = new LinkedHashMap<>();
+  private final Map<Path, StoredResult> spilled = new HashMap<>();
+  private long inMemoryBytes;
+  private Path spillDirectory;
+
+  WebpResultStore() {
+    this(DEFAULT_MEMORY_BUDGET_BYTES);
+  }
+
+  @VisibleForTesting
+  WebpResultStore(long memoryBudgetBytes) {
+    this.memoryBudgetBytes = memoryBudgetBytes;
+  }
+
+  /**
+   * Stores the webp encoding of the image at the given path, along with the SHA-256 hash of the
+   * image content it was encoded from.
+   */
+  synchronized void put(Path sourcePath, HashCode contentHash, byte[] webpBytes) {
+    remove(sourcePath);
+    inMemory.put(sourcePath, new StoredResult(contentHash, webpBytes, null));
+    inMemoryBytes += webpBytes.length;
+    spillOverBudget();
+  }
+
+  /**
+   * Returns the stored webp encoding of the image at the given path, if there is one and the image
+   * has not changed since it was encoded.
+   */
+  Optional<byte[]> get(Path sourcePath) {
+    StoredResult result;
+    synchronized (this) {
+      result = inMemory.get(sourcePath);
+      if (result == null) {
+        result = spilled.get(sourcePath);
+      }
+    }
+    if (result == null || !Files.exists(sourcePath)) {
+      return Optional.empty();
+    }
+    if (!result.contentHash.equals(hashContent(sourcePath))) {
+      return Optional.empty();
+    }
+    if (result.webpBytes != null) {
+      return Optional.of(result.webpBytes);
+    }
+    try {
+      return Optional.of(Files.readAllBytes(result.spillFile));
+    } catch (IOException e) {
+      // The spilled file is gone, the caller can still encode the image itself.
+      return Optional.empty();
+    }
+  }
+
+  /** Drops the stored encoding of the image at the given path, if any. */
+  synchronized void remove(Path sourcePath) {
+    StoredResult result = inMemory.remove(sourcePath);
+    if (result != null) {
+      inMemoryBytes -= result.webpBytes.length;
+    }
+    result = spilled.remove(sourcePath);
+    if (result != null) {
+      try {
+        Files.deleteIfExists(result.spillFile);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  @VisibleForTesting
+  synchronized long getInMemoryBytes() {
+    return inMemoryBytes;
+  }
+
+  private void spillOverBudget() {
+    Iterator<Map.Entry<Path, StoredResult>> iterator = inMemory.entrySet().iterator();
+    while (inMemoryBytes > memoryBudgetBytes && iterator.hasNext()) {
+      Map.Entry<Path, StoredResult> entry = iterator.next();
+      StoredResult result = entry.getValue();
+      try {
+        if (spillDirectory == null) {
+          spillDirectory = Files.createTempDirectory("size-analyzer-webp");
+          spillDirectory.toFile().deleteOnExit();
+        }
+        Path spillFile = Files.createTempFile(spillDirectory, "result", ".webp");
+        spillFile.toFile().deleteOnExit();
+        Files.write(spillFile, result.webpBytes);
+        spilled.put(entry.getKey(), new StoredResult(result.contentHash, null, spillFile));
+      } catch (IOException e) {
+        // Without disk space the result is simply dropped, the autofix can re-encode the image.
+        System.out.println("Warning: Unable to spill webp result to disk: " + e.getMessage());
+      }
+      inMemoryBytes -= result.webpBytes.length;
+      iterator.remove();
+    }
+  }
+
+  /** Hashes the content of the file at the given path, as expected by {@link #put}. */
+  @VisibleForTesting
+  static HashCode hashContent(Path path) {
+    try {
+      return MoreFiles.asByteSource(path).hash(Hashing.sha256());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Webp encoding held either in memory or in a spill file, with its source's content hash. */
+  private static final class StoredResult {
+    private final HashCode contentHash;
+    private final byte[] webpBytes;
+    private final Path spillFile;
+
+    private StoredResult(HashCode contentHash, byte[] webpBytes, Path spillFile) {
+      this.contentHash = contentHash;
+      this.webpBytes = webpBytes;
+      this.spillFile = spillFile;
+    }
+  }
+}
@@ -27,16 +27,28 @@ import com.android.tools.sizereduction.analyzer.model.FileData;
 import com.android.tools.sizereduction.analyzer.model.GradleContext;
 import com.android.tools.sizereduction.analyzer.model.SystemFileData;
 import com.android.tools.sizereduction.analyzer.suggesters.BundleEntrySuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.EntryInterests;
 import com.android.tools.sizereduction.analyzer.suggesters.ProjectTreeSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.SampledWebpEstimator.Estimate;
+import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.WebpOptions.EstimationMode;
+import com.android.tools.sizereduction.analyzer.tracing.AnalyzerEvents;
+import com.android.tools.sizereduction.analyzer.tracing.TraceSpan;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.CountingInputStream;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.util.Optional;
+import javax.annotation.Nullable;
+import javax.imageio.IIOException;
 import org.apache.commons.imaging.ImageReadException;
 import org.apache.commons.imaging.Imaging;
 
@@ -48,18 +60,46 @@ public class WebpSuggester implements BundleEntrySuggester, ProjectTreeSuggester
 
   private static final ImmutableSet<String> SUPPORTED_FILE_TYPES =
       ImmutableSet.of("bmp", "png", "jpg", "jpeg");
-  private static final long ESTIMATE_PRECISION = 100;
+  @VisibleForTesting static final long ESTIMATE_PRECISION = 100;
   @VisibleForTesting static final long SIZE_REDUCTION_THRESHOLD_BYTES = ESTIMATE_PRECISION;
+  private static final EntryInterests INTERESTS =
+      EntryInterests.builder().setExtensions(SUPPORTED_FILE_TYPES).build();
 
   private final WebpConverter webpConverter;
+  private final WebpOptions options;
+  private final SampledWebpEstimator sampledEstimator;
+  // Only set when the encodings are kept for the autofixes, it lives as long as this suggester.
+  @Nullable private final WebpResultStore resultStore;
 
   public WebpSuggester() {
-    this(new WebpConverterImpl());
+    this(WebpOptions.builder().build());
+  }
+
+  public WebpSuggester(WebpOptions options) {
+    this(new WebpConverterImpl(), options);
   }
 
   @VisibleForTesting
   WebpSuggester(WebpConverter webpConverter) {
+    this(webpConverter, WebpOptions.builder().build());
+  }
+
+  @VisibleForTesting
+  WebpSuggester(WebpConverter webpConverter, WebpOptions options) {
     this.webpConverter = webpConverter;
+    this.options = options;
+    this.sampledEstimator = new SampledWebpEstimator(webpConverter, options.getEffort());
+    this.resultStore = options.getKeepEncodingsForFixes() ? new WebpResultStore() : null;
+  }
+
+  @Override
+  public EntryInterests getBundleEntryInterests() {
+    return INTERESTS;
+  }
+
+  @Override
+  public EntryInterests getProjectEntryInterests() {
+    return INTERESTS;
   }
 
   @Override
@@ -81,45 +121,41 @@ public class WebpSuggester implements BundleEntrySuggester, ProjectTreeSuggester
       return ImmutableList.of();
     }
 
+    if (options.getMaxDecodedImageBytes() != WebpOptions.UNBOUNDED) {
+      return processWithinMemoryCeiling(fileData);
+    }
+
     try (InputStream inputStream = fileData.getInputStream()) {
-      CountingInputStream countingStream = new CountingInputStream(inputStream);
-      BufferedImage bufferedImage = safelyParseImage(countingStream);
+      @Nullable HashingInputStream hashingStream = hashIfEncodingIsKept(fileData, inputStream);
+      CountingInputStream countingStream =
+          new CountingInputStream(hashingStream != null ? hashingStream : inputStream);
+      BufferedImage bufferedImage;
+      try (TraceSpan span =
+          AnalyzerEvents.imageDecode(fileData.getPathWithinRoot(), /* banded= */ false)) {
+        bufferedImage = safelyParseImage(countingStream);
+      }
+      ByteStreams.exhaust(countingStream);
 
       long oldSize = countingStream.getCount();
-      byte[] webpBytes = webpConverter.encodeLosslessWebp(bufferedImage);
-      long newSize = webpBytes.length;
-      long reduction = oldSize - newSize;
-
-      if (reduction >= SIZE_REDUCTION_THRESHOLD_BYTES) {
-        // We must round off the estimate to account for slight differences between different
-        // versions of the webp tools (cwebp uses a higher effort factor by default than libwebp,
-        // and we have no way of controlling it given this API).
-        // We don't want to seem to promise a specific size reduction so we round down to the
-        // nearest
-        // round number.
-        long estimate = reduction - (reduction % ESTIMATE_PRECISION);
-        WebpAutoFix autoFix = null;
-        if (fileData instanceof SystemFileData) {
-          autoFix = new WebpAutoFix(((SystemFileData) fileData).getSystemPath());
+      if (options.getEstimationMode() == EstimationMode.SAMPLED) {
+        Optional<Estimate> estimate = sampledEstimator.estimate(bufferedImage);
+        if (estimate.isPresent()) {
+          Optional<ImmutableList<Suggestion>> suggestions =
+              suggestionsFromEstimate(fileData, oldSize, estimate.get());
+          if (suggestions.isPresent()) {
+            return suggestions.get();
+          }
+          // The estimate is too close to the threshold to decide, encode the whole image.
         }
+      }
 
-        return ImmutableList.of(
-            Suggestion.create(
-                Suggestion.IssueType.WEBP,
-                Suggestion.Category.WEBP,
-                Payload.newBuilder()
-                    .setWebpData(
-                        WebpData.newBuilder()
-                            .setFile(
-                                FileEntryData.newBuilder()
-                                    .setFilePath(fileData.getPathWithinRoot().toString())))
-                    .build(),
-                "Convert " + fileData.getPathWithinRoot() + " to webp with lossless encoding",
-                estimate,
-                autoFix));
-      } else {
-        return ImmutableList.of();
+      if (hashingStream != null) {
+        byte[] webpBytes = webpConverter.encodeLosslessWebp(bufferedImage);
+        return suggestionsFromEncoding(
+            (SystemFileData) fileData, hashingStream.hash(), oldSize, webpBytes);
       }
+      long newSize = webpConverter.encodedLosslessWebpSize(bufferedImage);
+      return suggestionsFromExactSize(fileData, oldSize, newSize);
     } catch (IOException e) {
       throw new UncheckedIOException(e);
     } catch (ImageReadException e) {
@@ -128,6 +164,160 @@ public class WebpSuggester implements BundleEntrySuggester, ProjectTreeSuggester
     }
   }
 
+  /**
+   * Processes the image without ever holding more than the configured number of decoded pixel
+   * bytes in memory, besides a band of rows of at least {@link BandedImageDecoder#MIN_BAND_BYTES}.
+   * The pixels are decoded band by band straight into the array handed to the encoder, and images
+   * whose pixels alone exceed the ceiling are only ever decoded tile by tile.
+   */
+  private ImmutableList<Suggestion> processWithinMemoryCeiling(FileData fileData) {
+    // The encoder takes a single array, which cannot be larger than this.
+    long ceiling = Math.min(options.getMaxDecodedImageBytes(), Integer.MAX_VALUE);
+    long oldSize = fileData.getSize();
+    try (InputStream inputStream = fileData.getInputStream()) {
+      @Nullable HashingInputStream hashingStream = hashIfEncodingIsKept(fileData, inputStream);
+      Optional<BandedImageDecoder> openedDecoder =
+          BandedImageDecoder.open(hashingStream != null ? hashingStream : inputStream);
+      if (!openedDecoder.isPresent()) {
+        return ImmutableList.of();
+      }
+      try (BandedImageDecoder decoder = openedDecoder.get()) {
+        boolean fitsInCeiling = decoder.getBgraSize() <= ceiling;
+        if (options.getEstimationMode() == EstimationMode.SAMPLED || !fitsInCeiling) {
+          Optional<Estimate> estimate =
+              sampledEstimator.estimate(
+                  decoder.getWidth(), decoder.getHeight(), decoder::readRegions);
+          if (estimate.isPresent()) {
+            Optional<ImmutableList<Suggestion>> suggestions =
+                suggestionsFromEstimate(fileData, oldSize, estimate.get());
+            if (suggestions.isPresent()) {
+              return suggestions.get();
+            }
+          }
+        }
+
+        if (!fitsInCeiling) {
+          System.out.println(
+              String.format(
+                  "Warning: Skipping %s, %dx%d pixels do not fit in the decoded image memory limit"
+                      + " of %d bytes.",
+                  fileData.getPathWithinRoot(),
+                  decoder.getWidth(),
+                  decoder.getHeight(),
+                  ceiling));
+          return ImmutableList.of();
+        }
+
+        byte[] bgraPixels;
+        try (TraceSpan span =
+            AnalyzerEvents.imageDecode(fileData.getPathWithinRoot(), /* banded= */ true)) {
+          bgraPixels = decoder.decodeBgra(/* maxBandBytes= */ ceiling - decoder.getBgraSize());
+        }
+        if (hashingStream != null) {
+          ByteStreams.exhaust(hashingStream);
+          byte[] webpBytes =
+              webpConverter.encodeLosslessWebp(bgraPixels, decoder.getWidth(), decoder.getHeight());
+          return suggestionsFromEncoding(
+              (SystemFileData) fileData, hashingStream.hash(), oldSize, webpBytes);
+        }
+        long newSize =
+            webpConverter.encodedLosslessWebpSize(
+                bgraPixels, decoder.getWidth(), decoder.getHeight());
+        return suggestionsFromExactSize(fileData, oldSize, newSize);
+      }
+    } catch (IIOException e) {
+      // We shouldn't crash if we can't read the image.
+      return ImmutableList.of();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Returns a stream hashing the image bytes if its encoding is kept for the autofix, which only
+   * project files can have, or null if the bytes do not need to be hashed.
+   */
+  @Nullable
+  private HashingInputStream hashIfEncodingIsKept(FileData fileData, InputStream inputStream) {
+    if (resultStore == null || !(fileData instanceof SystemFileData)) {
+      return null;
+    }
+    return new HashingInputStream(Hashing.sha256(), inputStream);
+  }
+
+  /**
+   * Returns the suggestions for an estimated webp size, or an empty optional if the estimate is
+   * too close to the threshold to decide whether the conversion is worth suggesting.
+   */
+  private Optional<ImmutableList<Suggestion>> suggestionsFromEstimate(
+      FileData fileData, long oldSize, Estimate estimate) {
+    long reduction = oldSize - estimate.getEstimatedSize();
+    long errorBound = estimate.getErrorBound();
+    if (reduction + errorBound < SIZE_REDUCTION_THRESHOLD_BYTES) {
+      return Optional.of(ImmutableList.of());
+    }
+    if (reduction - errorBound >= SIZE_REDUCTION_THRESHOLD_BYTES) {
+      return Optional.of(ImmutableList.of(createSuggestion(fileData, reduction, errorBound)));
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Returns the suggestions for an encoded image, keeping the encoding for the autofix along with
+   * the hash of the bytes it was decoded from.
+   */
+  private ImmutableList<Suggestion> suggestionsFromEncoding(
+      SystemFileData fileData, HashCode contentHash, long oldSize, byte[] webpBytes) {
+    ImmutableList<Suggestion> suggestions =
+        suggestionsFromExactSize(fileData, oldSize, webpBytes.length);
+    if (!suggestions.isEmpty()) {
+      resultStore.put(fileData.getSystemPath(), contentHash, webpBytes);
+    }
+    return suggestions;
+  }
+
+  private ImmutableList<Suggestion> suggestionsFromExactSize(
+      FileData fileData, long oldSize, long newSize) {
+    long reduction = oldSize - newSize;
+    if (reduction >= SIZE_REDUCTION_THRESHOLD_BYTES) {
+      return ImmutableList.of(createSuggestion(fileData, reduction, /* errorBound= */ 0));
+    } else {
+      return ImmutableList.of();
+    }
+  }
+
+  private Suggestion createSuggestion(FileData fileData, long reduction, long errorBound) {
+    // We must round off the estimate to account for slight differences between different
+    // versions of the webp tools (cwebp uses a higher compression effort by default than the
+    // simple libwebp encoding API used here, the --webp-effort levels only decide how much of the
+    // image is encoded to estimate its size). We don't want to seem to promise a specific size
+    // reduction so we round down to the nearest round number.
+    long estimate = reduction - (reduction % ESTIMATE_PRECISION);
+    // The error bound is rounded up, so that it never claims more precision than it has.
+    long roundedErrorBound =
+        errorBound + (ESTIMATE_PRECISION - errorBound % ESTIMATE_PRECISION) % ESTIMATE_PRECISION;
+    WebpAutoFix autoFix = null;
+    if (fileData instanceof SystemFileData) {
+      autoFix =
+          new WebpAutoFix(((SystemFileData) fileData).getSystemPath(), webpConverter, resultStore);
+    }
+
+    return Suggestion.create(
+        Suggestion.IssueType.WEBP,
+        Suggestion.Category.WEBP,
+        Payload.newBuilder()
+            .setWebpData(
+                WebpData.newBuilder()
+                    .setFile(
+                        FileEntryData.newBuilder()
+                            .setFilePath(fileData.getPathWithinRoot().toString()))
+                    .setEstimateErrorBoundBytes(roundedErrorBound))
+            .build(),
+        "Convert " + fileData.getPathWithinRoot() + " to webp with lossless encoding",
+        estimate,
+        autoFix);
+  }
+
   static BufferedImage safelyParseImage(InputStream inputStream) throws ImageReadException {
     try {
       return Imaging.getBufferedImage(inputStream);
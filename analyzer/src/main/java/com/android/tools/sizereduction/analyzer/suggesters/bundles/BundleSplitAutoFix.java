@@ -16,37 +16,95 @@
 
 package com.android.tools.sizereduction.analyzer.suggesters.bundles;
 
+import com.android.tools.sizereduction.analyzer.model.BundleConfig;
+import com.android.tools.sizereduction.analyzer.model.BundleConfigLocation;
+import com.android.tools.sizereduction.analyzer.model.GroovyGradleParser;
+import com.android.tools.sizereduction.analyzer.suggesters.AtomicFiles;
 import com.android.tools.sizereduction.analyzer.suggesters.AutoFix;
+import com.google.common.collect.ImmutableSet;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Objects;
+import javax.annotation.Nullable;
 
-/** */
+/**
+ * Enables a bundle split by removing the line disabling it from the build file. The line is located
+ * again when the fix is applied, as other fixes to the same build file may have moved it since the
+ * analysis.
+ */
 public final class BundleSplitAutoFix implements AutoFix {
   public static final String BUILD_GRADLE = "build.gradle";
 
+  /** The bundle splits this fix can enable. */
+  public enum Split {
+    ABI,
+    DENSITY,
+    LANGUAGE
+  }
+
   File buildFile;
-  int lineNumber;
+  Split split;
 
-  public BundleSplitAutoFix(File directory, int lineNumber) {
+  public BundleSplitAutoFix(File directory, Split split) {
     this.buildFile = new File(directory, BUILD_GRADLE);
-    this.lineNumber = lineNumber;
+    this.split = split;
   }
 
   @Override
   public void apply() {
     try {
       List<String> lines = Files.readAllLines(buildFile.toPath(), StandardCharsets.UTF_8);
+      BundleConfig bundleConfig = GroovyGradleParser.parseBundleConfig(String.join("\n", lines));
+      Integer lineNumber = getLineNumber(bundleConfig.getBundleConfigLocation());
+      if (lineNumber == null || isEnabled(bundleConfig)) {
+        // The split was already enabled since the analysis.
+        return;
+      }
       lines.remove(lineNumber - 1);
-      Files.write(buildFile.toPath(), lines, StandardCharsets.UTF_8);
+      StringBuilder content = new StringBuilder();
+      for (String line : lines) {
+        content.append(line).append(System.lineSeparator());
+      }
+      AtomicFiles.write(buildFile.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
   }
 
+  @Nullable
+  private Integer getLineNumber(BundleConfigLocation location) {
+    switch (split) {
+      case ABI:
+        return location.getAbiSplitLineNumber();
+      case DENSITY:
+        return location.getDensitySplitLineNumber();
+      case LANGUAGE:
+        return location.getLanguageSplitLineNumber();
+    }
+    throw new AssertionError(split);
+  }
+
+  private boolean isEnabled(BundleConfig bundleConfig) {
+    switch (split) {
+      case ABI:
+        return bundleConfig.getAbiSplitEnabled();
+      case DENSITY:
+        return bundleConfig.getDensitySplitEnabled();
+      case LANGUAGE:
+        return bundleConfig.getLanguageSplitEnabled();
+    }
+    throw new AssertionError(split);
+  }
+
+  @Override
+  public ImmutableSet<Path> getAffectedFiles() {
+    return ImmutableSet.of(buildFile.toPath());
+  }
+
   @Override
   public boolean equals(Object other) {
     if (other == this) {
@@ -57,11 +115,11 @@ public final class BundleSplitAutoFix implements AutoFix {
     }
     BundleSplitAutoFix autoFix = (BundleSplitAutoFix) other;
     return Objects.equals(this.buildFile.getPath(), autoFix.buildFile.getPath())
-        && autoFix.lineNumber == this.lineNumber;
+        && autoFix.split == this.split;
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(buildFile.toPath(), lineNumber);
+    return Objects.hash(buildFile.toPath(), split);
   }
 }
@@ -24,12 +24,15 @@ import com.android.bundle.Files.NativeLibraries;
 import com.android.bundle.Targeting.Abi.AbiAlias;
 import com.android.tools.build.bundletool.model.AppBundle;
 import com.android.tools.build.bundletool.model.BundleModule;
+import com.android.tools.build.bundletool.model.BundleModuleName;
 import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
 import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.BundleSplittingData;
 import com.android.tools.sizereduction.analyzer.model.AndroidPluginVersion;
 import com.android.tools.sizereduction.analyzer.model.BundleConfig;
 import com.android.tools.sizereduction.analyzer.model.BundleContext;
+import com.android.tools.sizereduction.analyzer.model.BundleResourceTables;
 import com.android.tools.sizereduction.analyzer.model.GradleContext;
+import com.android.tools.sizereduction.analyzer.model.ResourceTableIndex;
 import com.android.tools.sizereduction.analyzer.suggesters.BundleSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.ProjectSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
@@ -74,6 +77,19 @@ public final class BundleSplitSuggester implements BundleSuggester, ProjectSugge
   @Override
   public ImmutableList<Suggestion> processBundle(
       BundleContext context, AppBundle bundle, ZipFile bundleZip) {
+    return processBundle(context, bundle, bundleZip, new BundleResourceTables(bundleZip));
+  }
+
+  /**
+   * Suggests splitting by screen density and language only if the resources of the bundle have
+   * variants for several densities or languages, which the resource tables tell.
+   */
+  @Override
+  public ImmutableList<Suggestion> processBundle(
+      BundleContext context,
+      AppBundle bundle,
+      ZipFile bundleZip,
+      BundleResourceTables resourceTables) {
     ImmutableSet<SplitDimension.Value> splitDimensionsNotUsed =
         bundle.getBundleConfig().getOptimizations().getSplitsConfig().getSplitDimensionList()
             .stream()
@@ -109,7 +125,26 @@ public final class BundleSplitSuggester implements BundleSuggester, ProjectSugge
       }
     }
 
-    if (splitDimensionsNotUsed.contains(SplitDimension.Value.SCREEN_DENSITY)) {
+    boolean hasDensityVariants = false;
+    boolean hasLocaleVariants = false;
+    if (splitDimensionsNotUsed.contains(SplitDimension.Value.SCREEN_DENSITY)
+        || splitDimensionsNotUsed.contains(SplitDimension.Value.LANGUAGE)) {
+      for (BundleModuleName moduleName : bundle.getModules().keySet()) {
+        Optional<ResourceTableIndex> resourceTable =
+            resourceTables.getResourceTable(moduleName.getName());
+        if (!resourceTable.isPresent()) {
+          continue;
+        }
+        for (int variant = 0; variant < resourceTable.get().getVariantCount(); variant++) {
+          hasDensityVariants |=
+              resourceTable.get().getDensity(variant) != ResourceTableIndex.DEFAULT_DENSITY;
+          hasLocaleVariants |= !resourceTable.get().getLocale(variant).isEmpty();
+        }
+      }
+    }
+
+    if (splitDimensionsNotUsed.contains(SplitDimension.Value.SCREEN_DENSITY)
+        && hasDensityVariants) {
       suggestions.add(
           Suggestion.create(
               IssueType.BUNDLES_NO_DENSITY_SPLITTING,
@@ -120,7 +155,7 @@ public final class BundleSplitSuggester implements BundleSuggester, ProjectSugge
               /* autoFix= */ null));
     }
 
-    if (splitDimensionsNotUsed.contains(SplitDimension.Value.LANGUAGE)) {
+    if (splitDimensionsNotUsed.contains(SplitDimension.Value.LANGUAGE) && hasLocaleVariants) {
       suggestions.add(
           Suggestion.create(
               IssueType.BUNDLES_NO_LANGUAGE_SPLITTING,
@@ -169,9 +204,7 @@ public final class BundleSplitSuggester implements BundleSuggester, ProjectSugge
               Payload.getDefaultInstance(),
               NO_ABI_SPLITTING_MESSAGE,
               /* estimatedBytesSaved= */ null,
-              new BundleSplitAutoFix(
-                  projectDir,
-                  context.getBundleConfig().getBundleConfigLocation().getAbiSplitLineNumber())));
+              new BundleSplitAutoFix(projectDir, BundleSplitAutoFix.Split.ABI)));
     }
 
     if (!bundleConfig.getDensitySplitEnabled()) {
@@ -182,12 +215,7 @@ public final class BundleSplitSuggester implements BundleSuggester, ProjectSugge
               Payload.getDefaultInstance(),
               NO_DISPLAY_DENSITY_SPLITTING_MESSAGE,
               /* estimatedBytesSaved= */ null,
-              new BundleSplitAutoFix(
-                  projectDir,
-                  context
-                      .getBundleConfig()
-                      .getBundleConfigLocation()
-                      .getDensitySplitLineNumber())));
+              new BundleSplitAutoFix(projectDir, BundleSplitAutoFix.Split.DENSITY)));
     }
 
     if (!bundleConfig.getLanguageSplitEnabled()) {
@@ -198,12 +226,7 @@ public final class BundleSplitSuggester implements BundleSuggester, ProjectSugge
               Payload.getDefaultInstance(),
               NO_LANGUAGE_SPLITTING_MESSAGE,
               /* estimatedBytesSaved= */ null,
-              new BundleSplitAutoFix(
-                  projectDir,
-                  context
-                      .getBundleConfig()
-                      .getBundleConfigLocation()
-                      .getLanguageSplitLineNumber())));
+              new BundleSplitAutoFix(projectDir, BundleSplitAutoFix.Split.LANGUAGE)));
     }
 
     return suggestions.build();
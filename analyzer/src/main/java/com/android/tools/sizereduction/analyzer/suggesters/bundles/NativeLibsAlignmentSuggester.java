@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.bundles;
+
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.NativeLibAlignment;
+import com.android.tools.sizereduction.analyzer.model.Context;
+import com.android.tools.sizereduction.analyzer.model.ZipCentralDirectory;
+import com.android.tools.sizereduction.analyzer.model.ZipCentralDirectory.Entry;
+import com.android.tools.sizereduction.analyzer.suggesters.ApkSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.Category;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.IssueType;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Checks that the native libraries of an APK can be memory-mapped straight from the APK, which
+ * requires them to be stored uncompressed and page-aligned. Libraries that are not get extracted
+ * at install time, costing both install time and storage. This complements {@link
+ * UncompressedNativeLibsSuggester}, which only looks at the bundle configuration.
+ */
+public final class NativeLibsAlignmentSuggester implements ApkSuggester {
+
+  @VisibleForTesting static final long PAGE_SIZE_BYTES = 4096;
+
+  // Libraries are only loaded straight from the APK from Android M on, older devices always
+  // extract them, so keeping them compressed is the right call for APKs that support them.
+  @VisibleForTesting static final int MIN_SDK_VERSION_LOADING_LIBS_FROM_APK = 23;
+
+  private static final String NATIVE_LIBS_DIRECTORY = "lib/";
+  private static final String NATIVE_LIB_EXTENSION = ".so";
+
+  @Override
+  public ImmutableList<Suggestion> processApk(Context context, ZipFile apk) {
+    boolean checkCompression = context.getMinSdkVersion() >= MIN_SDK_VERSION_LOADING_LIBS_FROM_APK;
+    ImmutableList.Builder<Suggestion> suggestions = ImmutableList.builder();
+    try (ZipCentralDirectory directory = ZipCentralDirectory.open(Paths.get(apk.getName()))) {
+      for (Entry entry : directory.getEntries()) {
+        String name = entry.getName();
+        if (!name.startsWith(NATIVE_LIBS_DIRECTORY) || !name.endsWith(NATIVE_LIB_EXTENSION)) {
+          continue;
+        }
+        if (entry.getMethod() != ZipEntry.STORED) {
+          if (!checkCompression) {
+            continue;
+          }
+          suggestions.add(
+              createSuggestion(
+                  name,
+                  entry.getLocalHeaderOffset(),
+                  /* compressed= */ true,
+                  "Native library "
+                      + name
+                      + " (local header at offset "
+                      + entry.getLocalHeaderOffset()
+                      + ") is compressed, so it has to be extracted at install time. Store it"
+                      + " uncompressed and page-aligned so it can be loaded directly from the"
+                      + " APK."));
+          continue;
+        }
+        long dataOffset = directory.getDataOffset(entry);
+        if (dataOffset % PAGE_SIZE_BYTES != 0) {
+          suggestions.add(
+              createSuggestion(
+                  name,
+                  dataOffset,
+                  /* compressed= */ false,
+                  "Native library "
+                      + name
+                      + " is stored at offset "
+                      + dataOffset
+                      + ", which is not aligned to "
+                      + PAGE_SIZE_BYTES
+                      + " bytes, so it has to be extracted at install time. Align the APK with"
+                      + " zipalign -p."));
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return suggestions.build();
+  }
+
+  private static Suggestion createSuggestion(
+      String path, long offset, boolean compressed, String message) {
+    return Suggestion.create(
+        IssueType.APK_UNALIGNED_NATIVE_LIBS,
+        Category.BUNDLE_CONFIG,
+        Payload.newBuilder()
+            .setNativeLibAlignment(
+                NativeLibAlignment.newBuilder()
+                    .setPath(path)
+                    .setOffset(offset)
+                    .setCompressed(compressed))
+            .build(),
+        message,
+        /* estimatedBytesSaved= */ null,
+        /* autoFix= */ null);
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.bundles;
+
+import static java.util.Comparator.comparingLong;
+import static java.util.stream.Collectors.joining;
+
+import com.android.tools.build.bundletool.model.AppBundle;
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.PointlessCompressionUsage;
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.PointlessCompressionUsage.CompressedEntry;
+import com.android.tools.sizereduction.analyzer.model.BundleContext;
+import com.android.tools.sizereduction.analyzer.model.Context;
+import com.android.tools.sizereduction.analyzer.suggesters.ApkSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.BundleSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.Category;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.IssueType;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ascii;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Finds archive entries that are DEFLATE-compressed although compression barely shrinks them, as is
+ * typically the case for images and audio that are already compressed. Such entries only cost CPU
+ * time when they are extracted.
+ *
+ * <p>Only the compression method and sizes recorded in the zip central directory are looked at, so
+ * no entry is ever inflated.
+ */
+public final class PointlessCompressionSuggester implements BundleSuggester, ApkSuggester {
+
+  /** Entries smaller than this are not worth storing differently. */
+  @VisibleForTesting static final long MIN_ENTRY_SIZE_BYTES = 4096;
+
+  /** Entries compressed to at least this percentage of their size are considered incompressible. */
+  @VisibleForTesting static final long MIN_COMPRESSED_PERCENTAGE = 95;
+
+  /** Maximum number of entries listed in the payload, the count covers all of them. */
+  @VisibleForTesting static final int MAX_LISTED_ENTRIES = 500;
+
+  private static final String BUNDLE_METADATA_DIRECTORY = "BUNDLE-METADATA/";
+
+  @Override
+  public ImmutableList<Suggestion> processBundle(
+      BundleContext context, AppBundle bundle, ZipFile bundleZip) {
+    return processZip(bundleZip);
+  }
+
+  @Override
+  public ImmutableList<Suggestion> processApk(Context context, ZipFile apk) {
+    return processZip(apk);
+  }
+
+  private static ImmutableList<Suggestion> processZip(ZipFile zipFile) {
+    List<ZipEntry> flaggedEntries = new ArrayList<>();
+    SortedSet<String> extensions = new TreeSet<>();
+    long flaggedBytes = 0;
+    Enumeration<? extends ZipEntry> entries = zipFile.entries();
+    while (entries.hasMoreElements()) {
+      ZipEntry entry = entries.nextElement();
+      if (!isPointlesslyCompressed(entry)) {
+        continue;
+      }
+      flaggedEntries.add(entry);
+      flaggedBytes += entry.getSize();
+      String extension = Ascii.toLowerCase(Files.getFileExtension(entry.getName()));
+      if (!extension.isEmpty()) {
+        extensions.add(extension);
+      }
+    }
+
+    if (flaggedEntries.isEmpty()) {
+      return ImmutableList.of();
+    }
+    flaggedEntries.sort(comparingLong(ZipEntry::getSize).reversed());
+    return ImmutableList.of(createSuggestion(flaggedEntries, extensions, flaggedBytes));
+  }
+
+  @VisibleForTesting
+  static boolean isPointlesslyCompressed(ZipEntry entry) {
+    if (entry.isDirectory()
+        || entry.getName().startsWith(BUNDLE_METADATA_DIRECTORY)
+        || entry.getMethod() != ZipEntry.DEFLATED) {
+      return false;
+    }
+    long size = entry.getSize();
+    long compressedSize = entry.getCompressedSize();
+    if (size < MIN_ENTRY_SIZE_BYTES || compressedSize < 0) {
+      return false;
+    }
+    return compressedSize * 100 >= size * MIN_COMPRESSED_PERCENTAGE;
+  }
+
+  private static Suggestion createSuggestion(
+      List<ZipEntry> flaggedEntries, SortedSet<String> extensions, long flaggedBytes) {
+    PointlessCompressionUsage.Builder usage =
+        PointlessCompressionUsage.newBuilder()
+            .setTotalEntryCount(flaggedEntries.size())
+            .addAllNoCompressExtensions(extensions);
+    flaggedEntries.stream()
+        .limit(MAX_LISTED_ENTRIES)
+        .forEach(
+            entry ->
+                usage.addEntries(
+                    CompressedEntry.newBuilder()
+                        .setPath(entry.getName())
+                        .setCompressedSize(entry.getCompressedSize())
+                        .setUncompressedSize(entry.getSize())));
+
+    StringBuilder message =
+        new StringBuilder()
+            .append(flaggedEntries.size())
+            .append(" compressed files (")
+            .append(flaggedBytes)
+            .append(" bytes) shrink by less than ")
+            .append(100 - MIN_COMPRESSED_PERCENTAGE)
+            .append("% when compressed, which only costs CPU time when they are extracted.");
+    if (extensions.isEmpty()) {
+      message.append(" Consider storing them uncompressed.");
+    } else {
+      message
+          .append(" Consider storing them uncompressed with aaptOptions { noCompress ")
+          .append(
+              extensions.stream().map(extension -> "'" + extension + "'").collect(joining(", ")))
+          .append(" }.");
+    }
+
+    return Suggestion.create(
+        IssueType.BUNDLES_POINTLESS_COMPRESSION,
+        Category.BUNDLE_CONFIG,
+        Payload.newBuilder().setPointlessCompressionUsage(usage).build(),
+        message.toString(),
+        /* estimatedBytesSaved= */ null,
+        /* autoFix= */ null);
+  }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.nativelibs;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.io.ByteStreams;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Optional;
+
+/**
+ * Finds the sections of an ELF shared library that are not needed at runtime, reading only the ELF
+ * header and the section header table.
+ *
+ * <p>Sections are told apart by their type and flags rather than by their names, so that compressed
+ * libraries can be inspected in a single streaming pass: the section name table usually precedes
+ * the section headers, and a stream cannot seek back to it.
+ */
+final class ElfInspector {
+
+  private static final int ELF_MAGIC = 0x7f454c46;
+  private static final int ELF_CLASS_32 = 1;
+  private static final int ELF_CLASS_64 = 2;
+  private static final int ELF_DATA_BIG_ENDIAN = 2;
+  private static final int ELF32_HEADER_SIZE = 52;
+  private static final int ELF64_HEADER_SIZE = 64;
+
+  @VisibleForTesting static final int SHT_PROGBITS = 1;
+  @VisibleForTesting static final int SHT_SYMTAB = 2;
+  @VisibleForTesting static final int SHT_STRTAB = 3;
+  @VisibleForTesting static final long SHF_ALLOC = 0x2;
+
+  private ElfInspector() {}
+
+  /** Inspects a library whose content is fully available, such as a memory-mapped one. */
+  static Optional<StrippableSections> inspect(ByteBuffer library) {
+    ByteBuffer elf = library.duplicate();
+    Optional<Header> header = readHeader(elf);
+    if (!header.isPresent()) {
+      return Optional.empty();
+    }
+    long tableSize = header.get().getSectionTableSize();
+    if (header.get().sectionTableOffset + tableSize > elf.limit()) {
+      return Optional.empty();
+    }
+    elf.position((int) header.get().sectionTableOffset);
+    ByteBuffer table = elf.slice().order(elf.order());
+    table.limit((int) tableSize);
+    return Optional.of(readSections(header.get(), table));
+  }
+
+  /**
+   * Inspects a library available as a stream, such as a compressed zip entry. The stream is read up
+   * to the end of the section header table, but only the headers are kept in memory.
+   */
+  static Optional<StrippableSections> inspect(InputStream library) throws IOException {
+    byte[] headerBytes = new byte[ELF64_HEADER_SIZE];
+    int headerLength = ByteStreams.read(library, headerBytes, 0, headerBytes.length);
+    Optional<Header> header = readHeader(ByteBuffer.wrap(headerBytes, 0, headerLength));
+    if (!header.isPresent() || header.get().sectionTableOffset < headerLength) {
+      return Optional.empty();
+    }
+    long tableSize = header.get().getSectionTableSize();
+    if (tableSize > Integer.MAX_VALUE) {
+      return Optional.empty();
+    }
+    byte[] tableBytes = new byte[(int) tableSize];
+    try {
+      ByteStreams.skipFully(library, header.get().sectionTableOffset - headerLength);
+      ByteStreams.readFully(library, tableBytes);
+    } catch (EOFException e) {
+      // Truncated library, there is nothing sensible to report about it.
+      return Optional.empty();
+    }
+    return Optional.of(
+        readSections(header.get(), ByteBuffer.wrap(tableBytes).order(header.get().byteOrder)));
+  }
+
+  private static Optional<Header> readHeader(ByteBuffer elf) {
+    if (elf.limit() < ELF32_HEADER_SIZE
+        || elf.order(ByteOrder.BIG_ENDIAN).getInt(0) != ELF_MAGIC) {
+      return Optional.empty();
+    }
+    int elfClass = elf.get(4);
+    ByteOrder byteOrder =
+        elf.get(5) == ELF_DATA_BIG_ENDIAN ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+    elf.order(byteOrder);
+    Header header = new Header();
+    header.byteOrder = byteOrder;
+    if (elfClass == ELF_CLASS_64 && elf.limit() >= ELF64_HEADER_SIZE) {
+      header.is64Bit = true;
+      header.sectionTableOffset = elf.getLong(0x28);
+      header.sectionEntrySize = Short.toUnsignedInt(elf.getShort(0x3a));
+      header.sectionCount = Short.toUnsignedInt(elf.getShort(0x3c));
+      header.nameTableIndex = Short.toUnsignedInt(elf.getShort(0x3e));
+    } else if (elfClass == ELF_CLASS_32) {
+      header.is64Bit = false;
+      header.sectionTableOffset = Integer.toUnsignedLong(elf.getInt(0x20));
+      header.sectionEntrySize = Short.toUnsignedInt(elf.getShort(0x2e));
+      header.sectionCount = Short.toUnsignedInt(elf.getShort(0x30));
+      header.nameTableIndex = Short.toUnsignedInt(elf.getShort(0x32));
+    } else {
+      return Optional.empty();
+    }
+    int minEntrySize = header.is64Bit ? 64 : 40;
+    // A section count of 0 with a table means more than 0xff00 sections, which is not supported.
+    if (header.sectionTableOffset <= 0
+        || header.sectionCount == 0
+        || header.sectionEntrySize < minEntrySize) {
+      return Optional.empty();
+    }
+    return Optional.of(header);
+  }
+
+  private static StrippableSections readSections(Header header, ByteBuffer table) {
+    int count = header.sectionCount;
+    int[] types = new int[count];
+    long[] flags = new long[count];
+    long[] sizes = new long[count];
+    int[] links = new int[count];
+    for (int i = 0; i < count; i++) {
+      int entry = i * header.sectionEntrySize;
+      types[i] = table.getInt(entry + 4);
+      if (header.is64Bit) {
+        flags[i] = table.getLong(entry + 8);
+        sizes[i] = table.getLong(entry + 32);
+        links[i] = table.getInt(entry + 40);
+      } else {
+        flags[i] = Integer.toUnsignedLong(table.getInt(entry + 8));
+        sizes[i] = Integer.toUnsignedLong(table.getInt(entry + 20));
+        links[i] = table.getInt(entry + 24);
+      }
+    }
+
+    long debugInfoBytes = 0;
+    long symbolTableBytes = 0;
+    for (int i = 0; i < count; i++) {
+      if ((flags[i] & SHF_ALLOC) != 0) {
+        continue;
+      }
+      if (types[i] == SHT_SYMTAB) {
+        symbolTableBytes += sizes[i];
+        int link = links[i];
+        // The string table holding the symbol names goes away with the symbol table.
+        if (link > 0
+            && link < count
+            && link != header.nameTableIndex
+            && types[link] == SHT_STRTAB
+            && (flags[link] & SHF_ALLOC) == 0) {
+          symbolTableBytes += sizes[link];
+        }
+      } else if (types[i] == SHT_PROGBITS) {
+        // Non-allocated program data is never loaded: .debug_*, .gnu_debugdata, .comment...
+        debugInfoBytes += sizes[i];
+      }
+    }
+    return StrippableSections.create(debugInfoBytes, symbolTableBytes);
+  }
+
+  /** Sizes of the sections of a library that stripping would remove. */
+  @AutoValue
+  abstract static class StrippableSections {
+
+    static StrippableSections create(long debugInfoBytes, long symbolTableBytes) {
+      return new AutoValue_ElfInspector_StrippableSections(debugInfoBytes, symbolTableBytes);
+    }
+
+    abstract long getDebugInfoBytes();
+
+    abstract long getSymbolTableBytes();
+
+    long getTotalBytes() {
+      return getDebugInfoBytes() + getSymbolTableBytes();
+    }
+  }
+
+  private static final class Header {
+    private ByteOrder byteOrder;
+    private boolean is64Bit;
+    private long sectionTableOffset;
+    private int sectionEntrySize;
+    private int sectionCount;
+    private int nameTableIndex;
+
+    private long getSectionTableSize() {
+      return (long) sectionEntrySize * sectionCount;
+    }
+  }
+}
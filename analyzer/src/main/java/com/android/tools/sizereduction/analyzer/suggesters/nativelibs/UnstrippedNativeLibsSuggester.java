@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.nativelibs;
+
+import static java.util.Comparator.comparingLong;
+import static java.util.stream.Collectors.joining;
+
+import com.android.tools.build.bundletool.model.AppBundle;
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.UnstrippedNativeLibs;
+import com.android.tools.sizereduction.analyzer.model.BundleContext;
+import com.android.tools.sizereduction.analyzer.model.Context;
+import com.android.tools.sizereduction.analyzer.model.ZipCentralDirectory;
+import com.android.tools.sizereduction.analyzer.model.ZipCentralDirectory.Entry;
+import com.android.tools.sizereduction.analyzer.suggesters.ApkSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.BundleSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.Category;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.IssueType;
+import com.android.tools.sizereduction.analyzer.suggesters.nativelibs.ElfInspector.StrippableSections;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Suggests stripping native libraries that still contain debug info or symbol tables, per ABI.
+ *
+ * <p>Only the ELF header and section header table of each library are read. Libraries stored
+ * uncompressed are inspected through a memory mapping, compressed ones are streamed, so no library
+ * is ever loaded onto the heap.
+ */
+public final class UnstrippedNativeLibsSuggester implements BundleSuggester, ApkSuggester {
+
+  /** Libraries with fewer strippable bytes than this are not worth reporting. */
+  @VisibleForTesting static final long MIN_STRIPPABLE_BYTES = 1024;
+
+  private static final int MAX_LIBRARIES_IN_MESSAGE = 3;
+  private static final Pattern BUNDLE_NATIVE_LIB = Pattern.compile("[^/]+/lib/([^/]+)/[^/]+\\.so");
+  private static final Pattern APK_NATIVE_LIB = Pattern.compile("lib/([^/]+)/[^/]+\\.so");
+
+  @Override
+  public ImmutableList<Suggestion> processBundle(
+      BundleContext context, AppBundle bundle, ZipFile bundleZip) {
+    return processZip(bundleZip, BUNDLE_NATIVE_LIB);
+  }
+
+  @Override
+  public ImmutableList<Suggestion> processApk(Context context, ZipFile apk) {
+    return processZip(apk, APK_NATIVE_LIB);
+  }
+
+  private static ImmutableList<Suggestion> processZip(ZipFile zipFile, Pattern nativeLibPattern) {
+    Map<String, List<UnstrippedLibrary>> librariesByAbi = new TreeMap<>();
+    try (ZipCentralDirectory directory = ZipCentralDirectory.open(Paths.get(zipFile.getName()))) {
+      for (Entry entry : directory.getEntries()) {
+        Matcher matcher = nativeLibPattern.matcher(entry.getName());
+        if (!matcher.matches()) {
+          continue;
+        }
+        Optional<StrippableSections> sections = inspect(directory, zipFile, entry);
+        if (sections.isPresent() && sections.get().getTotalBytes() >= MIN_STRIPPABLE_BYTES) {
+          librariesByAbi
+              .computeIfAbsent(matcher.group(1), abi -> new ArrayList<>())
+              .add(new UnstrippedLibrary(entry, sections.get()));
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    ImmutableList.Builder<Suggestion> suggestions = ImmutableList.builder();
+    librariesByAbi.forEach((abi, libraries) -> suggestions.add(createSuggestion(abi, libraries)));
+    return suggestions.build();
+  }
+
+  private static Optional<StrippableSections> inspect(
+      ZipCentralDirectory directory, ZipFile zipFile, Entry entry) throws IOException {
+    if (entry.getMethod() == ZipEntry.STORED) {
+      return ElfInspector.inspect(directory.mapData(entry));
+    }
+    ZipEntry zipEntry = zipFile.getEntry(entry.getName());
+    if (zipEntry == null) {
+      return Optional.empty();
+    }
+    try (InputStream inputStream = zipFile.getInputStream(zipEntry)) {
+      return ElfInspector.inspect(inputStream);
+    }
+  }
+
+  private static Suggestion createSuggestion(String abi, List<UnstrippedLibrary> libraries) {
+    libraries.sort(comparingLong(UnstrippedLibrary::getTotalBytes).reversed());
+    UnstrippedNativeLibs.Builder payload = UnstrippedNativeLibs.newBuilder().setAbi(abi);
+    long strippableBytes = 0;
+    long estimatedBytesSaved = 0;
+    for (UnstrippedLibrary library : libraries) {
+      payload.addLibraries(
+          UnstrippedNativeLibs.Library.newBuilder()
+              .setPath(library.entry.getName())
+              .setDebugInfoBytes(library.sections.getDebugInfoBytes())
+              .setSymbolTableBytes(library.sections.getSymbolTableBytes()));
+      strippableBytes += library.getTotalBytes();
+      estimatedBytesSaved += library.getEstimatedCompressedBytes();
+    }
+
+    String names =
+        libraries.stream()
+            .limit(MAX_LIBRARIES_IN_MESSAGE)
+            .map(library -> library.entry.getName())
+            .map(name -> name.substring(name.lastIndexOf('/') + 1))
+            .collect(joining(", "));
+    if (libraries.size() > MAX_LIBRARIES_IN_MESSAGE) {
+      names += " and " + (libraries.size() - MAX_LIBRARIES_IN_MESSAGE) + " more";
+    }
+    String message =
+        "Native libraries for "
+            + abi
+            + " contain "
+            + strippableBytes
+            + " bytes of debug info and symbol tables that are not needed at runtime ("
+            + names
+            + "). Make sure the NDK is available to the Android Gradle plugin so that it can strip"
+            + " them, and that they are not excluded with packagingOptions.doNotStrip.";
+
+    return Suggestion.create(
+        IssueType.NATIVE_LIBS_UNSTRIPPED,
+        Category.NATIVE_LIBS,
+        Payload.newBuilder().setUnstrippedNativeLibs(payload).build(),
+        message,
+        estimatedBytesSaved,
+        /* autoFix= */ null);
+  }
+
+  /** Library with strippable sections, along with its archive entry. */
+  private static final class UnstrippedLibrary {
+    private final Entry entry;
+    private final StrippableSections sections;
+
+    private UnstrippedLibrary(Entry entry, StrippableSections sections) {
+      this.entry = entry;
+      this.sections = sections;
+    }
+
+    private long getTotalBytes() {
+      return sections.getTotalBytes();
+    }
+
+    /**
+     * Scales the strippable bytes by the compression ratio of the library, as an estimate of what
+     * stripping saves in download size.
+     */
+    private long getEstimatedCompressedBytes() {
+      if (entry.getUncompressedSize() == 0) {
+        return 0;
+      }
+      return (long)
+          ((double) getTotalBytes() * entry.getCompressedSize() / entry.getUncompressedSize());
+    }
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.proguard;
+
+import static java.util.Comparator.comparingLong;
+
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.DexModuleData;
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.DexModuleData.DexSectionSize;
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.DexSection;
+import com.android.tools.sizereduction.analyzer.model.ZipCentralDirectory;
+import com.android.tools.sizereduction.analyzer.model.ZipCentralDirectory.Entry;
+import com.android.tools.sizereduction.analyzer.suggesters.proguard.DexInspector.DexStats;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Breaks the DEX code of an App Bundle down per module into sections and identifier counts.
+ *
+ * <p>Only the header and map_list of each DEX file are kept. Stored DEX files are inspected through
+ * a memory mapping, compressed ones are streamed, and the files are inspected concurrently.
+ */
+public final class DexBreakdown {
+
+  private static final Pattern BUNDLE_DEX_ENTRY = Pattern.compile("([^/]+)/dex/[^/]+\\.dex");
+
+  private DexBreakdown() {}
+
+  /** Computes the breakdown of the bundle at the given path. */
+  public static ImmutableList<DexModuleData> compute(File bundleFile, int threads) {
+    try (ZipFile bundleZip = new ZipFile(bundleFile)) {
+      return compute(bundleZip, threads);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Computes the breakdown of an opened bundle, in module name order. */
+  public static ImmutableList<DexModuleData> compute(ZipFile bundleZip, int threads) {
+    try (ZipCentralDirectory directory = ZipCentralDirectory.open(Paths.get(bundleZip.getName()))) {
+      List<Entry> dexEntries = new ArrayList<>();
+      List<String> moduleNames = new ArrayList<>();
+      for (Entry entry : directory.getEntries()) {
+        Matcher matcher = BUNDLE_DEX_ENTRY.matcher(entry.getName());
+        if (matcher.matches()) {
+          dexEntries.add(entry);
+          moduleNames.add(matcher.group(1));
+        }
+      }
+      DexStats[] stats = inspectAll(directory, bundleZip, dexEntries, threads);
+
+      // Per module totals, in primitive arrays indexed like the DEX stats.
+      Map<String, long[]> sectionBytesPerModule = new TreeMap<>();
+      Map<String, long[]> countsPerModule = new TreeMap<>();
+      for (int i = 0; i < stats.length; i++) {
+        if (stats[i] == null) {
+          continue;
+        }
+        long[] sectionBytes =
+            sectionBytesPerModule.computeIfAbsent(
+                moduleNames.get(i), name -> new long[DexInspector.SECTION_SLOTS]);
+        for (int section = 0; section < sectionBytes.length; section++) {
+          sectionBytes[section] += stats[i].sectionBytes[section];
+        }
+        long[] counts = countsPerModule.computeIfAbsent(moduleNames.get(i), name -> new long[3]);
+        counts[0]++;
+        counts[1] += stats[i].methodCount;
+        counts[2] += stats[i].fieldCount;
+      }
+
+      ImmutableList.Builder<DexModuleData> modules = ImmutableList.builder();
+      sectionBytesPerModule.forEach(
+          (name, sectionBytes) ->
+              modules.add(createModuleData(name, sectionBytes, countsPerModule.get(name))));
+      return modules.build();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Returns the stats of each DEX entry, or null for the entries that could not be inspected. */
+  private static DexStats[] inspectAll(
+      ZipCentralDirectory directory, ZipFile bundleZip, List<Entry> dexEntries, int threads)
+      throws IOException {
+    DexStats[] stats = new DexStats[dexEntries.size()];
+    if (threads <= 1 || dexEntries.size() <= 1) {
+      for (int i = 0; i < stats.length; i++) {
+        stats[i] = inspect(directory, bundleZip, dexEntries.get(i)).orElse(null);
+      }
+      return stats;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, stats.length));
+    try {
+      List<Future<Optional<DexStats>>> futures = new ArrayList<>();
+      for (Entry entry : dexEntries) {
+        futures.add(executor.submit(() -> inspect(directory, bundleZip, entry)));
+      }
+      for (int i = 0; i < stats.length; i++) {
+        stats[i] = futures.get(i).get().orElse(null);
+      }
+      return stats;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static Optional<DexStats> inspect(
+      ZipCentralDirectory directory, ZipFile bundleZip, Entry entry) throws IOException {
+    if (entry.getMethod() == ZipEntry.STORED) {
+      return DexInspector.inspect(directory.mapData(entry));
+    }
+    ZipEntry zipEntry = bundleZip.getEntry(entry.getName());
+    if (zipEntry == null) {
+      return Optional.empty();
+    }
+    try (InputStream inputStream = bundleZip.getInputStream(zipEntry)) {
+      return DexInspector.inspect(inputStream);
+    }
+  }
+
+  private static DexModuleData createModuleData(String name, long[] sectionBytes, long[] counts) {
+    DexModuleData.Builder module =
+        DexModuleData.newBuilder()
+            .setModuleName(name)
+            .setDexFileCount((int) counts[0])
+            .setMethodCount(counts[1])
+            .setFieldCount(counts[2]);
+    List<DexSectionSize> sections = new ArrayList<>();
+    for (int section = 0; section < sectionBytes.length; section++) {
+      if (sectionBytes[section] > 0) {
+        sections.add(
+            DexSectionSize.newBuilder()
+                .setSection(DexSection.forNumber(section))
+                .setBytes(sectionBytes[section])
+                .build());
+      }
+    }
+    sections.sort(comparingLong(DexSectionSize::getBytes).reversed());
+    return module.addAllSections(sections).build();
+  }
+}
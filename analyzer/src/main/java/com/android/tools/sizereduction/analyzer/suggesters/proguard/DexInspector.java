@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.proguard;
+
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.DexSection;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.io.ByteStreams;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Optional;
+
+/**
+ * Computes how the bytes of a DEX file split into sections, reading only the DEX header and the
+ * map_list rather than parsing the items themselves.
+ */
+final class DexInspector {
+
+  @VisibleForTesting static final int HEADER_SIZE = 0x70;
+  private static final int MAP_ITEM_SIZE = 12;
+  private static final int ENDIAN_CONSTANT = 0x12345678;
+  private static final int SKIP_BUFFER_SIZE = 64 * 1024;
+
+  /** Number of slots in the arrays indexed by {@link DexSection#getNumber()}. */
+  static final int SECTION_SLOTS = DexSection.OTHER_DATA.getNumber() + 1;
+
+  // Inflated bytes before the map_list are read into this buffer and dropped.
+  private static final ThreadLocal<byte[]> skipBuffer =
+      ThreadLocal.withInitial(() -> new byte[SKIP_BUFFER_SIZE]);
+
+  private DexInspector() {}
+
+  /** Inspects a DEX file whose content is fully available. */
+  static Optional<DexStats> inspect(ByteBuffer dex) {
+    ByteBuffer buffer = dex.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    if (buffer.limit() < HEADER_SIZE) {
+      return Optional.empty();
+    }
+    Optional<Header> header = readHeader(buffer);
+    if (!header.isPresent() || header.get().mapOffset + 4 > buffer.limit()) {
+      return Optional.empty();
+    }
+    int mapOffset = (int) header.get().mapOffset;
+    long mapSize = Integer.toUnsignedLong(buffer.getInt(mapOffset)) * MAP_ITEM_SIZE;
+    if (mapOffset + 4 + mapSize > buffer.limit()) {
+      return Optional.empty();
+    }
+    buffer.position(mapOffset + 4);
+    ByteBuffer map = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+    map.limit((int) mapSize);
+    return Optional.of(readMap(header.get(), map));
+  }
+
+  /**
+   * Inspects a DEX file available as a stream, such as a compressed zip entry. The stream is read
+   * up to the end of the map_list, but only the header and the map_list are kept in memory.
+   */
+  static Optional<DexStats> inspect(InputStream dex) throws IOException {
+    try {
+      byte[] headerBytes = new byte[HEADER_SIZE];
+      ByteStreams.readFully(dex, headerBytes);
+      Optional<Header> header =
+          readHeader(ByteBuffer.wrap(headerBytes).order(ByteOrder.LITTLE_ENDIAN));
+      if (!header.isPresent()) {
+        return Optional.empty();
+      }
+      skipFully(dex, header.get().mapOffset - HEADER_SIZE);
+      byte[] countBytes = new byte[4];
+      ByteStreams.readFully(dex, countBytes);
+      ByteBuffer count = ByteBuffer.wrap(countBytes).order(ByteOrder.LITTLE_ENDIAN);
+      long mapSize = Integer.toUnsignedLong(count.getInt(0)) * MAP_ITEM_SIZE;
+      if (header.get().mapOffset + 4 + mapSize > header.get().fileSize) {
+        return Optional.empty();
+      }
+      byte[] mapBytes = new byte[(int) mapSize];
+      ByteStreams.readFully(dex, mapBytes);
+      return Optional.of(
+          readMap(header.get(), ByteBuffer.wrap(mapBytes).order(ByteOrder.LITTLE_ENDIAN)));
+    } catch (EOFException e) {
+      // Truncated DEX file, there is nothing sensible to report about it.
+      return Optional.empty();
+    }
+  }
+
+  private static Optional<Header> readHeader(ByteBuffer buffer) {
+    if (buffer.get(0) != 'd'
+        || buffer.get(1) != 'e'
+        || buffer.get(2) != 'x'
+        || buffer.get(3) != '\n'
+        || buffer.getInt(0x28) != ENDIAN_CONSTANT) {
+      return Optional.empty();
+    }
+    Header header = new Header();
+    header.fileSize = Integer.toUnsignedLong(buffer.getInt(0x20));
+    header.mapOffset = Integer.toUnsignedLong(buffer.getInt(0x34));
+    header.fieldCount = buffer.getInt(0x50);
+    header.methodCount = buffer.getInt(0x58);
+    if (header.mapOffset < HEADER_SIZE || header.mapOffset + 4 > header.fileSize) {
+      return Optional.empty();
+    }
+    return Optional.of(header);
+  }
+
+  private static DexStats readMap(Header header, ByteBuffer map) {
+    int itemCount = map.limit() / MAP_ITEM_SIZE;
+    long[] sectionBytes = new long[SECTION_SLOTS];
+    // Items are sorted by offset, so each one extends to the start of the next.
+    for (int i = 0; i < itemCount; i++) {
+      int item = i * MAP_ITEM_SIZE;
+      int type = Short.toUnsignedInt(map.getShort(item));
+      long offset = Integer.toUnsignedLong(map.getInt(item + 8));
+      long end =
+          i + 1 < itemCount
+              ? Integer.toUnsignedLong(map.getInt(item + MAP_ITEM_SIZE + 8))
+              : header.fileSize;
+      if (end > offset) {
+        sectionBytes[toSection(type).getNumber()] += end - offset;
+      }
+    }
+    return new DexStats(sectionBytes, header.methodCount, header.fieldCount);
+  }
+
+  @VisibleForTesting
+  static DexSection toSection(int mapItemType) {
+    switch (mapItemType) {
+      case 0x0001: // string_id_item
+      case 0x2002: // string_data_item
+        return DexSection.STRINGS;
+      case 0x0002: // type_id_item
+      case 0x1001: // type_list
+        return DexSection.TYPES;
+      case 0x0003: // proto_id_item
+        return DexSection.PROTOS;
+      case 0x0004: // field_id_item
+        return DexSection.FIELDS;
+      case 0x0005: // method_id_item
+        return DexSection.METHODS;
+      case 0x0006: // class_def_item
+      case 0x2000: // class_data_item
+        return DexSection.CLASSES;
+      case 0x2001: // code_item
+        return DexSection.CODE;
+      case 0x2003: // debug_info_item
+        return DexSection.DEBUG_INFO;
+      case 0x1002: // annotation_set_ref_list
+      case 0x1003: // annotation_set_item
+      case 0x2004: // annotation_item
+      case 0x2006: // annotations_directory_item
+        return DexSection.ANNOTATIONS;
+      default:
+        return DexSection.OTHER_DATA;
+    }
+  }
+
+  private static void skipFully(InputStream inputStream, long bytes) throws IOException {
+    byte[] buffer = skipBuffer.get();
+    long remaining = bytes;
+    while (remaining > 0) {
+      int read = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+      if (read < 0) {
+        throw new EOFException();
+      }
+      remaining -= read;
+    }
+  }
+
+  /** Section sizes and identifier counts of a single DEX file. */
+  static final class DexStats {
+    /** Bytes per section, indexed by {@link DexSection#getNumber()}. */
+    final long[] sectionBytes;
+
+    final int methodCount;
+    final int fieldCount;
+
+    DexStats(long[] sectionBytes, int methodCount, int fieldCount) {
+      this.sectionBytes = sectionBytes;
+      this.methodCount = methodCount;
+      this.fieldCount = fieldCount;
+    }
+  }
+
+  private static final class Header {
+    private long fileSize;
+    private long mapOffset;
+    private int methodCount;
+    private int fieldCount;
+  }
+}
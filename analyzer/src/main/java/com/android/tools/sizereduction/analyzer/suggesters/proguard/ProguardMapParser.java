@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.proguard;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts the obfuscated and kept classes and members of each package of a Proguard/R8 mapping
+ * file.
+ *
+ * <p>The file is read line by line through fixed-size byte buffers, so memory use only depends on
+ * the number of packages, not on the size of the file. Package names are only decoded when they
+ * differ from the previous class's package, which, as mapping files list the classes of a package
+ * together, happens once per package run.
+ */
+final class ProguardMapParser {
+
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+  // Longer lines are truncated, which only loses the obfuscated name of very long signatures.
+  @VisibleForTesting static final int MAX_LINE_LENGTH = 4096;
+  private static final byte[] ARROW = " -> ".getBytes(UTF_8);
+
+  private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+  private final byte[] line = new byte[MAX_LINE_LENGTH];
+  private final byte[] lastPackage = new byte[MAX_LINE_LENGTH];
+  private int lastPackageLength = -1;
+  private int currentPackage = -1;
+  // Identifies the previous member line, to count the several lines R8 writes for a method once.
+  private int lastMemberHash;
+
+  private final Map<String, Integer> packageIndexes = new HashMap<>();
+  private final List<String> packageNames = new ArrayList<>();
+  private int[] keptClasses = new int[16];
+  private int[] obfuscatedClasses = new int[16];
+  private int[] keptMembers = new int[16];
+  private int[] obfuscatedMembers = new int[16];
+
+  private ProguardMapParser() {}
+
+  /** Parses the mapping file, reading the stream to its end. */
+  static MappingStats parse(InputStream mapping) throws IOException {
+    ProguardMapParser parser = new ProguardMapParser();
+    parser.readLines(mapping);
+    return parser.toStats();
+  }
+
+  private void readLines(InputStream mapping) throws IOException {
+    int length = 0;
+    int read;
+    while ((read = mapping.read(readBuffer)) != -1) {
+      for (int i = 0; i < read; i++) {
+        byte b = readBuffer[i];
+        if (b == '\n' || b == '\r') {
+          processLine(length);
+          length = 0;
+        } else if (length < MAX_LINE_LENGTH) {
+          line[length++] = b;
+        }
+      }
+    }
+    processLine(length);
+  }
+
+  private void processLine(int length) {
+    int start = 0;
+    while (start < length && isWhitespace(line[start])) {
+      start++;
+    }
+    if (start == length || line[start] == '#') {
+      return;
+    }
+    int arrow = indexOf(ARROW, start, length);
+    if (arrow < 0) {
+      return;
+    }
+    int end = length;
+    while (end > arrow && isWhitespace(line[end - 1])) {
+      end--;
+    }
+    if (start == 0) {
+      // Class line: "com.example.Foo -> a.b:".
+      if (end > arrow && line[end - 1] == ':') {
+        end--;
+      }
+      processClass(arrow, arrow + ARROW.length, end);
+    } else {
+      processMember(start, arrow, arrow + ARROW.length, end);
+    }
+  }
+
+  private void processClass(int nameEnd, int obfuscatedStart, int obfuscatedEnd) {
+    int packageEnd = lastIndexOf('.', 0, nameEnd);
+    int packageLength = Math.max(packageEnd, 0);
+    if (packageLength != lastPackageLength
+        || !rangeEquals(line, 0, lastPackage, 0, packageLength)) {
+      System.arraycopy(line, 0, lastPackage, 0, packageLength);
+      lastPackageLength = packageLength;
+      currentPackage = packageIndex(new String(line, 0, packageLength, UTF_8));
+    }
+    lastMemberHash = 0;
+    if (equalRanges(0, nameEnd, obfuscatedStart, obfuscatedEnd)) {
+      keptClasses[currentPackage]++;
+    } else {
+      obfuscatedClasses[currentPackage]++;
+    }
+  }
+
+  private void processMember(int start, int nameEnd, int obfuscatedStart, int obfuscatedEnd) {
+    if (currentPackage < 0) {
+      return;
+    }
+    // Methods look like "1:3:void foo(int):10:12 -> a", fields like "int bar -> b".
+    int signatureEnd = nameEnd;
+    int parenthesis = indexOf('(', start, nameEnd);
+    if (parenthesis >= 0) {
+      int closingParenthesis = indexOf(')', parenthesis, nameEnd);
+      signatureEnd = closingParenthesis >= 0 ? closingParenthesis + 1 : nameEnd;
+      nameEnd = parenthesis;
+    }
+    int nameStart = lastIndexOf(' ', start, nameEnd) + 1;
+    if (nameStart == 0) {
+      return;
+    }
+    if (line[nameStart] == '<') {
+      // Constructors and static initializers are never renamed, they are not kept by any rule.
+      return;
+    }
+    if (indexOf('.', nameStart, nameEnd) >= 0) {
+      // A method of another class inlined into this one, it is not a member of this class.
+      return;
+    }
+    // The signature from the return type on, without the line numbers R8 prefixes it with, so
+    // that overloads renamed to the same name are told apart.
+    int signatureStart = Math.max(lastIndexOf(':', start, nameStart) + 1, start);
+    int hash = hash(signatureStart, signatureEnd, obfuscatedStart, obfuscatedEnd);
+    if (parenthesis >= 0 && hash == lastMemberHash) {
+      // Another line range of the method on the previous line.
+      return;
+    }
+    lastMemberHash = hash;
+    if (equalRanges(nameStart, nameEnd, obfuscatedStart, obfuscatedEnd)) {
+      keptMembers[currentPackage]++;
+    } else {
+      obfuscatedMembers[currentPackage]++;
+    }
+  }
+
+  private int packageIndex(String packageName) {
+    Integer index = packageIndexes.get(packageName);
+    if (index != null) {
+      return index;
+    }
+    int newIndex = packageNames.size();
+    packageNames.add(packageName);
+    packageIndexes.put(packageName, newIndex);
+    if (newIndex == keptClasses.length) {
+      int capacity = newIndex * 2;
+      keptClasses = Arrays.copyOf(keptClasses, capacity);
+      obfuscatedClasses = Arrays.copyOf(obfuscatedClasses, capacity);
+      keptMembers = Arrays.copyOf(keptMembers, capacity);
+      obfuscatedMembers = Arrays.copyOf(obfuscatedMembers, capacity);
+    }
+    return newIndex;
+  }
+
+  private MappingStats toStats() {
+    int count = packageNames.size();
+    return new MappingStats(
+        packageNames.toArray(new String[0]),
+        Arrays.copyOf(keptClasses, count),
+        Arrays.copyOf(obfuscatedClasses, count),
+        Arrays.copyOf(keptMembers, count),
+        Arrays.copyOf(obfuscatedMembers, count));
+  }
+
+  private boolean equalRanges(int start1, int end1, int start2, int end2) {
+    return end1 - start1 == end2 - start2 && rangeEquals(line, start1, line, start2, end1 - start1);
+  }
+
+  private int hash(int signatureStart, int signatureEnd, int obfuscatedStart, int obfuscatedEnd) {
+    int hash = 1;
+    for (int i = signatureStart; i < signatureEnd; i++) {
+      hash = 31 * hash + line[i];
+    }
+    for (int i = obfuscatedStart; i < obfuscatedEnd; i++) {
+      hash = 31 * hash + line[i];
+    }
+    return hash;
+  }
+
+  private int indexOf(byte[] target, int from, int to) {
+    for (int i = from; i <= to - target.length; i++) {
+      if (rangeEquals(line, i, target, 0, target.length)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int indexOf(char c, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (line[i] == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int lastIndexOf(char c, int from, int to) {
+    for (int i = to - 1; i >= from; i--) {
+      if (line[i] == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean rangeEquals(byte[] a, int aFrom, byte[] b, int bFrom, int length) {
+    for (int i = 0; i < length; i++) {
+      if (a[aFrom + i] != b[bFrom + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || b == '\t';
+  }
+
+  /** Obfuscated and kept class and member counts, per package in order of appearance. */
+  static final class MappingStats {
+    private final String[] packageNames;
+    private final int[] keptClasses;
+    private final int[] obfuscatedClasses;
+    private final int[] keptMembers;
+    private final int[] obfuscatedMembers;
+
+    private MappingStats(
+        String[] packageNames,
+        int[] keptClasses,
+        int[] obfuscatedClasses,
+        int[] keptMembers,
+        int[] obfuscatedMembers) {
+      this.packageNames = packageNames;
+      this.keptClasses = keptClasses;
+      this.obfuscatedClasses = obfuscatedClasses;
+      this.keptMembers = keptMembers;
+      this.obfuscatedMembers = obfuscatedMembers;
+    }
+
+    int getPackageCount() {
+      return packageNames.length;
+    }
+
+    /** Returns the package name, empty for the default package. */
+    String getPackageName(int index) {
+      return packageNames[index];
+    }
+
+    int getKeptClassCount(int index) {
+      return keptClasses[index];
+    }
+
+    int getObfuscatedClassCount(int index) {
+      return obfuscatedClasses[index];
+    }
+
+    int getKeptMemberCount(int index) {
+      return keptMembers[index];
+    }
+
+    int getObfuscatedMemberCount(int index) {
+      return obfuscatedMembers[index];
+    }
+
+    /** Classes and members of the package, the unit dex weight is estimated in. */
+    long getEntryCount(int index) {
+      return (long) keptClasses[index]
+          + obfuscatedClasses[index]
+          + keptMembers[index]
+          + obfuscatedMembers[index];
+    }
+
+    long getTotalEntryCount() {
+      long total = 0;
+      for (int i = 0; i < packageNames.length; i++) {
+        total += getEntryCount(i);
+      }
+      return total;
+    }
+  }
+}
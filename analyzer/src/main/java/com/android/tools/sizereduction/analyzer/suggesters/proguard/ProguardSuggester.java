@@ -24,6 +24,9 @@ import com.android.tools.build.bundletool.model.BundleModule;
 import com.android.tools.build.bundletool.model.ModuleEntry;
 import com.android.tools.build.bundletool.model.ZipPath;
 import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.DexModuleData;
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.MappingCoverage;
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.MappingCoverage.PackageCoverage;
 import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.ProguardData;
 import com.android.tools.sizereduction.analyzer.model.BundleContext;
 import com.android.tools.sizereduction.analyzer.model.GradleContext;
@@ -33,18 +36,28 @@ import com.android.tools.sizereduction.analyzer.suggesters.ProjectSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.Category;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.IssueType;
+import com.android.tools.sizereduction.analyzer.suggesters.proguard.ProguardMapParser.MappingStats;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Comparator;
 import java.util.Optional;
 import java.util.OptionalLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 /** Analyzes Proguard usage of a ZIP artifact (should be used on App Bundles only). */
 public final class ProguardSuggester implements BundleSuggester, ProjectSuggester {
 
+  // Packages with fewer unobfuscated classes and members are left out of the report.
+  @VisibleForTesting static final int MIN_UNOBFUSCATED_ENTRIES = 100;
+  @VisibleForTesting static final int MAX_REPORTED_PACKAGES = 10;
 
   private static final String PROGUARD_MAP =
       "BUNDLE-METADATA/com.android.tools.build.obfuscation/proguard.map";
@@ -67,6 +80,20 @@ public final class ProguardSuggester implements BundleSuggester, ProjectSuggeste
       "Your application is not using Proguard or R8 obfuscation, consider enabling it to save "
           + "space.";
 
+  private final Optional<ImmutableList<DexModuleData>> dexBreakdown;
+
+  public ProguardSuggester() {
+    this(Optional.empty());
+  }
+
+  /**
+   * Creates a suggester that adds the given DEX breakdown of the analyzed bundle to the payload of
+   * its suggestions. The breakdown is computed by the caller, at most once per bundle.
+   */
+  public ProguardSuggester(Optional<ImmutableList<DexModuleData>> dexBreakdown) {
+    this.dexBreakdown = dexBreakdown;
+  }
+
   @Override
   public ImmutableList<Suggestion> processBundle(
       BundleContext context, AppBundle bundle, ZipFile bundleZip) {
@@ -118,8 +145,97 @@ public final class ProguardSuggester implements BundleSuggester, ProjectSuggeste
               /* autoFix= */ null));
     }
 
-    // Everything is fine with the map, no suggestions.
-    return ImmutableList.of();
+    MappingStats mappingStats;
+    try (InputStream mapping = bundleZip.getInputStream(proguardEntry)) {
+      mappingStats = ProguardMapParser.parse(mapping);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    MappingCoverage coverage = mappingCoverage(mappingStats, totalDex);
+    if (coverage.getUnobfuscatedPackagesList().isEmpty()) {
+      // Everything is fine with the map, no suggestions.
+      return ImmutableList.of();
+    }
+    Payload dexPayload = totalDexPayload(totalDex);
+    return ImmutableList.of(
+        Suggestion.create(
+            IssueType.PROGUARD_UNOBFUSCATED_PACKAGES,
+            Category.PROGUARD,
+            dexPayload.toBuilder()
+                .setProguardData(
+                    dexPayload.getProguardData().toBuilder().setMappingCoverage(coverage))
+                .build(),
+            unobfuscatedPackagesMessage(coverage),
+            /* estimatedBytesSaved= */ null,
+            /* autoFix= */ null));
+  }
+
+  @VisibleForTesting
+  static MappingCoverage mappingCoverage(MappingStats stats, OptionalLong totalDex) {
+    long totalEntries = stats.getTotalEntryCount();
+    MappingCoverage.Builder coverage = MappingCoverage.newBuilder();
+    for (int i = 0; i < stats.getPackageCount(); i++) {
+      coverage
+          .setClassCount(
+              coverage.getClassCount()
+                  + stats.getKeptClassCount(i)
+                  + stats.getObfuscatedClassCount(i))
+          .setObfuscatedClassCount(
+              coverage.getObfuscatedClassCount() + stats.getObfuscatedClassCount(i))
+          .setMemberCount(
+              coverage.getMemberCount()
+                  + stats.getKeptMemberCount(i)
+                  + stats.getObfuscatedMemberCount(i))
+          .setObfuscatedMemberCount(
+              coverage.getObfuscatedMemberCount() + stats.getObfuscatedMemberCount(i));
+    }
+    IntStream.range(0, stats.getPackageCount())
+        .filter(i -> unobfuscatedEntries(stats, i) >= MIN_UNOBFUSCATED_ENTRIES)
+        .filter(i -> unobfuscatedEntries(stats, i) * 2 > stats.getEntryCount(i))
+        .boxed()
+        .sorted(
+            Comparator.comparingLong((Integer i) -> unobfuscatedEntries(stats, i))
+                .reversed()
+                .thenComparing(stats::getPackageName))
+        .limit(MAX_REPORTED_PACKAGES)
+        .forEach(
+            i ->
+                coverage.addUnobfuscatedPackages(
+                    PackageCoverage.newBuilder()
+                        .setPackageName(stats.getPackageName(i))
+                        .setClassCount(
+                            stats.getKeptClassCount(i) + stats.getObfuscatedClassCount(i))
+                        .setObfuscatedClassCount(stats.getObfuscatedClassCount(i))
+                        .setMemberCount(
+                            stats.getKeptMemberCount(i) + stats.getObfuscatedMemberCount(i))
+                        .setObfuscatedMemberCount(stats.getObfuscatedMemberCount(i))
+                        .setEstimatedDexBytes(
+                            totalDex.isPresent() && totalEntries > 0
+                                ? totalDex.getAsLong() * stats.getEntryCount(i) / totalEntries
+                                : 0)));
+    return coverage.build();
+  }
+
+  private static long unobfuscatedEntries(MappingStats stats, int index) {
+    return (long) stats.getKeptClassCount(index) + stats.getKeptMemberCount(index);
+  }
+
+  private static String unobfuscatedPackagesMessage(MappingCoverage coverage) {
+    return "Most classes and members of these packages are not obfuscated, review the -keep rules"
+        + " matching them: "
+        + coverage.getUnobfuscatedPackagesList().stream()
+            .map(
+                packageCoverage ->
+                    String.format(
+                        "%s (%d of %d classes kept, ~%d KB of dex)",
+                        packageCoverage.getPackageName().isEmpty()
+                            ? "<default package>"
+                            : packageCoverage.getPackageName(),
+                        packageCoverage.getClassCount() - packageCoverage.getObfuscatedClassCount(),
+                        packageCoverage.getClassCount(),
+                        packageCoverage.getEstimatedDexBytes() / 1024))
+            .collect(Collectors.joining(", "))
+        + ".";
   }
 
   @Override
@@ -174,14 +290,17 @@ public final class ProguardSuggester implements BundleSuggester, ProjectSuggeste
     return suggestions.build();
   }
 
-  private static Payload totalDexPayload(OptionalLong totalDex) {
+  private Payload totalDexPayload(OptionalLong totalDex) {
     if (!totalDex.isPresent()) {
       // Incorrect multidex usage, no payload can be provided.
       return Payload.getDefaultInstance();
     }
 
     return Payload.newBuilder()
-        .setProguardData(ProguardData.newBuilder().setTotalDexSize(totalDex.getAsLong()))
+        .setProguardData(
+            ProguardData.newBuilder()
+                .setTotalDexSize(totalDex.getAsLong())
+                .addAllModules(dexBreakdown.orElse(ImmutableList.of())))
         .build();
   }
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.tracing;
+
+import com.android.tools.sizereduction.analyzer.tracing.DynamicEventType.Field;
+import java.io.File;
+
+/**
+ * Java Flight Recorder events emitted by the analyzer, so that a recording of a slow run shows
+ * which phases and which files the time went to. Run the analyzer with {@code
+ * -XX:StartFlightRecording} to record them.
+ *
+ * <p>Each method opens a span to close once the work is done, typically in a try-with-resources
+ * statement. Without a recording the spans are not recorded, and opening one only checks whether
+ * its event type is enabled.
+ */
+public final class AnalyzerEvents {
+
+  private static final String PREFIX = "com.android.tools.sizereduction.";
+
+  private static final DynamicEventType ANALYSIS =
+      new DynamicEventType(
+          PREFIX + "Analysis",
+          "Analysis",
+          "Analysis of a bundle or project",
+          Field.of(String.class, "artifact", "Artifact"),
+          Field.of(String.class, "operation", "Operation"));
+  private static final DynamicEventType MODULE_CONTEXT =
+      new DynamicEventType(
+          PREFIX + "ModuleContext",
+          "Module Context Creation",
+          "Creation of the context the suggesters analyze the files of a module in",
+          Field.of(String.class, "module", "Module"));
+  private static final DynamicEventType GRADLE_PARSE =
+      new DynamicEventType(
+          PREFIX + "GradleParse",
+          "Gradle Parse",
+          "Parse of a Gradle build file",
+          Field.of(String.class, "buildFile", "Build File"));
+  private static final DynamicEventType SUGGESTER_INVOCATION =
+      new DynamicEventType(
+          PREFIX + "SuggesterInvocation",
+          "Suggester Invocation",
+          "Invocation of a suggester on a single bundle entry or project file",
+          Field.of(String.class, "suggester", "Suggester"),
+          Field.of(String.class, "path", "Path"),
+          Field.of(long.class, "size", "Size"));
+  private static final DynamicEventType IMAGE_DECODE =
+      new DynamicEventType(
+          PREFIX + "ImageDecode",
+          "Image Decode",
+          "Decode of the pixels of an image",
+          Field.of(String.class, "path", "Path"),
+          Field.of(boolean.class, "banded", "Banded"));
+  private static final DynamicEventType WEBP_ENCODE =
+      new DynamicEventType(
+          PREFIX + "WebpEncode",
+          "WebP Encode",
+          "Lossless webp encoding of an image or image tile",
+          Field.of(int.class, "width", "Width"),
+          Field.of(int.class, "height", "Height"));
+
+  private AnalyzerEvents() {}
+
+  /** Opens a span covering an analysis operation of the given artifact. */
+  public static TraceSpan analysis(File artifact, String operation) {
+    if (!ANALYSIS.isEnabled()) {
+      return TraceSpan.NONE;
+    }
+    return ANALYSIS.begin(artifact.getPath(), operation);
+  }
+
+  /** Opens a span covering the creation of the context of a module. */
+  public static TraceSpan moduleContext(String module) {
+    if (!MODULE_CONTEXT.isEnabled()) {
+      return TraceSpan.NONE;
+    }
+    return MODULE_CONTEXT.begin(module);
+  }
+
+  /** Opens a span covering the parse of the given Gradle build file. */
+  public static TraceSpan gradleParse(File buildFile) {
+    if (!GRADLE_PARSE.isEnabled()) {
+      return TraceSpan.NONE;
+    }
+    return GRADLE_PARSE.begin(buildFile.getPath());
+  }
+
+  /** Opens a span covering the invocation of the suggester on the file at the given path. */
+  public static TraceSpan suggesterInvocation(Object suggester, Object path, long size) {
+    if (!SUGGESTER_INVOCATION.isEnabled()) {
+      return TraceSpan.NONE;
+    }
+    return SUGGESTER_INVOCATION.begin(suggester.getClass().getName(), path.toString(), size);
+  }
+
+  /** Opens a span covering the decode of the image at the given path. */
+  public static TraceSpan imageDecode(Object path, boolean banded) {
+    if (!IMAGE_DECODE.isEnabled()) {
+      return TraceSpan.NONE;
+    }
+    return IMAGE_DECODE.begin(path.toString(), banded);
+  }
+
+  /** Opens a span covering the webp encoding of pixels of the given dimensions. */
+  public static TraceSpan webpEncode(int width, int height) {
+    if (!WEBP_ENCODE.isEnabled()) {
+      return TraceSpan.NONE;
+    }
+    return WEBP_ENCODE.begin(width, height);
+  }
+}
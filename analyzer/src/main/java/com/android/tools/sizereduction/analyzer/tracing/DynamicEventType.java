@@ -0,0 +1,317 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.tracing;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Java Flight Recorder event type defined at runtime through {@code jdk.jfr.EventFactory}.
+ *
+ * <p>The analyzer is built for Java 8, where the {@code jdk.jfr} API may not exist, so the API is
+ * only reached through method handles. When it is missing, or until the flight recorder has been
+ * initialized, the event type is never enabled and spans are not recorded. Checking whether the
+ * type is enabled costs a couple of field reads, so spans can be opened around every unit of work.
+ */
+final class DynamicEventType {
+
+  private static final String CATEGORY = "Size Analyzer";
+
+  private final String name;
+  private final String label;
+  private final String description;
+  private final ImmutableList<Field> fields;
+  private volatile Object factory;
+  private volatile Object eventType;
+
+  DynamicEventType(String name, String label, String description, Field... fields) {
+    this.name = name;
+    this.label = label;
+    this.description = description;
+    this.fields = ImmutableList.copyOf(fields);
+  }
+
+  /** Returns whether a recording is currently collecting events of this type. */
+  boolean isEnabled() {
+    if (!Jfr.AVAILABLE) {
+      return false;
+    }
+    Object type = eventType;
+    if (type == null) {
+      // Flight recordings can be started at any time, so the type is registered on first use.
+      if (!Jfr.isInitialized()) {
+        return false;
+      }
+      type = register();
+    }
+    return Jfr.isEnabled(type);
+  }
+
+  /**
+   * Starts an event with the given field values, in the order the fields were declared. The event
+   * is committed when the returned span is closed.
+   */
+  TraceSpan begin(Object... values) {
+    if (!isEnabled()) {
+      return TraceSpan.NONE;
+    }
+    Object event = Jfr.newEvent(factory);
+    for (int i = 0; i < values.length; i++) {
+      Jfr.set(event, i, values[i]);
+    }
+    Jfr.begin(event);
+    return () -> Jfr.commit(event);
+  }
+
+  private synchronized Object register() {
+    if (eventType == null) {
+      List<Object> descriptors = new ArrayList<>();
+      for (Field field : fields) {
+        descriptors.add(Jfr.newValueDescriptor(field.type, field.name, field.label));
+      }
+      Object newFactory = Jfr.newFactory(name, label, description, CATEGORY, descriptors);
+      factory = newFactory;
+      eventType = Jfr.getEventType(newFactory);
+    }
+    return eventType;
+  }
+
+  /** A field of the event, holding one of the value types supported by the flight recorder. */
+  static final class Field {
+    private final Class<?> type;
+    private final String name;
+    private final String label;
+
+    private Field(Class<?> type, String name, String label) {
+      this.type = type;
+      this.name = name;
+      this.label = label;
+    }
+
+    static Field of(Class<?> type, String name, String label) {
+      return new Field(type, name, label);
+    }
+  }
+
+  /** Method handles on the {@code jdk.jfr} API, resolved once if the API exists. */
+  private static final class Jfr {
+    static final boolean AVAILABLE;
+    private static final MethodHandle IS_INITIALIZED;
+    private static final MethodHandle NEW_ANNOTATION;
+    private static final MethodHandle NEW_VALUE_DESCRIPTOR;
+    private static final MethodHandle CREATE_FACTORY;
+    private static final MethodHandle GET_EVENT_TYPE;
+    private static final MethodHandle IS_ENABLED;
+    private static final MethodHandle NEW_EVENT;
+    private static final MethodHandle SET;
+    private static final MethodHandle BEGIN;
+    private static final MethodHandle COMMIT;
+    private static final Class<?> NAME;
+    private static final Class<?> LABEL;
+    private static final Class<?> DESCRIPTION;
+    private static final Class<?> CATEGORY;
+    private static final Class<?> ANNOTATION_ELEMENT;
+
+    static {
+      boolean available = false;
+      MethodHandle isInitialized = null;
+      MethodHandle newAnnotation = null;
+      MethodHandle newValueDescriptor = null;
+      MethodHandle createFactory = null;
+      MethodHandle getEventType = null;
+      MethodHandle isEnabled = null;
+      MethodHandle newEvent = null;
+      MethodHandle set = null;
+      MethodHandle begin = null;
+      MethodHandle commit = null;
+      Class<?> nameClass = null;
+      Class<?> labelClass = null;
+      Class<?> descriptionClass = null;
+      Class<?> categoryClass = null;
+      Class<?> annotationElementClass = null;
+      try {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        Class<?> flightRecorder = Class.forName("jdk.jfr.FlightRecorder");
+        Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+        Class<?> eventTypeClass = Class.forName("jdk.jfr.EventType");
+        Class<?> event = Class.forName("jdk.jfr.Event");
+        Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+        annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+        nameClass = Class.forName("jdk.jfr.Name");
+        labelClass = Class.forName("jdk.jfr.Label");
+        descriptionClass = Class.forName("jdk.jfr.Description");
+        categoryClass = Class.forName("jdk.jfr.Category");
+
+        isInitialized =
+            lookup.findStatic(
+                flightRecorder, "isInitialized", MethodType.methodType(boolean.class));
+        newAnnotation =
+            generic(
+                lookup.findConstructor(
+                    annotationElementClass,
+                    MethodType.methodType(void.class, Class.class, Object.class)));
+        newValueDescriptor =
+            generic(
+                lookup.findConstructor(
+                    valueDescriptor,
+                    MethodType.methodType(void.class, Class.class, String.class, List.class)));
+        createFactory =
+            generic(
+                lookup.findStatic(
+                    eventFactory,
+                    "create",
+                    MethodType.methodType(eventFactory, List.class, List.class)));
+        getEventType =
+            generic(
+                lookup.findVirtual(
+                    eventFactory, "getEventType", MethodType.methodType(eventTypeClass)));
+        isEnabled =
+            generic(
+                lookup.findVirtual(
+                    eventTypeClass, "isEnabled", MethodType.methodType(boolean.class)));
+        newEvent =
+            generic(lookup.findVirtual(eventFactory, "newEvent", MethodType.methodType(event)));
+        set =
+            generic(
+                lookup.findVirtual(
+                    event, "set", MethodType.methodType(void.class, int.class, Object.class)));
+        begin = generic(lookup.findVirtual(event, "begin", MethodType.methodType(void.class)));
+        commit = generic(lookup.findVirtual(event, "commit", MethodType.methodType(void.class)));
+        available = true;
+      } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+        // No flight recorder in this runtime, no event is ever recorded.
+      }
+      AVAILABLE = available;
+      IS_INITIALIZED = isInitialized;
+      NEW_ANNOTATION = newAnnotation;
+      NEW_VALUE_DESCRIPTOR = newValueDescriptor;
+      CREATE_FACTORY = createFactory;
+      GET_EVENT_TYPE = getEventType;
+      IS_ENABLED = isEnabled;
+      NEW_EVENT = newEvent;
+      SET = set;
+      BEGIN = begin;
+      COMMIT = commit;
+      NAME = nameClass;
+      LABEL = labelClass;
+      DESCRIPTION = descriptionClass;
+      CATEGORY = categoryClass;
+      ANNOTATION_ELEMENT = annotationElementClass;
+    }
+
+    /** Erases the types of the handle to Object, so that it can be invoked exactly. */
+    private static MethodHandle generic(MethodHandle handle) {
+      MethodType type = handle.type().erase();
+      return handle.asType(type);
+    }
+
+    static boolean isInitialized() {
+      try {
+        return (boolean) IS_INITIALIZED.invokeExact();
+      } catch (Throwable t) {
+        throw propagate(t);
+      }
+    }
+
+    static boolean isEnabled(Object eventType) {
+      try {
+        return (boolean) IS_ENABLED.invokeExact(eventType);
+      } catch (Throwable t) {
+        throw propagate(t);
+      }
+    }
+
+    static Object newValueDescriptor(Class<?> type, String name, String label) {
+      try {
+        List<Object> annotations = new ArrayList<>();
+        annotations.add(newAnnotation(LABEL, label));
+        return (Object)
+            NEW_VALUE_DESCRIPTOR.invokeExact((Object) type, (Object) name, (Object) annotations);
+      } catch (Throwable t) {
+        throw propagate(t);
+      }
+    }
+
+    static Object newFactory(
+        String name, String label, String description, String category, List<Object> fields) {
+      try {
+        List<Object> annotations = new ArrayList<>();
+        annotations.add(newAnnotation(NAME, name));
+        annotations.add(newAnnotation(LABEL, label));
+        annotations.add(newAnnotation(DESCRIPTION, description));
+        annotations.add(newAnnotation(CATEGORY, new String[] {category}));
+        return (Object) CREATE_FACTORY.invokeExact((Object) annotations, (Object) fields);
+      } catch (Throwable t) {
+        throw propagate(t);
+      }
+    }
+
+    static Object getEventType(Object factory) {
+      try {
+        return (Object) GET_EVENT_TYPE.invokeExact(factory);
+      } catch (Throwable t) {
+        throw propagate(t);
+      }
+    }
+
+    static Object newEvent(Object factory) {
+      try {
+        return (Object) NEW_EVENT.invokeExact(factory);
+      } catch (Throwable t) {
+        throw propagate(t);
+      }
+    }
+
+    static void set(Object event, int index, Object value) {
+      try {
+        SET.invokeExact(event, index, value);
+      } catch (Throwable t) {
+        throw propagate(t);
+      }
+    }
+
+    static void begin(Object event) {
+      try {
+        BEGIN.invokeExact(event);
+      } catch (Throwable t) {
+        throw propagate(t);
+      }
+    }
+
+    static void commit(Object event) {
+      try {
+        COMMIT.invokeExact(event);
+      } catch (Throwable t) {
+        throw propagate(t);
+      }
+    }
+
+    private static Object newAnnotation(Class<?> annotationType, Object value) throws Throwable {
+      return (Object) NEW_ANNOTATION.invokeExact((Object) annotationType, value);
+    }
+
+    private static RuntimeException propagate(Throwable t) {
+      Throwables.throwIfUnchecked(t);
+      throw new IllegalStateException(t);
+    }
+  }
+}
@@ -18,8 +18,13 @@ package com.android.tools.sizereduction.analyzer.analyzers;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import com.android.tools.build.bundletool.model.AppBundle;
+import com.android.tools.build.bundletool.model.BundleModuleName;
+import com.android.tools.sizereduction.analyzer.ShardOutput.ShardResults;
 import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
 import com.android.tools.sizereduction.analyzer.model.BundleContext;
+import com.android.tools.sizereduction.analyzer.model.BundleResourceTables;
+import com.android.tools.sizereduction.analyzer.model.ResourceTableIndex;
 import com.android.tools.sizereduction.analyzer.suggesters.BundleEntrySuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.BundleSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
@@ -29,6 +34,12 @@ import com.android.tools.sizereduction.analyzer.utils.TestUtils;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMultimap;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -115,4 +126,109 @@ public final class BundleAnalyzerTest {
 
     assertThat(suggestions).containsExactly(stubSuggestion, stubArtifactSuggestion);
   }
+
+  @Test
+  public void analyze_bundleSuggesters_readResourceTablesThroughIndex() throws Exception {
+    File bundleFile = TestUtils.getTestDataFile(APP_BUNDLE);
+    List<Optional<ResourceTableIndex>> indexedTables = new ArrayList<>();
+    List<Boolean> parsedTables = new ArrayList<>();
+    BundleSuggester resourceSuggester =
+        new BundleSuggester() {
+          @Override
+          public ImmutableList<Suggestion> processBundle(
+              BundleContext context, AppBundle bundle, ZipFile bundleZip) {
+            throw new AssertionError("The resource tables were not offered");
+          }
+
+          @Override
+          public ImmutableList<Suggestion> processBundle(
+              BundleContext context,
+              AppBundle bundle,
+              ZipFile bundleZip,
+              BundleResourceTables resourceTables) {
+            indexedTables.add(resourceTables.getResourceTable("base"));
+            parsedTables.add(
+                bundle.getModules().get(BundleModuleName.BASE_MODULE_NAME).getResourceTable()
+                    .isPresent());
+            return ImmutableList.of();
+          }
+        };
+
+    ImmutableList<Suggestion> suggestions =
+        new BundleAnalyzer(ImmutableList.of(resourceSuggester), ImmutableList.of())
+            .analyze(bundleFile);
+
+    assertThat(suggestions).isEmpty();
+    assertThat(indexedTables).hasSize(1);
+    assertThat(indexedTables.get(0).get().getResourceCount()).isGreaterThan(0);
+    // bundletool never parsed the resources.pb of the base module.
+    assertThat(parsedTables).containsExactly(false);
+  }
+
+  @Test
+  public void analyze_multipleThreads_sameSuggestionsAsSingleThread() throws Exception {
+    File bundleFile = TestUtils.getTestDataFile(APP_BUNDLE);
+    BundleContext context = BundleContext.create(/* minSdkVersion= */ 23);
+    ImmutableMultimap.Builder<ContextAndEntryPath, Suggestion> entrySuggestions =
+        ImmutableMultimap.builder();
+    try (ZipFile zipFile = new ZipFile(bundleFile)) {
+      for (ZipEntry entry : Collections.list(zipFile.entries())) {
+        entrySuggestions.put(
+            ContextAndEntryPath.create(context, entry.getName()),
+            Suggestion.create(
+                Suggestion.IssueType.LARGE_FILES_DYNAMIC_FEATURE,
+                Suggestion.Category.LARGE_FILES,
+                Payload.getDefaultInstance(),
+                entry.getName(),
+                entry.getSize(),
+                /* autoFix= */ null));
+      }
+    }
+    suggester.setEntrySuggestions(entrySuggestions.build());
+
+    ImmutableList<Suggestion> singleThreaded =
+        new BundleAnalyzer(ImmutableList.of(), testEntrySuggesters).analyze(bundleFile);
+    ImmutableList<Suggestion> multiThreaded =
+        new BundleAnalyzer(ImmutableList.of(), testEntrySuggesters, /* threads= */ 4)
+            .analyze(bundleFile);
+
+    assertThat(singleThreaded).isNotEmpty();
+    assertThat(multiThreaded).containsExactlyElementsIn(singleThreaded).inOrder();
+  }
+
+  @Test
+  public void analyzeEntries_shardsTogetherMatchFullAnalysis() throws Exception {
+    File bundleFile = TestUtils.getTestDataFile(APP_BUNDLE);
+    BundleContext context = BundleContext.create(/* minSdkVersion= */ 23);
+    ImmutableMultimap.Builder<ContextAndEntryPath, Suggestion> entrySuggestions =
+        ImmutableMultimap.builder();
+    try (ZipFile zipFile = new ZipFile(bundleFile)) {
+      for (ZipEntry entry : Collections.list(zipFile.entries())) {
+        entrySuggestions.put(
+            ContextAndEntryPath.create(context, entry.getName()),
+            Suggestion.create(
+                Suggestion.IssueType.LARGE_FILES_DYNAMIC_FEATURE,
+                Suggestion.Category.LARGE_FILES,
+                Payload.getDefaultInstance(),
+                entry.getName(),
+                entry.getSize(),
+                /* autoFix= */ null));
+      }
+    }
+    suggester.setEntrySuggestions(entrySuggestions.build());
+    BundleAnalyzer analyzer = new BundleAnalyzer(ImmutableList.of(), testEntrySuggesters);
+
+    ImmutableList<Suggestion> full = analyzer.analyze(bundleFile);
+    for (Shard.Strategy strategy : Shard.Strategy.values()) {
+      ImmutableList.Builder<ShardResults> shards = ImmutableList.builder();
+      for (int index = 0; index < 3; index++) {
+        Shard shard = Shard.create(index, /* count= */ 3, strategy);
+        shards.add(
+            ShardResultsFile.create(
+                shard, /* artifactSha256= */ "", analyzer.analyzeEntries(bundleFile, shard)));
+      }
+
+      assertThat(ShardResultsFile.merge(shards.build())).containsExactlyElementsIn(full).inOrder();
+    }
+  }
 }
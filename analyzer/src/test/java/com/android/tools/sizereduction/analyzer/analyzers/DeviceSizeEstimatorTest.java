@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import com.android.bundle.Devices.DeviceSpec;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class DeviceSizeEstimatorTest {
+
+  private static final BundleEntryIndex INDEX =
+      BundleEntryIndex.builder()
+          .add("base", "dex/classes.dex", 1000, /* onDemand= */ false)
+          .add("base", "lib/arm64-v8a/libfoo.so", 200, /* onDemand= */ false)
+          .add("base", "lib/armeabi-v7a/libfoo.so", 150, /* onDemand= */ false)
+          .add("base", "res/drawable-mdpi/icon.png", 10, /* onDemand= */ false)
+          .add("base", "res/drawable-xhdpi/icon.png", 40, /* onDemand= */ false)
+          .add("base", "res/drawable-xxxhdpi/icon.png", 90, /* onDemand= */ false)
+          .add("base", "res/values/strings.xml", 5, /* onDemand= */ false)
+          .add("base", "res/values-fr/strings.xml", 6, /* onDemand= */ false)
+          .add("base", "res/values-b+de+DE/strings.xml", 7, /* onDemand= */ false)
+          .add("base", "assets/voices#lang_fr/hello.ogg", 300, /* onDemand= */ false)
+          .add("feature", "dex/classes.dex", 5000, /* onDemand= */ true)
+          .build();
+
+  @Test
+  public void selectsSplitsForDevice() {
+    DeviceSpec spec =
+        DeviceSpec.newBuilder()
+            .addSupportedAbis("arm64-v8a")
+            .addSupportedAbis("armeabi-v7a")
+            .setScreenDensity(320)
+            .addSupportedLocales("fr-FR")
+            .setSdkVersion(28)
+            .build();
+
+    assertThat(DeviceSizeEstimator.estimate(INDEX, 21, "pixel", spec).getDownloadBytes())
+        .hasValue(1000L + 200 + 40 + 5 + 6 + 300);
+  }
+
+  @Test
+  public void picksHighestDensityWhenNoneIsLargeEnough() {
+    DeviceSpec spec =
+        DeviceSpec.newBuilder()
+            .addSupportedAbis("armeabi-v7a")
+            .setScreenDensity(800)
+            .addSupportedLocales("de-DE")
+            .setSdkVersion(28)
+            .build();
+
+    assertThat(DeviceSizeEstimator.estimate(INDEX, 21, "tablet", spec).getDownloadBytes())
+        .hasValue(1000L + 150 + 90 + 5 + 7);
+  }
+
+  @Test
+  public void standaloneApkKeepsAllLanguagesAndModules() {
+    DeviceSpec spec =
+        DeviceSpec.newBuilder()
+            .addSupportedAbis("armeabi-v7a")
+            .setScreenDensity(160)
+            .addSupportedLocales("en-US")
+            .setSdkVersion(19)
+            .build();
+
+    assertThat(DeviceSizeEstimator.estimate(INDEX, 16, "kitkat", spec).getDownloadBytes())
+        .hasValue(1000L + 150 + 10 + 5 + 6 + 7 + 300 + 5000);
+  }
+
+  @Test
+  public void reportsUnsupportedDevices() {
+    DeviceSpec x86 = DeviceSpec.newBuilder().addSupportedAbis("x86").setSdkVersion(28).build();
+    DeviceSpec oldDevice =
+        DeviceSpec.newBuilder().addSupportedAbis("armeabi-v7a").setSdkVersion(19).build();
+
+    assertThat(DeviceSizeEstimator.estimate(INDEX, 21, "x86", x86).getDownloadBytes()).isEmpty();
+    assertThat(DeviceSizeEstimator.estimate(INDEX, 21, "old", oldDevice).getDownloadBytes())
+        .isEmpty();
+  }
+}
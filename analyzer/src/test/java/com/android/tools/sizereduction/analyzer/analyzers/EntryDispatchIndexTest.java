@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.android.tools.sizereduction.analyzer.suggesters.EntryInterests;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.nio.file.Paths;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class EntryDispatchIndexTest {
+
+  private static final ImmutableMap<String, EntryInterests> INTERESTS =
+      ImmutableMap.of(
+          "any",
+          EntryInterests.all(),
+          "images",
+          EntryInterests.builder().setExtensions(ImmutableSet.of("png", "jpg")).build(),
+          "largeInstallTime",
+          EntryInterests.builder().setMinSize(1024).setIncludeOnDemand(false).build(),
+          "assets",
+          EntryInterests.builder().setPathPrefixes(ImmutableList.of("assets", "res/raw")).build(),
+          "text",
+          EntryInterests.builder().setExtensions(ImmutableSet.of("txt")).build());
+
+  private final EntryDispatchIndex<String> index =
+      new EntryDispatchIndex<>(INTERESTS.keySet().asList(), INTERESTS::get);
+
+  @Test
+  public void select_byExtension_keepsSuggesterOrder() {
+    assertThat(index.select(Paths.get("res/drawable/icon.PNG"), 10, false))
+        .containsExactly("any", "images")
+        .inOrder();
+    assertThat(index.select(Paths.get("assets/notes.txt"), 10, false))
+        .containsExactly("any", "assets", "text")
+        .inOrder();
+  }
+
+  @Test
+  public void select_unknownExtension_onlyAnyExtensionSuggesters() {
+    assertThat(index.select(Paths.get("lib/x86/libfoo.so"), 10, false)).containsExactly("any");
+    assertThat(index.select(Paths.get("LICENSE"), 10, false)).containsExactly("any");
+  }
+
+  @Test
+  public void select_bySize() {
+    assertThat(index.select(Paths.get("dex/classes.dex"), 1023, false)).containsExactly("any");
+    assertThat(index.select(Paths.get("dex/classes.dex"), 1024, false))
+        .containsExactly("any", "largeInstallTime")
+        .inOrder();
+  }
+
+  @Test
+  public void select_onDemand_excludesInstallTimeSuggesters() {
+    assertThat(index.select(Paths.get("res/raw/video.mp4"), 4096, true))
+        .containsExactly("any", "assets")
+        .inOrder();
+  }
+
+  @Test
+  public void select_pathPrefixes_matchWholeDirectories() {
+    assertThat(index.select(Paths.get("res/raw/video.mp4"), 10, false))
+        .containsExactly("any", "assets")
+        .inOrder();
+    assertThat(index.select(Paths.get("res/rawdata/video.mp4"), 10, false))
+        .containsExactly("any");
+    assertThat(index.select(Paths.get("assets"), 10, false)).containsExactly("any", "assets");
+  }
+
+  @Test
+  public void select_noInterestedSuggester_isEmpty() {
+    EntryDispatchIndex<String> imagesOnly =
+        new EntryDispatchIndex<>(ImmutableList.of("images"), INTERESTS::get);
+
+    assertThat(imagesOnly.select(Paths.get("res/raw/video.mp4"), 4096, false)).isEmpty();
+    assertThat(imagesOnly.select(Paths.get("res/drawable/icon.jpg"), 4096, true))
+        .containsExactly("images");
+  }
+
+  @Test
+  public void interests_upperCaseExtension_throws() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> EntryInterests.builder().setExtensions(ImmutableSet.of("PNG")).build());
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.android.tools.sizereduction.analyzer.analyzers.EntryPipeline.EntryWork;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class EntryPipelineTest {
+
+  private static final int ENTRY_COUNT = 50;
+  private static final int BUFFER_BYTES = 64;
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void run_returnsResultsInWorkOrder() throws Exception {
+    try (ZipFile zipFile = new ZipFile(createZip())) {
+      List<EntryWork<String>> workItems = new ArrayList<>();
+      for (ZipEntry entry : Collections.list(zipFile.entries())) {
+        workItems.add(
+            new EntryWork<>(
+                entry,
+                /* readsContent= */ true,
+                content -> content == null ? "unbuffered" : new String(content, UTF_8)));
+      }
+
+      ImmutableList<String> results = new EntryPipeline(3, BUFFER_BYTES).run(zipFile, workItems);
+
+      assertThat(results).hasSize(ENTRY_COUNT + 1);
+      for (int i = 0; i < ENTRY_COUNT; i++) {
+        assertThat(results.get(i)).isEqualTo(content(i));
+      }
+      // The last entry does not fit in the buffer, it is left for the work to read.
+      assertThat(results.get(ENTRY_COUNT)).isEqualTo("unbuffered");
+    }
+  }
+
+  @Test
+  public void run_workNotReadingContent_isNotBuffered() throws Exception {
+    try (ZipFile zipFile = new ZipFile(createZip())) {
+      List<EntryWork<Boolean>> workItems = new ArrayList<>();
+      for (ZipEntry entry : Collections.list(zipFile.entries())) {
+        workItems.add(
+            new EntryWork<>(entry, /* readsContent= */ false, content -> content == null));
+      }
+
+      ImmutableList<Boolean> results = new EntryPipeline(2, BUFFER_BYTES).run(zipFile, workItems);
+
+      assertThat(results).hasSize(ENTRY_COUNT + 1);
+      assertThat(results).doesNotContain(false);
+    }
+  }
+
+  @Test
+  public void run_failingWork_throws() throws Exception {
+    try (ZipFile zipFile = new ZipFile(createZip())) {
+      List<EntryWork<String>> workItems = new ArrayList<>();
+      for (ZipEntry entry : Collections.list(zipFile.entries())) {
+        workItems.add(
+            new EntryWork<>(
+                entry,
+                /* readsContent= */ true,
+                content -> {
+                  if (entry.getName().equals("file10.txt")) {
+                    throw new IllegalStateException("failed");
+                  }
+                  return entry.getName();
+                }));
+      }
+
+      EntryPipeline pipeline = new EntryPipeline(2, BUFFER_BYTES);
+      IllegalStateException e =
+          assertThrows(IllegalStateException.class, () -> pipeline.run(zipFile, workItems));
+      assertThat(e).hasMessageThat().isEqualTo("failed");
+    }
+  }
+
+  private File createZip() throws Exception {
+    File zip = temporaryFolder.newFile("entries.zip");
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+      for (int i = 0; i < ENTRY_COUNT; i++) {
+        out.putNextEntry(new ZipEntry("file" + i + ".txt"));
+        out.write(content(i).getBytes(UTF_8));
+        out.closeEntry();
+      }
+      out.putNextEntry(new ZipEntry("large.txt"));
+      out.write(Strings.repeat("x", BUFFER_BYTES + 1).getBytes(UTF_8));
+      out.closeEntry();
+    }
+    return zip;
+  }
+
+  private static String content(int index) {
+    return Strings.repeat("content " + index + ";", index % 4 + 1);
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
+import com.android.tools.sizereduction.analyzer.model.FileData;
+import com.android.tools.sizereduction.analyzer.model.GradleContext;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class IncrementalProjectAnalysisTest {
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final List<String> analyzedFiles = new ArrayList<>();
+  private File projectDirectory;
+  private IncrementalProjectAnalysis analysis;
+
+  @Before
+  public void setUp() throws Exception {
+    projectDirectory = temporaryFolder.newFolder("project");
+    write("build.gradle", "");
+    write("app/build.gradle", "");
+    write("app/src/main/AndroidManifest.xml", "<manifest/>");
+    write("app/src/main/res/drawable/icon.png", "icon");
+    write("lib/build.gradle", "");
+    write("lib/src/main/res/drawable/logo.png", "logo");
+    analysis =
+        new IncrementalProjectAnalysis(
+            new ProjectAnalyzer(ImmutableList.of(), ImmutableList.of(this::describeFile)),
+            projectDirectory);
+    analysis.analyzeAll();
+    analyzedFiles.clear();
+  }
+
+  @Test
+  public void update_modifiedFile_reanalyzesOnlyThatFile() throws Exception {
+    File icon = write("app/src/main/res/drawable/icon.png", "bigger icon");
+
+    int updated = analysis.update(ImmutableSet.of(icon));
+
+    assertThat(updated).isEqualTo(1);
+    assertThat(analyzedFiles).containsExactly("app/src/main/res/drawable/icon.png");
+    assertThat(messages()).contains("app/src/main/res/drawable/icon.png (11 bytes)");
+    assertThat(messages()).doesNotContain("app/src/main/res/drawable/icon.png (4 bytes)");
+  }
+
+  @Test
+  public void update_deletedDirectory_dropsItsSuggestions() throws Exception {
+    File drawable = new File(projectDirectory, "lib/src/main/res/drawable");
+    Files.delete(new File(drawable, "logo.png").toPath());
+    Files.delete(drawable.toPath());
+
+    analysis.update(ImmutableSet.of(drawable));
+
+    assertThat(analyzedFiles).isEmpty();
+    assertThat(messages()).doesNotContain("lib/src/main/res/drawable/logo.png (4 bytes)");
+    assertThat(messages()).contains("app/src/main/res/drawable/icon.png (4 bytes)");
+  }
+
+  @Test
+  public void update_manifest_reanalyzesItsModuleOnce() throws Exception {
+    File manifest = write("app/src/main/AndroidManifest.xml", "<manifest></manifest>");
+    File icon = write("app/src/main/res/drawable/icon.png", "new icon");
+
+    int updated = analysis.update(ImmutableSet.of(manifest, icon));
+
+    assertThat(updated).isEqualTo(1);
+    assertThat(analyzedFiles)
+        .containsExactly(
+            "app/build.gradle",
+            "app/src/main/AndroidManifest.xml",
+            "app/src/main/res/drawable/icon.png");
+    assertThat(messages()).contains("lib/src/main/res/drawable/logo.png (4 bytes)");
+  }
+
+  @Test
+  public void update_newFile_isAnalyzed() throws Exception {
+    File splash = write("app/src/main/res/drawable/splash.png", "splash");
+
+    analysis.update(ImmutableSet.of(splash));
+
+    assertThat(messages()).contains("app/src/main/res/drawable/splash.png (6 bytes)");
+  }
+
+  @Test
+  public void update_createdDirectory_analyzesItsFiles() throws Exception {
+    File splash = write("app/src/main/res/drawable-hdpi/splash.png", "splash");
+    File drawable = splash.getParentFile();
+
+    int updated = analysis.update(ImmutableSet.of(drawable, splash), ImmutableSet.of(drawable));
+
+    assertThat(updated).isEqualTo(1);
+    assertThat(analyzedFiles).containsExactly("app/src/main/res/drawable-hdpi/splash.png");
+  }
+
+  @Test
+  public void update_modifiedDirectory_reanalyzesOnlyItsChangedFiles() throws Exception {
+    File icon = write("app/src/main/res/drawable/icon.png", "bigger icon");
+
+    int updated = analysis.update(ImmutableSet.of(icon.getParentFile(), icon));
+
+    assertThat(updated).isEqualTo(1);
+    assertThat(analyzedFiles).containsExactly("app/src/main/res/drawable/icon.png");
+    assertThat(messages()).contains("lib/src/main/res/drawable/logo.png (4 bytes)");
+  }
+
+  private File write(String path, String content) throws Exception {
+    File file = new File(projectDirectory, path);
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), content.getBytes(UTF_8));
+    return file;
+  }
+
+  private ImmutableList<String> messages() {
+    return analysis.getSuggestions().stream()
+        .map(Suggestion::getMessage)
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  private ImmutableList<Suggestion> describeFile(GradleContext context, FileData fileData) {
+    String path = fileData.getPathWithinRoot().toString().replace(File.separatorChar, '/');
+    synchronized (analyzedFiles) {
+      analyzedFiles.add(path);
+    }
+    return ImmutableList.of(
+        Suggestion.create(
+            Suggestion.IssueType.LARGE_FILES_DYNAMIC_FEATURE,
+            Suggestion.Category.LARGE_FILES,
+            Payload.getDefaultInstance(),
+            path + " (" + fileData.getSize() + " bytes)",
+            /* estimatedBytesSaved= */ null,
+            /* autoFix= */ null));
+  }
+}
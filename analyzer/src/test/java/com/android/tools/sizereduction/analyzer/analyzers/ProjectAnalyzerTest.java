@@ -16,8 +16,10 @@
 
 package com.android.tools.sizereduction.analyzer.analyzers;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.android.bundle.AppDependenciesOuterClass.Library;
 import com.android.bundle.AppDependenciesOuterClass.MavenLibrary;
@@ -25,6 +27,7 @@ import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
 import com.android.tools.sizereduction.analyzer.model.AndroidPluginVersion;
 import com.android.tools.sizereduction.analyzer.model.BundleConfig;
 import com.android.tools.sizereduction.analyzer.model.BundleConfigLocation;
+import com.android.tools.sizereduction.analyzer.model.FileData;
 import com.android.tools.sizereduction.analyzer.model.GradleContext;
 import com.android.tools.sizereduction.analyzer.model.ProguardConfig;
 import com.android.tools.sizereduction.analyzer.suggesters.ProjectSuggester;
@@ -34,6 +37,7 @@ import com.android.tools.sizereduction.analyzer.suggesters.testing.FakeSuggester
 import com.android.tools.sizereduction.analyzer.suggesters.testing.FakeSuggester.ContextAndEntryPath;
 import com.android.tools.sizereduction.analyzer.utils.TestUtils;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
@@ -42,7 +46,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.stream.Stream;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
@@ -53,6 +59,8 @@ public final class ProjectAnalyzerTest {
   private static final String APP_PROJECT = "projects/simple_bundle_app/app";
   private static final String IGNORABLE_FILES_PROJECT = "projects/app_with_ignorable_files";
 
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   private final FakeSuggester suggester = new FakeSuggester();
   private ImmutableList<ProjectTreeSuggester> testSuggesters;
   private ImmutableList<ProjectSuggester> testProjectSuggesters;
@@ -217,6 +225,238 @@ public final class ProjectAnalyzerTest {
     assertThat(suggester.getAnalyzedEntries()).containsExactly("build.gradle");
   }
 
+  @Test
+  public void analyzeFile_matchesFullAnalysis() throws Exception {
+    ProjectAnalyzer analyzer =
+        new ProjectAnalyzer(
+            ImmutableList.of(), ImmutableList.of(ProjectAnalyzerTest::describeFile));
+    File rootProject = TestUtils.getTestDataFile(ROOT_PROJECT);
+
+    ImmutableListMultimap<File, Suggestion> suggestionsBySource =
+        analyzer.analyzeBySource(rootProject);
+
+    assertThat(suggestionsBySource.keySet())
+        .hasSize(filesUnderDirectory(rootProject.toPath()).size());
+    for (File file : suggestionsBySource.keySet()) {
+      assertThat(analyzer.analyzeFile(rootProject, file))
+          .containsExactlyElementsIn(suggestionsBySource.get(file))
+          .inOrder();
+    }
+  }
+
+  @Test
+  public void analyzeBySource_module_matchesFullAnalysis() throws Exception {
+    ProjectAnalyzer analyzer =
+        new ProjectAnalyzer(
+            ImmutableList.of(ProjectAnalyzerTest::describeProject),
+            ImmutableList.of(ProjectAnalyzerTest::describeFile));
+    File rootProject = TestUtils.getTestDataFile(ROOT_PROJECT);
+    File appProject = TestUtils.getTestDataFile(APP_PROJECT);
+
+    ImmutableListMultimap<File, Suggestion> moduleSuggestions =
+        analyzer.analyzeBySource(rootProject, appProject);
+
+    ImmutableListMultimap<File, Suggestion> allSuggestions = analyzer.analyzeBySource(rootProject);
+    assertThat(moduleSuggestions).isNotEmpty();
+    assertThat(moduleSuggestions.entries())
+        .containsExactlyElementsIn(
+            allSuggestions.entries().stream()
+                .filter(entry -> entry.getKey().toPath().startsWith(appProject.toPath()))
+                .collect(toImmutableList()))
+        .inOrder();
+  }
+
+  @Test
+  public void analyzeChangedFiles_matchesFullAnalysisOfThoseSources() throws Exception {
+    ProjectAnalyzer analyzer =
+        new ProjectAnalyzer(
+            ImmutableList.of(ProjectAnalyzerTest::describeProject),
+            ImmutableList.of(ProjectAnalyzerTest::describeFile));
+    File rootProject = TestUtils.getTestDataFile(ROOT_PROJECT);
+    File appProject = TestUtils.getTestDataFile(APP_PROJECT);
+    File buildFile = new File(appProject, "build.gradle");
+    File image = new File(appProject, "src/main/res/mipmap-hdpi/ic_launcher.png");
+    File deleted = new File(appProject, "src/main/res/drawable/deleted.png");
+
+    ImmutableListMultimap<File, Suggestion> changedSuggestions =
+        analyzer.analyzeChangedFiles(rootProject, ImmutableList.of(image, buildFile, deleted));
+
+    ImmutableListMultimap<File, Suggestion> allSuggestions = analyzer.analyzeBySource(rootProject);
+    assertThat(changedSuggestions.keySet()).containsExactly(image, appProject, buildFile).inOrder();
+    for (File source : changedSuggestions.keySet()) {
+      assertThat(changedSuggestions.get(source))
+          .containsExactlyElementsIn(allSuggestions.get(source))
+          .inOrder();
+    }
+  }
+
+  @Test
+  public void analyzeBySource_settingsGradle_matchesDiscoveredModules() throws Exception {
+    ProjectAnalyzer analyzer =
+        new ProjectAnalyzer(
+            ImmutableList.of(ProjectAnalyzerTest::describeProject),
+            ImmutableList.of(ProjectAnalyzerTest::describeFile),
+            /* threads= */ 4);
+    File rootProject = copyTestProject(ROOT_PROJECT);
+    ImmutableListMultimap<File, Suggestion> discoveredSuggestions =
+        analyzer.analyzeBySource(rootProject);
+    File settingsFile = new File(rootProject, "settings.gradle");
+    Files.write(settingsFile.toPath(), "include ':app', ':dynamic_feature'\n".getBytes(UTF_8));
+
+    ImmutableListMultimap<File, Suggestion> settingsSuggestions =
+        analyzer.analyzeBySource(rootProject);
+
+    assertThat(settingsSuggestions.keySet()).contains(settingsFile);
+    assertThat(
+            settingsSuggestions.entries().stream()
+                .filter(entry -> !entry.getKey().equals(settingsFile))
+                .collect(toImmutableList()))
+        .containsExactlyElementsIn(discoveredSuggestions.entries());
+    for (File source : settingsSuggestions.keySet()) {
+      if (source.isDirectory()) {
+        continue;
+      }
+      assertThat(analyzer.analyzeFile(rootProject, source))
+          .containsExactlyElementsIn(settingsSuggestions.get(source))
+          .inOrder();
+    }
+  }
+
+  @Test
+  public void analyzeBySource_settingsGradle_walksModulesThatAreNotIncluded() throws Exception {
+    ProjectAnalyzer analyzer =
+        new ProjectAnalyzer(
+            ImmutableList.of(ProjectAnalyzerTest::describeProject),
+            ImmutableList.of(ProjectAnalyzerTest::describeFile));
+    File rootProject = copyTestProject(ROOT_PROJECT);
+    ImmutableListMultimap<File, Suggestion> discoveredSuggestions =
+        analyzer.analyzeBySource(rootProject);
+    Files.write(
+        new File(rootProject, "settings.gradle").toPath(), "include ':app'\n".getBytes(UTF_8));
+
+    ImmutableListMultimap<File, Suggestion> suggestions = analyzer.analyzeBySource(rootProject);
+
+    File featureProject = new File(rootProject, "dynamic_feature");
+    File featureBuildFile = new File(featureProject, "build.gradle");
+    assertThat(suggestions.keySet())
+        .containsAllOf(rootProject, new File(rootProject, "app"), featureProject, featureBuildFile);
+    assertThat(suggestions.get(featureProject))
+        .containsExactlyElementsIn(discoveredSuggestions.get(featureProject));
+    assertThat(analyzer.analyzeFile(rootProject, featureBuildFile))
+        .containsExactlyElementsIn(discoveredSuggestions.get(featureBuildFile));
+  }
+
+  @Test
+  public void analyzeFile_settingsGradle_readsChangedBuildFiles() throws Exception {
+    ProjectAnalyzer analyzer =
+        new ProjectAnalyzer(
+            ImmutableList.of(), ImmutableList.of(ProjectAnalyzerTest::describeFile));
+    File rootProject = copyTestProject(ROOT_PROJECT);
+    Files.write(
+        new File(rootProject, "settings.gradle").toPath(),
+        "include ':app', ':dynamic_feature'\n".getBytes(UTF_8));
+    File manifest = new File(rootProject, "app/src/main/AndroidManifest.xml");
+    ImmutableList<Suggestion> suggestions = analyzer.analyzeFile(rootProject, manifest);
+    Path buildFile = new File(rootProject, "app/build.gradle").toPath();
+    String buildContent = new String(Files.readAllBytes(buildFile), UTF_8);
+    Files.write(
+        buildFile,
+        buildContent.replace("minSdkVersion 15", "minSdkVersion 21\n").getBytes(UTF_8));
+
+    ImmutableList<Suggestion> changedSuggestions = analyzer.analyzeFile(rootProject, manifest);
+
+    assertThat(changedSuggestions).isNotEqualTo(suggestions);
+    assertThat(changedSuggestions)
+        .containsExactlyElementsIn(
+            new ProjectAnalyzer(
+                    ImmutableList.of(), ImmutableList.of(ProjectAnalyzerTest::describeFile))
+                .analyzeFile(rootProject, manifest));
+  }
+
+  @Test
+  public void analyzeFile_settingsGradle_readsChangedManifests() throws Exception {
+    ProjectAnalyzer analyzer =
+        new ProjectAnalyzer(
+            ImmutableList.of(), ImmutableList.of(ProjectAnalyzerTest::describeFile));
+    File rootProject = copyTestProject(ROOT_PROJECT);
+    Files.write(
+        new File(rootProject, "settings.gradle").toPath(),
+        "include ':app', ':dynamic_feature'\n".getBytes(UTF_8));
+    File manifest = new File(rootProject, "dynamic_feature/src/main/AndroidManifest.xml");
+    ImmutableList<Suggestion> suggestions = analyzer.analyzeFile(rootProject, manifest);
+    String manifestContent = new String(Files.readAllBytes(manifest.toPath()), UTF_8);
+    Files.write(
+        manifest.toPath(),
+        manifestContent
+            .replace("dist:onDemand=\"true\"", "dist:onDemand=\"false\"")
+            .getBytes(UTF_8));
+
+    ImmutableList<Suggestion> changedSuggestions = analyzer.analyzeFile(rootProject, manifest);
+
+    assertThat(changedSuggestions).isNotEqualTo(suggestions);
+    assertThat(changedSuggestions)
+        .containsExactlyElementsIn(
+            new ProjectAnalyzer(
+                    ImmutableList.of(), ImmutableList.of(ProjectAnalyzerTest::describeFile))
+                .analyzeFile(rootProject, manifest));
+  }
+
+  @Test
+  public void computeShardIdentity_sameForCopiesAndIndependentOfSuggesters() throws Exception {
+    ProjectAnalyzer treeAnalyzer =
+        new ProjectAnalyzer(
+            ImmutableList.of(), ImmutableList.of(ProjectAnalyzerTest::describeFile));
+    ProjectAnalyzer moduleAnalyzer =
+        new ProjectAnalyzer(
+            ImmutableList.of(ProjectAnalyzerTest::describeProject), ImmutableList.of());
+    File rootProject = copyTestProject(ROOT_PROJECT);
+    String identity = treeAnalyzer.computeShardIdentity(rootProject);
+
+    assertThat(identity).isNotEmpty();
+    assertThat(treeAnalyzer.computeShardIdentity(copyTestProject(ROOT_PROJECT)))
+        .isEqualTo(identity);
+    assertThat(moduleAnalyzer.computeShardIdentity(rootProject)).isEqualTo(identity);
+
+    Files.write(new File(rootProject, "app/extra.txt").toPath(), "extra".getBytes(UTF_8));
+
+    assertThat(treeAnalyzer.computeShardIdentity(rootProject)).isNotEqualTo(identity);
+  }
+
+  private static ImmutableList<Suggestion> describeSource(GradleContext context, Object source) {
+    return ImmutableList.of(
+        Suggestion.create(
+            Suggestion.IssueType.LARGE_FILES_DYNAMIC_FEATURE,
+            Suggestion.Category.LARGE_FILES,
+            Payload.getDefaultInstance(),
+            source + " in " + context,
+            /* estimatedBytesSaved= */ null,
+            /* autoFix= */ null));
+  }
+
+  private static ImmutableList<Suggestion> describeFile(GradleContext context, FileData fileData) {
+    return describeSource(context, fileData.getPathWithinRoot());
+  }
+
+  private static ImmutableList<Suggestion> describeProject(GradleContext context, File projectDir) {
+    return describeSource(context, projectDir);
+  }
+
+  private File copyTestProject(String path) throws Exception {
+    Path source = TestUtils.getTestDataFile(path).toPath();
+    Path target = temporaryFolder.newFolder().toPath();
+    try (Stream<Path> fileStream = Files.walk(source)) {
+      for (Path file : (Iterable<Path>) fileStream::iterator) {
+        Path copy = target.resolve(source.relativize(file).toString());
+        if (Files.isDirectory(file)) {
+          Files.createDirectories(copy);
+        } else {
+          Files.copy(file, copy);
+        }
+      }
+    }
+    return target.toFile();
+  }
+
   private static ImmutableSet<String> filesUnderDirectory(Path directory) throws Exception {
     try (Stream<Path> fileStream = Files.walk(directory)) {
       return fileStream
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.android.tools.sizereduction.analyzer.ShardOutput.ShardResults;
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
+import com.android.tools.sizereduction.analyzer.analyzers.Shard.Strategy;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import java.io.File;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class ShardResultsFileTest {
+
+  private static final String SHA256 = "abc123";
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void writeAndRead_roundTrips() throws Exception {
+    ShardResults results =
+        ShardResultsFile.create(
+            Shard.create(0, 2, Strategy.HASH),
+            SHA256,
+            ImmutableListMultimap.of(3, suggestion("first", 100L), 5, suggestion("second", null)));
+    File file = temporaryFolder.newFile("shard.pb");
+
+    ShardResultsFile.write(file, results);
+
+    assertThat(ShardResultsFile.read(file)).isEqualTo(results);
+  }
+
+  @Test
+  public void merge_ordersSuggestionsByEntry() {
+    ShardResults firstShard =
+        ShardResultsFile.create(
+            Shard.create(0, 2, Strategy.HASH),
+            SHA256,
+            ImmutableListMultimap.of(
+                1, suggestion("entry 1", 10L), 4, suggestion("entry 4", null)));
+    ShardResults secondShard =
+        ShardResultsFile.create(
+            Shard.create(1, 2, Strategy.HASH),
+            SHA256,
+            ImmutableListMultimap.of(
+                0, suggestion("entry 0", 20L),
+                3, suggestion("entry 3a", 30L),
+                3, suggestion("entry 3b", 40L)));
+
+    ImmutableList<Suggestion> merged =
+        ShardResultsFile.merge(ImmutableList.of(secondShard, firstShard));
+
+    assertThat(merged)
+        .containsExactly(
+            suggestion("entry 0", 20L),
+            suggestion("entry 1", 10L),
+            suggestion("entry 3a", 30L),
+            suggestion("entry 3b", 40L),
+            suggestion("entry 4", null))
+        .inOrder();
+  }
+
+  @Test
+  public void merge_missingShard_throws() {
+    ShardResults firstShard =
+        ShardResultsFile.create(
+            Shard.create(0, 2, Strategy.HASH), SHA256, ImmutableListMultimap.of());
+
+    assertThrows(
+        IllegalArgumentException.class, () -> ShardResultsFile.merge(ImmutableList.of(firstShard)));
+  }
+
+  @Test
+  public void merge_shardsOfDifferentArtifacts_throws() {
+    ShardResults firstShard =
+        ShardResultsFile.create(
+            Shard.create(0, 2, Strategy.HASH), SHA256, ImmutableListMultimap.of());
+    ShardResults secondShard =
+        ShardResultsFile.create(
+            Shard.create(1, 2, Strategy.HASH), "def456", ImmutableListMultimap.of());
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> ShardResultsFile.merge(ImmutableList.of(firstShard, secondShard)));
+  }
+
+  private static Suggestion suggestion(String message, Long estimatedBytesSaved) {
+    return Suggestion.create(
+        Suggestion.IssueType.WEBP,
+        Suggestion.Category.WEBP,
+        Payload.getDefaultInstance(),
+        message,
+        estimatedBytesSaved,
+        /* autoFix= */ null);
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.android.tools.sizereduction.analyzer.analyzers.Shard.Strategy;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class ShardTest {
+
+  private static final int SHARD_COUNT = 4;
+
+  @Test
+  public void parse_oneBasedIndex() {
+    Shard shard = Shard.parse("3/8", Strategy.COST);
+
+    assertThat(shard.getIndex()).isEqualTo(2);
+    assertThat(shard.getCount()).isEqualTo(8);
+    assertThat(shard.getStrategy()).isEqualTo(Strategy.COST);
+    assertThat(shard.toString()).isEqualTo("3/8");
+  }
+
+  @Test
+  public void parse_invalidSpec_throws() {
+    assertThrows(IllegalArgumentException.class, () -> Shard.parse("0/8", Strategy.HASH));
+    assertThrows(IllegalArgumentException.class, () -> Shard.parse("9/8", Strategy.HASH));
+    assertThrows(IllegalArgumentException.class, () -> Shard.parse("1-8", Strategy.HASH));
+  }
+
+  @Test
+  public void select_hash_eachEntryInExactlyOneShard() {
+    assertEachEntryInExactlyOneShard(Strategy.HASH);
+  }
+
+  @Test
+  public void select_cost_eachEntryInExactlyOneShard() {
+    assertEachEntryInExactlyOneShard(Strategy.COST);
+  }
+
+  @Test
+  public void select_hash_independentOfEntryOrder() {
+    List<String> paths = paths(50);
+    List<String> reversed = new ArrayList<>(paths);
+    Collections.reverse(reversed);
+    Shard shard = Shard.create(1, SHARD_COUNT, Strategy.HASH);
+
+    boolean[] selected = shard.select(paths, new long[paths.size()]);
+    boolean[] selectedReversed = shard.select(reversed, new long[paths.size()]);
+
+    for (int i = 0; i < paths.size(); i++) {
+      assertThat(selectedReversed[paths.size() - 1 - i]).isEqualTo(selected[i]);
+    }
+  }
+
+  @Test
+  public void select_cost_balancesLargeEntries() {
+    ImmutableList<String> paths = ImmutableList.of("a.png", "b.png", "c.png", "d.png", "e.png");
+    long[] costs = {100, 60, 50, 30, 20};
+
+    long[] loads = new long[2];
+    for (int index = 0; index < 2; index++) {
+      boolean[] selected = Shard.create(index, 2, Strategy.COST).select(paths, costs);
+      for (int i = 0; i < costs.length; i++) {
+        if (selected[i]) {
+          loads[index] += costs[i];
+        }
+      }
+    }
+
+    // 100 + 30 + 20 against 60 + 50.
+    assertThat(loads).asList().containsExactly(150L, 110L).inOrder();
+  }
+
+  @Test
+  public void select_all_selectsEverything() {
+    boolean[] selected = Shard.all().select(paths(3), new long[3]);
+
+    assertThat(selected).asList().containsExactly(true, true, true);
+  }
+
+  private static void assertEachEntryInExactlyOneShard(Strategy strategy) {
+    List<String> paths = paths(200);
+    long[] costs = new long[paths.size()];
+    for (int i = 0; i < costs.length; i++) {
+      costs[i] = (i * 7919L) % 1000;
+    }
+
+    int[] shardsPerEntry = new int[paths.size()];
+    for (int index = 0; index < SHARD_COUNT; index++) {
+      boolean[] selected = Shard.create(index, SHARD_COUNT, strategy).select(paths, costs);
+      int selectedCount = 0;
+      for (int i = 0; i < selected.length; i++) {
+        if (selected[i]) {
+          shardsPerEntry[i]++;
+          selectedCount++;
+        }
+      }
+      assertThat(selectedCount).isGreaterThan(0);
+    }
+    for (int count : shardsPerEntry) {
+      assertThat(count).isEqualTo(1);
+    }
+  }
+
+  private static List<String> paths(int count) {
+    List<String> paths = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      paths.add("base/res/drawable/image" + i + ".png");
+    }
+    return paths;
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.sizereduction.analyzer.analyzers.SizeAwareScheduler.WorkItem;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class SizeAwareSchedulerTest {
+
+  @Test
+  public void estimateCost_imagesCostMoreThanOtherFiles() {
+    assertThat(SizeAwareScheduler.estimateCost("res/drawable/icon.PNG", 6400)).isEqualTo(6400);
+    assertThat(SizeAwareScheduler.estimateCost("assets/data.bin", 6400)).isEqualTo(100);
+  }
+
+  @Test
+  public void run_singleThread_runsInSubmissionOrder() {
+    List<Integer> started = new ArrayList<>();
+    ImmutableList<Integer> results =
+        new SizeAwareScheduler(/* threads= */ 1)
+            .run(
+                ImmutableList.of(
+                    workItem(/* cost= */ 1, /* value= */ 0, started),
+                    workItem(/* cost= */ 100, /* value= */ 1, started),
+                    workItem(/* cost= */ 10, /* value= */ 2, started)));
+
+    assertThat(results).containsExactly(0, 1, 2).inOrder();
+    assertThat(started).containsExactly(0, 1, 2).inOrder();
+  }
+
+  @Test
+  public void run_multipleThreads_returnsResultsInSubmissionOrder() {
+    List<Integer> started = Collections.synchronizedList(new ArrayList<>());
+    ImmutableList.Builder<WorkItem<Integer>> workItems = ImmutableList.builder();
+    for (int i = 0; i < 100; i++) {
+      workItems.add(workItem(/* cost= */ i % 7, /* value= */ i, started));
+    }
+
+    ImmutableList<Integer> results = new SizeAwareScheduler(/* threads= */ 4).run(workItems.build());
+
+    assertThat(results).isInOrder();
+    assertThat(results).hasSize(100);
+    assertThat(started).hasSize(100);
+  }
+
+  @Test
+  public void run_multipleThreads_startsMostExpensiveFirst() {
+    List<Integer> started = Collections.synchronizedList(new ArrayList<>());
+    ImmutableList.Builder<WorkItem<Integer>> workItems = ImmutableList.builder();
+    for (int i = 0; i < 20; i++) {
+      workItems.add(workItem(/* cost= */ i, /* value= */ i, started));
+    }
+
+    new SizeAwareScheduler(/* threads= */ 2).run(workItems.build());
+
+    // Each worker records its item right after taking it, so two workers can only swap items that
+    // are next to each other in the schedule.
+    assertThat(started.indexOf(19)).isLessThan(3);
+    assertThat(started.indexOf(0)).isAtLeast(18);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void run_propagatesFailures() {
+    new SizeAwareScheduler(/* threads= */ 2)
+        .run(
+            ImmutableList.of(
+                new WorkItem<Integer>(
+                    /* cost= */ 1,
+                    () -> {
+                      throw new IllegalStateException();
+                    }),
+                new WorkItem<>(/* cost= */ 2, () -> 1)));
+  }
+
+  private static WorkItem<Integer> workItem(long cost, int value, List<Integer> started) {
+    return new WorkItem<>(
+        cost,
+        () -> {
+          started.add(value);
+          return value;
+        });
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.cli;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.android.bundle.Devices.DeviceSpec;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class SizeForDevicesTest {
+
+  @Test
+  public void parseDevices_uniqueNames_keyedByName() {
+    ImmutableMap<String, DeviceSpec> deviceSpecs =
+        SizeForDevices.parseDevices(
+            ImmutableList.of("pixel:abis=arm64-v8a,sdk=28", "nexus:density=320,sdk=21"));
+
+    assertThat(deviceSpecs.keySet()).containsExactly("pixel", "nexus").inOrder();
+    assertThat(deviceSpecs.get("nexus").getScreenDensity()).isEqualTo(320);
+  }
+
+  @Test
+  public void parseDevices_duplicateNames_reportsDevices() {
+    IllegalArgumentException e =
+        assertThrows(
+            IllegalArgumentException.class,
+            () ->
+                SizeForDevices.parseDevices(
+                    ImmutableList.of("pixel:sdk=28", "nexus:sdk=21", "pixel:sdk=29")));
+
+    assertThat(e.getMessage()).contains("Device name pixel is used by more than one --device");
+    assertThat(e.getMessage()).contains("pixel:sdk=28, pixel:sdk=29");
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.model;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.aapt.ConfigurationOuterClass.Configuration;
+import com.android.aapt.Resources.ConfigValue;
+import com.android.aapt.Resources.Entry;
+import com.android.aapt.Resources.EntryId;
+import com.android.aapt.Resources.FileReference;
+import com.android.aapt.Resources.Item;
+import com.android.aapt.Resources.Package;
+import com.android.aapt.Resources.PackageId;
+import com.android.aapt.Resources.ResourceTable;
+import com.android.aapt.Resources.Type;
+import com.android.aapt.Resources.TypeId;
+import com.android.aapt.Resources.Value;
+import java.io.ByteArrayInputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class ResourceTableIndexTest {
+
+  private static final int ICON_ID = 0x7f010002;
+  private static final int TITLE_ID = 0x7f020001;
+
+  @Test
+  public void indexesVariantsOfEachResource() throws Exception {
+    ResourceTable table =
+        ResourceTable.newBuilder()
+            .addPackage(
+                Package.newBuilder()
+                    .setPackageId(PackageId.newBuilder().setId(0x7f))
+                    .setPackageName("com.example")
+                    .addType(
+                        Type.newBuilder()
+                            .setTypeId(TypeId.newBuilder().setId(0x01))
+                            .setName("drawable")
+                            .addEntry(
+                                Entry.newBuilder()
+                                    .setEntryId(EntryId.newBuilder().setId(0x0002))
+                                    .setName("icon")
+                                    .addConfigValue(fileVariant(0, "res/drawable/icon.png"))
+                                    .addConfigValue(
+                                        fileVariant(480, "res/drawable-xxhdpi/icon.png"))))
+                    .addType(
+                        Type.newBuilder()
+                            .setTypeId(TypeId.newBuilder().setId(0x02))
+                            .setName("string")
+                            .addEntry(
+                                Entry.newBuilder()
+                                    .setEntryId(EntryId.newBuilder().setId(0x0001))
+                                    .setName("title")
+                                    .addConfigValue(stringVariant(""))
+                                    .addConfigValue(stringVariant("fr")))))
+            .build();
+
+    ResourceTableIndex index =
+        ResourceTableIndex.parse(new ByteArrayInputStream(table.toByteArray()));
+
+    assertThat(index.getResourceCount()).isEqualTo(2);
+    assertThat(index.getVariantCount()).isEqualTo(4);
+    assertThat(index.getResourceIds()).asList().containsExactly(ICON_ID, TITLE_ID).inOrder();
+    assertThat(index.getResourceName(ICON_ID)).isEqualTo("drawable/icon");
+    assertThat(index.getResourceName(TITLE_ID)).isEqualTo("string/title");
+
+    int[] iconVariants = index.getVariants(ICON_ID);
+    assertThat(iconVariants).hasLength(2);
+    assertThat(index.getDensity(iconVariants[0])).isEqualTo(ResourceTableIndex.DEFAULT_DENSITY);
+    assertThat(index.getFilePath(iconVariants[0])).isEqualTo("res/drawable/icon.png");
+    assertThat(index.getDensity(iconVariants[1])).isEqualTo(480);
+    assertThat(index.getFilePath(iconVariants[1])).isEqualTo("res/drawable-xxhdpi/icon.png");
+
+    int[] titleVariants = index.getVariants(TITLE_ID);
+    assertThat(titleVariants).hasLength(2);
+    assertThat(index.getLocale(titleVariants[0])).isEmpty();
+    assertThat(index.getLocale(titleVariants[1])).isEqualTo("fr");
+    assertThat(index.getFilePath(titleVariants[1])).isNull();
+  }
+
+  @Test
+  public void unknownResourceHasNoVariants() throws Exception {
+    ResourceTableIndex index =
+        ResourceTableIndex.parse(
+            new ByteArrayInputStream(ResourceTable.getDefaultInstance().toByteArray()));
+
+    assertThat(index.getResourceCount()).isEqualTo(0);
+    assertThat(index.getVariants(ICON_ID)).isEmpty();
+    assertThat(index.getResourceName(ICON_ID)).isNull();
+  }
+
+  @Test
+  public void sortsResourcesWrittenOutOfOrder() {
+    ResourceTableIndex.Builder builder = new ResourceTableIndex.Builder();
+    builder.startResource(TITLE_ID, "string/title");
+    builder.addVariant(0, "de", null);
+    builder.startResource(ICON_ID, "drawable/icon");
+    builder.addVariant(160, "", "res/drawable-mdpi/icon.png");
+
+    ResourceTableIndex index = builder.build();
+
+    assertThat(index.getResourceIds()).asList().containsExactly(ICON_ID, TITLE_ID).inOrder();
+    assertThat(index.getFilePath(index.getVariants(ICON_ID)[0]))
+        .isEqualTo("res/drawable-mdpi/icon.png");
+    assertThat(index.getLocale(index.getVariants(TITLE_ID)[0])).isEqualTo("de");
+  }
+
+  private static ConfigValue fileVariant(int density, String path) {
+    return ConfigValue.newBuilder()
+        .setConfig(Configuration.newBuilder().setDensity(density))
+        .setValue(
+            Value.newBuilder()
+                .setItem(Item.newBuilder().setFile(FileReference.newBuilder().setPath(path))))
+        .build();
+  }
+
+  private static ConfigValue stringVariant(String locale) {
+    return ConfigValue.newBuilder()
+        .setConfig(Configuration.newBuilder().setLocale(locale))
+        .setValue(
+            Value.newBuilder()
+                .setItem(
+                    Item.newBuilder()
+                        .setStr(com.android.aapt.Resources.String.newBuilder().setValue("Title"))))
+        .build();
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.model;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.util.Optional;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class SettingsGradleParserTest {
+
+  private static final File ROOT_DIRECTORY = new File("/project");
+
+  @Test
+  public void parsesIncludedModules() {
+    String content = "rootProject.name = 'app'\ninclude ':app', 'feature'\ninclude(':library')\n";
+
+    assertThat(SettingsGradleParser.parseIncludedModules(content, ROOT_DIRECTORY).get())
+        .containsExactly(
+            new File(ROOT_DIRECTORY, "app"),
+            new File(ROOT_DIRECTORY, "feature"),
+            new File(ROOT_DIRECTORY, "library"))
+        .inOrder();
+  }
+
+  @Test
+  public void parsesNestedModules_includesParents() {
+    String content = "include ':libraries:core'\n";
+
+    assertThat(SettingsGradleParser.parseIncludedModules(content, ROOT_DIRECTORY).get())
+        .containsExactly(
+            new File(ROOT_DIRECTORY, "libraries"), new File(ROOT_DIRECTORY, "libraries/core"))
+        .inOrder();
+  }
+
+  @Test
+  public void parsesProjectDirectories() {
+    String content =
+        "include ':feature', ':libraries:core'\n"
+            + "project(':feature').projectDir = file('features/feature')\n"
+            + "project(':libraries').projectDir = new File(rootDir, 'shared')\n";
+
+    assertThat(SettingsGradleParser.parseIncludedModules(content, ROOT_DIRECTORY).get())
+        .containsExactly(
+            new File(ROOT_DIRECTORY, "features/feature"),
+            new File(ROOT_DIRECTORY, "shared"),
+            new File(ROOT_DIRECTORY, "shared/core"))
+        .inOrder();
+  }
+
+  @Test
+  public void computedIncludes_returnsEmpty() {
+    assertThat(parseIncludedModules("def name = ':dynamic'\ninclude name\ninclude ':app'\n"))
+        .isEmpty();
+    assertThat(parseIncludedModules("include \":${'app'}\"\n")).isEmpty();
+    assertThat(parseIncludedModules("def modules = [':app']\ninclude(*modules)\n")).isEmpty();
+    assertThat(
+            parseIncludedModules(
+                "include ':app'\nfile('features').eachDir { dir -> include \":${dir.name}\" }\n"))
+        .isEmpty();
+  }
+
+  private static Optional<ImmutableList<File>> parseIncludedModules(String content) {
+    return SettingsGradleParser.parseIncludedModules(content, ROOT_DIRECTORY);
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.model;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.android.tools.sizereduction.analyzer.model.ZipCentralDirectory.Entry;
+import com.google.common.primitives.Bytes;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class ZipCentralDirectoryTest {
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void readsEntryMetadataAndDataOffsets() throws Exception {
+    byte[] storedContent = "stored entry content".getBytes(UTF_8);
+    byte[] deflatedContent = new byte[10_000];
+    File zip = temporaryFolder.newFile("archive.zip");
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+      out.setComment("archive comment");
+      out.putNextEntry(new ZipEntry("assets/deflated.bin"));
+      out.write(deflatedContent);
+      out.closeEntry();
+      ZipEntry stored = new ZipEntry("lib/x86/libstored.so");
+      stored.setMethod(ZipEntry.STORED);
+      stored.setSize(storedContent.length);
+      CRC32 crc = new CRC32();
+      crc.update(storedContent);
+      stored.setCrc(crc.getValue());
+      out.putNextEntry(stored);
+      out.write(storedContent);
+      out.closeEntry();
+    }
+
+    try (ZipCentralDirectory directory = ZipCentralDirectory.open(zip.toPath())) {
+      assertThat(directory.getEntries()).hasSize(2);
+      Entry deflated = directory.getEntries().get(0);
+      assertThat(deflated.getName()).isEqualTo("assets/deflated.bin");
+      assertThat(deflated.getMethod()).isEqualTo(ZipEntry.DEFLATED);
+      assertThat(deflated.getUncompressedSize()).isEqualTo(10_000L);
+      assertThat(deflated.getCompressedSize()).isLessThan(10_000L);
+      assertThat(deflated.getLocalHeaderOffset()).isEqualTo(0L);
+
+      Entry stored = directory.getEntries().get(1);
+      assertThat(stored.getName()).isEqualTo("lib/x86/libstored.so");
+      assertThat(stored.getMethod()).isEqualTo(ZipEntry.STORED);
+      assertThat(stored.getCompressedSize()).isEqualTo((long) storedContent.length);
+      assertThat(directory.getDataOffset(stored))
+          .isEqualTo((long) Bytes.indexOf(Files.readAllBytes(zip.toPath()), storedContent));
+    }
+  }
+
+  @Test
+  public void notAZip_throws() throws Exception {
+    File file = temporaryFolder.newFile("archive.zip");
+    Files.write(file.toPath(), new byte[100]);
+
+    assertThrows(ZipException.class, () -> ZipCentralDirectory.open(file.toPath()));
+  }
+}
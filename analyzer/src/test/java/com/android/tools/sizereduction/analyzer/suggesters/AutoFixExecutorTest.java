@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class AutoFixExecutorTest {
+
+  @Test
+  public void appliesFixesSharingAFileInOrderAndOneAtATime() {
+    AtomicInteger running = new AtomicInteger();
+    List<String> applied = new CopyOnWriteArrayList<>();
+    List<Integer> concurrentFixes = new CopyOnWriteArrayList<>();
+    ImmutableList.Builder<AutoFix> autoFixes = ImmutableList.builder();
+    for (int i = 0; i < 8; i++) {
+      autoFixes.add(
+          new RecordingAutoFix(
+              "build.gradle#" + i, Paths.get("build.gradle"), running, applied, concurrentFixes));
+    }
+
+    AutoFixExecutor.Report report =
+        new AutoFixExecutor(/* threads= */ 4).execute(autoFixes.build());
+
+    assertThat(report.getAppliedCount()).isEqualTo(8);
+    assertThat(report.getFailures()).isEmpty();
+    assertThat(ImmutableSet.copyOf(concurrentFixes)).containsExactly(1);
+    assertThat(applied)
+        .containsExactly(
+            "build.gradle#0",
+            "build.gradle#1",
+            "build.gradle#2",
+            "build.gradle#3",
+            "build.gradle#4",
+            "build.gradle#5",
+            "build.gradle#6",
+            "build.gradle#7")
+        .inOrder();
+  }
+
+  @Test
+  public void reportsFailuresAndAppliesRemainingFixes() {
+    AutoFix failingFix =
+        new AutoFix() {
+          @Override
+          public void apply() {
+            throw new RuntimeException("disk full");
+          }
+
+          @Override
+          public ImmutableSet<Path> getAffectedFiles() {
+            return ImmutableSet.of(Paths.get("a.png"));
+          }
+        };
+    AtomicInteger applied = new AtomicInteger();
+    AutoFix unknownFilesFix = applied::incrementAndGet;
+
+    AutoFixExecutor.Report report =
+        new AutoFixExecutor(/* threads= */ 2)
+            .execute(ImmutableList.of(failingFix, unknownFilesFix, unknownFilesFix));
+
+    assertThat(report.getAppliedCount()).isEqualTo(2);
+    assertThat(applied.get()).isEqualTo(2);
+    assertThat(report.getFailures()).containsExactly("a.png: disk full");
+  }
+
+  @Test
+  public void stopsStartingFixesOnceCancelled() {
+    AtomicInteger applied = new AtomicInteger();
+    AutoFix autoFix = applied::incrementAndGet;
+    List<AutoFix> reported = new CopyOnWriteArrayList<>();
+
+    AutoFixExecutor.Report report =
+        new AutoFixExecutor(/* threads= */ 1)
+            .execute(
+                ImmutableList.of(autoFix, autoFix, autoFix),
+                new AutoFixExecutor.Listener() {
+                  @Override
+                  public boolean isCancelled() {
+                    return applied.get() >= 2;
+                  }
+
+                  @Override
+                  public void fixApplied(AutoFix fix) {
+                    reported.add(fix);
+                  }
+                });
+
+    assertThat(report.getAppliedCount()).isEqualTo(2);
+    assertThat(applied.get()).isEqualTo(2);
+    assertThat(reported).containsExactly(autoFix, autoFix);
+  }
+
+  private static final class RecordingAutoFix implements AutoFix {
+    private final String name;
+    private final Path file;
+    private final AtomicInteger running;
+    private final List<String> applied;
+    private final List<Integer> concurrentFixes;
+
+    RecordingAutoFix(
+        String name,
+        Path file,
+        AtomicInteger running,
+        List<String> applied,
+        List<Integer> concurrentFixes) {
+      this.name = name;
+      this.file = file;
+      this.running = running;
+      this.applied = applied;
+      this.concurrentFixes = concurrentFixes;
+    }
+
+    @Override
+    public void apply() {
+      concurrentFixes.add(running.incrementAndGet());
+      applied.add(name);
+      running.decrementAndGet();
+    }
+
+    @Override
+    public ImmutableSet<Path> getAffectedFiles() {
+      return ImmutableSet.of(file);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.Category;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.IssueType;
+import com.google.common.collect.ImmutableList;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class SuggestionTableTest {
+
+  private static final ImmutableList<Suggestion> SUGGESTIONS =
+      ImmutableList.of(
+          suggestion(Category.WEBP, "a.png", 300L),
+          suggestion(Category.LARGE_FILES, "video.mp4", 9000L),
+          suggestion(Category.WEBP, "b.png", null),
+          suggestion(Category.WEBP, "c.png", 1200L),
+          suggestion(Category.WEBP, "d.png", 300L),
+          suggestion(Category.WEBP, "e.png", 700L));
+
+  @Test
+  public void sumsAndSortsCategories() {
+    SuggestionTable table = SuggestionTable.of(SUGGESTIONS);
+
+    assertThat(table.size()).isEqualTo(6);
+    assertThat(table.getTotalBytesSaved(Category.WEBP)).isEqualTo(2500L);
+    assertThat(table.getCategoriesBySavings())
+        .containsExactly(Category.LARGE_FILES, Category.WEBP)
+        .inOrder();
+    assertThat(messages(table, table.getRowsBySavings(Category.WEBP)))
+        .containsExactly("c.png", "e.png", "a.png", "d.png", "b.png")
+        .inOrder();
+  }
+
+  @Test
+  public void recreatesSuggestions() {
+    SuggestionTable table = SuggestionTable.of(SUGGESTIONS);
+
+    assertThat(table.toCategorizedSuggestions().values())
+        .containsExactly(
+            SUGGESTIONS.get(1),
+            SUGGESTIONS.get(3),
+            SUGGESTIONS.get(5),
+            SUGGESTIONS.get(0),
+            SUGGESTIONS.get(4),
+            SUGGESTIONS.get(2))
+        .inOrder();
+  }
+
+  private static ImmutableList<String> messages(SuggestionTable table, int[] rows) {
+    return Arrays.stream(rows)
+        .mapToObj(table::getMessage)
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  private static Suggestion suggestion(Category category, String message, Long bytesSaved) {
+    return Suggestion.create(
+        category == Category.WEBP ? IssueType.WEBP : IssueType.LARGE_FILES_DYNAMIC_FEATURE,
+        category,
+        Payload.getDefaultInstance(),
+        message,
+        bytesSaved,
+        /* autoFix= */ null);
+  }
+}
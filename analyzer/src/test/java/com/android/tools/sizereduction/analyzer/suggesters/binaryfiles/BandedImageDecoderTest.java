@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.binaryfiles;
+
+import static com.android.tools.sizereduction.analyzer.utils.TestUtils.getTestDataFile;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.imageio.ImageIO;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class BandedImageDecoderTest {
+
+  private static final String IMAGE = "webp/drawing.png";
+
+  @Test
+  public void decodeBgra_matchesFullDecoding() throws IOException {
+    BufferedImage image = ImageIO.read(getTestDataFile(IMAGE));
+    byte[] expected = new byte[image.getWidth() * image.getHeight() * 4];
+    BandedImageDecoder.writeBgra(image, expected, /* offset= */ 0);
+
+    try (InputStream inputStream = new FileInputStream(getTestDataFile(IMAGE));
+        BandedImageDecoder decoder = BandedImageDecoder.open(inputStream).get()) {
+      assertThat(decoder.decodeBgra(/* maxBandBytes= */ 0)).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void decodeBgra_bmp_matchesFullDecoding() throws IOException {
+    BufferedImage image = ImageIO.read(getTestDataFile(IMAGE));
+    ByteArrayOutputStream bmp = new ByteArrayOutputStream();
+    BufferedImage rgb =
+        new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+    rgb.getGraphics().drawImage(image, 0, 0, null);
+    ImageIO.write(rgb, "bmp", bmp);
+    byte[] expected = new byte[rgb.getWidth() * rgb.getHeight() * 4];
+    BandedImageDecoder.writeBgra(rgb, expected, /* offset= */ 0);
+
+    try (BandedImageDecoder decoder =
+        BandedImageDecoder.open(new ByteArrayInputStream(bmp.toByteArray())).get()) {
+      assertThat(decoder.decodeBgra(/* maxBandBytes= */ 0)).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void readRegions_matchesFullDecoding() throws IOException {
+    BufferedImage image = ImageIO.read(getTestDataFile(IMAGE));
+    ImmutableList<Rectangle> regions =
+        ImmutableList.of(
+            new Rectangle(0, 0, 4, 4),
+            new Rectangle(image.getWidth() / 2, image.getHeight() / 2, 8, 4),
+            // On the same rows as the previous region, both are decoded together.
+            new Rectangle(4, image.getHeight() / 2, 4, 4),
+            new Rectangle(image.getWidth() - 4, image.getHeight() - 4, 4, 4));
+
+    ImmutableList<BufferedImage> decoded;
+    try (InputStream inputStream = new FileInputStream(getTestDataFile(IMAGE));
+        BandedImageDecoder decoder = BandedImageDecoder.open(inputStream).get()) {
+      decoded = decoder.readRegions(regions);
+    }
+
+    for (int i = 0; i < regions.size(); i++) {
+      Rectangle region = regions.get(i);
+      for (int y = 0; y < region.height; y++) {
+        for (int x = 0; x < region.width; x++) {
+          assertThat(decoded.get(i).getRGB(x, y))
+              .isEqualTo(image.getRGB(region.x + x, region.y + y));
+        }
+      }
+    }
+  }
+}
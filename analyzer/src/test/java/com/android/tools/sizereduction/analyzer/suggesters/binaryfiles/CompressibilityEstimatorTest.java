@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.binaryfiles;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.tools.sizereduction.analyzer.model.FileData;
+import com.android.tools.sizereduction.analyzer.model.testing.FakeFileData;
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class CompressibilityEstimatorTest {
+
+  @Test
+  public void textCompressesWell() {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; text.length() < 4 * 1024 * 1024; i++) {
+      text.append("{\"id\": ").append(i);
+      text.append(", \"name\": \"level ").append(i % 97).append("\"}\n");
+    }
+    byte[] bytes = text.toString().getBytes(UTF_8);
+
+    long estimate = CompressibilityEstimator.estimateCompressedSize(fileData(bytes));
+
+    assertThat(estimate).isGreaterThan(0L);
+    assertThat(estimate).isLessThan(bytes.length / 4L);
+  }
+
+  @Test
+  public void randomDataIsIncompressible() {
+    byte[] bytes = new byte[2 * 1024 * 1024];
+    new Random(42).nextBytes(bytes);
+
+    assertThat(CompressibilityEstimator.estimateCompressedSize(fileData(bytes)))
+        .isEqualTo((long) bytes.length);
+  }
+
+  @Test
+  public void unreadableContentKeepsSize() {
+    FileData fileData = FakeFileData.builder("assets/data.bin").setSize(100_000).build();
+
+    assertThat(CompressibilityEstimator.estimateCompressedSize(fileData)).isEqualTo(100_000L);
+  }
+
+  private static FileData fileData(byte[] bytes) {
+    return FakeFileData.builder("assets/data.bin")
+        .setInputStream(new ByteArrayInputStream(bytes))
+        .setSize(bytes.length)
+        .build();
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.binaryfiles;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import java.awt.image.BufferedImage;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class SampledWebpEstimatorTest {
+
+  // 16 by 8 tiles.
+  private static final BufferedImage IMAGE =
+      new BufferedImage(
+          16 * SampledWebpEstimator.TILE_SIZE,
+          8 * SampledWebpEstimator.TILE_SIZE,
+          BufferedImage.TYPE_INT_ARGB);
+
+  @Test
+  public void estimate_everyEffortLevel_encodesTwiceAsManyTilesAsTheLevelBelow() {
+    for (int effort = 0; effort < 4; effort++) {
+      CountingWebpConverter converter = new CountingWebpConverter();
+
+      assertThat(new SampledWebpEstimator(converter, effort).estimate(IMAGE)).isPresent();
+      // Every sampled tile, and the mosaic of all of them.
+      assertThat(converter.encodedImages).isEqualTo((3 << effort) + 1);
+    }
+  }
+
+  @Test
+  public void estimate_tooFewTilesForTheEffort_encodesNothing() {
+    CountingWebpConverter converter = new CountingWebpConverter();
+
+    assertThat(new SampledWebpEstimator(converter, /* effort= */ 4).estimate(IMAGE)).isEmpty();
+    assertThat(converter.encodedImages).isEqualTo(0);
+  }
+
+  @Test
+  public void estimate_tilesOfTheSameCost_boundOnlyAccountsForTiling() {
+    CountingWebpConverter converter = new CountingWebpConverter();
+
+    SampledWebpEstimator.Estimate estimate =
+        new SampledWebpEstimator(converter, /* effort= */ 2).estimate(IMAGE).get();
+
+    // Every encoding, of a tile or of the mosaic, is only the container.
+    assertThat(estimate.getEstimatedSize()).isEqualTo(CountingWebpConverter.ENCODED_SIZE);
+    assertThat(estimate.getErrorBound()).isEqualTo(3L);
+  }
+
+  /** Counts the images it encodes, each into the size of an empty webp container. */
+  private static final class CountingWebpConverter implements WebpConverter {
+    static final int ENCODED_SIZE = 25;
+
+    int encodedImages;
+
+    @Override
+    public byte[] encodeLosslessWebp(BufferedImage image) {
+      encodedImages++;
+      return new byte[ENCODED_SIZE];
+    }
+
+    @Override
+    public byte[] encodeLosslessWebp(byte[] bgraPixels, int width, int height) {
+      encodedImages++;
+      return new byte[ENCODED_SIZE];
+    }
+  }
+}
@@ -51,4 +51,49 @@ public final class WebpAutoFixTest {
     assertThat(Files.asByteSource(webpFile).read()).isEqualTo(bytes);
     webpFile.delete();
   }
+
+  @Test
+  public void writesStoredEncodingOfUnchangedImage() throws Exception {
+    FakeWebpConverter fakeConverter = new FakeWebpConverter();
+    fakeConverter.setFakeData(new byte[] {0, 1, 2, 4, 8});
+    File pngFile = File.createTempFile("foo", ".png");
+    Files.copy(getTestDataFile("webp/drawing.png"), pngFile);
+    Path pngPath = pngFile.toPath();
+    byte[] storedBytes = new byte[] {16, 32, 64};
+    WebpResultStore resultStore = new WebpResultStore();
+    resultStore.put(pngPath, WebpResultStore.hashContent(pngPath), storedBytes);
+    new WebpAutoFix(pngPath, fakeConverter, resultStore).apply();
+
+    File webpFile =
+        new File(
+            pngPath
+                .resolveSibling(MoreFiles.getNameWithoutExtension(pngPath) + ".webp")
+                .toString());
+    assertThat(pngFile.exists()).isFalse();
+    assertThat(Files.asByteSource(webpFile).read()).isEqualTo(storedBytes);
+    assertThat(resultStore.getInMemoryBytes()).isEqualTo(0);
+    webpFile.delete();
+  }
+
+  @Test
+  public void reencodesImageChangedSinceAnalysis() throws Exception {
+    FakeWebpConverter fakeConverter = new FakeWebpConverter();
+    byte[] bytes = new byte[] {0, 1, 2, 4, 8};
+    fakeConverter.setFakeData(bytes);
+    File pngFile = File.createTempFile("foo", ".png");
+    Path pngPath = pngFile.toPath();
+    Files.copy(getTestDataFile("webp/drawing.png"), pngFile);
+    WebpResultStore resultStore = new WebpResultStore();
+    resultStore.put(pngPath, WebpResultStore.hashContent(pngPath), new byte[] {16, 32, 64});
+    Files.copy(getTestDataFile("webp/photo.jpg"), pngFile);
+    new WebpAutoFix(pngPath, fakeConverter, resultStore).apply();
+
+    File webpFile =
+        new File(
+            pngPath
+                .resolveSibling(MoreFiles.getNameWithoutExtension(pngPath) + ".webp")
+                .toString());
+    assertThat(Files.asByteSource(webpFile).read()).isEqualTo(bytes);
+    webpFile.delete();
+  }
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.binaryfiles;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class WebpResultStoreTest {
+
+  @Test
+  public void spillsResultsOverMemoryBudget() throws Exception {
+    Path firstImage = createImage(new byte[] {1});
+    Path secondImage = createImage(new byte[] {2});
+    WebpResultStore resultStore = new WebpResultStore(/* memoryBudgetBytes= */ 4);
+
+    resultStore.put(firstImage, WebpResultStore.hashContent(firstImage), new byte[] {10, 11, 12});
+    resultStore.put(secondImage, WebpResultStore.hashContent(secondImage), new byte[] {20, 21, 22});
+
+    assertThat(resultStore.getInMemoryBytes()).isEqualTo(3);
+    assertThat(resultStore.get(firstImage).get()).isEqualTo(new byte[] {10, 11, 12});
+    assertThat(resultStore.get(secondImage).get()).isEqualTo(new byte[] {20, 21, 22});
+  }
+
+  @Test
+  public void doesNotReturnResultsOfChangedImages() throws Exception {
+    Path image = createImage(new byte[] {1});
+    WebpResultStore resultStore = new WebpResultStore();
+    resultStore.put(image, WebpResultStore.hashContent(image), new byte[] {10, 11, 12});
+
+    Files.write(image, new byte[] {2});
+
+    assertThat(resultStore.get(image).isPresent()).isFalse();
+  }
+
+  private static Path createImage(byte[] content) throws Exception {
+    File file = File.createTempFile("image", ".png");
+    file.deleteOnExit();
+    Files.write(file.toPath(), content);
+    return file.toPath();
+  }
+}
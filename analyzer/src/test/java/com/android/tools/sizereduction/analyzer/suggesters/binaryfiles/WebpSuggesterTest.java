@@ -29,18 +29,29 @@ import com.android.tools.sizereduction.analyzer.model.GradleContext;
 import com.android.tools.sizereduction.analyzer.model.SystemFileData;
 import com.android.tools.sizereduction.analyzer.model.testing.FakeFileData;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.WebpOptions.EstimationMode;
 import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.testing.FakeWebpConverter;
+import com.google.common.collect.Range;
+import com.google.common.io.Files;
+import com.google.common.io.MoreFiles;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import javax.imageio.ImageIO;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
 @RunWith(JUnit4.class)
 public class WebpSuggesterTest {
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   private static final String PNG_DRAWING = "webp/drawing.png";
   private static final long DRAWING_FILE_SIZE = 54127L;
   private static final String JPG_PHOTO = "webp/photo.jpg";
@@ -130,4 +141,169 @@ public class WebpSuggesterTest {
 
     assertThat(suggestions).isEmpty();
   }
+
+  @Test
+  public void sampledEstimation_largeImage_exactSavingsWithinErrorBound() throws IOException {
+    File pngFile = temporaryFolder.newFile("rings.png");
+    BufferedImage image = createRingsImage(/* width= */ 1536, /* height= */ 1024);
+    ImageIO.write(image, "png", pngFile);
+    WebpSuggester sampledSuggester =
+        new WebpSuggester(
+            WebpOptions.builder().setEstimationMode(EstimationMode.SAMPLED).build());
+
+    List<Suggestion> suggestions =
+        sampledSuggester.processBundleZipEntry(
+            BundleContext.create(MIN_SDK_VERSION_SUPPORTING_LOSSLESS_WEBP),
+            new SystemFileData(pngFile, Paths.get("rings.png")));
+
+    assertThat(suggestions).hasSize(1);
+    long estimatedSavings = suggestions.get(0).getEstimatedBytesSaved();
+    long errorBound = suggestions.get(0).payload().getWebpData().getEstimateErrorBoundBytes();
+    // Only the sampled path reports an error bound.
+    assertThat(errorBound).isGreaterThan(0L);
+    long exactSavings = pngFile.length() - new WebpConverterImpl().encodedLosslessWebpSize(image);
+    // The estimate is rounded down to the reporting precision, the bound is rounded up.
+    assertThat(exactSavings)
+        .isIn(
+            Range.closed(
+                estimatedSavings - errorBound,
+                estimatedSavings + errorBound + WebpSuggester.ESTIMATE_PRECISION));
+  }
+
+  @Test
+  public void sampledEstimation_largeImage_reportsErrorBound() throws IOException {
+    FakeWebpConverter fakeConverter = new FakeWebpConverter();
+    // Every tile compresses to the same size, so only the tiling error contributes to the bound.
+    fakeConverter.setFakeData(new byte[25]);
+    WebpSuggester webpSuggester =
+        new WebpSuggester(
+            fakeConverter, WebpOptions.builder().setEstimationMode(EstimationMode.SAMPLED).build());
+    SystemFileData systemFileData =
+        new SystemFileData(getTestDataFile(JPG_PHOTO), Paths.get("photo.jpg"));
+
+    List<Suggestion> suggestions =
+        webpSuggester.processBundleZipEntry(
+            BundleContext.create(MIN_SDK_VERSION_SUPPORTING_LOSSLESS_WEBP), systemFileData);
+
+    assertThat(suggestions).hasSize(1);
+    assertThat(suggestions.get(0).getEstimatedBytesSaved()).isGreaterThan(2_000_000L);
+    assertThat(suggestions.get(0).payload().getWebpData().getEstimateErrorBoundBytes())
+        .isEqualTo(100L);
+  }
+
+  @Test
+  public void memoryCeiling_bandedDecoding_matchesUnboundedDecoding() throws IOException {
+    // The drawing takes 400 * 804 * 4 bytes once decoded, leaving room for bands of ~450 rows.
+    WebpSuggester boundedSuggester =
+        new WebpSuggester(WebpOptions.builder().setMaxDecodedImageBytes(2_000_000L).build());
+    SystemFileData systemFileData =
+        new SystemFileData(getTestDataFile(PNG_DRAWING), Paths.get("drawing.png"));
+    BundleContext context = BundleContext.create(MIN_SDK_VERSION_SUPPORTING_LOSSLESS_WEBP);
+
+    List<Suggestion> suggestions = boundedSuggester.processBundleZipEntry(context, systemFileData);
+
+    assertThat(suggestions).isNotEmpty();
+    assertThat(suggestions)
+        .isEqualTo(new WebpSuggester().processBundleZipEntry(context, systemFileData));
+  }
+
+  @Test
+  public void memoryCeiling_imageTooLargeToDecodeOrSample_noSuggestion() throws IOException {
+    FakeWebpConverter fakeConverter = new FakeWebpConverter();
+    fakeConverter.setFakeData(new byte[0]);
+    WebpSuggester boundedSuggester =
+        new WebpSuggester(
+            fakeConverter, WebpOptions.builder().setMaxDecodedImageBytes(1_000_000L).build());
+    SystemFileData systemFileData =
+        new SystemFileData(getTestDataFile(PNG_DRAWING), Paths.get("drawing.png"));
+
+    List<Suggestion> suggestions =
+        boundedSuggester.processBundleZipEntry(
+            BundleContext.create(MIN_SDK_VERSION_SUPPORTING_LOSSLESS_WEBP), systemFileData);
+
+    assertThat(suggestions).isEmpty();
+  }
+
+  @Test
+  public void memoryCeiling_imageTooLargeToDecode_estimatedFromTiles() throws IOException {
+    FakeWebpConverter fakeConverter = new FakeWebpConverter();
+    fakeConverter.setFakeData(new byte[25]);
+    WebpSuggester boundedSuggester =
+        new WebpSuggester(
+            fakeConverter, WebpOptions.builder().setMaxDecodedImageBytes(1_000_000L).build());
+    SystemFileData systemFileData =
+        new SystemFileData(getTestDataFile(JPG_PHOTO), Paths.get("photo.jpg"));
+
+    List<Suggestion> suggestions =
+        boundedSuggester.processBundleZipEntry(
+            BundleContext.create(MIN_SDK_VERSION_SUPPORTING_LOSSLESS_WEBP), systemFileData);
+
+    assertThat(suggestions).hasSize(1);
+    assertThat(suggestions.get(0).payload().getWebpData().getEstimateErrorBoundBytes())
+        .isEqualTo(100L);
+  }
+
+  @Test
+  public void keepEncodingsForFixes_autoFixWritesAnalyzedEncoding() throws Exception {
+    byte[] analyzedBytes = new byte[100];
+    byte[] fixedBytes = applyFixAfterAnalysis(/* keepEncodingsForFixes= */ true, analyzedBytes);
+
+    assertThat(fixedBytes).isEqualTo(analyzedBytes);
+  }
+
+  @Test
+  public void encodingsNotKept_autoFixEncodesImageAgain() throws Exception {
+    byte[] analyzedBytes = new byte[100];
+    byte[] fixedBytes = applyFixAfterAnalysis(/* keepEncodingsForFixes= */ false, analyzedBytes);
+
+    assertThat(fixedBytes).isNotEqualTo(analyzedBytes);
+  }
+
+  /** Draws concentric rings over smooth gradients, with a flat disc in the centre. */
+  private static BufferedImage createRingsImage(int width, int height) {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        double distance = Math.hypot(x - width / 2, y - height / 2);
+        int rgb =
+            distance < height / 5
+                ? 0xffffff
+                : ((int) (128 + 127 * Math.sin(distance / 40)) << 16)
+                    | ((int) (128 + 127 * Math.cos(x / 70.0)) << 8)
+                    | ((y / 6) & 0xff);
+        image.setRGB(x, y, rgb);
+      }
+    }
+    return image;
+  }
+
+  /**
+   * Analyzes a copy of the drawing while the converter encodes it to the given bytes, then applies
+   * the suggested fix once the converter encodes to different bytes and returns the written ones.
+   */
+  private static byte[] applyFixAfterAnalysis(boolean keepEncodingsForFixes, byte[] analyzedBytes)
+      throws Exception {
+    FakeWebpConverter fakeConverter = new FakeWebpConverter();
+    fakeConverter.setFakeData(analyzedBytes);
+    WebpSuggester webpSuggester =
+        new WebpSuggester(
+            fakeConverter,
+            WebpOptions.builder().setKeepEncodingsForFixes(keepEncodingsForFixes).build());
+    File pngFile = File.createTempFile("drawing", ".png");
+    Files.copy(getTestDataFile(PNG_DRAWING), pngFile);
+    Path pngPath = pngFile.toPath();
+
+    List<Suggestion> suggestions =
+        webpSuggester.processProjectEntry(
+            GradleContext.create(MIN_SDK_VERSION_SUPPORTING_LOSSLESS_WEBP, false),
+            new SystemFileData(pngFile, Paths.get("drawing.png")));
+    fakeConverter.setFakeData(new byte[] {1, 2, 3});
+    suggestions.get(0).getAutoFix().apply();
+
+    File webpFile =
+        pngPath.resolveSibling(MoreFiles.getNameWithoutExtension(pngPath) + ".webp").toFile();
+    byte[] fixedBytes = Files.toByteArray(webpFile);
+    webpFile.delete();
+    return fixedBytes;
+  }
 }
@@ -31,6 +31,11 @@ public final class FakeWebpConverter implements WebpConverter {
     return checkNotNull(fakeData, "setFakeData() was not called.");
   }
 
+  @Override
+  public byte[] encodeLosslessWebp(byte[] bgraPixels, int width, int height) {
+    return checkNotNull(fakeData, "setFakeData() was not called.");
+  }
+
   public void setFakeData(byte[] data) {
     fakeData = checkNotNull(data);
   }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.bundles;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.tools.sizereduction.analyzer.model.BundleConfig;
+import com.android.tools.sizereduction.analyzer.model.GroovyGradleParser;
+import com.android.tools.sizereduction.analyzer.utils.TestUtils;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class BundleSplitAutoFixTest {
+
+  private static final String DISABLE_SPLITS_BUILD_FILE =
+      "bundle_configs/disableSplits.build.gradle";
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void apply_severalFixesOnOneFile_removeTheirOwnLines() throws Exception {
+    File directory = temporaryFolder.newFolder();
+    File buildFile = new File(directory, BundleSplitAutoFix.BUILD_GRADLE);
+    Files.copy(TestUtils.getTestDataFile(DISABLE_SPLITS_BUILD_FILE).toPath(), buildFile.toPath());
+    List<String> originalLines = Files.readAllLines(buildFile.toPath(), UTF_8);
+
+    // Each removed line shifts the lines of the splits below it.
+    new BundleSplitAutoFix(directory, BundleSplitAutoFix.Split.LANGUAGE).apply();
+    new BundleSplitAutoFix(directory, BundleSplitAutoFix.Split.DENSITY).apply();
+    new BundleSplitAutoFix(directory, BundleSplitAutoFix.Split.ABI).apply();
+
+    List<String> lines = Files.readAllLines(buildFile.toPath(), UTF_8);
+    BundleConfig bundleConfig = GroovyGradleParser.parseBundleConfig(String.join("\n", lines));
+    assertThat(bundleConfig.getLanguageSplitEnabled()).isTrue();
+    assertThat(bundleConfig.getDensitySplitEnabled()).isTrue();
+    assertThat(bundleConfig.getAbiSplitEnabled()).isTrue();
+    originalLines.removeIf(line -> line.contains("enableSplit"));
+    assertThat(lines).containsExactlyElementsIn(originalLines).inOrder();
+  }
+
+  @Test
+  public void apply_splitAlreadyEnabled_leavesFileUnchanged() throws Exception {
+    File directory = temporaryFolder.newFolder();
+    File buildFile = new File(directory, BundleSplitAutoFix.BUILD_GRADLE);
+    Files.copy(TestUtils.getTestDataFile(DISABLE_SPLITS_BUILD_FILE).toPath(), buildFile.toPath());
+    BundleSplitAutoFix autoFix = new BundleSplitAutoFix(directory, BundleSplitAutoFix.Split.ABI);
+    autoFix.apply();
+    List<String> lines = Files.readAllLines(buildFile.toPath(), UTF_8);
+
+    autoFix.apply();
+
+    assertThat(Files.readAllLines(buildFile.toPath(), UTF_8)).isEqualTo(lines);
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.bundles;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.NativeLibAlignment;
+import com.android.tools.sizereduction.analyzer.model.ApkContext;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.IssueType;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.CountingOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class NativeLibsAlignmentSuggesterTest {
+
+  private static final int LOCAL_HEADER_SIZE = 30;
+  private static final int ALIGNMENT_EXTRA_HEADER_SIZE = 6;
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final NativeLibsAlignmentSuggester suggester = new NativeLibsAlignmentSuggester();
+
+  @Test
+  public void alignedStoredLibs_noSuggestion() throws Exception {
+    File apk = temporaryFolder.newFile("app.apk");
+    try (CountingOutputStream counter = new CountingOutputStream(new FileOutputStream(apk));
+        ZipOutputStream out = new ZipOutputStream(counter)) {
+      writeDeflated(out, "classes.dex", new byte[5000]);
+      writeStored(out, counter, "lib/arm64-v8a/libfoo.so", new byte[5000], /* align= */ true);
+      writeStored(out, counter, "lib/x86/libfoo.so", new byte[100], /* align= */ true);
+    }
+
+    assertThat(processApk(apk)).isEmpty();
+  }
+
+  @Test
+  public void compressedAndMisalignedLibs_reportedWithOffsets() throws Exception {
+    File apk = temporaryFolder.newFile("app.apk");
+    long compressedHeaderOffset;
+    long misalignedDataOffset;
+    try (CountingOutputStream counter = new CountingOutputStream(new FileOutputStream(apk));
+        ZipOutputStream out = new ZipOutputStream(counter)) {
+      writeStored(out, counter, "assets/data.bin", new byte[100], /* align= */ false);
+      out.flush();
+      compressedHeaderOffset = counter.getCount();
+      writeDeflated(out, "lib/armeabi-v7a/libbar.so", new byte[5000]);
+      out.flush();
+      misalignedDataOffset =
+          counter.getCount() + LOCAL_HEADER_SIZE + "lib/x86/libbar.so".length();
+      writeStored(out, counter, "lib/x86/libbar.so", new byte[100], /* align= */ false);
+    }
+
+    ImmutableList<Suggestion> suggestions = processApk(apk);
+
+    assertThat(suggestions).hasSize(2);
+    assertThat(suggestions.get(0).getIssueType()).isEqualTo(IssueType.APK_UNALIGNED_NATIVE_LIBS);
+    NativeLibAlignment compressed = suggestions.get(0).getPayload().getNativeLibAlignment();
+    assertThat(compressed.getPath()).isEqualTo("lib/armeabi-v7a/libbar.so");
+    assertThat(compressed.getCompressed()).isTrue();
+    assertThat(compressed.getOffset()).isEqualTo(compressedHeaderOffset);
+    NativeLibAlignment misaligned = suggestions.get(1).getPayload().getNativeLibAlignment();
+    assertThat(misaligned.getPath()).isEqualTo("lib/x86/libbar.so");
+    assertThat(misaligned.getCompressed()).isFalse();
+    assertThat(misaligned.getOffset()).isEqualTo(misalignedDataOffset);
+    assertThat(suggestions.get(1).getMessage()).contains("offset " + misalignedDataOffset);
+  }
+
+  @Test
+  public void compressedLibs_minSdkBeforeLoadingFromApk_onlyMisalignedReported() throws Exception {
+    File apk = temporaryFolder.newFile("app.apk");
+    try (CountingOutputStream counter = new CountingOutputStream(new FileOutputStream(apk));
+        ZipOutputStream out = new ZipOutputStream(counter)) {
+      writeDeflated(out, "lib/armeabi-v7a/libbar.so", new byte[5000]);
+      writeStored(out, counter, "lib/x86/libbar.so", new byte[100], /* align= */ false);
+    }
+
+    ImmutableList<Suggestion> suggestions =
+        processApk(apk, NativeLibsAlignmentSuggester.MIN_SDK_VERSION_LOADING_LIBS_FROM_APK - 1);
+
+    assertThat(suggestions).hasSize(1);
+    NativeLibAlignment misaligned = suggestions.get(0).getPayload().getNativeLibAlignment();
+    assertThat(misaligned.getPath()).isEqualTo("lib/x86/libbar.so");
+    assertThat(misaligned.getCompressed()).isFalse();
+  }
+
+  private ImmutableList<Suggestion> processApk(File apk) throws Exception {
+    return processApk(apk, NativeLibsAlignmentSuggester.MIN_SDK_VERSION_LOADING_LIBS_FROM_APK);
+  }
+
+  private ImmutableList<Suggestion> processApk(File apk, int minSdkVersion) throws Exception {
+    try (ZipFile apkZip = new ZipFile(apk)) {
+      return suggester.processApk(ApkContext.create(minSdkVersion), apkZip);
+    }
+  }
+
+  private static void writeDeflated(ZipOutputStream out, String name, byte[] content)
+      throws Exception {
+    out.putNextEntry(new ZipEntry(name));
+    out.write(content);
+    out.closeEntry();
+  }
+
+  /**
+   * Writes a stored entry, optionally padding its extra field the way zipalign does so that the
+   * data starts on a page boundary.
+   */
+  private static void writeStored(
+      ZipOutputStream out, CountingOutputStream counter, String name, byte[] content, boolean align)
+      throws Exception {
+    ZipEntry entry = new ZipEntry(name);
+    entry.setMethod(ZipEntry.STORED);
+    entry.setSize(content.length);
+    CRC32 crc = new CRC32();
+    crc.update(content);
+    entry.setCrc(crc.getValue());
+    if (align) {
+      out.flush();
+      long unpaddedOffset =
+          counter.getCount() + LOCAL_HEADER_SIZE + name.length() + ALIGNMENT_EXTRA_HEADER_SIZE;
+      int padding =
+          (int)
+              ((NativeLibsAlignmentSuggester.PAGE_SIZE_BYTES
+                      - unpaddedOffset % NativeLibsAlignmentSuggester.PAGE_SIZE_BYTES)
+                  % NativeLibsAlignmentSuggester.PAGE_SIZE_BYTES);
+      byte[] extra = new byte[ALIGNMENT_EXTRA_HEADER_SIZE + padding];
+      // Alignment extra field as written by zipalign: id 0xd935, data size, then alignment.
+      extra[0] = (byte) 0x35;
+      extra[1] = (byte) 0xd9;
+      extra[2] = (byte) (extra.length - 4);
+      extra[3] = (byte) ((extra.length - 4) >> 8);
+      extra[4] = (byte) 0x00;
+      extra[5] = (byte) 0x10;
+      entry.setExtra(extra);
+    }
+    out.putNextEntry(entry);
+    out.write(content);
+    out.closeEntry();
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.bundles;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.PointlessCompressionUsage;
+import com.android.tools.sizereduction.analyzer.model.ApkContext;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.IssueType;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class PointlessCompressionSuggesterTest {
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final PointlessCompressionSuggester suggester = new PointlessCompressionSuggester();
+
+  @Test
+  public void flagsDeflatedIncompressibleEntries() throws Exception {
+    File zip = temporaryFolder.newFile("app.apk");
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+      writeEntry(out, "res/raw/intro.ogg", randomBytes(64 * 1024), ZipEntry.DEFLATED);
+      writeEntry(out, "res/drawable/photo.JPG", randomBytes(32 * 1024), ZipEntry.DEFLATED);
+      writeEntry(out, "assets/level.json", new byte[64 * 1024], ZipEntry.DEFLATED);
+      writeEntry(out, "res/raw/outro.mp3", randomBytes(64 * 1024), ZipEntry.STORED);
+      writeEntry(out, "res/drawable/tiny.png", randomBytes(100), ZipEntry.DEFLATED);
+    }
+
+    ImmutableList<Suggestion> suggestions;
+    try (ZipFile zipFile = new ZipFile(zip)) {
+      suggestions = suggester.processApk(ApkContext.create(/* minSdkVersion= */ 21), zipFile);
+    }
+
+    assertThat(suggestions).hasSize(1);
+    Suggestion suggestion = suggestions.get(0);
+    assertThat(suggestion.getIssueType()).isEqualTo(IssueType.BUNDLES_POINTLESS_COMPRESSION);
+    assertThat(suggestion.getEstimatedBytesSaved()).isNull();
+    assertThat(suggestion.getMessage()).contains("noCompress 'jpg', 'ogg'");
+    PointlessCompressionUsage usage = suggestion.getPayload().getPointlessCompressionUsage();
+    assertThat(usage.getTotalEntryCount()).isEqualTo(2);
+    assertThat(usage.getNoCompressExtensionsList()).containsExactly("jpg", "ogg").inOrder();
+    assertThat(usage.getEntriesList()).hasSize(2);
+    assertThat(usage.getEntries(0).getPath()).isEqualTo("res/raw/intro.ogg");
+    assertThat(usage.getEntries(0).getUncompressedSize()).isEqualTo(64 * 1024L);
+    assertThat(usage.getEntries(0).getCompressedSize()).isAtLeast(64 * 1024L * 95 / 100);
+    assertThat(usage.getEntries(1).getPath()).isEqualTo("res/drawable/photo.JPG");
+  }
+
+  @Test
+  public void compressibleArchive_noSuggestion() throws Exception {
+    File zip = temporaryFolder.newFile("app.aab");
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+      writeEntry(out, "base/assets/level.json", new byte[64 * 1024], ZipEntry.DEFLATED);
+      writeEntry(out, "BUNDLE-METADATA/com.example/data.bin", randomBytes(8192), ZipEntry.DEFLATED);
+    }
+
+    try (ZipFile zipFile = new ZipFile(zip)) {
+      assertThat(suggester.processApk(ApkContext.create(/* minSdkVersion= */ 21), zipFile))
+          .isEmpty();
+    }
+  }
+
+  private static byte[] randomBytes(int size) {
+    byte[] bytes = new byte[size];
+    new Random(size).nextBytes(bytes);
+    return bytes;
+  }
+
+  private static void writeEntry(ZipOutputStream out, String name, byte[] content, int method)
+      throws Exception {
+    ZipEntry entry = new ZipEntry(name);
+    entry.setMethod(method);
+    if (method == ZipEntry.STORED) {
+      CRC32 crc = new CRC32();
+      crc.update(content);
+      entry.setCrc(crc.getValue());
+      entry.setSize(content.length);
+      entry.setCompressedSize(content.length);
+    }
+    out.putNextEntry(entry);
+    out.write(content);
+    out.closeEntry();
+  }
+}
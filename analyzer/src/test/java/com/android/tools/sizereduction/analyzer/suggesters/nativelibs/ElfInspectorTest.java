@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.nativelibs;
+
+import static com.android.tools.sizereduction.analyzer.suggesters.nativelibs.ElfInspector.SHF_ALLOC;
+import static com.android.tools.sizereduction.analyzer.suggesters.nativelibs.ElfInspector.SHT_PROGBITS;
+import static com.android.tools.sizereduction.analyzer.suggesters.nativelibs.ElfInspector.SHT_STRTAB;
+import static com.android.tools.sizereduction.analyzer.suggesters.nativelibs.ElfInspector.SHT_SYMTAB;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import com.android.tools.sizereduction.analyzer.suggesters.nativelibs.ElfInspector.StrippableSections;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Optional;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class ElfInspectorTest {
+
+  @Test
+  public void mappedLibrary_reportsStrippableSections() {
+    Optional<StrippableSections> sections =
+        ElfInspector.inspect(ByteBuffer.wrap(unstrippedElf64(/* sectionDataSize= */ 8000)));
+
+    assertThat(sections).isPresent();
+    assertThat(sections.get().getDebugInfoBytes()).isEqualTo(5000L);
+    assertThat(sections.get().getSymbolTableBytes()).isEqualTo(3400L);
+  }
+
+  @Test
+  public void streamedLibrary_reportsStrippableSections() throws Exception {
+    Optional<StrippableSections> sections =
+        ElfInspector.inspect(
+            new ByteArrayInputStream(unstrippedElf64(/* sectionDataSize= */ 8000)));
+
+    assertThat(sections).isPresent();
+    assertThat(sections.get().getDebugInfoBytes()).isEqualTo(5000L);
+    assertThat(sections.get().getSymbolTableBytes()).isEqualTo(3400L);
+  }
+
+  @Test
+  public void truncatedLibrary_isSkipped() throws Exception {
+    byte[] elf = unstrippedElf64(/* sectionDataSize= */ 8000);
+    byte[] truncated = new byte[elf.length - 100];
+    System.arraycopy(elf, 0, truncated, 0, truncated.length);
+
+    assertThat(ElfInspector.inspect(ByteBuffer.wrap(truncated))).isEmpty();
+    assertThat(ElfInspector.inspect(new ByteArrayInputStream(truncated))).isEmpty();
+  }
+
+  @Test
+  public void notAnElfFile_isSkipped() throws Exception {
+    byte[] notElf = new byte[1000];
+
+    assertThat(ElfInspector.inspect(ByteBuffer.wrap(notElf))).isEmpty();
+    assertThat(ElfInspector.inspect(new ByteArrayInputStream(notElf))).isEmpty();
+  }
+
+  /**
+   * Builds a little-endian 64-bit ELF file with a null section, .text, .debug_info, .symtab,
+   * .strtab and .shstrtab, followed by the section header table.
+   */
+  static byte[] unstrippedElf64(int sectionDataSize) {
+    int sectionCount = 6;
+    int sectionTableOffset = 64 + sectionDataSize;
+    ByteBuffer elf =
+        ByteBuffer.allocate(sectionTableOffset + sectionCount * 64).order(ByteOrder.LITTLE_ENDIAN);
+    elf.put(0, (byte) 0x7f).put(1, (byte) 'E').put(2, (byte) 'L').put(3, (byte) 'F');
+    elf.put(4, (byte) 2); // ELFCLASS64
+    elf.put(5, (byte) 1); // ELFDATA2LSB
+    elf.putLong(0x28, sectionTableOffset);
+    elf.putShort(0x3a, (short) 64);
+    elf.putShort(0x3c, (short) sectionCount);
+    elf.putShort(0x3e, (short) 5);
+
+    putSection(elf, sectionTableOffset, 1, SHT_PROGBITS, SHF_ALLOC, 100, 0);
+    putSection(elf, sectionTableOffset, 2, SHT_PROGBITS, 0, 5000, 0);
+    putSection(elf, sectionTableOffset, 3, SHT_SYMTAB, 0, 2400, 4);
+    putSection(elf, sectionTableOffset, 4, SHT_STRTAB, 0, 1000, 0);
+    putSection(elf, sectionTableOffset, 5, SHT_STRTAB, 0, 50, 0);
+    return elf.array();
+  }
+
+  private static void putSection(
+      ByteBuffer elf, int tableOffset, int index, int type, long flags, long size, int link) {
+    int entry = tableOffset + index * 64;
+    elf.putInt(entry + 4, type);
+    elf.putLong(entry + 8, flags);
+    elf.putLong(entry + 32, size);
+    elf.putInt(entry + 40, link);
+  }
+}
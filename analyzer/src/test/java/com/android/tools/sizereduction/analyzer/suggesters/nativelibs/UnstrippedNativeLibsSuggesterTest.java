@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.nativelibs;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.UnstrippedNativeLibs;
+import com.android.tools.sizereduction.analyzer.model.ApkContext;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.Category;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.IssueType;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class UnstrippedNativeLibsSuggesterTest {
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final UnstrippedNativeLibsSuggester suggester = new UnstrippedNativeLibsSuggester();
+
+  @Test
+  public void storedAndCompressedLibs_reportedPerAbi() throws Exception {
+    File apk = temporaryFolder.newFile("app.apk");
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(apk))) {
+      writeStored(out, "lib/arm64-v8a/libstored.so", ElfInspectorTest.unstrippedElf64(8000));
+      writeDeflated(out, "lib/arm64-v8a/libdeflated.so", ElfInspectorTest.unstrippedElf64(20000));
+      writeDeflated(out, "lib/x86/libnotelf.so", new byte[5000]);
+      writeDeflated(out, "assets/lib/x86/libasset.so", ElfInspectorTest.unstrippedElf64(8000));
+    }
+
+    ImmutableList<Suggestion> suggestions;
+    try (ZipFile apkZip = new ZipFile(apk)) {
+      suggestions = suggester.processApk(ApkContext.create(/* minSdkVersion= */ 21), apkZip);
+    }
+
+    assertThat(suggestions).hasSize(1);
+    Suggestion suggestion = suggestions.get(0);
+    assertThat(suggestion.getIssueType()).isEqualTo(IssueType.NATIVE_LIBS_UNSTRIPPED);
+    assertThat(suggestion.getCategory()).isEqualTo(Category.NATIVE_LIBS);
+    assertThat(suggestion.getMessage()).contains("arm64-v8a contain 16800 bytes");
+    // The stored library is downloaded as is, so all its strippable bytes count as savings.
+    assertThat(suggestion.getEstimatedBytesSaved()).isAtLeast(8400L);
+    assertThat(suggestion.getEstimatedBytesSaved()).isLessThan(16800L);
+    UnstrippedNativeLibs payload = suggestion.getPayload().getUnstrippedNativeLibs();
+    assertThat(payload.getAbi()).isEqualTo("arm64-v8a");
+    assertThat(payload.getLibrariesList()).hasSize(2);
+    assertThat(payload.getLibraries(0).getPath()).isEqualTo("lib/arm64-v8a/libstored.so");
+    assertThat(payload.getLibraries(0).getDebugInfoBytes()).isEqualTo(5000L);
+    assertThat(payload.getLibraries(0).getSymbolTableBytes()).isEqualTo(3400L);
+    assertThat(payload.getLibraries(1).getPath()).isEqualTo("lib/arm64-v8a/libdeflated.so");
+  }
+
+  private static void writeDeflated(ZipOutputStream out, String name, byte[] content)
+      throws Exception {
+    out.putNextEntry(new ZipEntry(name));
+    out.write(content);
+    out.closeEntry();
+  }
+
+  private static void writeStored(ZipOutputStream out, String name, byte[] content)
+      throws Exception {
+    ZipEntry entry = new ZipEntry(name);
+    entry.setMethod(ZipEntry.STORED);
+    entry.setSize(content.length);
+    CRC32 crc = new CRC32();
+    crc.update(content);
+    entry.setCrc(crc.getValue());
+    out.putNextEntry(entry);
+    out.write(content);
+    out.closeEntry();
+  }
+}
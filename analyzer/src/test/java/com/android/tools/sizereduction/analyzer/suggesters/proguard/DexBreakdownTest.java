@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.proguard;
+
+import static com.android.tools.sizereduction.analyzer.suggesters.proguard.DexInspectorTest.dexFile;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.DexModuleData;
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.DexSection;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class DexBreakdownTest {
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void sumsDexFilesPerModule() throws Exception {
+    File bundle = temporaryFolder.newFile("app.aab");
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(bundle))) {
+      writeEntry(out, "base/dex/classes.dex", dexFile(100, 10), ZipEntry.DEFLATED);
+      writeEntry(out, "base/dex/classes2.dex", dexFile(50, 5), ZipEntry.STORED);
+      writeEntry(out, "feature/dex/classes.dex", dexFile(20, 2), ZipEntry.DEFLATED);
+      writeEntry(out, "feature/assets/classes.dex", new byte[100], ZipEntry.DEFLATED);
+      writeEntry(out, "feature/dex/broken.dex", new byte[100], ZipEntry.DEFLATED);
+    }
+
+    for (int threads : new int[] {1, 4}) {
+      ImmutableList<DexModuleData> modules = DexBreakdown.compute(bundle, threads);
+
+      assertThat(modules).hasSize(2);
+      DexModuleData base = modules.get(0);
+      assertThat(base.getModuleName()).isEqualTo("base");
+      assertThat(base.getDexFileCount()).isEqualTo(2);
+      assertThat(base.getMethodCount()).isEqualTo(150L);
+      assertThat(base.getFieldCount()).isEqualTo(15L);
+      // Code is the largest section of the fake DEX files.
+      assertThat(base.getSections(0).getSection()).isEqualTo(DexSection.CODE);
+      assertThat(base.getSections(0).getBytes()).isEqualTo(2 * 0x400L);
+      DexModuleData feature = modules.get(1);
+      assertThat(feature.getModuleName()).isEqualTo("feature");
+      assertThat(feature.getDexFileCount()).isEqualTo(1);
+      assertThat(feature.getMethodCount()).isEqualTo(20L);
+    }
+  }
+
+  private static void writeEntry(ZipOutputStream out, String name, byte[] content, int method)
+      throws Exception {
+    ZipEntry entry = new ZipEntry(name);
+    entry.setMethod(method);
+    if (method == ZipEntry.STORED) {
+      CRC32 crc = new CRC32();
+      crc.update(content);
+      entry.setCrc(crc.getValue());
+      entry.setSize(content.length);
+    }
+    out.putNextEntry(entry);
+    out.write(content);
+    out.closeEntry();
+  }
+}
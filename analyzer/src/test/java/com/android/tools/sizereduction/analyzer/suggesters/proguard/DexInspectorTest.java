@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.proguard;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.DexSection;
+import com.android.tools.sizereduction.analyzer.suggesters.proguard.DexInspector.DexStats;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Optional;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class DexInspectorTest {
+
+  private static final int MAP_OFFSET = 0x700;
+  private static final int[][] MAP_ITEMS = {
+    // type, offset
+    {0x0000, 0x000}, // header_item
+    {0x0001, 0x070}, // string_id_item
+    {0x0005, 0x100}, // method_id_item
+    {0x2001, 0x200}, // code_item
+    {0x2002, 0x600}, // string_data_item
+    {0x1000, MAP_OFFSET}, // map_list
+  };
+
+  @Test
+  public void mappedDex_sectionSizesFromMapList() {
+    assertStats(DexInspector.inspect(ByteBuffer.wrap(dexFile(/* methods= */ 32, /* fields= */ 7))));
+  }
+
+  @Test
+  public void streamedDex_sectionSizesFromMapList() throws Exception {
+    assertStats(
+        DexInspector.inspect(
+            new ByteArrayInputStream(dexFile(/* methods= */ 32, /* fields= */ 7))));
+  }
+
+  @Test
+  public void truncatedDex_isSkipped() throws Exception {
+    byte[] dex = dexFile(/* methods= */ 32, /* fields= */ 7);
+    byte[] truncated = Arrays.copyOf(dex, MAP_OFFSET + 10);
+
+    assertThat(DexInspector.inspect(ByteBuffer.wrap(truncated))).isEmpty();
+    assertThat(DexInspector.inspect(new ByteArrayInputStream(truncated))).isEmpty();
+  }
+
+  @Test
+  public void notADex_isSkipped() throws Exception {
+    byte[] notDex = new byte[4096];
+
+    assertThat(DexInspector.inspect(ByteBuffer.wrap(notDex))).isEmpty();
+    assertThat(DexInspector.inspect(new ByteArrayInputStream(notDex))).isEmpty();
+  }
+
+  private static void assertStats(Optional<DexStats> stats) {
+    assertThat(stats).isPresent();
+    long[] sectionBytes = stats.get().sectionBytes;
+    assertThat(sectionBytes[DexSection.STRINGS.getNumber()]).isEqualTo(0x90L + 0x100L);
+    assertThat(sectionBytes[DexSection.METHODS.getNumber()]).isEqualTo(0x100L);
+    assertThat(sectionBytes[DexSection.CODE.getNumber()]).isEqualTo(0x400L);
+    // The header and the map list itself.
+    assertThat(sectionBytes[DexSection.OTHER_DATA.getNumber()])
+        .isEqualTo(0x70L + 4 + MAP_ITEMS.length * 12);
+    assertThat(sectionBytes[DexSection.TYPES.getNumber()]).isEqualTo(0L);
+    assertThat(stats.get().methodCount).isEqualTo(32);
+    assertThat(stats.get().fieldCount).isEqualTo(7);
+  }
+
+  /** Builds a DEX file with only a header and a map_list describing fake sections. */
+  static byte[] dexFile(int methods, int fields) {
+    int fileSize = MAP_OFFSET + 4 + MAP_ITEMS.length * 12;
+    ByteBuffer dex = ByteBuffer.allocate(fileSize).order(ByteOrder.LITTLE_ENDIAN);
+    dex.put(new byte[] {'d', 'e', 'x', '\n', '0', '3', '5', 0});
+    dex.putInt(0x20, fileSize);
+    dex.putInt(0x24, DexInspector.HEADER_SIZE);
+    dex.putInt(0x28, 0x12345678);
+    dex.putInt(0x34, MAP_OFFSET);
+    dex.putInt(0x50, fields);
+    dex.putInt(0x58, methods);
+    dex.putInt(MAP_OFFSET, MAP_ITEMS.length);
+    for (int i = 0; i < MAP_ITEMS.length; i++) {
+      int item = MAP_OFFSET + 4 + i * 12;
+      dex.putShort(item, (short) MAP_ITEMS[i][0]);
+      dex.putInt(item + 4, 1);
+      dex.putInt(item + 8, MAP_ITEMS[i][1]);
+    }
+    return dex.array();
+  }
+}
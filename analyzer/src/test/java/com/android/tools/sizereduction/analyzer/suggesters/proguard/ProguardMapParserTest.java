@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.proguard;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.MappingCoverage;
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.MappingCoverage.PackageCoverage;
+import com.android.tools.sizereduction.analyzer.suggesters.proguard.ProguardMapParser.MappingStats;
+import com.google.common.base.Strings;
+import java.io.ByteArrayInputStream;
+import java.util.OptionalLong;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class ProguardMapParserTest {
+
+  private static final String MAPPING =
+      "# compiler: R8\n"
+          + "com.example.app.MainActivity -> com.example.app.MainActivity:\n"
+          + "    int counter -> a\n"
+          + "    1:3:void onCreate(android.os.Bundle):10:12 -> onCreate\n"
+          + "    4:5:void onCreate(android.os.Bundle):20:21 -> onCreate\n"
+          + "    6:6:void com.example.util.Strings.check():30:30 -> onCreate\n"
+          + "com.example.app.Helper -> a.a:\n"
+          + "    java.lang.String name -> a\n"
+          + "    void run() -> b\n"
+          + "com.example.util.Strings -> a.b:\r\n"
+          + "    boolean isEmpty(java.lang.String) -> a\r\n"
+          + "Root -> Root:\n"
+          + "    void main(java.lang.String[]) -> main";
+
+  @Test
+  public void countsKeptAndObfuscatedEntriesPerPackage() throws Exception {
+    MappingStats stats = parse(MAPPING);
+
+    assertThat(stats.getPackageCount()).isEqualTo(3);
+    assertThat(stats.getPackageName(0)).isEqualTo("com.example.app");
+    assertThat(stats.getKeptClassCount(0)).isEqualTo(1);
+    assertThat(stats.getObfuscatedClassCount(0)).isEqualTo(1);
+    // The second line range of onCreate and the inlined frame are not counted.
+    assertThat(stats.getKeptMemberCount(0)).isEqualTo(1);
+    assertThat(stats.getObfuscatedMemberCount(0)).isEqualTo(3);
+
+    assertThat(stats.getPackageName(1)).isEqualTo("com.example.util");
+    assertThat(stats.getObfuscatedClassCount(1)).isEqualTo(1);
+    assertThat(stats.getObfuscatedMemberCount(1)).isEqualTo(1);
+
+    assertThat(stats.getPackageName(2)).isEmpty();
+    assertThat(stats.getKeptClassCount(2)).isEqualTo(1);
+    assertThat(stats.getKeptMemberCount(2)).isEqualTo(1);
+
+    assertThat(stats.getTotalEntryCount()).isEqualTo(10L);
+  }
+
+  @Test
+  public void skipsInitializersAndTellsOverloadsApart() throws Exception {
+    MappingStats stats =
+        parse(
+            "com.example.Foo -> a.a:\n"
+                + "    void <init>() -> <init>\n"
+                + "    1:1:void <clinit>():5:5 -> <clinit>\n"
+                + "    1:2:void set(int):10:11 -> a\n"
+                + "    3:4:void set(int):12:13 -> a\n"
+                + "    5:6:void set(long):20:21 -> a\n");
+
+    assertThat(stats.getKeptMemberCount(0)).isEqualTo(0);
+    assertThat(stats.getObfuscatedMemberCount(0)).isEqualTo(2);
+  }
+
+  @Test
+  public void mergesPackagesListedInSeveralRuns() throws Exception {
+    MappingStats stats =
+        parse("a.One -> a.a:\nb.Two -> b.a:\na.Three -> a.Three:\n");
+
+    assertThat(stats.getPackageCount()).isEqualTo(2);
+    assertThat(stats.getKeptClassCount(0)).isEqualTo(1);
+    assertThat(stats.getObfuscatedClassCount(0)).isEqualTo(1);
+  }
+
+  @Test
+  public void truncatesOverlongLines() throws Exception {
+    MappingStats stats =
+        parse(
+            "a.One -> a.a:\n"
+                + "    void "
+                + Strings.repeat("x", ProguardMapParser.MAX_LINE_LENGTH)
+                + "() -> b\n"
+                + "    int y -> y\n");
+
+    assertThat(stats.getKeptMemberCount(0)).isEqualTo(1);
+    assertThat(stats.getObfuscatedMemberCount(0)).isEqualTo(0);
+  }
+
+  @Test
+  public void reportsMostlyUnobfuscatedPackages() throws Exception {
+    StringBuilder mapping = new StringBuilder();
+    for (int i = 0; i < ProguardSuggester.MIN_UNOBFUSCATED_ENTRIES; i++) {
+      mapping.append(String.format("com.kept.Class%d -> com.kept.Class%d:\n", i, i));
+      mapping.append(String.format("com.shrunk.Class%d -> a.a%d:\n", i, i));
+    }
+    mapping.append("com.small.Kept -> com.small.Kept:\n");
+
+    MappingCoverage coverage =
+        ProguardSuggester.mappingCoverage(parse(mapping.toString()), OptionalLong.of(201_000));
+
+    assertThat(coverage.getClassCount()).isEqualTo(201L);
+    assertThat(coverage.getObfuscatedClassCount()).isEqualTo(100L);
+    assertThat(coverage.getUnobfuscatedPackagesList())
+        .containsExactly(
+            PackageCoverage.newBuilder()
+                .setPackageName("com.kept")
+                .setClassCount(100)
+                .setMemberCount(0)
+                .setEstimatedDexBytes(100_000)
+                .build());
+  }
+
+  private static MappingStats parse(String mapping) throws Exception {
+    return ProguardMapParser.parse(new ByteArrayInputStream(mapping.getBytes(UTF_8)));
+  }
+}
@@ -33,8 +33,8 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
 import java.io.File;
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.ZipFile;
 import javax.annotation.Nullable;
 
@@ -57,7 +57,7 @@ public final class FakeSuggester
 
   // Record of analyzed entries in case when the suggester scans an entry-organized artifact, on an
   // entry level,
-  private final Set<String> analyzedEntries = new HashSet<>();
+  private final Set<String> analyzedEntries = ConcurrentHashMap.newKeySet();
 
   // List of suggestions that should be returned when suggestions are requested for the whole
   // artifact.
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.tracing;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.nio.file.Paths;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class AnalyzerEventsTest {
+
+  @Test
+  public void spans_withoutRecording_areNotRecorded() {
+    assertThat(AnalyzerEvents.analysis(new File("app.aab"), "analyze"))
+        .isSameAs(TraceSpan.NONE);
+    assertThat(AnalyzerEvents.suggesterInvocation(new Object(), Paths.get("res/a.png"), 42))
+        .isSameAs(TraceSpan.NONE);
+    assertThat(AnalyzerEvents.webpEncode(10, 20)).isSameAs(TraceSpan.NONE);
+  }
+
+  @Test
+  public void spans_canBeNested() {
+    try (TraceSpan analysis = AnalyzerEvents.analysis(new File("project"), "analyzeBySource");
+        TraceSpan module = AnalyzerEvents.moduleContext("app");
+        TraceSpan parse = AnalyzerEvents.gradleParse(new File("app/build.gradle"))) {
+      try (TraceSpan decode = AnalyzerEvents.imageDecode("app/src/main/res/a.png", false)) {
+        assertThat(decode).isNotNull();
+      }
+    }
+  }
+}
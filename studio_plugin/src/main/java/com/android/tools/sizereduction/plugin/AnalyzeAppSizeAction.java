@@ -16,16 +16,8 @@
 
 package com.android.tools.sizereduction.plugin;
 
-import com.android.tools.sizereduction.analyzer.analyzers.ProjectAnalyzer;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.Category;
-import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.LargeFilesSuggester;
-import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.QuestionableFilesSuggester;
-import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.WebpSuggester;
-import com.android.tools.sizereduction.analyzer.suggesters.bundles.BundleSplitSuggester;
-import com.android.tools.sizereduction.analyzer.suggesters.libraries.LibraryEligibleForFeatureSplitSuggester;
-import com.android.tools.sizereduction.analyzer.suggesters.libraries.OptimalLibrarySuggester;
-import com.android.tools.sizereduction.analyzer.suggesters.proguard.ProguardSuggester;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
 import com.intellij.openapi.actionSystem.AnAction;
@@ -41,22 +33,11 @@ import com.intellij.openapi.wm.ToolWindowManager;
 import com.intellij.ui.content.ContentManager;
 import com.intellij.ui.content.ContentManagerAdapter;
 import com.intellij.ui.content.ContentManagerEvent;
-import java.io.File;
 import org.jetbrains.annotations.NotNull;
 
 /** Adds a size analyzer action in the analyze menu of Android Studio. */
 public class AnalyzeAppSizeAction extends AnAction {
 
-  private static final ProjectAnalyzer PROJECT_ANALYZER =
-      new ProjectAnalyzer(
-          ImmutableList.of(
-              new ProguardSuggester(),
-              new BundleSplitSuggester(),
-              new LibraryEligibleForFeatureSplitSuggester(),
-              new OptimalLibrarySuggester()),
-          ImmutableList.of(
-              new LargeFilesSuggester(), new QuestionableFilesSuggester(), new WebpSuggester()));
-
   private ImmutableListMultimap<Category, Suggestion> categorizedSuggestions;
 
   @Override
@@ -69,9 +50,12 @@ public class AnalyzeAppSizeAction extends AnAction {
               public void run(@NotNull ProgressIndicator indicator) {
                 indicator.setText("Analyzing app size...");
 
+                // The project is only analyzed in full the first time, after that the service
+                // keeps the analysis up to date as files change.
                 categorizedSuggestions =
                     project != null
-                        ? gatherAnalysis(project)
+                        ? SizeAnalysisService.getInstance(project)
+                            .getCategorizedSuggestions(indicator)
                         : ImmutableListMultimap.of();
 
                 ApplicationManager.getApplication()
@@ -132,17 +116,4 @@ public class AnalyzeAppSizeAction extends AnAction {
               }
             });
   }
-
-  private ImmutableListMultimap<Category, Suggestion> gatherAnalysis(Project project) {
-    ImmutableListMultimap.Builder<Category, Suggestion> resultBuilder =
-        ImmutableListMultimap.builder();
-    if (project.getBasePath() != null) {
-      ImmutableList<Suggestion> suggestions =
-          PROJECT_ANALYZER.analyze(new File(project.getBasePath()));
-      for (Suggestion suggestion : suggestions) {
-        resultBuilder.put(suggestion.getCategory(), suggestion);
-      }
-    }
-    return resultBuilder.build();
-  }
 }
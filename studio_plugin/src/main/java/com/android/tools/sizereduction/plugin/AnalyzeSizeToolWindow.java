@@ -1,5 +1,6 @@
 package com.android.tools.sizereduction.plugin;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static org.apache.commons.lang3.StringEscapeUtils.escapeHtml4;
 
 import com.android.tools.sizereduction.analyzer.suggesters.AutoFix;
@@ -9,10 +10,6 @@ import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.IssueType;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
 import com.intellij.icons.AllIcons.Actions;
-import com.intellij.openapi.application.ApplicationManager;
-import com.intellij.openapi.progress.ProgressIndicator;
-import com.intellij.openapi.progress.ProgressManager;
-import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Splitter;
 import com.intellij.openapi.wm.ToolWindow;
@@ -48,7 +45,6 @@ import javax.swing.event.TreeSelectionEvent;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreePath;
-import org.jetbrains.annotations.NotNull;
 
 /** Tool Window for Size Analyzer. */
 public final class AnalyzeSizeToolWindow {
@@ -96,36 +92,26 @@ public final class AnalyzeSizeToolWindow {
     autofixAction =
         new AbstractAction() {
           @Override
+          @SuppressWarnings("unchecked") // Only lists of tree nodes are stored under this key.
           public void actionPerformed(ActionEvent e) {
-            assert this.getValue("autofix") != null
-                : "Autofix action called with null autofix value";
-            if (this.getValue("autofix") != null) {
+            assert this.getValue("autofixNodes") != null
+                : "Autofix action called with null autofix nodes";
+            if (this.getValue("autofixNodes") != null) {
               String indicatorText =
                   this.getValue("indicatorText") != null
                       ? (String) this.getValue("indicatorText")
                       : "Autofixing...";
-              AutoFix autoFix = (AutoFix) this.getValue("autofix");
-              ProgressManager.getInstance()
-                  .run(
-                      new Task.Backgroundable(project, indicatorText) {
-                        @Override
-                        public void run(@NotNull ProgressIndicator indicator) {
-                          indicator.setText(indicatorText);
-
-                          ApplicationManager.getApplication()
-                              .invokeLater(
-                                  new Runnable() {
-                                    @Override
-                                    public void run() {
-                                      autoFix.apply();
-                                    }
-                                  });
-                        }
-                      });
-              if (this.getValue("autofixNode") != null) {
-                ((DefaultTreeModel) suggestionTree.getModel())
-                    .removeNodeFromParent((DefaultMutableTreeNode) this.getValue("autofixNode"));
-              }
+              List<DefaultMutableTreeNode> autoFixNodes =
+                  (List<DefaultMutableTreeNode>) this.getValue("autofixNodes");
+              ImmutableList<AutoFix> autoFixes =
+                  autoFixNodes.stream()
+                      .map(node -> ((SuggestionData) node.getUserObject()).getAutoFix())
+                      .collect(toImmutableList());
+              AutoFixRunner.run(
+                  project,
+                  indicatorText,
+                  autoFixes,
+                  appliedFixes -> removeAppliedNodes(autoFixNodes, appliedFixes));
               descriptionAutoFixButton.setEnabled(false);
             }
           }
@@ -311,8 +297,7 @@ public final class AnalyzeSizeToolWindow {
         descriptionAutoFixButton.setIcon(Actions.IntentionBulb);
         descriptionAutoFixButton.setEnabled(true);
         descriptionAutoFixStrut.setVisible(true);
-        autofixAction.putValue("autofix", suggestion.getAutoFix());
-        autofixAction.putValue("autofixNode", selectedNode);
+        autofixAction.putValue("autofixNodes", ImmutableList.of(selectedNode));
       }
     } else if (userObject instanceof IssueTypeData) {
       IssueTypeData issueType = (IssueTypeData) selectedNode.getUserObject();
@@ -339,27 +324,33 @@ public final class AnalyzeSizeToolWindow {
         descriptionAutoFixButton.setIcon(Actions.IntentionBulb);
         descriptionAutoFixButton.setEnabled(true);
         descriptionAutoFixStrut.setVisible(true);
-        // Create an autofix action that applies each of the child nodes' autofixes.
-        autofixAction.putValue("autofix", new AutoFix() {
-          @Override
-          public void apply() {
-            for (DefaultMutableTreeNode childNode : childAutoFixNodes) {
-              ((SuggestionData) childNode.getUserObject()).getAutoFix().apply();
-            }
-            DefaultTreeModel treeModel = (DefaultTreeModel) suggestionTree.getModel();
-            childAutoFixNodes.forEach(treeModel::removeNodeFromParent);
-            if (selectedNode.getChildCount() == 0) {
-              ((DefaultTreeModel) suggestionTree.getModel()).removeNodeFromParent(selectedNode);
-            }
-          }
-        });
-        // Set the autoFix node to null to disable standard removal.
-        autofixAction.putValue("autofixNode", null);
+        autofixAction.putValue("autofixNodes", childAutoFixNodes);
       }
     }
     descriptionPanel.revalidate();
   }
 
+  /**
+   * Removes the nodes whose autofix was applied, along with any issue type node left without
+   * suggestions. Must be called on the event dispatch thread.
+   */
+  private void removeAppliedNodes(
+      List<DefaultMutableTreeNode> autoFixNodes, ImmutableList<AutoFix> appliedFixes) {
+    DefaultTreeModel treeModel = (DefaultTreeModel) suggestionTree.getModel();
+    for (DefaultMutableTreeNode node : autoFixNodes) {
+      // The tree may have been rebuilt by a newer analysis while the fixes were running.
+      if (node.getParent() == null
+          || !appliedFixes.contains(((SuggestionData) node.getUserObject()).getAutoFix())) {
+        continue;
+      }
+      DefaultMutableTreeNode parent = (DefaultMutableTreeNode) node.getParent();
+      treeModel.removeNodeFromParent(node);
+      if (parent.getUserObject() instanceof IssueTypeData && parent.getChildCount() == 0) {
+        treeModel.removeNodeFromParent(parent);
+      }
+    }
+  }
+
   private static List<DefaultMutableTreeNode> getChildrenWithAutoFixes(
       DefaultMutableTreeNode node) {
     ArrayList<DefaultMutableTreeNode> autoFixNodes = new ArrayList<>();
@@ -431,6 +422,49 @@ public final class AnalyzeSizeToolWindow {
     return null;
   }
 
+  /**
+   * Shows the new suggestions in the existing tree, only rebuilding the nodes of the categories
+   * whose suggestions changed. Must be called on the event dispatch thread.
+   */
+  public void updateSuggestions(ImmutableListMultimap<Category, Suggestion> newSuggestions) {
+    DefaultTreeModel treeModel = (DefaultTreeModel) suggestionTree.getModel();
+    DefaultMutableTreeNode rootNode = (DefaultMutableTreeNode) treeModel.getRoot();
+    int index = 0;
+    for (Category category : categoryDisplayOrder) {
+      ImmutableList<Suggestion> suggestions = newSuggestions.get(category);
+      DefaultMutableTreeNode categoryNode = findCategoryNode(rootNode, category);
+      if (categoryNode == null || !suggestions.equals(categorizedSuggestions.get(category))) {
+        if (categoryNode != null) {
+          treeModel.removeNodeFromParent(categoryNode);
+        }
+        if (!suggestions.isEmpty()) {
+          Map<IssueType, List<Suggestion>> suggestionMap =
+              suggestions.stream().collect(Collectors.groupingBy(Suggestion::getIssueType));
+          treeModel.insertNodeInto(
+              buildNodesForCategory(category, suggestionMap), rootNode, index);
+        }
+      }
+      if (!suggestions.isEmpty()) {
+        index++;
+      }
+    }
+    categorizedSuggestions = newSuggestions;
+    suggestionTree.setRootVisible(rootNode.getChildCount() == 0);
+  }
+
+  @Nullable
+  private static DefaultMutableTreeNode findCategoryNode(
+      DefaultMutableTreeNode rootNode, Category category) {
+    for (Enumeration<?> children = rootNode.children(); children.hasMoreElements(); ) {
+      DefaultMutableTreeNode child = (DefaultMutableTreeNode) children.nextElement();
+      if (child.getUserObject() instanceof CategoryData
+          && ((CategoryData) child.getUserObject()).getCategory() == category) {
+        return child;
+      }
+    }
+    return null;
+  }
+
   public void setCategorizedSuggestions(
       ImmutableListMultimap<Category, Suggestion> categorizedSuggestions) {
     this.categorizedSuggestions = categorizedSuggestions;
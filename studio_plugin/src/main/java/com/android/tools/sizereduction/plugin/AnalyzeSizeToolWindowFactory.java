@@ -26,6 +26,7 @@ import com.intellij.openapi.wm.ToolWindowFactory;
 import com.intellij.ui.content.Content;
 import com.intellij.ui.content.ContentFactory;
 import com.intellij.ui.content.ContentManager;
+import java.util.function.Consumer;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -60,6 +61,12 @@ public final class AnalyzeSizeToolWindowFactory implements ToolWindowFactory {
         ContentFactory.SERVICE
             .getInstance()
             .createContent(analyzeSizeToolWindow.getContent(), CONTENT_TITLE, false);
+    // Keep the tree up to date as files change, for as long as the content is shown.
+    SizeAnalysisService analysisService = SizeAnalysisService.getInstance(project);
+    Consumer<ImmutableListMultimap<Category, Suggestion>> listener =
+        analyzeSizeToolWindow::updateSuggestions;
+    analysisService.addListener(listener);
+    content.setDisposer(() -> analysisService.removeListener(listener));
     // We want only one content tab to exist at a time, but clearing all of them will cause the
     // tool window to disappear, so we add the new tab and remove the others after.
     contentManager.addContent(content);
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.plugin;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.android.tools.sizereduction.analyzer.suggesters.AutoFix;
+import com.android.tools.sizereduction.analyzer.suggesters.AutoFixExecutor;
+import com.google.common.collect.ImmutableList;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Applies autofixes in the background through an {@link AutoFixExecutor}, so that fixes touching
+ * the same file are applied one at a time. Progress is reported through the task's progress
+ * indicator, and no new fix is started once the task is cancelled. The open documents are saved
+ * before the fixes start, and the VFS is refreshed once all of them are done.
+ */
+final class AutoFixRunner {
+  private static final Logger LOG = Logger.getInstance(AutoFixRunner.class);
+  private static final AutoFixExecutor EXECUTOR =
+      new AutoFixExecutor(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+  private AutoFixRunner() {}
+
+  /**
+   * Applies the given autofixes in the background. The fixes that were applied successfully are
+   * passed to the callback on the event dispatch thread once all the fixes have finished and the
+   * project directory has been refreshed.
+   */
+  static void run(
+      Project project,
+      String title,
+      ImmutableList<AutoFix> autoFixes,
+      Consumer<ImmutableList<AutoFix>> onApplied) {
+    ProgressManager.getInstance()
+        .run(
+            new Task.Backgroundable(project, title, /* canBeCancelled= */ true) {
+              @Override
+              public void run(@NotNull ProgressIndicator indicator) {
+                indicator.setText(title);
+                indicator.setIndeterminate(false);
+                // The fixes write to disk directly, unsaved edits of the same files would
+                // otherwise conflict with them.
+                ApplicationManager.getApplication()
+                    .invokeAndWait(() -> FileDocumentManager.getInstance().saveAllDocuments());
+                ImmutableList<AutoFix> applied = applyAll(autoFixes, indicator);
+                // A single refresh in a single write action brings the VFS and the open editors
+                // up to date with the whole batch.
+                VirtualFile baseDir = project.getBaseDir();
+                if (!applied.isEmpty() && baseDir != null) {
+                  WriteAction.runAndWait(
+                      () ->
+                          VfsUtil.markDirtyAndRefresh(
+                              /* async= */ false,
+                              /* recursive= */ true,
+                              /* reloadChildren= */ true,
+                              baseDir));
+                }
+                ApplicationManager.getApplication()
+                    .invokeLater(() -> onApplied.accept(applied), project.getDisposed());
+              }
+            });
+  }
+
+  private static ImmutableList<AutoFix> applyAll(
+      ImmutableList<AutoFix> autoFixes, ProgressIndicator indicator) {
+    Set<AutoFix> applied = ConcurrentHashMap.newKeySet();
+    AtomicInteger completed = new AtomicInteger();
+    EXECUTOR.execute(
+        autoFixes,
+        new AutoFixExecutor.Listener() {
+          @Override
+          public boolean isCancelled() {
+            // Fixes that already started are left to finish so that no file is half written.
+            return indicator.isCanceled();
+          }
+
+          @Override
+          public void fixApplied(AutoFix autoFix) {
+            applied.add(autoFix);
+            indicator.setFraction((double) completed.incrementAndGet() / autoFixes.size());
+          }
+
+          @Override
+          public void fixFailed(AutoFix autoFix, RuntimeException failure) {
+            LOG.warn("Failed to apply autofix", failure);
+            indicator.setFraction((double) completed.incrementAndGet() / autoFixes.size());
+          }
+        });
+    // Keep the order the fixes were given in, whatever order they completed in.
+    return autoFixes.stream().filter(applied::contains).collect(toImmutableList());
+  }
+}
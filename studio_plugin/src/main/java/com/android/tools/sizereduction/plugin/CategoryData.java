@@ -34,6 +34,7 @@ final class CategoryData {
           .put(Category.BUNDLE_CONFIG, "Android App Bundle")
           .put(Category.BUNDLE_BASE, "App Bundle Base Module")
           .put(Category.LIBRARIES, "App Libraries")
+          .put(Category.NATIVE_LIBS, "Native Libraries")
           .build();
 
   public CategoryData(Category category) {
@@ -55,6 +56,10 @@ final class CategoryData {
     return CATEGORY_TO_STRING.get(category);
   }
 
+  public Category getCategory() {
+    return category;
+  }
+
   public int totalSuggestions() {
     return totalSuggestions;
   }
@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.plugin;
+
+import com.android.tools.sizereduction.analyzer.analyzers.IncrementalProjectAnalysis;
+import com.android.tools.sizereduction.analyzer.analyzers.ProjectAnalyzer;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.Category;
+import com.android.tools.sizereduction.analyzer.suggesters.SuggestionTable;
+import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.LargeFilesSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.QuestionableFilesSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.WebpSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.bundles.BundleSplitSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.libraries.LibraryEligibleForFeatureSplitSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.libraries.OptimalLibrarySuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.proguard.ProguardSuggester;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Project level service keeping the size analysis of a project up to date.
+ *
+ * <p>The whole project is analyzed once, the first time the analysis is requested. After that the
+ * service listens to file system changes and hands them to an {@link IncrementalProjectAnalysis},
+ * which re-analyzes the files that changed, or the whole module when one of the files describing
+ * the module changed, the same way as {@code check-project --watch}.
+ */
+public final class SizeAnalysisService implements Disposable {
+
+  private static final ProjectAnalyzer PROJECT_ANALYZER =
+      new ProjectAnalyzer(
+          ImmutableList.of(
+              new ProguardSuggester(),
+              new BundleSplitSuggester(),
+              new LibraryEligibleForFeatureSplitSuggester(),
+              new OptimalLibrarySuggester()),
+          ImmutableList.of(
+              new LargeFilesSuggester(), new QuestionableFilesSuggester(), new WebpSuggester()));
+
+  private final Project project;
+  private final List<Consumer<ImmutableListMultimap<Category, Suggestion>>> listeners =
+      new CopyOnWriteArrayList<>();
+
+  // Created by the first analysis. Guarded by this.
+  @Nullable private IncrementalProjectAnalysis analysis;
+  // Written while holding this, read without it from the event dispatch thread.
+  private volatile boolean analyzed = false;
+
+  // Paths changed since the last update. Guarded by pendingChanges.
+  private final Set<File> pendingChanges = new LinkedHashSet<>();
+  // The pending changes that created their path. Guarded by pendingChanges.
+  private final Set<File> pendingCreations = new LinkedHashSet<>();
+  // Guarded by pendingChanges.
+  private boolean updateScheduled = false;
+
+  public SizeAnalysisService(Project project) {
+    this.project = project;
+    project
+        .getMessageBus()
+        .connect(this)
+        .subscribe(
+            VirtualFileManager.VFS_CHANGES,
+            new BulkFileListener() {
+              @Override
+              public void after(@NotNull List<? extends VFileEvent> events) {
+                onFilesChanged(events);
+              }
+            });
+  }
+
+  public static SizeAnalysisService getInstance(Project project) {
+    return ServiceManager.getService(project, SizeAnalysisService.class);
+  }
+
+  /**
+   * Returns the suggestions for the project, analyzing the whole project only if it has not been
+   * analyzed yet. Must not be called on the event dispatch thread.
+   */
+  public ImmutableListMultimap<Category, Suggestion> getCategorizedSuggestions(
+      ProgressIndicator indicator) {
+    synchronized (this) {
+      if (!analyzed && project.getBasePath() != null) {
+        indicator.setText("Analyzing app size...");
+        // Changes made so far are covered by the analysis, those made while it runs are replayed
+        // once it is done.
+        synchronized (pendingChanges) {
+          pendingChanges.clear();
+          pendingCreations.clear();
+        }
+        analysis =
+            new IncrementalProjectAnalysis(PROJECT_ANALYZER, new File(project.getBasePath()));
+        analysis.analyzeAll();
+        analyzed = true;
+      }
+    }
+    applyPendingChanges(indicator);
+    return categorizeSuggestions();
+  }
+
+  /** Registers a listener called on the event dispatch thread whenever the suggestions change. */
+  public void addListener(Consumer<ImmutableListMultimap<Category, Suggestion>> listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Consumer<ImmutableListMultimap<Category, Suggestion>> listener) {
+    listeners.remove(listener);
+  }
+
+  @Override
+  public void dispose() {
+    listeners.clear();
+  }
+
+  private void onFilesChanged(List<? extends VFileEvent> events) {
+    String basePath = project.getBasePath();
+    if (basePath == null) {
+      return;
+    }
+    synchronized (pendingChanges) {
+      for (VFileEvent event : events) {
+        String oldPath = getOldPath(event);
+        if (oldPath != null && isAnalyzed(oldPath, basePath)) {
+          pendingChanges.add(new File(oldPath));
+          pendingCreations.remove(new File(oldPath));
+        }
+        if (isAnalyzed(event.getPath(), basePath)) {
+          File changed = new File(event.getPath());
+          pendingChanges.add(changed);
+          if (createsPath(event)) {
+            pendingCreations.add(changed);
+          } else {
+            pendingCreations.remove(changed);
+          }
+        }
+      }
+      // Changes made before the first analysis completes are replayed by it. Otherwise a single
+      // update task at a time picks up all the changes queued while it runs.
+      if (!analyzed || pendingChanges.isEmpty() || updateScheduled) {
+        return;
+      }
+      updateScheduled = true;
+    }
+    ProgressManager.getInstance()
+        .run(
+            new Task.Backgroundable(project, "Updating App Size Analysis") {
+              @Override
+              public void run(@NotNull ProgressIndicator indicator) {
+                applyPendingChanges(indicator);
+                ImmutableListMultimap<Category, Suggestion> categorizedSuggestions =
+                    categorizeSuggestions();
+                ApplicationManager.getApplication()
+                    .invokeLater(
+                        () ->
+                            listeners.forEach(
+                                listener -> listener.accept(categorizedSuggestions)),
+                        project.getDisposed());
+              }
+            });
+  }
+
+  /** Returns the path the event moved a file away from, if any. */
+  @Nullable
+  private static String getOldPath(VFileEvent event) {
+    if (event instanceof VFileDeleteEvent) {
+      return event.getPath();
+    }
+    if (event instanceof VFileMoveEvent) {
+      VFileMoveEvent moveEvent = (VFileMoveEvent) event;
+      return moveEvent.getOldParent().getPath() + "/" + moveEvent.getFile().getName();
+    }
+    if (event instanceof VFilePropertyChangeEvent
+        && VirtualFile.PROP_NAME.equals(((VFilePropertyChangeEvent) event).getPropertyName())) {
+      VirtualFile parent = ((VFilePropertyChangeEvent) event).getFile().getParent();
+      if (parent != null) {
+        return parent.getPath() + "/" + ((VFilePropertyChangeEvent) event).getOldValue();
+      }
+    }
+    return null;
+  }
+
+  /** Whether the event creates the file or directory at its path, rather than modifying it. */
+  private static boolean createsPath(VFileEvent event) {
+    return event instanceof VFileCreateEvent
+        || event instanceof VFileCopyEvent
+        || event instanceof VFileMoveEvent
+        || (event instanceof VFilePropertyChangeEvent
+            && VirtualFile.PROP_NAME.equals(
+                ((VFilePropertyChangeEvent) event).getPropertyName()));
+  }
+
+  /**
+   * Whether the path is within the project and outside of the directories left out of the
+   * analysis, such as the build outputs and the generated sources they hold.
+   */
+  private static boolean isAnalyzed(String path, String basePath) {
+    if (!path.equals(basePath) && !path.startsWith(basePath + "/")) {
+      return false;
+    }
+    for (String name : Splitter.on('/').split(path.substring(basePath.length()))) {
+      if (ProjectAnalyzer.isIgnored(name)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Re-analyzes what changed since the last update, including the changes made while doing so.
+   * Changes are left queued until the first analysis of the project is done.
+   */
+  private void applyPendingChanges(ProgressIndicator indicator) {
+    while (true) {
+      ImmutableList<File> changes;
+      ImmutableSet<File> creations;
+      synchronized (pendingChanges) {
+        if (!analyzed || pendingChanges.isEmpty()) {
+          updateScheduled = false;
+          return;
+        }
+        changes = ImmutableList.copyOf(pendingChanges);
+        creations = ImmutableSet.copyOf(pendingCreations);
+        pendingChanges.clear();
+        pendingCreations.clear();
+      }
+      try {
+        indicator.checkCanceled();
+        synchronized (this) {
+          analysis.update(changes, creations);
+        }
+      } catch (ProcessCanceledException e) {
+        // The changes are applied again by the next update.
+        synchronized (pendingChanges) {
+          pendingChanges.addAll(changes);
+          pendingCreations.addAll(creations);
+          updateScheduled = false;
+        }
+        throw e;
+      }
+    }
+  }
+
+  private synchronized ImmutableListMultimap<Category, Suggestion> categorizeSuggestions() {
+    if (analysis == null) {
+      return ImmutableListMultimap.of();
+    }
+    return SuggestionTable.of(analysis.getSuggestions()).toCategorizedSuggestions();
+  }
+}
@@ -33,6 +33,7 @@ public class SuggestionDataFactory {
     issueTypeNodeNames.put(IssueType.PROGUARD_EMPTY_MAP, null);
     issueTypeNodeNames.put(IssueType.PROGUARD_NO_SHRINKING, null);
     issueTypeNodeNames.put(IssueType.PROGUARD_NO_OBFUSCATION, null);
+    issueTypeNodeNames.put(IssueType.PROGUARD_UNOBFUSCATED_PACKAGES, null);
     issueTypeNodeNames.put(
         IssueType.QUESTIONABLE_FILE,
         "Remove inaccessible files");
@@ -41,6 +42,9 @@ public class SuggestionDataFactory {
     issueTypeNodeNames.put(IssueType.BUNDLES_NO_DENSITY_SPLITTING, null);
     issueTypeNodeNames.put(IssueType.BUNDLES_NO_LANGUAGE_SPLITTING, null);
     issueTypeNodeNames.put(IssueType.BUNDLES_NO_UNCOMPRESSED_NATIVE_LIBS, null);
+    issueTypeNodeNames.put(IssueType.BUNDLES_POINTLESS_COMPRESSION, null);
+    issueTypeNodeNames.put(IssueType.APK_UNALIGNED_NATIVE_LIBS, null);
+    issueTypeNodeNames.put(IssueType.NATIVE_LIBS_UNSTRIPPED, null);
 
     issueTypeDescriptions.put(
         IssueType.WEBP,
@@ -57,6 +61,7 @@ public class SuggestionDataFactory {
     issueTypeDescriptions.put(IssueType.PROGUARD_EMPTY_MAP, null);
     issueTypeDescriptions.put(IssueType.PROGUARD_NO_SHRINKING, null);
     issueTypeDescriptions.put(IssueType.PROGUARD_NO_OBFUSCATION, null);
+    issueTypeDescriptions.put(IssueType.PROGUARD_UNOBFUSCATED_PACKAGES, null);
     issueTypeDescriptions.put(
         IssueType.QUESTIONABLE_FILE,
         "Removing inaccessible and unneeded files will reduce the initial download size of your"
@@ -66,6 +71,9 @@ public class SuggestionDataFactory {
     issueTypeDescriptions.put(IssueType.BUNDLES_NO_DENSITY_SPLITTING, null);
     issueTypeDescriptions.put(IssueType.BUNDLES_NO_LANGUAGE_SPLITTING, null);
     issueTypeDescriptions.put(IssueType.BUNDLES_NO_UNCOMPRESSED_NATIVE_LIBS, null);
+    issueTypeDescriptions.put(IssueType.BUNDLES_POINTLESS_COMPRESSION, null);
+    issueTypeDescriptions.put(IssueType.APK_UNALIGNED_NATIVE_LIBS, null);
+    issueTypeDescriptions.put(IssueType.NATIVE_LIBS_UNSTRIPPED, null);
 
     issueTypeAutoFixTitles.put(
         IssueType.WEBP, "Convert image(s) to webp");
@@ -75,12 +83,16 @@ public class SuggestionDataFactory {
     issueTypeAutoFixTitles.put(IssueType.PROGUARD_EMPTY_MAP, null);
     issueTypeAutoFixTitles.put(IssueType.PROGUARD_NO_SHRINKING, null);
     issueTypeAutoFixTitles.put(IssueType.PROGUARD_NO_OBFUSCATION, null);
+    issueTypeAutoFixTitles.put(IssueType.PROGUARD_UNOBFUSCATED_PACKAGES, null);
     issueTypeAutoFixTitles.put(IssueType.QUESTIONABLE_FILE, null);
     issueTypeAutoFixTitles.put(IssueType.BUNDLES_OLD_GRADLE_PLUGIN, null);
     issueTypeAutoFixTitles.put(IssueType.BUNDLES_NO_ABI_SPLITTING, null);
     issueTypeAutoFixTitles.put(IssueType.BUNDLES_NO_DENSITY_SPLITTING, null);
     issueTypeAutoFixTitles.put(IssueType.BUNDLES_NO_LANGUAGE_SPLITTING, null);
     issueTypeAutoFixTitles.put(IssueType.BUNDLES_NO_UNCOMPRESSED_NATIVE_LIBS, null);
+    issueTypeAutoFixTitles.put(IssueType.BUNDLES_POINTLESS_COMPRESSION, null);
+    issueTypeAutoFixTitles.put(IssueType.APK_UNALIGNED_NATIVE_LIBS, null);
+    issueTypeAutoFixTitles.put(IssueType.NATIVE_LIBS_UNSTRIPPED, null);
     issueTypeAutoFixTitles.put(IssueType.NONOPTIMAL_LIBRARY, null);
     issueTypeAutoFixTitles.put(IssueType.LIBRARY_SHOULD_BE_EXTRACTED_TO_FEATURE_SPLITS, null);
 
@@ -93,6 +105,8 @@ public class SuggestionDataFactory {
         IssueType.PROGUARD_EMPTY_MAP, "Your application's Proguard/R8 map is empty");
     suggestionTitles.put(IssueType.PROGUARD_NO_SHRINKING, "Enable Proguard/R8");
     suggestionTitles.put(IssueType.PROGUARD_NO_OBFUSCATION, "Enable Proguard/R8 obfuscation");
+    suggestionTitles.put(
+        IssueType.PROGUARD_UNOBFUSCATED_PACKAGES, "Obfuscate packages kept by Proguard/R8 rules");
     suggestionTitles.put(IssueType.QUESTIONABLE_FILE, null);
     suggestionTitles.put(
         IssueType.BUNDLES_OLD_GRADLE_PLUGIN,
@@ -102,6 +116,11 @@ public class SuggestionDataFactory {
     suggestionTitles.put(IssueType.BUNDLES_NO_LANGUAGE_SPLITTING, "Generate per-language APKs");
     suggestionTitles.put(
         IssueType.BUNDLES_NO_UNCOMPRESSED_NATIVE_LIBS, "Use uncompressed native libs");
+    suggestionTitles.put(
+        IssueType.BUNDLES_POINTLESS_COMPRESSION, "Store already compressed files uncompressed");
+    suggestionTitles.put(
+        IssueType.APK_UNALIGNED_NATIVE_LIBS, "Store native libs uncompressed and page-aligned");
+    suggestionTitles.put(IssueType.NATIVE_LIBS_UNSTRIPPED, "Strip native libraries");
     suggestionTitles.put(IssueType.NONOPTIMAL_LIBRARY, null);
     suggestionTitles.put(
         IssueType.LIBRARY_SHOULD_BE_EXTRACTED_TO_FEATURE_SPLITS,
@@ -135,6 +154,10 @@ public class SuggestionDataFactory {
         IssueType.PROGUARD_NO_OBFUSCATION,
         "Your app does not appear to be using Proguard or R8 obfuscation. Consider enabling it to"
             + " reduce the size of your app.");
+    suggestionDescriptions.put(
+        IssueType.PROGUARD_UNOBFUSCATED_PACKAGES,
+        "Most classes and members of these packages keep their original names, usually because"
+            + " of broad -keep rules. Narrowing the rules lets R8 obfuscate and shrink them.");
     suggestionDescriptions.put(
         IssueType.QUESTIONABLE_FILE,
         "These files do not appear to be needed. Consider removing the files or placing them"
@@ -160,6 +183,19 @@ public class SuggestionDataFactory {
         IssueType.BUNDLES_NO_UNCOMPRESSED_NATIVE_LIBS,
         "Your App Bundle uses native libraries, but is not configured to utilize uncompressed"
             + " native libs. Consider enabling it for maximum app size reduction.");
+    suggestionDescriptions.put(
+        IssueType.BUNDLES_POINTLESS_COMPRESSION,
+        "These files are compressed although compression barely reduces their size, which only"
+            + " costs CPU time when they are extracted. Consider listing their extensions in"
+            + " aaptOptions.noCompress.");
+    suggestionDescriptions.put(
+        IssueType.APK_UNALIGNED_NATIVE_LIBS,
+        "These native libraries are compressed or not aligned to a page boundary, so they are"
+            + " extracted at install time instead of being loaded directly from the APK.");
+    suggestionDescriptions.put(
+        IssueType.NATIVE_LIBS_UNSTRIPPED,
+        "These native libraries contain debug info and symbol tables that are not needed at"
+            + " runtime. Stripping them will reduce the size of your app.");
     suggestionDescriptions.put(
         IssueType.LIBRARY_SHOULD_BE_EXTRACTED_TO_FEATURE_SPLITS,
         null);
@@ -174,6 +210,7 @@ public class SuggestionDataFactory {
     suggestionMoreInfos.put(IssueType.PROGUARD_EMPTY_MAP, null);
     suggestionMoreInfos.put(IssueType.PROGUARD_NO_SHRINKING, null);
     suggestionMoreInfos.put(IssueType.PROGUARD_NO_OBFUSCATION, null);
+    suggestionMoreInfos.put(IssueType.PROGUARD_UNOBFUSCATED_PACKAGES, null);
     suggestionMoreInfos.put(
         IssueType.QUESTIONABLE_FILE,
         "https://google.github.io/android-gradle-dsl/current/com.android.build.gradle.internal.dsl.PackagingOptions.html");
@@ -183,6 +220,9 @@ public class SuggestionDataFactory {
     suggestionMoreInfos.put(IssueType.BUNDLES_NO_DENSITY_SPLITTING, null);
     suggestionMoreInfos.put(IssueType.BUNDLES_NO_LANGUAGE_SPLITTING, null);
     suggestionMoreInfos.put(IssueType.BUNDLES_NO_UNCOMPRESSED_NATIVE_LIBS, null);
+    suggestionMoreInfos.put(IssueType.BUNDLES_POINTLESS_COMPRESSION, null);
+    suggestionMoreInfos.put(IssueType.APK_UNALIGNED_NATIVE_LIBS, null);
+    suggestionMoreInfos.put(IssueType.NATIVE_LIBS_UNSTRIPPED, null);
     suggestionMoreInfos.put(IssueType.NONOPTIMAL_LIBRARY, null);
     suggestionMoreInfos.put(IssueType.LIBRARY_SHOULD_BE_EXTRACTED_TO_FEATURE_SPLITS, null);
 
@@ -194,12 +234,16 @@ public class SuggestionDataFactory {
     suggestionAutoFixTitles.put(IssueType.PROGUARD_EMPTY_MAP, null);
     suggestionAutoFixTitles.put(IssueType.PROGUARD_NO_SHRINKING, null);
     suggestionAutoFixTitles.put(IssueType.PROGUARD_NO_OBFUSCATION, null);
+    suggestionAutoFixTitles.put(IssueType.PROGUARD_UNOBFUSCATED_PACKAGES, null);
     suggestionAutoFixTitles.put(IssueType.QUESTIONABLE_FILE, null);
     suggestionAutoFixTitles.put(IssueType.BUNDLES_OLD_GRADLE_PLUGIN, null);
     suggestionAutoFixTitles.put(IssueType.BUNDLES_NO_ABI_SPLITTING, null);
     suggestionAutoFixTitles.put(IssueType.BUNDLES_NO_DENSITY_SPLITTING, null);
     suggestionAutoFixTitles.put(IssueType.BUNDLES_NO_LANGUAGE_SPLITTING, null);
     suggestionAutoFixTitles.put(IssueType.BUNDLES_NO_UNCOMPRESSED_NATIVE_LIBS, null);
+    suggestionAutoFixTitles.put(IssueType.BUNDLES_POINTLESS_COMPRESSION, null);
+    suggestionAutoFixTitles.put(IssueType.APK_UNALIGNED_NATIVE_LIBS, null);
+    suggestionAutoFixTitles.put(IssueType.NATIVE_LIBS_UNSTRIPPED, null);
     suggestionAutoFixTitles.put(IssueType.NONOPTIMAL_LIBRARY, null);
     suggestionAutoFixTitles.put(IssueType.LIBRARY_SHOULD_BE_EXTRACTED_TO_FEATURE_SPLITS, null);
   }
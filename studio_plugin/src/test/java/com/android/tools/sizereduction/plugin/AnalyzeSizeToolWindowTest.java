@@ -244,6 +244,43 @@ public final class AnalyzeSizeToolWindowTest {
     }
   }
 
+  @Test
+  public void updateSuggestionsPatchesOnlyChangedCategories() {
+    JPanel toolPanel = toolWindow.getContent();
+    Component[] components = toolPanel.getComponents();
+    OnePixelSplitter splitter = (OnePixelSplitter) components[0];
+    JBScrollPane leftPane = (JBScrollPane) splitter.getFirstComponent();
+    JViewport leftView = leftPane.getViewport();
+    Tree suggestionTree = (Tree) leftView.getView();
+    DefaultMutableTreeNode rootNode = (DefaultMutableTreeNode) suggestionTree.getModel().getRoot();
+    Object largeFilesNode = rootNode.getChildAt(1);
+
+    ImmutableListMultimap<Category, Suggestion> newSuggestions =
+        ImmutableListMultimap.<Category, Suggestion>builder()
+            .put(Category.WEBP, webPSuggestion)
+            .put(Category.LARGE_FILES, streamingSuggestion)
+            .build();
+    toolWindow.updateSuggestions(newSuggestions);
+
+    assertThat(rootNode.getChildCount()).isEqualTo(2);
+    assertThat(getTreePathWithString(suggestionTree, webPSuggestionData.toString())).isNotNull();
+    assertThat(
+            getTreePathWithString(
+                suggestionTree, SuggestionDataFactory.issueTypeNodeNames.get(IssueType.WEBP)))
+        .isNotNull();
+    assertThat(rootNode.getChildAt(1)).isNotSameAs(largeFilesNode);
+
+    Object webPNode = rootNode.getChildAt(0);
+    toolWindow.updateSuggestions(newSuggestions);
+
+    assertThat(rootNode.getChildAt(0)).isSameAs(webPNode);
+
+    toolWindow.updateSuggestions(ImmutableListMultimap.of());
+
+    assertThat(rootNode.getChildCount()).isEqualTo(0);
+    assertThat(suggestionTree.isRootVisible()).isTrue();
+  }
+
   private TreePath getTreePathWithString(Tree tree, String searchTarget) {
     DefaultMutableTreeNode rootNode = (DefaultMutableTreeNode) tree.getModel().getRoot();
     for (Enumeration<?> treeEnumeration = rootNode.depthFirstEnumeration();